@@ -0,0 +1,122 @@
+package com.jinx.statistics.benchmark;
+
+import com.jinx.statistics.dao.StatisticsDao;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StatisticsDao.appendStatistics吞吐量
+ * 分别在1、4、16、64个线程下测试均匀分布和热点分布（80%的请求落在1%的统计名称上）两种键分布，
+ * 每轮结束后把缓存刷到磁盘，避免缓冲区无限增长
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class AppendBenchmark {
+
+    /**
+     * 每个线程预生成的键序列长度（2的幂）
+     */
+    private static final int SEQUENCE = 1 << 16;
+
+    @Param({"uniform", "hotkey"})
+    public String distribution;
+
+    @Param({"1000"})
+    public int keys;
+
+    @Param({"64"})
+    public int distinctValues;
+
+    private File dataDir;
+    private StatisticsDao dao;
+    private String[] names;
+    private String[] values;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dataDir = BenchmarkSupport.tempDir();
+        dao = BenchmarkSupport.dao(dataDir, "csv", keys * 2);
+        names = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            names[i] = "event" + i;
+        }
+        values = new String[distinctValues];
+        for (int i = 0; i < distinctValues; i++) {
+            values[i] = "value-" + i;
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() {
+        dao.flushCache();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkSupport.delete(dataDir);
+    }
+
+    /**
+     * 线程私有的键序列
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int[] nameIndexes;
+        private int[] valueIndexes;
+        private int position;
+
+        @Setup(Level.Trial)
+        public void setup(AppendBenchmark benchmark) {
+            SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+            int hotKeys = Math.max(1, benchmark.keys / 100);
+            nameIndexes = new int[SEQUENCE];
+            valueIndexes = new int[SEQUENCE];
+            for (int i = 0; i < SEQUENCE; i++) {
+                boolean hot = "hotkey".equals(benchmark.distribution) && random.nextInt(100) < 80;
+                nameIndexes[i] = hot ? random.nextInt(hotKeys) : random.nextInt(benchmark.keys);
+                valueIndexes[i] = random.nextInt(benchmark.distinctValues);
+            }
+        }
+
+        private int next() {
+            return position++ & (SEQUENCE - 1);
+        }
+    }
+
+    private Object append(Cursor cursor) {
+        int i = cursor.next();
+        return dao.appendStatistics(names[cursor.nameIndexes[i]], values[cursor.valueIndexes[i]]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object threads01(Cursor cursor) {
+        return append(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object threads04(Cursor cursor) {
+        return append(cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object threads16(Cursor cursor) {
+        return append(cursor);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object threads64(Cursor cursor) {
+        return append(cursor);
+    }
+}
@@ -0,0 +1,129 @@
+package com.jinx.statistics.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jinx.statistics.cluster.ClusterManager;
+import com.jinx.statistics.constant.FileConstant;
+import com.jinx.statistics.dao.DayClock;
+import com.jinx.statistics.dao.StatisticsDao;
+import com.jinx.statistics.index.BloomFilterIndex;
+import com.jinx.statistics.index.DayIndexer;
+import com.jinx.statistics.interceptor.AccessLogger;
+import com.jinx.statistics.metrics.MetricsRegistry;
+import com.jinx.statistics.replication.ReplicationSender;
+import com.jinx.statistics.service.impl.StatisticsServiceImpl;
+import com.jinx.statistics.storage.PackManager;
+import com.jinx.statistics.storage.StorageFormats;
+import com.jinx.statistics.summary.SummaryManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试公用的组件装配
+ * 不启动Spring容器，直接构造被测组件，并按application.yml的默认值填入配置字段
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 创建临时数据目录
+     * @return 目录
+     */
+    static File tempDir() throws IOException {
+        return Files.createTempDirectory("jinx-jmh").toFile();
+    }
+
+    /**
+     * 删除目录及其内容
+     * @param dir 目录
+     */
+    static void delete(File dir) throws IOException {
+        if (dir == null || !dir.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    static StorageFormats storageFormats(String format) {
+        return new StorageFormats(format, 4096);
+    }
+
+    /**
+     * 构造StatisticsDao
+     * @param dataDir 数据目录
+     * @param format 存储格式
+     * @param maxCacheSize 缓存最大条目数
+     * @return dao
+     */
+    static StatisticsDao dao(File dataDir, String format, int maxCacheSize) {
+        StorageFormats formats = storageFormats(format);
+        BloomFilterIndex bloomFilterIndex = new BloomFilterIndex(formats);
+        ReflectionTestUtils.setField(bloomFilterIndex, "fileDir", dataDir.getPath());
+        ReflectionTestUtils.setField(bloomFilterIndex, "enabled", true);
+        ReflectionTestUtils.setField(bloomFilterIndex, "fpp", 0.01);
+
+        DayClock dayClock = new DayClock("");
+        DayIndexer dayIndexer = new DayIndexer(formats, dayClock);
+        ReflectionTestUtils.setField(dayIndexer, "fileDir", dataDir.getPath());
+        ReflectionTestUtils.setField(dayIndexer, "enabled", false);
+
+        SummaryManager summaryManager = new SummaryManager(formats, dayClock);
+        ReflectionTestUtils.setField(summaryManager, "fileDir", dataDir.getPath());
+        ReflectionTestUtils.setField(summaryManager, "precision", 11);
+        ReflectionTestUtils.setField(summaryManager, "backfillParallelism", 1);
+
+        // 不配置备节点，不启动复制
+        ReplicationSender replicationSender = new ReplicationSender(formats, dayClock, new MetricsRegistry());
+        // 不启动自动打包
+        PackManager packManager = new PackManager(formats, dayClock, new MetricsRegistry());
+        ReflectionTestUtils.setField(packManager, "fileDir", dataDir.getPath());
+        StatisticsDao dao = new StatisticsDao(bloomFilterIndex, dayIndexer, summaryManager, formats, new MetricsRegistry(), dayClock,
+                replicationSender, packManager);
+        ReflectionTestUtils.setField(dao, "fileDir", dataDir.getPath());
+        ReflectionTestUtils.setField(dao, "maxCacheSize", maxCacheSize);
+        ReflectionTestUtils.setField(dao, "flushThreshold", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(dao, "maxDictionarySize", 256);
+        return dao;
+    }
+
+    /**
+     * 构造StatisticsServiceImpl（访问日志使用默认的full模式，不启动写出线程；不开启集群模式）
+     * @param dao dao
+     * @return service
+     */
+    static StatisticsServiceImpl service(StatisticsDao dao) {
+        SummaryManager summaryManager = (SummaryManager) ReflectionTestUtils.getField(dao, "summaryManager");
+        DayIndexer dayIndexer = (DayIndexer) ReflectionTestUtils.getField(dao, "dayIndexer");
+        DayClock dayClock = (DayClock) ReflectionTestUtils.getField(dao, "dayClock");
+        ClusterManager clusterManager = new ClusterManager(new ObjectMapper(), new MetricsRegistry());
+        return new StatisticsServiceImpl(dao, dayIndexer, summaryManager, new AccessLogger(dayClock), dayClock, clusterManager);
+    }
+
+    /**
+     * 生成一个日期文件夹，内含若干CSV数据文件
+     * @param dir 日期文件夹
+     * @param files 文件数
+     * @param records 每个文件的记录数
+     */
+    static void writeDayFolder(File dir, int files, int records) throws IOException {
+        Files.createDirectories(dir.toPath());
+        StringBuilder sb = new StringBuilder(records * 24);
+        for (int f = 0; f < files; f++) {
+            sb.setLength(0);
+            for (int r = 0; r < records; r++) {
+                sb.append("user-").append((r * 31 + f) % 5000).append(FileConstant.LINE_SEPARATOR);
+            }
+            Files.write(new File(dir, "event" + f + ".csv").toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
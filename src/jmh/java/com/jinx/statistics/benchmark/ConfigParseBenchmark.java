@@ -0,0 +1,45 @@
+package com.jinx.statistics.benchmark;
+
+import com.jinx.statistics.utility.XmlParserUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * XmlParserUtils.parseXml解析IP白名单配置
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigParseBenchmark {
+
+    /**
+     * 白名单条目数
+     */
+    @Param({"10", "1000"})
+    public int entries;
+
+    private String xml;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<ips>\n");
+        for (int i = 0; i < entries; i++) {
+            if (i % 10 == 0) {
+                sb.append("    <ip>10.").append(i >> 8 & 0xff).append('.').append(i & 0xff).append(".0/24</ip>\n");
+            } else {
+                sb.append("    <ip>192.168.").append(i >> 8 & 0xff).append('.').append(i & 0xff).append("</ip>\n");
+            }
+        }
+        sb.append("</ips>\n");
+        xml = sb.toString();
+    }
+
+    @Benchmark
+    public Object parseXml() throws Exception {
+        return XmlParserUtils.parseXml(xml);
+    }
+}
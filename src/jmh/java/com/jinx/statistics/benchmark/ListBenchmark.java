@@ -0,0 +1,52 @@
+package com.jinx.statistics.benchmark;
+
+import com.jinx.statistics.dao.StatisticsDao;
+import com.jinx.statistics.service.impl.StatisticsServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /statistics/list页面渲染（目录列举 + listHtml模板填充）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListBenchmark {
+
+    @Param({"10", "200"})
+    public int files;
+
+    private File dataDir;
+    private StatisticsServiceImpl service;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dataDir = BenchmarkSupport.tempDir();
+        BenchmarkSupport.writeDayFolder(new File(dataDir, "20240101"), files, 1);
+        StatisticsDao dao = BenchmarkSupport.dao(dataDir, "csv", 16);
+        service = BenchmarkSupport.service(dao);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkSupport.delete(dataDir);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String list() {
+        return service.list("20240101", false);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String listConcurrent() {
+        return service.list("20240101", false);
+    }
+}
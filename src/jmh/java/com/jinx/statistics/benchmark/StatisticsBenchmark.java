@@ -0,0 +1,82 @@
+package com.jinx.statistics.benchmark;
+
+import com.jinx.statistics.pojo.Statistics;
+import com.jinx.statistics.storage.StorageFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个统计对象的追加和刷盘
+ * append：单线程追加一条记录；
+ * saveFile：追加一批记录后写入数据文件（包含字典编码和格式编码的开销）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class StatisticsBenchmark {
+
+    @Param({"csv", "segment"})
+    public String format;
+
+    @Param({"1000"})
+    public int batch;
+
+    /**
+     * 批次内不同值的数量，超过字典阈值（256）时走原始模式
+     */
+    @Param({"64", "4096"})
+    public int distinctValues;
+
+    private File dataDir;
+    private StorageFormat storageFormat;
+    private String[] values;
+    private Statistics appendTarget;
+    private int position;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dataDir = BenchmarkSupport.tempDir();
+        storageFormat = BenchmarkSupport.storageFormats(format).active();
+        values = new String[distinctValues];
+        for (int i = 0; i < distinctValues; i++) {
+            values[i] = "value-" + i;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void newTarget() {
+        appendTarget = new Statistics("20240101", "append", values[0], dataDir.getPath(), storageFormat, 256);
+    }
+
+    @TearDown(Level.Iteration)
+    public void flushTarget() {
+        appendTarget.saveFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkSupport.delete(dataDir);
+    }
+
+    @Benchmark
+    public boolean append() {
+        return appendTarget.append(values[position++ % distinctValues]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object saveFile() {
+        Statistics statistics = new Statistics("20240101", "save", values[0], dataDir.getPath(), storageFormat, 256);
+        for (int i = 1; i < batch; i++) {
+            statistics.append(values[(position + i) % distinctValues]);
+        }
+        position += batch;
+        return statistics.saveFile();
+    }
+}
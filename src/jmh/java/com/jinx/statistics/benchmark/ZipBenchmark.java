@@ -0,0 +1,49 @@
+package com.jinx.statistics.benchmark;
+
+import com.jinx.statistics.utility.FileUtility;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileUtility.zipFolder压缩合成的日期文件夹
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZipBenchmark {
+
+    @Param({"10", "100"})
+    public int files;
+
+    @Param({"10000"})
+    public int recordsPerFile;
+
+    private File root;
+    private File dayDir;
+    private File zipFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = BenchmarkSupport.tempDir();
+        dayDir = new File(root, "20240101");
+        zipFile = new File(root, "20240101.zip");
+        BenchmarkSupport.writeDayFolder(dayDir, files, recordsPerFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkSupport.delete(root);
+    }
+
+    @Benchmark
+    public long zipFolder() throws IOException {
+        FileUtility.zipFolder(dayDir.getPath(), zipFile.getPath());
+        return zipFile.length();
+    }
+}
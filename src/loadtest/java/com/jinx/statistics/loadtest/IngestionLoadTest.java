@@ -0,0 +1,201 @@
+package com.jinx.statistics.loadtest;
+
+import com.jinx.statistics.dao.DayClock;
+import com.jinx.statistics.metrics.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 端到端压测
+ * 在随机端口启动完整应用，按目标速率持续请求POST /statistics/log，
+ * 同时在后台请求/list、/download，并在压测中途模拟一次跨天切换。
+ * 结果（修正协调遗漏后的延迟分位数和吞吐量）输出到控制台和target/loadtest-report.txt。
+ * 运行：mvn -Ploadtest test -Dloadtest.rate=2000 -Dloadtest.duration=30
+ */
+@Tag("loadtest")
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.statistics-file-dir=${user.dir}/target/loadtest/statistics",
+        "app.access-log.dir=${user.dir}/target/loadtest/logs",
+        "app.access-log.mode=off",
+        "app.scheduled=5000",
+        "logging.level.root=WARN"
+})
+class IngestionLoadTest {
+
+    /**
+     * 目标速率（请求/秒）
+     */
+    private static final double RATE = Double.parseDouble(System.getProperty("loadtest.rate", "2000"));
+
+    /**
+     * 压测时长（秒）
+     */
+    private static final long DURATION = Long.getLong("loadtest.duration", 30);
+
+    /**
+     * 统计名称数量
+     */
+    private static final int KEYS = Integer.getInteger("loadtest.keys", 1000);
+
+    /**
+     * 统计值长度
+     */
+    private static final int VALUE_SIZE = Integer.getInteger("loadtest.value-size", 32);
+
+    /**
+     * 每个请求包含的键值对数量
+     */
+    private static final int PAIRS = Integer.getInteger("loadtest.pairs", 1);
+
+    /**
+     * 突发模式：steady或burst:周期秒:持续秒:倍数
+     */
+    private static final String BURST = System.getProperty("loadtest.burst", "burst:10:1:5");
+
+    /**
+     * 发送线程数（服务端变慢时决定最多有多少个请求在途）
+     */
+    private static final int WORKERS = Integer.getInteger("loadtest.workers", 64);
+
+    private static final int BODIES = 4096;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private DayClock dayClock;
+
+    @Test
+    void ingestionUnderLoad() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        String base = "http://127.0.0.1:" + port + "/statistics";
+        String[] bodies = bodies();
+        URI logUri = URI.create(base + "/log");
+
+        String today = dayClock.today();
+        URI listUri = URI.create(base + "/list?path=" + today);
+        URI downloadUri = URI.create(base + "/download?path=" + URLEncoder.encode(today + "/event0.csv", StandardCharsets.UTF_8));
+
+        List<CompletableFuture<LoadGenerator.Result>> background = new ArrayList<>();
+        background.add(CompletableFuture.supplyAsync(() -> LoadGenerator.loop(client, "GET /list", DURATION, 200,
+                i -> HttpRequest.newBuilder(listUri).GET().build())));
+        background.add(CompletableFuture.supplyAsync(() -> LoadGenerator.loop(client, "GET /download", DURATION, 500,
+                i -> HttpRequest.newBuilder(downloadUri).GET().build())));
+        CompletableFuture<Void> rollover = CompletableFuture.runAsync(this::simulateRollover);
+
+        LoadGenerator generator = new LoadGenerator(client, RATE, LoadGenerator.Burst.parse(BURST), WORKERS);
+        LoadGenerator.Result ingestion = generator.run("POST /log", DURATION, i -> HttpRequest.newBuilder(logUri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(bodies[(int) (i % BODIES)]))
+                .build());
+
+        List<LoadGenerator.Result> results = new ArrayList<>();
+        results.add(ingestion);
+        for (CompletableFuture<LoadGenerator.Result> future : background) {
+            results.add(future.get());
+        }
+        rollover.get();
+
+        String report = report(results);
+        System.out.println(report);
+        Path reportFile = Paths.get(System.getProperty("user.dir"), "target", "loadtest-report.txt");
+        Files.createDirectories(reportFile.getParent());
+        Files.writeString(reportFile, report, StandardCharsets.UTF_8);
+
+        assertEquals(0, ingestion.errors.sum(), "写入请求出现错误");
+    }
+
+    /**
+     * 预生成请求体
+     */
+    private static String[] bodies() {
+        SplittableRandom random = new SplittableRandom(42);
+        String[] bodies = new String[BODIES];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < BODIES; i++) {
+            sb.setLength(0);
+            sb.append('{');
+            for (int p = 0; p < PAIRS; p++) {
+                if (p > 0) {
+                    sb.append(',');
+                }
+                sb.append("\"event").append(random.nextInt(KEYS)).append("\":\"");
+                for (int c = 0; c < VALUE_SIZE; c++) {
+                    sb.append((char) ('a' + random.nextInt(26)));
+                }
+                sb.append('"');
+            }
+            sb.append('}');
+            bodies[i] = sb.toString();
+        }
+        return bodies;
+    }
+
+    /**
+     * 压测进行到一半时把日期时钟拨到下一个零点：之后的写入进入新一天的分区，
+     * 前一天的分区在后台停用、刷盘，并构建索引、汇总和压缩
+     */
+    private void simulateRollover() {
+        try {
+            TimeUnit.SECONDS.sleep(DURATION / 2);
+            ZoneId zone = dayClock.getZone();
+            Clock system = Clock.system(zone);
+            Duration untilMidnight = Duration.between(system.instant(),
+                    LocalDate.now(system).plusDays(1).atStartOfDay(zone).toInstant());
+            ReflectionTestUtils.setField(dayClock, "clock", Clock.offset(system, untilMidnight));
+            log.warn("模拟跨天：日期时钟已拨快{}秒，当前日期{}", untilMidnight.toSeconds(), dayClock.today());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String report(List<LoadGenerator.Result> results) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("目标速率 %.0f req/s，时长 %ds，%d个统计名称，值长度%d，每请求%d个键值对，突发模式 %s，发送线程%d%n",
+                RATE, DURATION, KEYS, VALUE_SIZE, PAIRS, BURST, WORKERS));
+        sb.append(String.format("%-14s %-11s %8s %7s %10s %9s %9s %9s %9s %9s%n",
+                "endpoint", "latency", "count", "errors", "req/s", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)"));
+        for (LoadGenerator.Result result : results) {
+            line(sb, result, "corrected", result.corrected);
+            line(sb, result, "uncorrected", result.uncorrected);
+        }
+        return sb.toString();
+    }
+
+    private static void line(StringBuilder sb, LoadGenerator.Result result, String kind, LatencyHistogram histogram) {
+        long[] q = histogram.quantiles(0.5, 0.9, 0.99, 0.999);
+        double seconds = result.elapsedNanos / 1e9;
+        sb.append(String.format("%-14s %-11s %8d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                result.name, kind, histogram.getCount(), result.errors.sum(), histogram.getCount() / seconds,
+                q[0] / 1000.0, q[1] / 1000.0, q[2] / 1000.0, q[3] / 1000.0, histogram.getMax() / 1000.0));
+    }
+}
@@ -0,0 +1,177 @@
+package com.jinx.statistics.loadtest;
+
+import com.jinx.statistics.metrics.LatencyHistogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * 开环压测发生器
+ * 按目标速率预先排定每个请求的计划发送时间，工作线程到点发送；
+ * 延迟从计划发送时间开始计算（修正协调遗漏：服务端变慢时排队等待的时间也计入延迟），
+ * 同时记录从实际发送时间开始的未修正延迟用于对比
+ */
+class LoadGenerator {
+
+    /**
+     * 压测结果
+     */
+    static final class Result {
+        final String name;
+        final LatencyHistogram corrected = new LatencyHistogram();
+        final LatencyHistogram uncorrected = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        volatile long elapsedNanos;
+
+        Result(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * 突发模式：每period秒中有length秒按factor倍速率发送
+     */
+    static final class Burst {
+        final long periodNanos;
+        final long lengthNanos;
+        final double factor;
+
+        Burst(double periodSeconds, double lengthSeconds, double factor) {
+            this.periodNanos = (long) (periodSeconds * 1e9);
+            this.lengthNanos = (long) (lengthSeconds * 1e9);
+            this.factor = factor;
+        }
+
+        /**
+         * 解析"steady"或"burst:周期秒:持续秒:倍数"
+         */
+        static Burst parse(String pattern) {
+            if (pattern == null || pattern.isBlank() || "steady".equals(pattern)) {
+                return null;
+            }
+            String[] parts = pattern.split(":");
+            if (parts.length != 4 || !"burst".equals(parts[0])) {
+                throw new IllegalArgumentException("无法识别的突发模式: " + pattern);
+            }
+            return new Burst(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), Double.parseDouble(parts[3]));
+        }
+    }
+
+    private final HttpClient client;
+    private final double rate;
+    private final Burst burst;
+    private final int workers;
+
+    private long startNanos;
+    private long endNanos;
+    private long nextNanos;
+
+    LoadGenerator(HttpClient client, double rate, Burst burst, int workers) {
+        this.client = client;
+        this.rate = rate;
+        this.burst = burst;
+        this.workers = workers;
+    }
+
+    /**
+     * 以目标速率发送请求直到时长结束
+     * @param name 结果名称
+     * @param durationSeconds 时长（秒）
+     * @param requests 按序号生成请求
+     * @return 压测结果
+     */
+    Result run(String name, long durationSeconds, LongFunction<HttpRequest> requests) throws InterruptedException {
+        Result result = new Result(name);
+        startNanos = System.nanoTime();
+        endNanos = startNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+        nextNanos = startNanos;
+        List<Thread> threads = new ArrayList<>(workers);
+        AtomicLong sequence = new AtomicLong();
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(() -> {
+                long intended;
+                while ((intended = nextSlot()) >= 0) {
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    send(result, requests.apply(sequence.getAndIncrement()), intended);
+                }
+            }, "load-" + name + "-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        return result;
+    }
+
+    /**
+     * 以固定间隔循环发送请求（用于后台的查询类请求），直到时长结束
+     */
+    static Result loop(HttpClient client, String name, long durationSeconds, long intervalMillis,
+                       LongFunction<HttpRequest> requests) {
+        Result result = new Result(name);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long intended = start;
+        long i = 0;
+        while (intended < end) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(client, result, requests.apply(i++), intended);
+            intended += TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * 领取下一个计划发送时间
+     * @return 纳秒时间戳，时长结束时返回-1
+     */
+    private synchronized long nextSlot() {
+        long intended = nextNanos;
+        if (intended >= endNanos) {
+            return -1;
+        }
+        double current = rate;
+        if (burst != null && (intended - startNanos) % burst.periodNanos < burst.lengthNanos) {
+            current *= burst.factor;
+        }
+        nextNanos = intended + (long) (1e9 / current);
+        return intended;
+    }
+
+    private void send(Result result, HttpRequest request, long intended) {
+        send(client, result, request, intended);
+    }
+
+    private static void send(HttpClient client, Result result, HttpRequest request, long intended) {
+        long sent = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 400) {
+                result.errors.increment();
+            }
+        } catch (Exception e) {
+            result.errors.increment();
+        }
+        long done = System.nanoTime();
+        result.corrected.record((done - Math.min(intended, sent)) / 1000);
+        result.uncorrected.record((done - sent) / 1000);
+    }
+}
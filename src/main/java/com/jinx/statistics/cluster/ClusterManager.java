@@ -0,0 +1,477 @@
+package com.jinx.statistics.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jinx.statistics.constant.FileConstant;
+import com.jinx.statistics.metrics.LatencyHistogram;
+import com.jinx.statistics.metrics.MetricsRegistry;
+import com.jinx.statistics.summary.PartialSummary;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 集群模式
+ * 统计名称按带虚拟节点的一致性哈希分配到各节点。任意节点都可以接收写入，不属于本节点的记录
+ * 按所属节点分批，通过长连接转发；下载请求转到数据文件所属的节点；文件列表和汇总报表并行查询所有节点，
+ * 按名称归并各节点的有序结果，超时的节点不计入结果并标记为不完整。
+ * 节点之间转发的请求带有转发标记，接收方一律按本地请求处理，不会再次转发
+ */
+@Component
+@Slf4j
+public class ClusterManager {
+
+    /**
+     * 转发请求的标记头
+     */
+    public static final String FORWARDED_HEADER = "X-Jinx-Forwarded";
+
+    /**
+     * 请求属性：转发标记头来自集群中的其它节点，由过滤器在核对来源地址后设置
+     */
+    public static final String FORWARDED_ATTRIBUTE = "com.jinx.statistics.cluster.forwarded";
+
+    @Getter
+    @Value("${app.cluster.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 本节点地址，必须出现在节点列表中
+     */
+    @Getter
+    @Value("${app.cluster.self:}")
+    private String self;
+
+    /**
+     * 全部节点地址，逗号分隔（如http://127.0.0.1:9908）
+     */
+    @Value("${app.cluster.nodes:}")
+    private String nodesConfig;
+
+    /**
+     * 每个节点的虚拟节点数
+     */
+    @Value("${app.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    /**
+     * 单个转发请求最多包含的记录数
+     */
+    @Value("${app.cluster.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * 未满一个批次的记录最多等待多久发送（毫秒）
+     */
+    @Value("${app.cluster.linger-ms:20}")
+    private long lingerMillis;
+
+    /**
+     * 每个节点最多缓存的待转发记录数
+     */
+    @Value("${app.cluster.max-pending:100000}")
+    private int maxPending;
+
+    /**
+     * 节点间请求的超时时间（毫秒）
+     */
+    @Value("${app.cluster.timeout-ms:3000}")
+    private long timeoutMillis;
+
+    /**
+     * 分散查询等待各节点响应的时间（毫秒），超时的节点不计入结果，结果标记为不完整
+     */
+    @Value("${app.cluster.query-timeout-ms:2000}")
+    private long queryTimeoutMillis;
+
+    private HashRing ring;
+
+    /**
+     * 节点地址 -> 转发器（不含本节点）
+     */
+    private final Map<String, PeerForwarder> forwarders = new LinkedHashMap<>();
+
+    /**
+     * 其它节点的IP地址，启动时解析，只有来自这些地址的转发标记才被采信
+     */
+    private Set<InetAddress> peerAddresses = Collections.emptySet();
+
+    private HttpClient client;
+    private ScheduledExecutorService sender;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 转发指标
+     */
+    private final LongAdder forwarded;
+    private final LongAdder failures;
+    private final LongAdder dropped;
+    private final LatencyHistogram forwardLatency;
+    private final LatencyHistogram queryLatency;
+    private final LongAdder queryTimeouts;
+
+    public ClusterManager(ObjectMapper objectMapper, MetricsRegistry metricsRegistry) {
+        this.objectMapper = objectMapper;
+        forwarded = metricsRegistry.counter("jinx_cluster_forwarded_records_total", "转发到其它节点的记录数");
+        failures = metricsRegistry.counter("jinx_cluster_forward_failures_total", "转发请求失败次数");
+        dropped = metricsRegistry.counter("jinx_cluster_forward_dropped_total", "待转发队列已满而丢弃的记录数");
+        forwardLatency = metricsRegistry.timer("jinx_cluster_forward_duration_seconds", "单个转发请求的耗时");
+        metricsRegistry.gauge("jinx_cluster_forward_pending", "等待转发的记录数", this::pendingSize);
+        queryLatency = metricsRegistry.timer("jinx_cluster_query_duration_seconds", "分散查询收集各节点响应的耗时");
+        queryTimeouts = metricsRegistry.counter("jinx_cluster_query_timeouts_total", "分散查询中超时的节点次数");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        List<String> nodes = new ArrayList<>();
+        for (String node : nodesConfig.split(",")) {
+            if (!node.isBlank()) {
+                nodes.add(normalize(node));
+            }
+        }
+        self = normalize(self);
+        if (!nodes.contains(self)) {
+            throw new IllegalStateException("集群节点列表中没有本节点: " + self);
+        }
+        ring = new HashRing(nodes, virtualNodes);
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(timeoutMillis))
+                .build();
+        Duration timeout = Duration.ofMillis(timeoutMillis);
+        for (String node : nodes) {
+            if (!node.equals(self)) {
+                forwarders.put(node, new PeerForwarder(node, client, timeout, batchSize, maxPending,
+                        forwarded, failures, dropped, forwardLatency));
+            }
+        }
+        peerAddresses = resolve(forwarders.keySet());
+        sender = Executors.newScheduledThreadPool(Math.max(1, forwarders.size()), r -> {
+            Thread thread = new Thread(r, "cluster-forwarder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 每个节点分别提交，一个节点超时不影响其它节点的发送
+        sender.scheduleWithFixedDelay(() -> forwarders.values().forEach(f -> sender.execute(() -> f.flush(false))),
+                lingerMillis, lingerMillis, TimeUnit.MILLISECONDS);
+        log.info("集群模式: 本节点{}，共{}个节点，每个节点{}个虚拟节点", self, nodes.size(), virtualNodes);
+    }
+
+    private static Set<InetAddress> resolve(Collection<String> nodes) {
+        Set<InetAddress> addresses = new HashSet<>();
+        for (String node : nodes) {
+            String host = URI.create(node).getHost();
+            try {
+                addresses.addAll(Arrays.asList(InetAddress.getAllByName(host)));
+            } catch (UnknownHostException | IllegalArgumentException e) {
+                log.warn("无法解析集群节点地址: {}", node);
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * 请求的来源地址是否是集群中的其它节点
+     * @param remoteAddr 连接的对端地址（不取代理头）
+     * @return 未开启集群或地址不是其它节点时返回false
+     */
+    public boolean isPeer(String remoteAddr) {
+        if (!enabled || remoteAddr == null || peerAddresses.isEmpty()) {
+            return false;
+        }
+        try {
+            // 对端地址是IP字面量，不会触发DNS查询
+            return peerAddresses.contains(InetAddress.getByName(remoteAddr));
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    private static String normalize(String node) {
+        String trimmed = node.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    /**
+     * 统计名称所属的节点
+     * @param name 统计名称
+     * @return 节点地址，未开启集群时为null
+     */
+    public String owner(String name) {
+        return enabled ? ring.owner(name) : null;
+    }
+
+    /**
+     * 不属于本节点的记录加入转发队列
+     * @param name 统计名称
+     * @param value 统计值
+     * @return 是否已交给其它节点；属于本节点（或未开启集群）时返回false，由调用方写入本地
+     */
+    public boolean forward(String name, String value) {
+        if (!enabled) {
+            return false;
+        }
+        PeerForwarder forwarder = forwarders.get(ring.owner(name));
+        if (forwarder == null) {
+            return false;
+        }
+        if (forwarder.add(name, value)) {
+            try {
+                sender.execute(() -> forwarder.flush(false));
+            } catch (RejectedExecutionException e) {
+                // 正在关闭，留给关闭前的最后一次发送
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 数据文件所属的其它节点
+     * @param path 相对路径（日期/名称.后缀）
+     * @return 节点地址；不是数据文件、属于本节点或未开启集群时返回null
+     */
+    public String remoteOwner(String path) {
+        if (!enabled || path == null) {
+            return null;
+        }
+        int slash = path.indexOf('/');
+        int dot = path.lastIndexOf('.');
+        if (slash <= 0 || slash != path.lastIndexOf('/') || dot < slash) {
+            return null;
+        }
+        String suffix = path.substring(dot);
+        if (!suffix.equals(FileConstant.CSV_SUFFIX) && !suffix.equals(FileConstant.SEGMENT_SUFFIX)) {
+            return null;
+        }
+        String owner = ring.owner(path.substring(slash + 1, dot));
+        return owner.equals(self) ? null : owner;
+    }
+
+    /**
+     * 其它节点
+     * @return 节点地址
+     */
+    public Set<String> peers() {
+        return forwarders.keySet();
+    }
+
+    /**
+     * 向所有其它节点并行发送同一个查询，在查询超时时间内收集响应
+     * 所有请求同时发出并共用一个截止时间，慢节点只会让结果不完整，不会拖长整个查询
+     * @param endpoint 接口路径
+     * @param params 查询参数（值为null的参数不发送）
+     * @param handler 响应体处理
+     * @return 各节点的响应和不可用的节点
+     */
+    public <T> GatherResult<T> gather(String endpoint, Map<String, String> params, HttpResponse.BodyHandler<T> handler) {
+        long startNanos = System.nanoTime();
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(queryTimeoutMillis);
+        Map<String, CompletableFuture<HttpResponse<T>>> futures = new LinkedHashMap<>();
+        for (String node : peers()) {
+            futures.put(node, client.sendAsync(get(node, endpoint, params, queryTimeoutMillis), handler));
+        }
+        GatherResult<T> result = new GatherResult<>();
+        futures.forEach((node, future) -> {
+            try {
+                HttpResponse<T> response = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (response.statusCode() / 100 == 2) {
+                    result.getResponses().put(node, response.body());
+                    return;
+                }
+                log.warn("节点{}查询失败: {} HTTP {}", node, endpoint, response.statusCode());
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                queryTimeouts.increment();
+                log.warn("节点{}查询超时: {}", node, endpoint);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("节点{}查询失败: {} {}", node, endpoint, e.toString());
+            }
+            result.getUnavailable().add(node);
+        });
+        queryLatency.recordSince(startNanos);
+        return result;
+    }
+
+    /**
+     * 获取其它节点上文件夹内的文件列表
+     * @param dir 文件夹
+     * @return 各节点按名称排序的文件名（文件夹以/结尾）
+     */
+    public GatherResult<List<String>> listPeers(String dir) {
+        GatherResult<String> gathered = gather("/cluster/files", Collections.singletonMap("path", dir), HttpResponse.BodyHandlers.ofString());
+        GatherResult<List<String>> result = new GatherResult<>();
+        result.getUnavailable().addAll(gathered.getUnavailable());
+        gathered.getResponses().forEach((node, body) -> {
+            try {
+                JsonNode data = objectMapper.readTree(body).path("data");
+                List<String> names = new ArrayList<>(data.size());
+                data.forEach(name -> names.add(name.asText()));
+                result.getResponses().put(node, names);
+            } catch (Exception e) {
+                log.warn("节点{}的文件列表无法解析: {}", node, e.toString());
+                result.getUnavailable().add(node);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 获取其它节点在日期区间内的汇总中间结果
+     * @param from 开始日期
+     * @param to 结束日期
+     * @param name 统计名称，为null时为全部
+     * @return 各节点的中间结果（按名称排序，遍历时逐条解码）
+     */
+    public GatherResult<PartialSummary> summarizePeers(String from, String to, String name) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("from", from);
+        params.put("to", to);
+        params.put("name", name);
+        GatherResult<byte[]> gathered = gather("/cluster/summary", params, HttpResponse.BodyHandlers.ofByteArray());
+        GatherResult<PartialSummary> result = new GatherResult<>();
+        result.getUnavailable().addAll(gathered.getUnavailable());
+        gathered.getResponses().forEach((node, body) -> {
+            try {
+                result.getResponses().put(node, PartialSummary.readFrom(new ByteArrayInputStream(body)));
+            } catch (IOException e) {
+                log.warn("节点{}的汇总结果无法解析: {}", node, e.toString());
+                result.getUnavailable().add(node);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 把请求转给所属节点，并原样返回其响应
+     * @param node 节点地址
+     * @param endpoint 接口路径（如/statistics/download）
+     * @param path 文件路径参数
+     * @return 响应
+     */
+    public ResponseEntity<StreamingResponseBody> proxy(String node, String endpoint, String path) {
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(get(node, endpoint, Collections.singletonMap("path", path), timeoutMillis),
+                    HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        } catch (Exception e) {
+            log.warn("请求节点{}失败: {} {}", node, endpoint, e.toString());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        for (String name : List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_DISPOSITION)) {
+            response.headers().firstValue(name).ifPresent(value -> headers.set(name, value));
+        }
+        return ResponseEntity.status(response.statusCode())
+                .headers(headers)
+                .body(out -> {
+                    try (InputStream in = response.body()) {
+                        in.transferTo(out);
+                    }
+                });
+    }
+
+    private HttpRequest get(String node, String endpoint, Map<String, String> params, long timeout) {
+        StringBuilder uri = new StringBuilder(node).append(endpoint);
+        char separator = '?';
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            if (param.getValue() != null) {
+                uri.append(separator).append(param.getKey()).append('=')
+                        .append(URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8));
+                separator = '&';
+            }
+        }
+        return HttpRequest.newBuilder(URI.create(uri.toString()))
+                .timeout(Duration.ofMillis(timeout))
+                .header(FORWARDED_HEADER, "1")
+                .GET()
+                .build();
+    }
+
+    private long pendingSize() {
+        long pending = 0;
+        for (PeerForwarder forwarder : forwarders.values()) {
+            pending += forwarder.pendingSize();
+        }
+        return pending;
+    }
+
+    /**
+     * 集群状态
+     * @return 节点列表和转发统计
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        if (!enabled) {
+            return status;
+        }
+        status.put("self", self);
+        status.put("nodes", ring.getNodes());
+        status.put("virtualNodes", virtualNodes);
+        Map<String, Integer> pending = new LinkedHashMap<>();
+        forwarders.forEach((node, forwarder) -> pending.put(node, forwarder.pendingSize()));
+        status.put("pending", pending);
+        status.put("forwarded", forwarded.sum());
+        status.put("failures", failures.sum());
+        status.put("dropped", dropped.sum());
+        return status;
+    }
+
+    /**
+     * 关闭前把待转发的记录发送出去
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (sender == null) {
+            return;
+        }
+        sender.shutdown();
+        try {
+            sender.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        forwarders.values().forEach(f -> f.flush(true));
+        long pending = pendingSize();
+        if (pending > 0) {
+            log.warn("关闭时仍有{}条记录未能转发", pending);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.jinx.statistics.cluster;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次分散查询的结果
+ * @param <T> 单个节点的响应类型
+ */
+@Getter
+public class GatherResult<T> {
+
+    /**
+     * 节点地址 -> 响应（按节点列表顺序）
+     */
+    private final Map<String, T> responses = new LinkedHashMap<>();
+
+    /**
+     * 超时、出错或响应无法解析的节点
+     */
+    private final List<String> unavailable = new ArrayList<>();
+
+    /**
+     * 是否缺少部分节点的结果
+     * @return 是否不完整
+     */
+    public boolean isPartial() {
+        return !unavailable.isEmpty();
+    }
+}
@@ -0,0 +1,79 @@
+package com.jinx.statistics.cluster;
+
+import com.jinx.statistics.utility.HashUtility;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 带虚拟节点的一致性哈希环（不可变）
+ * 每个节点在环上放置若干个虚拟节点，统计名称归属于顺时针方向的第一个虚拟节点所在的节点；
+ * 增减节点时只有相邻区间内的名称改变归属
+ */
+public class HashRing {
+
+    /**
+     * 节点地址
+     */
+    private final List<String> nodes;
+
+    /**
+     * 虚拟节点在环上的位置（升序）
+     */
+    private final long[] points;
+
+    /**
+     * 虚拟节点所属的节点序号，与points并列
+     */
+    private final int[] owners;
+
+    public HashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("集群节点不能为空");
+        }
+        this.nodes = Collections.unmodifiableList(nodes);
+        int replicas = Math.max(1, virtualNodes);
+        int total = nodes.size() * replicas;
+        // 位置和节点序号打包后一起排序：高位为位置，低位为序号，同一位置按节点序号决定先后
+        long[][] entries = new long[total][];
+        int n = 0;
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int v = 0; v < replicas; v++) {
+                entries[n++] = new long[]{HashUtility.hash64(nodes.get(node) + "#" + v), node};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        points = new long[total];
+        owners = new int[total];
+        for (int i = 0; i < total; i++) {
+            points[i] = entries[i][0];
+            owners[i] = (int) entries[i][1];
+        }
+    }
+
+    /**
+     * 统计名称所属的节点
+     * @param name 统计名称
+     * @return 节点地址
+     */
+    public String owner(String name) {
+        return nodes.get(ownerIndex(HashUtility.hash64(name)));
+    }
+
+    private int ownerIndex(long hash) {
+        int i = Arrays.binarySearch(points, hash);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        // 同一位置可能有多个虚拟节点，取第一个
+        while (i > 0 && points[i - 1] == hash) {
+            i--;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,226 @@
+package com.jinx.statistics.cluster;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.jinx.statistics.metrics.LatencyHistogram;
+import com.jinx.statistics.pojo.LogBatch;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 转发到单个节点的批量发送器
+ * 请求线程只把记录加入待发送批次；批次达到上限或等待时间到达时，由转发线程合并成一个请求发往所属节点。
+ * 每个节点同一时间只有一个在途请求，发送失败的批次放回队列，在退避时间后重试；
+ * 待发送的记录超过上限时丢弃新记录并计数
+ */
+@Slf4j
+class PeerForwarder {
+
+    /**
+     * 发送失败后的退避时间
+     */
+    private static final long BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 节点地址
+     */
+    private final String node;
+
+    private final URI logUri;
+    private final HttpClient client;
+    private final Duration timeout;
+
+    /**
+     * 单个请求最多包含的记录数
+     */
+    private final int batchSize;
+
+    /**
+     * 最多缓存的待发送记录数
+     */
+    private final int maxPending;
+
+    /**
+     * 待发送的记录
+     */
+    private LogBatch pending;
+
+    /**
+     * 是否有在途请求
+     */
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    /**
+     * 退避结束的时刻
+     */
+    private volatile long retryAt;
+
+    /**
+     * 转发指标（所有节点共用）
+     */
+    private final LongAdder forwarded;
+    private final LongAdder failures;
+    private final LongAdder dropped;
+    private final LatencyHistogram latency;
+
+    PeerForwarder(String node, HttpClient client, Duration timeout, int batchSize, int maxPending,
+                  LongAdder forwarded, LongAdder failures, LongAdder dropped, LatencyHistogram latency) {
+        this.node = node;
+        this.logUri = URI.create(node + "/statistics/log");
+        this.client = client;
+        this.timeout = timeout;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxPending = Math.max(this.batchSize, maxPending);
+        this.pending = new LogBatch(this.batchSize);
+        this.forwarded = forwarded;
+        this.failures = failures;
+        this.dropped = dropped;
+        this.latency = latency;
+    }
+
+    /**
+     * 加入一条待转发的记录
+     * @param name 统计名称
+     * @param value 统计值
+     * @return 待发送的记录是否已够一个批次
+     */
+    synchronized boolean add(String name, String value) {
+        if (pending.size() >= maxPending) {
+            dropped.increment();
+            return false;
+        }
+        pending.add(name, value);
+        return pending.size() >= batchSize;
+    }
+
+    /**
+     * 待发送的记录数
+     */
+    synchronized int pendingSize() {
+        return pending.size();
+    }
+
+    /**
+     * 发送全部待发送的记录（由转发线程调用，已有在途请求或处于退避期时直接返回）
+     * @param force 是否忽略退避期（关闭前的最后一次发送）
+     */
+    void flush(boolean force) {
+        if (!force && System.nanoTime() - retryAt < 0) {
+            return;
+        }
+        if (!sending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (true) {
+                LogBatch batch = take();
+                if (batch == null) {
+                    return;
+                }
+                if (!send(batch)) {
+                    putBack(batch);
+                    retryAt = System.nanoTime() + BACKOFF_NANOS;
+                    return;
+                }
+            }
+        } finally {
+            sending.set(false);
+        }
+    }
+
+    /**
+     * 取出最多一个批次的记录
+     */
+    private synchronized LogBatch take() {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        LogBatch batch = pending;
+        if (batch.size() <= batchSize) {
+            pending = new LogBatch(batchSize);
+            return batch;
+        }
+        LogBatch head = new LogBatch(batchSize);
+        LogBatch rest = new LogBatch(batch.size() - batchSize);
+        for (int i = 0; i < batch.size(); i++) {
+            (i < batchSize ? head : rest).add(batch.name(i), batch.value(i));
+        }
+        pending = rest;
+        return head;
+    }
+
+    /**
+     * 发送失败的批次放回队列，超出上限的部分丢弃
+     */
+    private synchronized void putBack(LogBatch batch) {
+        LogBatch merged = new LogBatch(batch.size() + pending.size());
+        int room = maxPending - pending.size();
+        for (int i = 0; i < batch.size(); i++) {
+            if (i < room) {
+                merged.add(batch.name(i), batch.value(i));
+            } else {
+                dropped.increment();
+            }
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            merged.add(pending.name(i), pending.value(i));
+        }
+        pending = merged;
+    }
+
+    private boolean send(LogBatch batch) {
+        long startNanos = System.nanoTime();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(logUri)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .header(ClusterManager.FORWARDED_HEADER, "1")
+                    .POST(HttpRequest.BodyPublishers.ofString(toJson(batch)))
+                    .build();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 != 2) {
+                failures.increment();
+                log.warn("转发统计数据到{}失败: HTTP {}", node, response.statusCode());
+                return false;
+            }
+            latency.recordSince(startNanos);
+            forwarded.add(batch.size());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.increment();
+            return false;
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("转发统计数据到{}失败: {}", node, e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * 编码为JSON对象，同名的键按顺序重复出现，由接收方的流式解析逐条读取
+     */
+    private static String toJson(LogBatch batch) {
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        StringBuilder sb = new StringBuilder(batch.size() * 32);
+        sb.append('{');
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('"');
+            encoder.quoteAsString(batch.name(i), sb);
+            sb.append("\":\"");
+            encoder.quoteAsString(batch.value(i), sb);
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,130 @@
+package com.jinx.statistics.configuration;
+
+import lombok.Getter;
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.context.event.*;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline.TimelineEvent;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.metrics.StartupStep;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * 启动耗时分解
+ * 记录JVM启动到服务就绪各阶段的时间点，以及实例化耗时最长的Bean（不含其依赖的实例化时间），
+ * 用于比较关闭接口文档、AOT和CDS前后的启动时间
+ */
+public class StartupTimer implements ApplicationListener<ApplicationEvent> {
+
+    /**
+     * 记录的启动步骤上限，超过后不再记录Bean的耗时
+     */
+    private static final int STEP_CAPACITY = 4096;
+
+    /**
+     * 输出耗时最长的Bean个数
+     */
+    private static final int SLOWEST_BEANS = 5;
+
+    @Getter
+    private final BufferingApplicationStartup applicationStartup = new BufferingApplicationStartup(STEP_CAPACITY);
+
+    /**
+     * JVM启动时刻（毫秒）
+     */
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    /**
+     * 阶段名称 -> 距JVM启动的毫秒数，按发生顺序
+     */
+    private final Map<String, Long> marks = new LinkedHashMap<>();
+
+    public StartupTimer() {
+        mark("进入main");
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (event instanceof ApplicationEnvironmentPreparedEvent) {
+            mark("加载配置");
+        } else if (event instanceof ApplicationPreparedEvent) {
+            mark("加载Bean定义");
+        } else if (event instanceof WebServerInitializedEvent) {
+            mark("实例化Bean并启动Web服务");
+        } else if (event instanceof ApplicationStartedEvent) {
+            mark("完成刷新");
+        } else if (event instanceof ApplicationReadyEvent) {
+            mark("就绪");
+        }
+    }
+
+    private synchronized void mark(String phase) {
+        marks.putIfAbsent(phase, System.currentTimeMillis() - jvmStartMillis);
+    }
+
+    /**
+     * 各阶段耗时，每行为阶段名称、阶段耗时和距JVM启动的时间
+     * @return 文本行
+     */
+    public synchronized List<String> phases() {
+        List<String> lines = new ArrayList<>();
+        long previous = 0;
+        for (Map.Entry<String, Long> mark : marks.entrySet()) {
+            lines.add(String.format("%s: +%dms (累计%dms)", mark.getKey(), mark.getValue() - previous, mark.getValue()));
+            previous = mark.getValue();
+        }
+        return lines;
+    }
+
+    /**
+     * 距JVM启动的总耗时
+     */
+    public synchronized long totalMillis() {
+        return marks.values().stream().mapToLong(Long::longValue).max().orElse(0);
+    }
+
+    /**
+     * 实例化耗时最长的Bean，扣除其中实例化依赖的时间
+     * @return 文本行
+     */
+    public List<String> slowestBeans() {
+        Map<Long, Long> selfNanos = new HashMap<>();
+        Map<Long, String> names = new HashMap<>();
+        for (TimelineEvent event : applicationStartup.getBufferedTimeline().getEvents()) {
+            StartupStep step = event.getStartupStep();
+            if (!"spring.beans.instantiate".equals(step.getName())) {
+                continue;
+            }
+            long nanos = event.getDuration().toNanos();
+            selfNanos.merge(step.getId(), nanos, Long::sum);
+            if (step.getParentId() != null) {
+                selfNanos.merge(step.getParentId(), -nanos, Long::sum);
+            }
+            for (StartupStep.Tag tag : step.getTags()) {
+                if ("beanName".equals(tag.getKey())) {
+                    names.put(step.getId(), tag.getValue());
+                }
+            }
+        }
+        return names.keySet().stream()
+                .sorted(Comparator.comparingLong((Long id) -> selfNanos.getOrDefault(id, 0L)).reversed())
+                .limit(SLOWEST_BEANS)
+                .map(id -> String.format("%s: %dms", names.get(id), selfNanos.get(id) / 1_000_000))
+                .toList();
+    }
+
+    /**
+     * 启动加速状态：是否使用AOT生成的代码、是否指定了CDS归档
+     */
+    public static String acceleration() {
+        String cds = ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .filter(arg -> arg.startsWith("-XX:SharedArchiveFile="))
+                .map(arg -> arg.substring("-XX:SharedArchiveFile=".length()))
+                .findFirst().orElse("未指定");
+        return String.format("AOT: %s, CDS: %s", AotDetector.useGeneratedArtifacts() ? "开启" : "关闭", cds);
+    }
+}
@@ -1,5 +1,6 @@
 package com.jinx.statistics.configuration;
 
+import com.jinx.statistics.converter.LogBatchMessageConverter;
 import com.jinx.statistics.interceptor.StatisticsInterceptor;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Contact;
@@ -8,8 +9,10 @@ import io.swagger.v3.oas.models.info.License;
 import io.swagger.v3.oas.models.servers.Server;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
@@ -43,6 +46,12 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
      */
     @Value("${app.cors.enabled}")
     private boolean corsEnabled;
+
+    /**
+     * 是否启用接口文档（prod配置中关闭）
+     */
+    @Value("${springdoc.api-docs.enabled:true}")
+    private boolean docsEnabled;
     
     /**
      * 统计拦截器
@@ -59,10 +68,11 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
 
     /**
      * 配置OpenAPI文档
-     * 通过knife4j生成接口文档
+     * 通过knife4j生成接口文档，关闭接口文档时不创建
      * @return OpenAPI配置
      */
     @Bean
+    @ConditionalOnProperty(name = "springdoc.api-docs.enabled", matchIfMissing = true)
     public OpenAPI customOpenAPI() {
         log.info("正在初始化API文档配置...");
         
@@ -121,10 +131,12 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
     protected void addResourceHandlers(ResourceHandlerRegistry registry) {
         log.info("配置静态资源处理...");
         // 配置knife4j的静态资源路径
-        registry.addResourceHandler("doc.html")
-                .addResourceLocations("classpath:/META-INF/resources/");
-        registry.addResourceHandler("/webjars/**")
-                .addResourceLocations("classpath:/META-INF/resources/webjars/");
+        if (docsEnabled) {
+            registry.addResourceHandler("doc.html")
+                    .addResourceLocations("classpath:/META-INF/resources/");
+            registry.addResourceHandler("/webjars/**")
+                    .addResourceLocations("classpath:/META-INF/resources/webjars/");
+        }
                 
         // 添加自定义静态资源路径
         registry.addResourceHandler("/static/**")
@@ -150,4 +162,13 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
         }
         super.addCorsMappings(registry);
     }
+
+    /**
+     * 注册统计请求体转换器（放在最前面，只处理LogBatch参数）
+     * @param converters 消息转换器列表
+     */
+    @Override
+    protected void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new LogBatchMessageConverter());
+    }
 }
@@ -0,0 +1,32 @@
+package com.jinx.statistics.constant;
+
+public class FileConstant {
+    /**
+     * 元数据目录（隐藏目录，不参与列表展示和压缩）
+     */
+    public static final String META_DIR = ".meta";
+    public static final String CSV_SUFFIX = ".csv";
+    public static final String SEGMENT_SUFFIX = ".seg";
+    public static final String BLOOM_SUFFIX = ".bloom";
+    /**
+     * 日期打包文件后缀（与日期文件夹同级）
+     */
+    public static final String PACK_SUFFIX = ".pack";
+    public static final String LINE_SEPARATOR = "\r\n";
+    /**
+     * 日期文件夹的倒排索引文件名（位于元数据目录下）
+     */
+    public static final String VALUE_INDEX_FILE = "values.idx";
+    /**
+     * 日期文件夹的汇总文件名（位于元数据目录下）
+     */
+    public static final String SUMMARY_FILE = "summary.bin";
+    /**
+     * 正常关闭时写入的热启动快照文件名（位于元数据目录下）
+     */
+    public static final String WARM_SNAPSHOT_FILE = "warm.snapshot";
+    /**
+     * 关闭排空到期后未刷盘记录的溢出文件名（位于元数据目录下）
+     */
+    public static final String DRAIN_SPILL_FILE = "drain.spill";
+}
@@ -3,4 +3,6 @@ package com.jinx.statistics.constant;
 public class MessageConstant {
     public static final String EMPTY_FILE = "文件不存在";
     public static final String ILLEGAL_IP_ADDRESS = "非法请求ip地址";
+    public static final String TOO_MANY_REQUESTS = "请求过于频繁";
+    public static final String SHUTTING_DOWN = "服务正在关闭，请稍后重试";
 }
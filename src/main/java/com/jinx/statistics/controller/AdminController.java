@@ -0,0 +1,123 @@
+package com.jinx.statistics.controller;
+
+import com.jinx.statistics.jfr.FlightRecorderManager;
+import com.jinx.statistics.replication.ReplicationSender;
+import com.jinx.statistics.response.ApiResponse;
+import com.jinx.statistics.retention.RetentionManager;
+import com.jinx.statistics.storage.PackManager;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("admin")
+public class AdminController {
+
+    private final FlightRecorderManager flightRecorderManager;
+    private final ReplicationSender replicationSender;
+    private final RetentionManager retentionManager;
+    private final PackManager packManager;
+
+    public AdminController(FlightRecorderManager flightRecorderManager, ReplicationSender replicationSender,
+                           RetentionManager retentionManager, PackManager packManager) {
+        this.flightRecorderManager = flightRecorderManager;
+        this.replicationSender = replicationSender;
+        this.retentionManager = retentionManager;
+        this.packManager = packManager;
+    }
+
+    /**
+     * 开始飞行记录
+     * @param duration 记录时长（秒）
+     * @return 记录信息
+     */
+    @PostMapping("/jfr/start")
+    @Operation(
+        summary = "开始飞行记录",
+        description = "按jinx.jfc配置开始JFR记录，记录刷盘、日期切换、压缩事件以及GC和文件读写，到达时长后自动停止并写入文件"
+    )
+    public ApiResponse<Map<String, Object>> startRecording(
+            @Parameter(description = "记录时长（秒），不填时使用最大时长") @RequestParam(required = false) Long duration){
+        return ApiResponse.success(flightRecorderManager.start(duration));
+    }
+
+    /**
+     * 停止飞行记录
+     * @return 记录信息
+     */
+    @PostMapping("/jfr/stop")
+    @Operation(
+        summary = "停止飞行记录",
+        description = "停止当前的JFR记录并写入文件，返回文件路径和大小"
+    )
+    public ApiResponse<Map<String, Object>> stopRecording(){
+        return ApiResponse.success(flightRecorderManager.stop());
+    }
+
+    /**
+     * 飞行记录状态
+     * @return 记录信息
+     */
+    @GetMapping("/jfr/status")
+    @Operation(
+        summary = "飞行记录状态",
+        description = "获取最近一次JFR记录的状态和文件路径"
+    )
+    public ApiResponse<Map<String, Object>> recordingStatus(){
+        return ApiResponse.success(flightRecorderManager.status());
+    }
+
+    /**
+     * 主备复制状态
+     * @return 复制状态
+     */
+    @GetMapping("/replication/status")
+    @Operation(
+        summary = "主备复制状态",
+        description = "获取备节点地址、连接状态、跟踪的文件数以及尚未确认的字节数"
+    )
+    public ApiResponse<Map<String, Object>> replicationStatus(){
+        return ApiResponse.success(replicationSender.status());
+    }
+
+    /**
+     * 分级保留状态
+     * @return 保留状态
+     */
+    @GetMapping("/retention/status")
+    @Operation(
+        summary = "分级保留状态",
+        description = "获取保留策略、磁盘使用率、最近一次检查回收的字节数以及各层级的日期数"
+    )
+    public ApiResponse<Map<String, Object>> retentionStatus(){
+        return ApiResponse.success(retentionManager.status());
+    }
+
+    /**
+     * 立即执行分级保留检查
+     * @return 是否已提交
+     */
+    @PostMapping("/retention/run")
+    @Operation(
+        summary = "执行分级保留检查",
+        description = "在后台立即按保留天数和磁盘水位降级历史日期，正在执行时不重复提交"
+    )
+    public ApiResponse<Boolean> runRetention(){
+        return ApiResponse.success(retentionManager.trigger());
+    }
+
+    /**
+     * 立即打包历史日期
+     * @return 是否已提交
+     */
+    @PostMapping("/pack/run")
+    @Operation(
+        summary = "打包历史日期",
+        description = "在后台立即把已封存（已压缩、已建立汇总和索引）的日期文件夹合并为打包文件，正在执行时不重复提交"
+    )
+    public ApiResponse<Boolean> runPack(){
+        return ApiResponse.success(packManager.trigger());
+    }
+}
@@ -0,0 +1,77 @@
+package com.jinx.statistics.controller;
+
+import com.jinx.statistics.cluster.ClusterManager;
+import com.jinx.statistics.response.ApiResponse;
+import com.jinx.statistics.service.StatisticsService;
+import com.jinx.statistics.summary.PartialSummary;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("cluster")
+public class ClusterController {
+
+    private final ClusterManager clusterManager;
+
+    private final StatisticsService statisticsService;
+
+    public ClusterController(ClusterManager clusterManager, StatisticsService statisticsService) {
+        this.clusterManager = clusterManager;
+        this.statisticsService = statisticsService;
+    }
+
+    /**
+     * 集群状态
+     * @return 节点列表和转发统计
+     */
+    @GetMapping("/status")
+    @Operation(
+        summary = "集群状态",
+        description = "获取本节点地址、全部节点、每个节点等待转发的记录数以及转发成功、失败和丢弃的数量"
+    )
+    public ApiResponse<Map<String, Object>> status(){
+        return ApiResponse.success(clusterManager.status());
+    }
+
+    /**
+     * 本节点文件夹内的文件名（供其它节点汇总文件列表）
+     * @param path 文件夹路径
+     * @return 文件名（文件夹以/结尾）
+     */
+    @GetMapping("/files")
+    @Operation(
+        summary = "本节点文件列表",
+        description = "返回本节点指定文件夹内的文件名，文件夹以/结尾，用于集群内汇总文件列表"
+    )
+    public ApiResponse<List<String>> files(@Parameter(description = "文件夹路径") @RequestParam(required = false) String path){
+        return ApiResponse.success(statisticsService.localEntries(path));
+    }
+
+    /**
+     * 本节点的区间汇总中间结果（供其它节点归并）
+     * @param from 开始日期
+     * @param to 结束日期
+     * @param name 统计名称
+     * @return 编码后的中间结果，名称按字典序排列
+     */
+    @GetMapping("/summary")
+    @Operation(
+        summary = "本节点汇总中间结果",
+        description = "返回本节点在日期区间内按名称排序的汇总中间结果（记录数、字节数、小时分布和基数估计器），用于集群内归并汇总报表"
+    )
+    public ResponseEntity<StreamingResponseBody> summary(@Parameter(description = "开始日期（yyyyMMdd）") @RequestParam(required = false) String from,
+                                                         @Parameter(description = "结束日期（yyyyMMdd）") @RequestParam(required = false) String to,
+                                                         @Parameter(description = "统计名称") @RequestParam(required = false) String name){
+        PartialSummary partial = statisticsService.localSummary(from, to, name);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(partial::writeTo);
+    }
+}
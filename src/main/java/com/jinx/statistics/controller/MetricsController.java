@@ -0,0 +1,38 @@
+package com.jinx.statistics.controller;
+
+import com.jinx.statistics.metrics.MetricsRegistry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class MetricsController {
+
+    private final MetricsRegistry metricsRegistry;
+
+    public MetricsController(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Prometheus指标
+     * @return 文本格式的指标
+     */
+    @GetMapping(value = "/metrics", produces = "text/plain;version=0.0.4;charset=UTF-8")
+    @Operation(
+        summary = "Prometheus指标",
+        description = "以Prometheus文本格式输出各接口的耗时分位数和状态码计数，以及缓存、刷盘和压缩指标"
+    )
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "200",
+            description = "成功",
+            content = @Content(mediaType = "text/plain;version=0.0.4;charset=UTF-8")
+        )
+    })
+    public String metrics() {
+        return metricsRegistry.scrape();
+    }
+}
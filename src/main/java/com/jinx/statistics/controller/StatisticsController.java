@@ -1,20 +1,26 @@
 package com.jinx.statistics.controller;
 
+import com.jinx.statistics.cluster.ClusterManager;
+import com.jinx.statistics.constant.FileConstant;
+import com.jinx.statistics.pojo.LogBatch;
+import com.jinx.statistics.pojo.LookupResult;
+import com.jinx.statistics.pojo.SearchResult;
+import com.jinx.statistics.pojo.SummaryReport;
 import com.jinx.statistics.response.ApiResponse;
 import com.jinx.statistics.service.StatisticsService;
+import com.jinx.statistics.storage.FileRange;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 @RestController
@@ -23,13 +29,17 @@ public class StatisticsController {
 
     private final StatisticsService statisticsService;
 
-    public StatisticsController(StatisticsService statisticsService) {
+    private final ClusterManager clusterManager;
+
+    public StatisticsController(StatisticsService statisticsService, ClusterManager clusterManager) {
         this.statisticsService = statisticsService;
+        this.clusterManager = clusterManager;
     }
 
     /**
      * 统计数据（支持Map格式）
      * @param data 统计数据（键值对）
+     * @param forwarded 转发标记（只在请求来自其它节点时由过滤器设置）
      * @return 返回成功
      */
     @PostMapping(value = "/log", consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -44,14 +54,16 @@ public class StatisticsController {
             content = @Content(schema = @Schema(implementation = com.jinx.statistics.response.ApiResponse.class))
         )
     })
-    public ApiResponse log(@RequestBody Map<String, String> data) {
-        statisticsService.log(data);
+    public ApiResponse log(@RequestBody LogBatch data,
+                           @Parameter(hidden = true) @RequestAttribute(value = ClusterManager.FORWARDED_ATTRIBUTE, required = false) Boolean forwarded) {
+        statisticsService.log(data, forwarded != null);
         return ApiResponse.success();
     }
 
     /**
      * 获取文件夹内文件列表
      * @param path 文件夹路径
+     * @param forwarded 转发标记（只在请求来自其它节点时由过滤器设置）
      * @return 用于网页显示的文本内容
      */
     @GetMapping(value = "/list", produces = "text/html;charset=UTF-8")
@@ -70,13 +82,15 @@ public class StatisticsController {
             description = "文件夹不存在"
         )
     })
-    public String list(@Parameter(description = "文件夹路径", required = true) String path){
-        return statisticsService.list(path);
+    public String list(@Parameter(description = "文件夹路径", required = true) String path,
+                       @Parameter(hidden = true) @RequestAttribute(value = ClusterManager.FORWARDED_ATTRIBUTE, required = false) Boolean forwarded){
+        return statisticsService.list(path, forwarded != null);
     }
 
     /**
-     * 下载文件
+     * 下载文件（集群模式下其它节点的数据文件由所属节点返回）
      * @param path 文件夹名
+     * @param forwarded 转发标记（只在请求来自其它节点时由过滤器设置）
      * @return 文件
      */
     @GetMapping("/download")
@@ -95,15 +109,59 @@ public class StatisticsController {
             description = "文件不存在"
         )
     })
-    public ResponseEntity<Resource> download(@Parameter(description = "文件路径", required = true) String path){
-        File file = statisticsService.download(path);
+    public ResponseEntity<StreamingResponseBody> download(@Parameter(description = "文件路径", required = true) String path,
+                                      @Parameter(hidden = true) @RequestAttribute(value = ClusterManager.FORWARDED_ATTRIBUTE, required = false) Boolean forwarded){
+        String owner = forwarded == null ? clusterManager.remoteOwner(path) : null;
+        if (owner != null) {
+            return clusterManager.proxy(owner, "/statistics/download", path);
+        }
+        FileRange file = statisticsService.download(path);
         HttpHeaders headers = new HttpHeaders();
         headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + file.getName());
         return ResponseEntity.ok()
                 .headers(headers)
-                .contentLength(file.length())
+                .contentLength(file.getLength())
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(new FileSystemResource(file));
+                .body(file::copyTo);
+    }
+
+    /**
+     * 以CSV导出数据文件（集群模式下其它节点的数据文件由所属节点导出）
+     * @param path 文件路径
+     * @param forwarded 转发标记（只在请求来自其它节点时由过滤器设置）
+     * @return CSV文本流
+     */
+    @GetMapping("/export")
+    @Operation(
+        summary = "导出CSV",
+        description = "将指定的数据文件以CSV文本导出，二进制段格式的文件会在服务端解码"
+    )
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "200",
+            description = "导出成功",
+            content = @Content(mediaType = "text/csv")
+        ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "404",
+            description = "文件不存在"
+        )
+    })
+    public ResponseEntity<StreamingResponseBody> export(@Parameter(description = "文件路径", required = true) String path,
+                                                        @Parameter(hidden = true) @RequestAttribute(value = ClusterManager.FORWARDED_ATTRIBUTE, required = false) Boolean forwarded){
+        String owner = forwarded == null ? clusterManager.remoteOwner(path) : null;
+        if (owner != null) {
+            return clusterManager.proxy(owner, "/statistics/export", path);
+        }
+        FileRange file = statisticsService.exportFile(path);
+        String fileName = file.getName();
+        String csvName = fileName.substring(0, fileName.lastIndexOf('.')) + FileConstant.CSV_SUFFIX;
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + csvName);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(out -> statisticsService.exportCsv(file, out));
     }
 
     /**
@@ -131,4 +189,121 @@ public class StatisticsController {
         String result = statisticsService.zip(dir);
         return ApiResponse.success(result);
     }
+
+    /**
+     * 查询统计值是否出现过
+     * @param name 统计名称
+     * @param value 统计值
+     * @param days 查询天数
+     * @return 查询结果
+     */
+    @GetMapping("/lookup")
+    @Operation(
+        summary = "查询统计值",
+        description = "查询最近若干天内某个统计名称下是否出现过指定的值，先通过布隆过滤器排除不可能包含该值的文件"
+    )
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "200",
+            description = "查询成功",
+            content = @Content(schema = @Schema(implementation = com.jinx.statistics.response.ApiResponse.class))
+        )
+    })
+    public ApiResponse<LookupResult> lookup(@Parameter(description = "统计名称", required = true) String name,
+                                            @Parameter(description = "统计值", required = true) String value,
+                                            @Parameter(description = "查询天数（包含今天）") @RequestParam(defaultValue = "30") int days){
+        return ApiResponse.success(statisticsService.lookup(name, value, days));
+    }
+
+    /**
+     * 通过索引检索统计值
+     * @param value 统计值
+     * @param from 开始日期
+     * @param to 结束日期
+     * @param maxOffsets 每个文件最多返回的偏移数量
+     * @return 检索结果
+     */
+    @GetMapping("/search")
+    @Operation(
+        summary = "检索统计值",
+        description = "通过历史日期的倒排索引检索指定值出现的文件和位置，不扫描原始数据；尚未建立索引的日期会在结果中列出"
+    )
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "200",
+            description = "检索成功",
+            content = @Content(schema = @Schema(implementation = com.jinx.statistics.response.ApiResponse.class))
+        )
+    })
+    public ApiResponse<SearchResult> search(@Parameter(description = "统计值", required = true) String value,
+                                            @Parameter(description = "开始日期（yyyyMMdd），默认为结束日期前29天") @RequestParam(required = false) String from,
+                                            @Parameter(description = "结束日期（yyyyMMdd），默认为今天") @RequestParam(required = false) String to,
+                                            @Parameter(description = "每个文件最多返回的偏移数量") @RequestParam(defaultValue = "100") int maxOffsets){
+        return ApiResponse.success(statisticsService.search(value, from, to, maxOffsets));
+    }
+
+    /**
+     * 获取索引器状态
+     * @return 进度和吞吐量统计
+     */
+    @GetMapping("/index/stats")
+    @Operation(
+        summary = "索引器状态",
+        description = "获取后台索引器的进度和吞吐量统计"
+    )
+    public ApiResponse<Map<String, Object>> indexStats(){
+        return ApiResponse.success(statisticsService.indexStats());
+    }
+
+    /**
+     * 获取访问统计
+     * @return 请求数、错误数、耗时、抽样和丢弃数量
+     */
+    @GetMapping("/access/stats")
+    @Operation(
+        summary = "访问统计",
+        description = "获取全部请求的计数和耗时统计，以及抽样访问日志的写入和丢弃数量"
+    )
+    public ApiResponse<Map<String, Object>> accessStats(){
+        return ApiResponse.success(statisticsService.accessStats());
+    }
+
+    /**
+     * 区间汇总报表
+     * @param from 开始日期
+     * @param to 结束日期
+     * @param name 统计名称
+     * @return 报表
+     */
+    @GetMapping("/summary")
+    @Operation(
+        summary = "区间汇总报表",
+        description = "读取每日汇总文件，返回区间内各统计名称的记录数、字节数、去重值数量估计和小时分布"
+    )
+    @ApiResponses(value = {
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "200",
+            description = "查询成功",
+            content = @Content(schema = @Schema(implementation = com.jinx.statistics.response.ApiResponse.class))
+        )
+    })
+    public ApiResponse<SummaryReport> summary(@Parameter(description = "开始日期（yyyyMMdd），默认为结束日期前29天") @RequestParam(required = false) String from,
+                                              @Parameter(description = "结束日期（yyyyMMdd），默认为今天") @RequestParam(required = false) String to,
+                                              @Parameter(description = "统计名称，默认为全部") @RequestParam(required = false) String name){
+        return ApiResponse.success(statisticsService.summary(from, to, name));
+    }
+
+    /**
+     * 补建历史汇总
+     * @param force 是否覆盖已存在的汇总
+     * @return 补建结果
+     */
+    @PutMapping("/summary/backfill")
+    @Operation(
+        summary = "补建历史汇总",
+        description = "为已有的历史日期文件夹并行生成汇总文件"
+    )
+    public ApiResponse<String> backfillSummaries(@Parameter(description = "是否覆盖已存在的汇总") @RequestParam(defaultValue = "false") boolean force){
+        return ApiResponse.success(statisticsService.backfillSummaries(force));
+    }
 }
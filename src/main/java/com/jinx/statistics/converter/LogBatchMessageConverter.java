@@ -0,0 +1,58 @@
+package com.jinx.statistics.converter;
+
+import com.jinx.statistics.pojo.LogBatch;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 统计请求体转换器
+ * 只处理LogBatch参数：从请求体字节流直接解析键值对，不经过Jackson和中间Map
+ */
+public class LogBatchMessageConverter extends AbstractHttpMessageConverter<LogBatch> {
+
+    /**
+     * 所有线程共享的统计名称缓存
+     */
+    private final NameCache names = new NameCache(4096);
+
+    private final ThreadLocal<LogBatchParser> parsers = ThreadLocal.withInitial(() -> new LogBatchParser(names));
+
+    public LogBatchMessageConverter() {
+        super(StandardCharsets.UTF_8, MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return LogBatch.class == clazz;
+    }
+
+    @Override
+    protected boolean canWrite(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    @NonNull
+    protected LogBatch readInternal(@NonNull Class<? extends LogBatch> clazz, @NonNull HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        try {
+            return parsers.get().parse(inputMessage.getBody());
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException(e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(@NonNull LogBatch batch, @NonNull HttpOutputMessage outputMessage)
+            throws HttpMessageNotWritableException {
+        throw new HttpMessageNotWritableException("不支持输出LogBatch");
+    }
+}
@@ -0,0 +1,252 @@
+package com.jinx.statistics.converter;
+
+import com.jinx.statistics.pojo.LogBatch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 统计请求体的流式JSON解析器
+ * 只接受一层对象，值为字符串、数字或布尔值（按原文转为字符串），null值忽略；
+ * 直接从字节流逐字节解析为LogBatch，统计名称通过NameCache复用已有的字符串。
+ * 非线程安全，每个线程复用一个实例
+ */
+final class LogBatchParser {
+
+    private final NameCache names;
+    private final byte[] buffer = new byte[8192];
+    private byte[] scratch = new byte[256];
+    private int length;
+    private InputStream in;
+    private int position;
+    private int limit;
+    private long consumed;
+
+    LogBatchParser(NameCache names) {
+        this.names = names;
+    }
+
+    /**
+     * 解析请求体
+     * @param input 请求体
+     * @return 键值对
+     * @throws IOException 读取失败
+     * @throws IllegalArgumentException 格式错误
+     */
+    LogBatch parse(InputStream input) throws IOException {
+        in = input;
+        position = 0;
+        limit = 0;
+        consumed = 0;
+        try {
+            LogBatch batch = new LogBatch();
+            expect(nextToken(), '{');
+            int c = nextToken();
+            if (c != '}') {
+                while (true) {
+                    expect(c, '"');
+                    readString();
+                    String name = names.get(scratch, length);
+                    expect(nextToken(), ':');
+                    String value = readValue(nextToken());
+                    if (value != null) {
+                        batch.add(name, value);
+                    }
+                    c = nextToken();
+                    if (c == '}') {
+                        break;
+                    }
+                    expect(c, ',');
+                    c = nextToken();
+                }
+            }
+            if (nextToken() != -1) {
+                throw error("对象结束后还有多余内容");
+            }
+            return batch;
+        } finally {
+            in = null;
+            if (scratch.length > 64 * 1024) {
+                scratch = new byte[256];
+            }
+        }
+    }
+
+    private String readValue(int c) throws IOException {
+        if (c == '"') {
+            readString();
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            length = 0;
+            append(c);
+            while (true) {
+                c = peek();
+                if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                    append(read());
+                } else {
+                    break;
+                }
+            }
+            return new String(scratch, 0, length, StandardCharsets.ISO_8859_1);
+        }
+        if (c == 't') {
+            literal("rue");
+            return "true";
+        }
+        if (c == 'f') {
+            literal("alse");
+            return "false";
+        }
+        if (c == 'n') {
+            literal("ull");
+            return null;
+        }
+        if (c == '{' || c == '[') {
+            throw error("统计值只能是字符串、数字或布尔值");
+        }
+        throw error("无法识别的值");
+    }
+
+    /**
+     * 读取字符串内容（起始引号已读取），解码转义后的UTF-8字节放入scratch
+     */
+    private void readString() throws IOException {
+        length = 0;
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            }
+            if (c == -1) {
+                throw error("字符串未结束");
+            }
+            if (c < 0x20) {
+                throw error("字符串中包含未转义的控制字符");
+            }
+            if (c != '\\') {
+                append(c);
+                continue;
+            }
+            c = read();
+            switch (c) {
+                case '"', '\\', '/' -> append(c);
+                case 'b' -> append('\b');
+                case 'f' -> append('\f');
+                case 'n' -> append('\n');
+                case 'r' -> append('\r');
+                case 't' -> append('\t');
+                case 'u' -> {
+                    int codePoint = readHex();
+                    if (Character.isHighSurrogate((char) codePoint) && peek() == '\\') {
+                        read();
+                        if (read() != 'u') {
+                            throw error("无效的转义字符");
+                        }
+                        int low = readHex();
+                        if (Character.isLowSurrogate((char) low)) {
+                            codePoint = Character.toCodePoint((char) codePoint, (char) low);
+                        } else {
+                            // 高代理项后面不是低代理项：高代理项替换为?，后面的字符照常保留
+                            appendCodePoint('?');
+                            codePoint = Character.isSurrogate((char) low) ? '?' : low;
+                        }
+                    } else if (Character.isSurrogate((char) codePoint)) {
+                        codePoint = '?';
+                    }
+                    appendCodePoint(codePoint);
+                }
+                default -> throw error("无效的转义字符");
+            }
+        }
+    }
+
+    private int readHex() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) {
+                throw error("无效的\\u转义");
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private void appendCodePoint(int codePoint) {
+        if (codePoint < 0x80) {
+            append(codePoint);
+        } else if (codePoint < 0x800) {
+            append(0xc0 | (codePoint >> 6));
+            append(0x80 | (codePoint & 0x3f));
+        } else if (codePoint < 0x10000) {
+            append(0xe0 | (codePoint >> 12));
+            append(0x80 | ((codePoint >> 6) & 0x3f));
+            append(0x80 | (codePoint & 0x3f));
+        } else {
+            append(0xf0 | (codePoint >> 18));
+            append(0x80 | ((codePoint >> 12) & 0x3f));
+            append(0x80 | ((codePoint >> 6) & 0x3f));
+            append(0x80 | (codePoint & 0x3f));
+        }
+    }
+
+    private void literal(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw error("无法识别的值");
+            }
+        }
+    }
+
+    private void append(int b) {
+        if (length == scratch.length) {
+            scratch = Arrays.copyOf(scratch, length * 2);
+        }
+        scratch[length++] = (byte) b;
+    }
+
+    private static void expect(int actual, char expected) {
+        if (actual != expected) {
+            throw new IllegalArgumentException("JSON格式错误: 期望'" + expected + "'");
+        }
+    }
+
+    /**
+     * 跳过空白读取下一个字符
+     */
+    private int nextToken() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position] & 0xff;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        position = 0;
+        limit = Math.max(0, in.read(buffer));
+        return limit > 0;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("JSON格式错误: " + message + "（位置" + (consumed + position) + "）");
+    }
+}
@@ -0,0 +1,78 @@
+package com.jinx.statistics.converter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 统计名称字符串缓存
+ * 以UTF-8字节为键的开放寻址表：请求体中的统计名称命中缓存时直接复用已有的String，不再解码和分配。
+ * 容量固定，冲突时覆盖旧条目（统计名称数量通常远小于容量）；条目不可变，多线程并发读写无需加锁
+ */
+final class NameCache {
+
+    /**
+     * 超过该长度的名称不缓存
+     */
+    private static final int MAX_NAME_BYTES = 64;
+
+    private static final int PROBES = 4;
+
+    private static final class Entry {
+        private final int hash;
+        private final byte[] bytes;
+        private final String value;
+
+        private Entry(int hash, byte[] bytes, String value) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.value = value;
+        }
+    }
+
+    private final Entry[] table;
+    private final int mask;
+
+    NameCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        table = new Entry[size];
+        mask = size - 1;
+    }
+
+    /**
+     * 获取字节序列对应的字符串
+     * @param bytes UTF-8字节
+     * @param length 字节数
+     * @return 字符串
+     */
+    String get(byte[] bytes, int length) {
+        if (length > MAX_NAME_BYTES) {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+        int hash = hash(bytes, length);
+        int home = hash & mask;
+        for (int i = 0; i < PROBES; i++) {
+            Entry entry = table[(home + i) & mask];
+            if (entry == null) {
+                return put((home + i) & mask, hash, bytes, length);
+            }
+            if (entry.hash == hash && Arrays.equals(entry.bytes, 0, entry.bytes.length, bytes, 0, length)) {
+                return entry.value;
+            }
+        }
+        return put(home, hash, bytes, length);
+    }
+
+    private String put(int slot, int hash, byte[] bytes, int length) {
+        String value = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        table[slot] = new Entry(hash, Arrays.copyOf(bytes, length), value);
+        return value;
+    }
+
+    private static int hash(byte[] bytes, int length) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,189 @@
+package com.jinx.statistics.dao;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 按天分区的时钟
+ * 缓存当前日期字符串，同一天内每次调用返回同一个实例，调用方可以直接用引用比较判断日期是否变化；
+ * 后台线程在时区零点准时切换日期，请求线程读到已过零点的时间时也会立即切换，不依赖定时任务的周期。
+ * 日期只向前切换，系统时间回拨时保持当前日期不变
+ */
+@Component
+@Slf4j
+public class DayClock {
+
+    /**
+     * 当前日期
+     */
+    @Getter
+    @AllArgsConstructor
+    private static final class Day {
+        /**
+         * 日期字符串（yyyyMMdd）
+         */
+        private final String date;
+
+        private final LocalDate localDate;
+
+        /**
+         * 下一天零点的时间戳
+         */
+        private final long endMillis;
+    }
+
+    /**
+     * 分区时区
+     */
+    @Getter
+    private final ZoneId zone;
+
+    /**
+     * 分区时区（计算小时时按时间戳取偏移，不分配对象）
+     */
+    private final TimeZone timeZone;
+
+    /**
+     * 时间来源
+     */
+    private volatile Clock clock;
+
+    private volatile Day day;
+
+    /**
+     * 日期切换监听器，参数为（前一天，新的一天）
+     */
+    private final List<BiConsumer<String, String>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 零点切换和通知监听器的线程
+     */
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "day-clock");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DayClock(@Value("${app.storage.timezone:}") String timezone) {
+        this.zone = StringUtils.hasText(timezone) ? ZoneId.of(timezone.trim()) : ZoneId.systemDefault();
+        this.timeZone = TimeZone.getTimeZone(zone);
+        this.clock = Clock.system(zone);
+        this.day = dayOf(clock.millis());
+    }
+
+    @PostConstruct
+    public void start() {
+        tick();
+        log.info("日期分区: 时区{}，当前日期{}", zone, day.getDate());
+    }
+
+    /**
+     * 当前日期
+     * @return 日期字符串（yyyyMMdd），同一天内返回同一个实例
+     */
+    public String today() {
+        return current().getDate();
+    }
+
+    /**
+     * 当前日期
+     * @return 日期
+     */
+    public LocalDate todayDate() {
+        return current().getLocalDate();
+    }
+
+    /**
+     * 时间戳在分区时区中的小时
+     * @param millis 时间戳
+     * @return 小时（0~23）
+     */
+    public int hourOfDay(long millis) {
+        long local = millis + timeZone.getOffset(millis);
+        return (int) Math.floorMod(local / 3_600_000L, 24L);
+    }
+
+    /**
+     * 注册日期切换监听器，在时钟线程上按注册顺序调用
+     * @param listener 参数为（前一天，新的一天）
+     */
+    public void addListener(BiConsumer<String, String> listener) {
+        listeners.add(listener);
+    }
+
+    private Day current() {
+        Day current = day;
+        long now = clock.millis();
+        return now < current.getEndMillis() ? current : roll(now);
+    }
+
+    /**
+     * 切换到新的一天，并在时钟线程上通知监听器
+     */
+    private synchronized Day roll(long now) {
+        Day previous = day;
+        if (now < previous.getEndMillis()) {
+            return previous;
+        }
+        Day next = dayOf(now);
+        day = next;
+        log.info("日期切换: {} -> {}", previous.getDate(), next.getDate());
+        try {
+            ticker.execute(() -> {
+                for (BiConsumer<String, String> listener : listeners) {
+                    try {
+                        listener.accept(previous.getDate(), next.getDate());
+                    } catch (Exception e) {
+                        log.error("日期切换处理失败: {} -> {}", previous.getDate(), next.getDate(), e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("日期时钟已停止，未通知日期切换: {} -> {}", previous.getDate(), next.getDate());
+        }
+        return next;
+    }
+
+    /**
+     * 到零点时切换日期，然后等到下一个零点（提前醒来时重新等待）
+     */
+    private void tick() {
+        try {
+            long delay = current().getEndMillis() - clock.millis();
+            ticker.schedule(this::tick, Math.max(1, delay), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 关闭后不再调度
+        }
+    }
+
+    private Day dayOf(long millis) {
+        LocalDate date = Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+        long end = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        return new Day(date.format(DateTimeFormatter.BASIC_ISO_DATE), date, end);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,243 @@
+package com.jinx.statistics.dao;
+
+import com.jinx.statistics.pojo.Statistics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 单日的统计名称表
+ * 把统计名称映射为从0开始的连续编号，并按编号保存该名称的统计对象。
+ * 名称查找使用以哈希值为键的开放寻址表（每个槽位是一个long：高32位为哈希值，低32位为编号+1），
+ * 命中时只需一次探测和一次字符串比较，不分配对象；新名称在锁内插入，读取不加锁。
+ * 日期切换时整体换成新的名称表
+ */
+public final class NameTable {
+
+    private static final int SEGMENT_BITS = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    /**
+     * 开放寻址表和名称数组，扩容时整体替换；旧的实例仍然可以正确查到替换前插入的名称
+     */
+    private static final class State {
+        private final AtomicLongArray slots;
+        private final int mask;
+        private final String[] names;
+
+        private State(int capacity, String[] names) {
+            this.slots = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            this.names = names;
+        }
+    }
+
+    private final String date;
+
+    private volatile State state;
+
+    /**
+     * 统计对象按编号分段保存，段一旦创建就不再移动，扩容只复制段目录
+     */
+    private volatile AtomicReferenceArray<Statistics>[] segments;
+
+    private volatile int size;
+
+    /**
+     * 已关闭：日期切换后做最后一次刷盘时设置，之后放入的统计对象由放入方自行刷盘
+     */
+    private volatile boolean closed;
+
+    /**
+     * 淘汰扫描的下一个编号，只在缓存写锁内读写
+     */
+    private int evictionCursor;
+
+    public NameTable(String date) {
+        this.date = date;
+        this.state = new State(64, new String[32]);
+        AtomicReferenceArray<Statistics>[] initial = newSegments(1);
+        initial[0] = new AtomicReferenceArray<>(SEGMENT_SIZE);
+        this.segments = initial;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AtomicReferenceArray<Statistics>[] newSegments(int length) {
+        return (AtomicReferenceArray<Statistics>[]) new AtomicReferenceArray<?>[length];
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 关闭名称表
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * 名称数量
+     * @return 已分配的编号数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 从热启动快照恢复名称（只能在使用名称表之前调用），恢复的名称按顺序分配编号
+     * @param names 快照中的名称，按编号排列
+     */
+    public synchronized void restore(List<String> names) {
+        for (String name : names) {
+            idOf(name);
+        }
+    }
+
+    /**
+     * 获取名称的编号，不存在时分配新编号
+     * @param name 统计名称
+     * @return 编号
+     */
+    public int idOf(String name) {
+        int id = find(state, name);
+        return id >= 0 ? id : insert(name);
+    }
+
+    /**
+     * 获取名称的编号
+     * @param name 统计名称
+     * @return 编号，不存在时返回-1
+     */
+    public int find(String name) {
+        return find(state, name);
+    }
+
+    private static int find(State state, String name) {
+        int hash = name.hashCode();
+        int index = spread(hash) & state.mask;
+        while (true) {
+            long slot = state.slots.get(index);
+            if (slot == 0) {
+                return -1;
+            }
+            if ((int) (slot >>> 32) == hash) {
+                int id = (int) slot - 1;
+                if (name.equals(state.names[id])) {
+                    return id;
+                }
+            }
+            index = (index + 1) & state.mask;
+        }
+    }
+
+    private synchronized int insert(String name) {
+        State current = state;
+        int id = find(current, name);
+        if (id >= 0) {
+            return id;
+        }
+        id = size;
+        boolean full = (id + 1) * 2 > current.slots.length();
+        if (full || id == current.names.length) {
+            // 装载因子超过1/2时扩容开放寻址表；名称数组满时扩容后与开放寻址表一起发布
+            current = rehash(current, full ? current.slots.length() * 2 : current.slots.length());
+        }
+        current.names[id] = name;
+        ensureSegment(id);
+        int hash = name.hashCode();
+        int index = spread(hash) & current.mask;
+        while (current.slots.get(index) != 0) {
+            index = (index + 1) & current.mask;
+        }
+        // 槽位的写入在名称之后，读线程看到槽位时一定能看到名称
+        current.slots.set(index, ((long) hash << 32) | (id + 1));
+        size = id + 1;
+        return id;
+    }
+
+    private State rehash(State current, int capacity) {
+        String[] names = current.names;
+        if (size >= names.length) {
+            names = Arrays.copyOf(names, names.length * 2);
+        }
+        State next = new State(capacity, names);
+        for (int id = 0; id < size; id++) {
+            int hash = names[id].hashCode();
+            int index = spread(hash) & next.mask;
+            while (next.slots.get(index) != 0) {
+                index = (index + 1) & next.mask;
+            }
+            next.slots.set(index, ((long) hash << 32) | (id + 1));
+        }
+        state = next;
+        return next;
+    }
+
+    private void ensureSegment(int id) {
+        int segment = id >>> SEGMENT_BITS;
+        AtomicReferenceArray<Statistics>[] current = segments;
+        if (segment < current.length) {
+            return;
+        }
+        AtomicReferenceArray<Statistics>[] grown = Arrays.copyOf(current, current.length * 2);
+        for (int i = current.length; i < grown.length; i++) {
+            grown[i] = new AtomicReferenceArray<>(SEGMENT_SIZE);
+        }
+        segments = grown;
+    }
+
+    /**
+     * 取出淘汰扫描的下一个编号并前移游标，到末尾后从0重新开始（调用方持有缓存写锁）
+     * @return 编号，名称表为空时返回-1
+     */
+    public int nextEvictionCandidate() {
+        int limit = size;
+        if (limit == 0) {
+            return -1;
+        }
+        int id = evictionCursor < limit ? evictionCursor : 0;
+        evictionCursor = id + 1;
+        return id;
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+
+    /**
+     * 编号对应的名称
+     * @param id 编号
+     * @return 统计名称
+     */
+    public String name(int id) {
+        return state.names[id];
+    }
+
+    /**
+     * 编号对应的统计对象
+     * @param id 编号
+     * @return 统计对象，尚未创建或已被淘汰时返回null
+     */
+    public Statistics get(int id) {
+        return segments[id >>> SEGMENT_BITS].get(id & (SEGMENT_SIZE - 1));
+    }
+
+    /**
+     * 原子地替换编号对应的统计对象
+     * @param id 编号
+     * @param expect 期望的当前值
+     * @param update 新值
+     * @return 是否替换成功
+     */
+    public boolean compareAndSet(int id, Statistics expect, Statistics update) {
+        return segments[id >>> SEGMENT_BITS].compareAndSet(id & (SEGMENT_SIZE - 1), expect, update);
+    }
+}
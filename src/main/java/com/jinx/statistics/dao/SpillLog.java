@@ -0,0 +1,153 @@
+package com.jinx.statistics.dao;
+
+import com.jinx.statistics.storage.ValueBuffer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 关闭排空的溢出文件
+ * 关闭时超过排空期限仍未刷盘的记录按统计对象顺序追加到这个文件，下次启动时重放到数据文件后删除。
+ * 每条记录为：负载长度、负载的CRC32、负载（日期、名称、记录数、各记录值，字符串为长度+UTF-8字节）；
+ * 重放时遇到不完整或校验失败的记录即停止，之前的记录照常写入
+ */
+final class SpillLog implements Closeable {
+
+    private final FileOutputStream file;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream(4096);
+    private final DataOutputStream payloadOut = new DataOutputStream(payload);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * 溢出的记录数
+     */
+    private long records;
+
+    private SpillLog(FileOutputStream file) {
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024));
+    }
+
+    /**
+     * 打开溢出文件，已存在时在末尾追加
+     * @param file 溢出文件
+     * @return 溢出文件
+     * @throws IOException 打开失败
+     */
+    static SpillLog open(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("创建目录失败: " + parent);
+        }
+        return new SpillLog(new FileOutputStream(file, true));
+    }
+
+    /**
+     * 追加一个统计对象的记录
+     * @param date 日期
+     * @param name 统计名称
+     * @param values 记录
+     * @throws IOException 写入失败
+     */
+    void append(String date, String name, ValueBuffer values) throws IOException {
+        payload.reset();
+        writeString(payloadOut, date);
+        writeString(payloadOut, name);
+        payloadOut.writeInt(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            writeString(payloadOut, values.get(i));
+        }
+        crc.reset();
+        crc.update(payload.toByteArray(), 0, payload.size());
+        out.writeInt(payload.size());
+        out.writeInt((int) crc.getValue());
+        payload.writeTo(out);
+        records += values.size();
+    }
+
+    long getRecords() {
+        return records;
+    }
+
+    /**
+     * 写入磁盘后关闭
+     */
+    @Override
+    public void close() throws IOException {
+        try (file) {
+            out.flush();
+            file.getFD().sync();
+        }
+    }
+
+    /**
+     * 溢出文件中一个统计对象的记录
+     */
+    interface Visitor {
+        void visit(String date, String name, List<String> values) throws IOException;
+    }
+
+    /**
+     * 顺序读取溢出文件
+     * @param file 溢出文件
+     * @param visitor 每个统计对象的记录
+     * @return 是否读到文件末尾，文件不完整或校验失败时返回false
+     * @throws IOException 读取失败或处理失败
+     */
+    static boolean replay(File file, Visitor visitor) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            while (true) {
+                // 只有在记录边界上结束才算读到末尾，长度字段不完整同样是截断
+                int first = in.read();
+                if (first < 0) {
+                    return true;
+                }
+                int length = (first << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedShort());
+                int checksum = in.readInt();
+                if (length < 0) {
+                    return false;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                crc.reset();
+                crc.update(bytes);
+                if ((int) crc.getValue() != checksum) {
+                    return false;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+                String date = readString(record);
+                String name = readString(record);
+                int count = record.readInt();
+                List<String> values = new ArrayList<>(Math.min(count, length / 4));
+                for (int i = 0; i < count; i++) {
+                    values.add(readString(record));
+                }
+                visitor.visit(date, name, values);
+            }
+        } catch (EOFException e) {
+            // 关闭过程中被强制结束，最后一条记录不完整
+            return false;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new EOFException();
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
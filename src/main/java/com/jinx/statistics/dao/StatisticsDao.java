@@ -1,24 +1,57 @@
 package com.jinx.statistics.dao;
 
+import com.jinx.statistics.constant.FileConstant;
+import com.jinx.statistics.index.BloomFilterIndex;
+import com.jinx.statistics.index.DayIndexer;
+import com.jinx.statistics.jfr.RolloverEvent;
+import com.jinx.statistics.jfr.SaveCachesEvent;
+import com.jinx.statistics.jfr.ZipEvent;
+import com.jinx.statistics.metrics.LatencyHistogram;
+import com.jinx.statistics.metrics.MetricsRegistry;
+import com.jinx.statistics.pojo.LookupResult;
 import com.jinx.statistics.pojo.Statistics;
+import com.jinx.statistics.replication.ReplicationSender;
+import com.jinx.statistics.storage.FileRange;
+import com.jinx.statistics.storage.KnownFiles;
+import com.jinx.statistics.storage.PackFile;
+import com.jinx.statistics.storage.PackManager;
+import com.jinx.statistics.storage.StorageFormat;
+import com.jinx.statistics.storage.StorageFormats;
+import com.jinx.statistics.storage.ValueBuffer;
+import com.jinx.statistics.summary.SummaryManager;
+import com.jinx.statistics.utility.DateUtility;
 import com.jinx.statistics.utility.FileUtility;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @Component
 @Slf4j
-public class StatisticsDao {
+public class StatisticsDao implements SmartInitializingSingleton, SmartLifecycle {
 
     /**
      * 应用属性
@@ -34,11 +67,63 @@ public class StatisticsDao {
 
     @Value("${app.cache.flush-threshold}")
     private int flushThreshold;
+
+    /**
+     * 写入缓冲区字典编码的最大不同值数量，超过后转为原始记录
+     */
+    @Value("${app.storage.dictionary.max-size:256}")
+    private int maxDictionarySize;
+
+    /**
+     * 是否在正常关闭时写入热启动快照，并在启动时恢复
+     */
+    @Value("${app.snapshot.enabled:true}")
+    private boolean snapshotEnabled;
+
+    /**
+     * 关闭时排空缓存的期限（毫秒），到期仍未开始刷盘的统计对象写入溢出文件
+     */
+    @Value("${app.shutdown.drain-timeout-ms:10000}")
+    private long drainTimeoutMs;
+
+    /**
+     * 关闭时并行刷盘的线程数
+     */
+    @Value("${app.shutdown.drain-parallelism:8}")
+    private int drainParallelism;
+
+    /**
+     * 停止接收写入后、Web服务器关闭前继续以503响应写入请求的时间（毫秒），留给负载均衡摘除本节点
+     */
+    @Value("${app.shutdown.quiesce-ms:0}")
+    private long quiesceMs;
+
+    /**
+     * 是否已开始关闭排空，之后的写入请求以503拒绝
+     */
+    private volatile boolean draining;
+
+    private volatile boolean running;
     
     /**
-     * 当前的缓存 - 使用线程安全的ConcurrentHashMap
+     * 当前日期的名称表，按名称编号保存统计对象
+     */
+    private volatile NameTable table;
+
+    /**
+     * 日期切换后被替换下来、还需要最后一次刷盘的名称表
+     */
+    private final List<NameTable> retiredTables = new CopyOnWriteArrayList<>();
+
+    /**
+     * 已停用、最后一次刷盘失败的统计对象（记录已退回对象），下次保存缓存时重试，关闭时写入溢出文件
+     */
+    private final Queue<Statistics> failedRetired = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 日期 -> 该日期文件夹中已确认存在的数据文件，封存后释放
      */
-    private final ConcurrentHashMap<String, Statistics> cache;
+    private final ConcurrentHashMap<String, KnownFiles> knownFiles = new ConcurrentHashMap<>();
     
     /**
      * 缓存读写锁 - 用于批量操作时的线程安全
@@ -53,19 +138,79 @@ public class StatisticsDao {
     private final AtomicInteger cacheSize = new AtomicInteger(0);
 
     /**
-     * 当前日期（文件夹）
+     * 日期分区时钟
      */
-    private volatile String date;
+    private final DayClock dayClock;
 
     /**
      * 需要压缩的文件夹缓存
      */
     private final List<String> zipCache;
 
-    public StatisticsDao() {
-        cache = new ConcurrentHashMap<>();
-        date = nowStrYMD();
+    /**
+     * 布隆过滤器索引
+     */
+    private final BloomFilterIndex bloomFilterIndex;
+
+    /**
+     * 历史日期倒排索引
+     */
+    private final DayIndexer dayIndexer;
+
+    /**
+     * 每日汇总
+     */
+    private final SummaryManager summaryManager;
+
+    /**
+     * 存储格式
+     */
+    private final StorageFormats storageFormats;
+
+    /**
+     * 主备复制
+     */
+    private final ReplicationSender replicationSender;
+
+    /**
+     * 历史日期打包
+     */
+    private final PackManager packManager;
+
+    private final MetricsRegistry metricsRegistry;
+
+    /**
+     * 刷盘、淘汰和压缩指标
+     */
+    private final LatencyHistogram flushDuration;
+    private final LongAdder flushBytes;
+    private final LongAdder evictions;
+    private final LatencyHistogram zipDuration;
+
+    public StatisticsDao(BloomFilterIndex bloomFilterIndex, DayIndexer dayIndexer, SummaryManager summaryManager,
+                         StorageFormats storageFormats, MetricsRegistry metricsRegistry, DayClock dayClock,
+                         ReplicationSender replicationSender, PackManager packManager) {
+        this.bloomFilterIndex = bloomFilterIndex;
+        this.dayIndexer = dayIndexer;
+        this.summaryManager = summaryManager;
+        this.storageFormats = storageFormats;
+        this.dayClock = dayClock;
+        this.replicationSender = replicationSender;
+        this.packManager = packManager;
+        this.metricsRegistry = metricsRegistry;
+        table = new NameTable(dayClock.today());
         zipCache = Collections.synchronizedList(new ArrayList<>());
+        dayClock.addListener(this::onDayChange);
+
+        flushDuration = metricsRegistry.timer("jinx_dao_flush_duration_seconds", "单个统计对象刷盘耗时");
+        flushBytes = metricsRegistry.counter("jinx_dao_flush_bytes_total", "刷盘写入的字节数");
+        evictions = metricsRegistry.counter("jinx_dao_evictions_total", "缓存满时提前刷盘淘汰的条目数");
+        zipDuration = metricsRegistry.timer("jinx_dao_zip_duration_seconds", "日期文件夹压缩耗时");
+        metricsRegistry.gauge("jinx_dao_buffered_bytes", "缓存中尚未写入磁盘的记录的估计字节数", this::bufferedBytes);
+        metricsRegistry.gauge("jinx_dao_cache_entries", "缓存中的统计对象数量", cacheSize::get);
+        metricsRegistry.counter("jinx_dao_cache_hits_total", "缓存命中次数", cacheHits::get);
+        metricsRegistry.counter("jinx_dao_cache_misses_total", "缓存未命中次数", cacheMisses::get);
+        metricsRegistry.gauge("jinx_dao_zip_queue_depth", "等待压缩的日期文件夹数量", zipCache::size);
     }
 
     /**
@@ -75,15 +220,35 @@ public class StatisticsDao {
      * @return 统计对象
      */
     public Statistics appendStatistics(String name, String value) {
-        String key = String.format("%s_%s", date, name);
-        
-        // 尝试从缓存获取
-        Statistics obj = cache.get(key);
-        
-        if (obj == null) {
+        NameTable table = currentTable();
+        summaryManager.recordAppend(table.getDate(), name);
+        int id = table.idOf(name);
+
+        while (true) {
+            Statistics obj = table.get(id);
+            if (obj != null) {
+                if (obj.append(value)) {
+                    // 缓存命中
+                    cacheHits.incrementAndGet();
+                    // 如果单个统计对象的数据量过大，考虑立即刷新到磁盘
+                    if (cacheSize.get() > flushThreshold) {
+                        try {
+                            flush(obj);
+                        } catch (Exception e) {
+                            log.error("保存单个统计对象失败", e);
+                        }
+                    }
+                    return obj;
+                }
+                // 对象刚被淘汰或日期已切换，重新获取
+                table = currentTable();
+                id = table.idOf(name);
+                continue;
+            }
+
             // 缓存未命中
             cacheMisses.incrementAndGet();
-            
+
             // 检查缓存大小是否超过限制
             if (cacheSize.get() >= maxCacheSize) {
                 // 如果缓存已满，尝试刷新部分缓存到磁盘
@@ -93,34 +258,53 @@ public class StatisticsDao {
                     log.error("刷新缓存失败", e);
                 }
             }
-            
-            // 创建新的统计对象
-            obj = new Statistics(date, name, value, this.fileDir);
-            Statistics oldObj = cache.putIfAbsent(key, obj);
-            
-            // 处理并发情况下的冲突
-            if (oldObj != null) {
-                oldObj.append(value);
-                return oldObj;
-            } else {
+
+            // 创建新的统计对象，并发创建时以先放入的为准
+            // 只在内存中创建，数据文件在第一次刷盘时创建
+            obj = new Statistics(table.getDate(), name, value, knownFiles(table.getDate()), storageFormats.active(),
+                    maxDictionarySize);
+            if (table.compareAndSet(id, null, obj)) {
                 cacheSize.incrementAndGet();
-            }
-        } else {
-            // 缓存命中
-            cacheHits.incrementAndGet();
-            obj.append(value);
-            
-            // 如果单个统计对象的数据量过大，考虑立即刷新到磁盘
-            if (cacheSize.get() > flushThreshold) {
-                try {
-                    obj.saveFile();
-                } catch (Exception e) {
-                    log.error("保存单个统计对象失败", e);
+                if (table.isClosed()) {
+                    // 名称表已经做完最后一次刷盘，由放入方自己刷盘
+                    keepIfFailed(obj, retire(obj));
                 }
+                return obj;
             }
         }
-        
-        return obj;
+    }
+
+    /**
+     * 日期文件夹中已确认存在的数据文件
+     * @param date 日期
+     * @return 该日期的统计对象共用的已知文件
+     */
+    private KnownFiles knownFiles(String date) {
+        KnownFiles files = knownFiles.get(date);
+        return files != null ? files : knownFiles.computeIfAbsent(date,
+                key -> new KnownFiles(new File(String.join("/", this.fileDir, key))));
+    }
+
+    /**
+     * 获取当前日期的名称表，日期变化后换成新的名称表
+     * 时钟在同一天内返回同一个日期实例，快速路径只做一次引用比较
+     * @return 名称表
+     */
+    private NameTable currentTable() {
+        NameTable current = table;
+        String today = dayClock.today();
+        if (current.getDate() == today) {
+            return current;
+        }
+        synchronized (retiredTables) {
+            current = table;
+            if (!current.getDate().equals(today)) {
+                retiredTables.add(current);
+                current = new NameTable(today);
+                table = current;
+            }
+            return current;
+        }
     }
 
     public File[] getFiles(String dirName){
@@ -128,13 +312,175 @@ public class StatisticsDao {
         return dir.listFiles();
     }
 
+    /**
+     * 列出文件夹中的条目（不含隐藏文件，按名称排序，文件夹以/结尾）
+     * 已打包的日期列出打包文件中的数据文件，根目录下的打包文件显示为日期文件夹
+     * @param dirName 文件夹名
+     * @return 条目，无法读取时返回null
+     */
+    public List<String> listEntries(String dirName) {
+        PackFile pack = packManager.open(dirName);
+        if (pack != null) {
+            return pack.names();
+        }
+        File[] files = getFiles(dirName);
+        if (files == null) {
+            return null;
+        }
+        TreeSet<String> entries = new TreeSet<>();
+        for (File file : files) {
+            String fileName = file.getName();
+            if (file.isHidden()) {
+                continue;
+            }
+            if (dirName.isEmpty() && fileName.endsWith(FileConstant.PACK_SUFFIX) && file.isFile()) {
+                entries.add(fileName.substring(0, fileName.length() - FileConstant.PACK_SUFFIX.length()) + "/");
+            } else {
+                entries.add(file.isDirectory() ? fileName + "/" : fileName);
+            }
+        }
+        return new ArrayList<>(entries);
+    }
+
     public File getFile(String path) throws Exception {
         path = String.join("/", this.fileDir, path);
         return FileUtility.getFile(path);
     }
 
-    private String nowStrYMD(){
-        return (new SimpleDateFormat("yyyyMMdd")).format(new Date());
+    /**
+     * 获取要下载的文件，已打包日期中的数据文件返回打包文件中的条目
+     * @param path 相对路径
+     * @return 文件区间，已打包的日期中没有该条目时返回null
+     * @throws Exception 获取文件失败
+     */
+    public FileRange getFileRange(String path) throws Exception {
+        int slash = path.indexOf('/');
+        PackFile pack = slash > 0 ? packManager.open(path.substring(0, slash)) : null;
+        if (pack != null) {
+            return pack.entry(path.substring(slash + 1));
+        }
+        return FileRange.of(getFile(path));
+    }
+
+    /**
+     * 获取已存在的统计数据文件（不会创建文件），已打包日期中的数据文件返回打包文件中的条目
+     * @param path 相对路径
+     * @return 数据文件区间，不存在或不是数据文件时返回null
+     */
+    public FileRange getDataRange(String path) {
+        int slash = path.indexOf('/');
+        PackFile pack = slash > 0 ? packManager.open(path.substring(0, slash)) : null;
+        if (pack != null) {
+            FileRange entry = pack.entry(path.substring(slash + 1));
+            return entry != null && storageFormats.forName(entry.getName()) != null ? entry : null;
+        }
+        File file = FileUtility.openFile(String.join("/", this.fileDir, path));
+        return storageFormats.isDataFile(file) ? FileRange.of(file) : null;
+    }
+
+    /**
+     * 以CSV文本导出数据文件
+     * @param range 数据文件区间
+     * @param out 输出流
+     * @throws IOException 读写失败
+     */
+    public void exportCsv(FileRange range, OutputStream out) throws IOException {
+        storageFormats.forName(range.getName()).exportCsv(range, out);
+    }
+
+    /**
+     * 将统计对象写入磁盘，并更新对应的布隆过滤器
+     * @param obj 统计对象
+     * @return 刷盘结果，没有写入时返回null
+     */
+    private Statistics.FlushResult flush(Statistics obj) {
+        long startNanos = System.nanoTime();
+        Statistics.FlushResult flushed = obj.saveFile();
+        if (flushed != null) {
+            flushDuration.recordSince(startNanos);
+            flushBytes.add(flushed.getBytes());
+            bloomFilterIndex.onFlush(obj.getDate(), obj.getFile(), flushed.getValues().distinctValues(), flushed.getBytes());
+            replicationSender.onFlush(obj.getFile());
+        }
+        return flushed;
+    }
+
+    /**
+     * 查询最近若干天内某个统计值是否出现过
+     * 先检查布隆过滤器，只扫描可能包含该值的文件；原始数据已被分级保留删除的日期记为无法查询
+     * @param name 统计名称
+     * @param value 统计值
+     * @param days 查询天数（包含今天）
+     * @return 查询结果
+     */
+    public LookupResult lookup(String name, String value, int days) {
+        long startTime = DateUtility.now();
+        LookupResult result = new LookupResult();
+        result.setName(name);
+        result.setValue(value);
+
+        LocalDate today = dayClock.todayDate();
+        for (int i = 0; i < days; i++) {
+            String day = today.minusDays(i).format(DateTimeFormatter.BASIC_ISO_DATE);
+            List<FileRange> ranges = dataRanges(day, name);
+            if (ranges.isEmpty() && i > 0 && isRawDataRemoved(day)) {
+                result.getUnavailableDays().add(day);
+                continue;
+            }
+            boolean found = false;
+            for (FileRange range : ranges) {
+                if (!bloomFilterIndex.mightContain(day, range.getName(), range.getLength(), value)) {
+                    result.setSkippedFiles(result.getSkippedFiles() + 1);
+                    continue;
+                }
+                result.setScannedFiles(result.getScannedFiles() + 1);
+                if (contains(range, value)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (found) {
+                result.getDates().add(day);
+            }
+        }
+
+        result.setElapsedMs(DateUtility.now() - startTime);
+        return result;
+    }
+
+    /**
+     * 以前日期的原始数据是否已被分级保留删除（只剩zip或元数据）
+     */
+    private boolean isRawDataRemoved(String day) {
+        return !new File(this.fileDir, day).isDirectory() && !packManager.packFile(day).isFile()
+                && (new File(this.fileDir, day + ".zip").isFile()
+                || new File(String.join("/", this.fileDir, FileConstant.META_DIR, day)).isDirectory());
+    }
+
+    /**
+     * 日期/名称 的全部数据文件，已打包的日期返回打包文件中的条目
+     */
+    private List<FileRange> dataRanges(String day, String name) {
+        List<FileRange> ranges = packManager.dataRanges(day, name);
+        if (ranges != null) {
+            return ranges;
+        }
+        File[] files = storageFormats.dataFiles(new File(String.join("/", this.fileDir, day)), name);
+        ranges = new ArrayList<>(files.length);
+        for (File file : files) {
+            ranges.add(FileRange.of(file));
+        }
+        return ranges;
+    }
+
+    private boolean contains(FileRange range, String value) {
+        StorageFormat format = storageFormats.forName(range.getName());
+        try {
+            return format.contains(range, value);
+        } catch (IOException e) {
+            log.error("扫描文件失败: {}", range.getFile().getPath(), e);
+        }
+        return false;
     }
 
     /**
@@ -142,30 +488,136 @@ public class StatisticsDao {
      * @param count 要刷新的条目数量
      */
     private void flushOldestEntries(int count) throws Exception {
-        if (cache.isEmpty()) {
+        if (cacheSize.get() == 0) {
             return;
         }
         
+        SaveCachesEvent event = new SaveCachesEvent();
+        event.begin();
         cacheLock.writeLock().lock();
         try {
-            // 按照键排序，通常日期较早的会排在前面
-            List<Map.Entry<String, Statistics>> entries = new ArrayList<>(cache.entrySet());
-            int flushCount = Math.min(count, entries.size());
-            
-            for (int i = 0; i < flushCount; i++) {
-                Map.Entry<String, Statistics> entry = entries.get(i);
-                Statistics obj = entry.getValue();
-                obj.saveFile();
-                cache.remove(entry.getKey());
-                cacheSize.decrementAndGet();
+            // 等锁期间其他线程可能已经淘汰过，缓存未满时不再重复淘汰
+            if (cacheSize.get() < maxCacheSize) {
+                return;
+            }
+            // 时钟算法：游标在名称表上循环，上一轮之后有过追加的对象清除标记后跳过，
+            // 最多转两圈，保证标记全部清除后仍能淘汰到足够的对象
+            NameTable current = table;
+            int flushCount = 0;
+            for (int step = 0, steps = current.size() * 2; step < steps && flushCount < count; step++) {
+                int id = current.nextEvictionCandidate();
+                if (id < 0) {
+                    break;
+                }
+                Statistics obj = current.get(id);
+                if (obj == null || obj.clearReferenced() || !current.compareAndSet(id, obj, null)) {
+                    continue;
+                }
+                Statistics.FlushResult flushed = retire(obj);
+                if (flushed != null) {
+                    event.bytes += flushed.getBytes();
+                    event.records += flushed.getValues().size();
+                } else {
+                    requeue(current, id, obj);
+                }
+                flushCount++;
             }
             
+            evictions.add(flushCount);
+            event.objects = flushCount;
             log.info("已刷新{}个缓存条目到磁盘", flushCount);
         } finally {
             cacheLock.writeLock().unlock();
+            event.reason = "evict";
+            event.commit();
         }
     }
 
+    /**
+     * 停用统计对象并做最后一次刷盘
+     * @param obj 已从名称表移除的统计对象
+     * @return 刷盘结果
+     */
+    private Statistics.FlushResult retire(Statistics obj) {
+        if (obj.retire()) {
+            cacheSize.decrementAndGet();
+        }
+        return flush(obj);
+    }
+
+    /**
+     * 停用对象的刷盘失败时，记录已退回对象但名称表中不再有它的引用，放入失败列表等待重试
+     * @param obj 统计对象
+     * @param flushed 刷盘结果
+     */
+    private void keepIfFailed(Statistics obj, Statistics.FlushResult flushed) {
+        if (flushed == null && obj.isRetired() && obj.bufferedBytes() > 0) {
+            failedRetired.add(obj);
+        }
+    }
+
+    /**
+     * 日期是否还有刷盘失败、等待重试的记录
+     */
+    private boolean hasFailedRetired(String date) {
+        return failedRetired.stream().anyMatch(obj -> obj.getDate().equals(date));
+    }
+
+    /**
+     * 淘汰时最后一次刷盘失败，记录已退回停用的对象：转交给名称表中的新对象，等待下次刷盘
+     * @param table 名称表
+     * @param id 编号
+     * @param obj 已停用的统计对象
+     */
+    private void requeue(NameTable table, int id, Statistics obj) {
+        ValueBuffer values = obj.takeValues();
+        if (values == null) {
+            return;
+        }
+        Statistics next = new Statistics(obj.getDate(), obj.getName(), values.get(0), knownFiles(obj.getDate()),
+                storageFormats.active(), maxDictionarySize);
+        for (int i = 1; i < values.size(); i++) {
+            next.append(values.get(i));
+        }
+        if (table.compareAndSet(id, null, next)) {
+            cacheSize.incrementAndGet();
+            return;
+        }
+        // 淘汰之后已经有写入创建了新对象，记录放到它的缓冲区前面
+        Statistics current = table.get(id);
+        if (current != null) {
+            current.restoreValues(values);
+        } else {
+            log.error("统计对象{}/{}写入失败，{}条记录未保存", obj.getDate(), obj.getName(), values.size());
+        }
+    }
+
+    /**
+     * 名称表中的全部统计对象
+     */
+    private static List<Statistics> objects(NameTable table) {
+        List<Statistics> objs = new ArrayList<>(table.size());
+        for (int id = 0; id < table.size(); id++) {
+            Statistics obj = table.get(id);
+            if (obj != null) {
+                objs.add(obj);
+            }
+        }
+        return objs;
+    }
+
+    /**
+     * 缓存中尚未写入磁盘的记录的估计字节数
+     * @return 字节数
+     */
+    private long bufferedBytes() {
+        long bytes = 0;
+        for (Statistics obj : objects(table)) {
+            bytes += obj.bufferedBytes();
+        }
+        return bytes;
+    }
+
     /**
      * 获取缓存统计信息
      * @return 缓存统计信息
@@ -192,7 +644,7 @@ public class StatisticsDao {
     public void scheduledUpdate(){
         try {
             saveCaches();
-            checkNextDate();
+            retryPendingZips();
             // 记录缓存统计信息
             if (log.isDebugEnabled()) {
                 Map<String, Object> stats = getCacheStats();
@@ -205,34 +657,351 @@ public class StatisticsDao {
 
     @PreDestroy
     public void preShutdown(){
+        log.info("应用关闭前保存所有缓存数据");
+        drain();
+        writeSnapshot();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * 关闭的第一步（先于Web服务器的优雅关闭）：停止接收写入，已进入处理的请求照常完成，
+     * 缓存在Web服务器关闭后由{@link #preShutdown()}排空
+     */
+    @Override
+    public void stop() {
+        draining = true;
+        log.info("停止接收统计写入");
+        if (quiesceMs > 0) {
+            try {
+                Thread.sleep(quiesceMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // 最先停止，Web服务器（更低的阶段）关闭前的写入请求都以503拒绝
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    /**
+     * 是否已开始关闭排空
+     * @return 写入请求是否应被拒绝
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * 关闭时排空缓存：按配置的并行度刷盘全部统计对象，到期仍未开始刷盘的对象顺序写入溢出文件，下次启动时重放。
+     * 已经开始的刷盘不会被中断，单个文件的写入完成后才返回
+     */
+    private void drain() {
+        long startNanos = System.nanoTime();
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMs);
+        SaveCachesEvent event = new SaveCachesEvent();
+        event.begin();
+        LongAdder bytes = new LongAdder();
+        LongAdder records = new LongAdder();
+        AtomicInteger flushedObjs = new AtomicInteger();
+        Queue<Statistics> failedObjs = new ConcurrentLinkedQueue<>();
+        int spilledObjs = 0;
+        long spilledRecords = 0;
+        cacheLock.writeLock().lock();
         try {
-            log.info("应用关闭前保存所有缓存数据");
-            saveCaches();
-        } catch (Exception e) {
-            log.error("关闭前保存缓存数据错误!", e);
+            List<Statistics> objs = pendingObjects();
+            event.objects = objs.size();
+            if (objs.isEmpty()) {
+                return;
+            }
+            // 刷盘线程和到期后的溢出各自先占用对象，每个对象只由一方处理
+            AtomicIntegerArray claimed = new AtomicIntegerArray(objs.size());
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(drainParallelism, objs.size())), r -> {
+                Thread thread = new Thread(r, "statistics-drain");
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (int i = 0; i < objs.size(); i++) {
+                int index = i;
+                pool.execute(() -> {
+                    if (System.nanoTime() - deadline >= 0 || !claimed.compareAndSet(index, 0, 1)) {
+                        return;
+                    }
+                    try {
+                        Statistics obj = objs.get(index);
+                        Statistics.FlushResult flushed = flush(obj);
+                        if (flushed != null) {
+                            bytes.add(flushed.getBytes());
+                            records.add(flushed.getValues().size());
+                        } else if (obj.bufferedBytes() > 0) {
+                            // 写入失败的记录已退回对象，和到期未刷盘的对象一起写入溢出文件
+                            failedObjs.add(obj);
+                        }
+                        flushedObjs.incrementAndGet();
+                    } catch (Exception e) {
+                        log.error("保存统计对象失败: {}", e.getMessage());
+                    }
+                });
+            }
+            pool.shutdown();
+            awaitTermination(pool, deadline - System.nanoTime());
+
+            List<Statistics> rest = new ArrayList<>(failedObjs);
+            for (int i = 0; i < objs.size(); i++) {
+                if (claimed.compareAndSet(i, 0, 1)) {
+                    rest.add(objs.get(i));
+                }
+            }
+            if (!rest.isEmpty()) {
+                try (SpillLog spill = SpillLog.open(spillFile())) {
+                    for (Statistics obj : rest) {
+                        ValueBuffer values = obj.takeValues();
+                        if (values != null) {
+                            spill.append(obj.getDate(), obj.getName(), values);
+                            spilledObjs++;
+                        }
+                    }
+                    spilledRecords = spill.getRecords();
+                } catch (IOException e) {
+                    log.error("写入溢出文件失败，{}个统计对象的记录未保存", rest.size() - spilledObjs, e);
+                }
+            }
+            // 等待到期前已经开始的刷盘完成
+            if (!awaitTermination(pool, TimeUnit.MILLISECONDS.toNanos(drainTimeoutMs))) {
+                log.warn("仍有刷盘未完成，放弃等待");
+            }
+        } finally {
+            cacheLock.writeLock().unlock();
+            event.reason = "drain";
+            event.bytes = bytes.sum();
+            event.records = records.sum();
+            event.commit();
         }
+        log.info("关闭排空完成: 刷盘{}个统计对象、{}条记录、{}字节，溢出{}个统计对象、{}条记录，耗时{}ms",
+                flushedObjs.get(), records.sum(), bytes.sum(), spilledObjs, spilledRecords,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    private static boolean awaitTermination(ExecutorService pool, long nanos) {
+        try {
+            return pool.awaitTermination(Math.max(0, nanos), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 所有组件创建完成、开始接收请求之前，从热启动快照恢复名称表、计数器和实时小时分布，
+     * 再把上次关闭时溢出的记录写入数据文件
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        restoreSnapshot();
+        replaySpill();
+    }
+
+    private void restoreSnapshot() {
+        File file = snapshotFile();
+        if (!snapshotEnabled || !file.isFile()) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        try {
+            WarmSnapshot snapshot = WarmSnapshot.readFrom(file);
+            NameTable current = table;
+            String today = current.getDate();
+            // 日期、存储格式都没有变化且日期文件夹还在时恢复名称表；
+            // 停机期间文件可能被删除或移走，只把文件夹中仍然存在的数据文件记为已知（一次列目录），其余的刷盘时再检查
+            int names = 0;
+            String[] existing = new File(this.fileDir, today).list();
+            if (snapshot.getDate().equals(today) && snapshot.getSuffix().equals(storageFormats.active().suffix())
+                    && existing != null) {
+                current.restore(snapshot.getNames());
+                KnownFiles files = knownFiles(today);
+                Set<String> present = new HashSet<>(Arrays.asList(existing));
+                for (String name : snapshot.getNames()) {
+                    String fileName = name + snapshot.getSuffix();
+                    if (present.contains(fileName)) {
+                        files.markKnown(fileName);
+                    }
+                }
+                names = current.size();
+            }
+            snapshot.getCounters().forEach(metricsRegistry::restoreCounter);
+            Map<String, long[]> hourly = snapshot.getHourly().get(today);
+            if (hourly != null) {
+                hourly.forEach((name, counts) -> summaryManager.restoreHourly(today, name, counts));
+            }
+            log.info("已从热启动快照恢复{}个名称、{}个计数器，耗时{}ms", names, snapshot.getCounters().size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } catch (IOException e) {
+            log.warn("读取热启动快照失败，按冷启动处理: {}", e.toString());
+        } finally {
+            // 快照只描述上一次正常关闭时的状态，读取一次后删除
+            if (!file.delete()) {
+                log.warn("删除热启动快照失败: {}", file);
+            }
+        }
+    }
+
+    /**
+     * 所有缓存刷盘后写入热启动快照
+     */
+    private void writeSnapshot() {
+        if (!snapshotEnabled) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        NameTable current = table;
+        List<String> names = new ArrayList<>(current.size());
+        for (int id = 0; id < current.size(); id++) {
+            names.add(current.name(id));
+        }
+        WarmSnapshot snapshot = new WarmSnapshot(current.getDate(), storageFormats.active().suffix(), names,
+                metricsRegistry.counterValues(), summaryManager.liveHourly());
+        try {
+            snapshot.writeTo(snapshotFile());
+            log.info("已写入热启动快照: {}个名称，耗时{}ms", names.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } catch (IOException e) {
+            log.error("写入热启动快照失败", e);
+        }
+    }
+
+    private File snapshotFile() {
+        return new File(String.join("/", this.fileDir, FileConstant.META_DIR, FileConstant.WARM_SNAPSHOT_FILE));
+    }
+
+    /**
+     * 重放上次关闭时溢出的记录：按原来的日期写入数据文件，已封存的日期放入压缩队列重新封存
+     */
+    private void replaySpill() {
+        File file = spillFile();
+        if (!file.isFile()) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        String today = table.getDate();
+        Set<String> dates = new TreeSet<>();
+        AtomicInteger objs = new AtomicInteger();
+        LongAdder records = new LongAdder();
+        try {
+            boolean complete = SpillLog.replay(file, (date, name, values) -> {
+                if (values.isEmpty()) {
+                    return;
+                }
+                // 已打包的日期先还原文件夹，重新封存后再打包
+                if (dates.add(date) && !date.equals(today)) {
+                    packManager.unpack(date);
+                }
+                Statistics obj = new Statistics(date, name, values.get(0), knownFiles(date), storageFormats.active(),
+                        maxDictionarySize);
+                for (int i = 1; i < values.size(); i++) {
+                    obj.append(values.get(i));
+                }
+                if (flush(obj) == null) {
+                    throw new IOException("写入数据文件失败: " + obj.getFile());
+                }
+                objs.incrementAndGet();
+                records.add(values.size());
+            });
+            if (!complete) {
+                log.warn("溢出文件不完整，末尾的记录已丢弃");
+            }
+            if (!file.delete()) {
+                log.warn("删除溢出文件失败: {}", file);
+            }
+            log.info("已重放溢出文件: {}个统计对象、{}条记录，耗时{}ms", objs.get(), records.sum(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } catch (IOException e) {
+            // 已重放的部分不能再次写入，改名保留供人工处理
+            File failed = new File(file.getPath() + ".failed-" + DateUtility.now());
+            log.error("重放溢出文件失败，已重放{}个统计对象，剩余记录保留在{}", objs.get(), failed, e);
+            if (!file.renameTo(failed)) {
+                log.warn("溢出文件改名失败: {}", file);
+            }
+        }
+        for (String date : dates) {
+            if (!date.equals(today)) {
+                knownFiles.remove(date);
+                synchronized (zipCache) {
+                    zipCache.add(date);
+                }
+            }
+        }
+    }
+
+    private File spillFile() {
+        return new File(String.join("/", this.fileDir, FileConstant.META_DIR, FileConstant.DRAIN_SPILL_FILE));
+    }
+
+    /**
+     * 需要刷盘的统计对象：当前名称表中的对象刷盘后继续使用，切换日期前的对象停用后做最后一次刷盘，
+     * 之前刷盘失败的停用对象一起重试
+     * （调用方持有缓存写锁）
+     */
+    private List<Statistics> pendingObjects() {
+        List<Statistics> objs = objects(table);
+        List<Statistics> retiredObjs = new ArrayList<>();
+        for (NameTable retired : retiredTables) {
+            // 与日期切换后的后台封存竞争，先移出的一方负责最后一次刷盘
+            if (retiredTables.remove(retired)) {
+                retired.close();
+                retiredObjs.addAll(objects(retired));
+            }
+        }
+        for (Statistics obj : retiredObjs) {
+            if (obj.retire()) {
+                cacheSize.decrementAndGet();
+            }
+        }
+        objs.addAll(retiredObjs);
+        Statistics failed;
+        while ((failed = failedRetired.poll()) != null) {
+            objs.add(failed);
+        }
+        return objs;
     }
 
     private void saveCaches() throws Exception {
-        if (cache.isEmpty()) {
+        if (cacheSize.get() == 0 && retiredTables.isEmpty() && failedRetired.isEmpty()) {
             //log.info("缓存为空");
             return;
         }
         
+        SaveCachesEvent event = new SaveCachesEvent();
+        event.begin();
+        LongAdder bytes = new LongAdder();
+        LongAdder records = new LongAdder();
         cacheLock.writeLock().lock();
         try {
             // 缓存需要上传的统计数据
-            List<Statistics> objs = new ArrayList<>(cache.values());
+            List<Statistics> objs = pendingObjects();
             log.info("准备保存{}个缓存对象到磁盘", objs.size());
-            
-            // 清除缓存
-            cache.clear();
-            cacheSize.set(0);
+            event.objects = objs.size();
             
             // 批量保存文件，使用并行流提高性能
             objs.parallelStream().forEach(obj -> {
                 try {
-                    obj.saveFile();
+                    Statistics.FlushResult flushed = flush(obj);
+                    if (flushed != null) {
+                        bytes.add(flushed.getBytes());
+                        records.add(flushed.getValues().size());
+                    }
+                    keepIfFailed(obj, flushed);
                 } catch (Exception e) {
                     log.error("保存统计对象失败: {}", e.getMessage());
                 }
@@ -241,53 +1010,108 @@ public class StatisticsDao {
             log.info("所有缓存对象已保存到磁盘");
         } finally {
             cacheLock.writeLock().unlock();
+            event.reason = "save";
+            event.bytes = bytes.sum();
+            event.records = records.sum();
+            event.commit();
         }
     }
 
     /**
-     * 检查日期变更并处理文件压缩
+     * 日期切换（在时钟线程上调用）：换上新一天的名称表，前一天的分区在后台封存，不阻塞当天的写入
+     * @param previous 前一天
+     * @param today 新的一天
      */
-    private void checkNextDate() {
-        String nowDate = nowStrYMD();
-        
-        if (Objects.equals(date, nowDate)) {
-            if (zipCache.isEmpty()){
-                return; // 待压缩文件夹列表为空，跳出判断
-            }
-            
-            // 创建一个副本以避免并发修改异常
-            List<String> dirNamesToZip;
-            synchronized (zipCache) {
-                dirNamesToZip = new ArrayList<>(zipCache);
-                zipCache.clear();
-            }
-            
-            // 异步处理压缩任务，避免阻塞主线程
-            CompletableFuture.runAsync(() -> {
-                for (String dirName : dirNamesToZip) {
-                    try {
-                        zipFile(dirName);
-                        log.info("成功压缩文件夹: {}", dirName);
-                    } catch (Exception e) {
-                        log.error("压缩文件夹失败: {}", dirName, e);
-                        // 如果压缩失败，重新添加到压缩队列
-                        synchronized (zipCache) {
-                            zipCache.add(dirName);
+    private void onDayChange(String previous, String today) {
+        RolloverEvent event = new RolloverEvent();
+        event.begin();
+        currentTable();
+        event.fromDate = previous;
+        event.toDate = today;
+        event.queued = 1;
+        event.commit();
+        CompletableFuture.runAsync(() -> seal(previous)).exceptionally(ex -> {
+            log.error("封存日期分区失败: {}", previous, ex);
+            return null;
+        });
+        log.info("日期已更新为: {}, 旧日期{}转入后台封存", today, previous);
+    }
+
+    /**
+     * 封存日期分区：停用并刷盘该日期的全部统计对象，然后构建索引、汇总并压缩
+     * @param dirName 日期
+     */
+    private void seal(String dirName) {
+        long bytes = 0;
+        int objs = 0;
+        // 写入不加这把锁，持有它只会等待正在进行的定时刷盘完成，不会阻塞当天的写入
+        cacheLock.writeLock().lock();
+        try {
+            for (NameTable retired : retiredTables) {
+                if (retired.getDate().equals(dirName) && retiredTables.remove(retired)) {
+                    retired.close();
+                    for (Statistics obj : objects(retired)) {
+                        Statistics.FlushResult flushed = retire(obj);
+                        if (flushed != null) {
+                            bytes += flushed.getBytes();
                         }
+                        keepIfFailed(obj, flushed);
+                        objs++;
                     }
                 }
-            }).exceptionally(ex -> {
-                log.error("异步压缩任务失败", ex);
-                return null;
-            });
-        } else {
-            // 到了第二天，将需要压缩的文件夹名缓存下来，等待下次执行
+            }
+        } finally {
+            cacheLock.writeLock().unlock();
+        }
+        log.info("日期分区{}已停用，最后刷盘{}个统计对象，{}字节", dirName, objs, bytes);
+        knownFiles.remove(dirName);
+        compress(dirName);
+    }
+
+    /**
+     * 为已封存的日期构建索引、汇总并压缩，失败时放回压缩队列等待定时任务重试
+     * @param dirName 日期
+     */
+    private void compress(String dirName) {
+        if (hasFailedRetired(dirName)) {
+            // 还有记录没有写入，等重试写入后再封存，否则索引、汇总和压缩包会缺少这些记录
+            log.warn("日期{}还有刷盘失败的记录，稍后重新封存", dirName);
             synchronized (zipCache) {
-                zipCache.add(date);
+                zipCache.add(dirName);
             }
-            date = nowDate;
-            log.info("日期已更新为: {}, 旧日期文件夹已加入压缩队列", nowDate);
+            return;
+        }
+        try {
+            bloomFilterIndex.seal(dirName);
+            summaryManager.build(dirName);
+            dayIndexer.submit(dirName);
+            log.info("压缩文件夹{}: {}", dirName, zip(dirName));
+        } catch (Exception e) {
+            log.error("压缩文件夹失败: {}", dirName, e);
+            synchronized (zipCache) {
+                zipCache.add(dirName);
+            }
+        }
+    }
+
+    /**
+     * 重试压缩失败的日期文件夹
+     */
+    private void retryPendingZips() {
+        if (zipCache.isEmpty()) {
+            return;
+        }
+        // 创建一个副本以避免并发修改异常
+        List<String> dirNamesToZip;
+        synchronized (zipCache) {
+            dirNamesToZip = new ArrayList<>(zipCache);
+            zipCache.clear();
         }
+        // 异步处理压缩任务，避免阻塞主线程
+        CompletableFuture.runAsync(() -> dirNamesToZip.forEach(this::compress)).exceptionally(ex -> {
+            log.error("异步压缩任务失败", ex);
+            return null;
+        });
     }
 
     /**
@@ -296,55 +1120,95 @@ public class StatisticsDao {
      * @return 压缩结果描述
      */
     public String zipFile(String dir) {
+        try {
+            return zip(dir);
+        } catch (IOException e) {
+            log.error("压缩文件夹失败: {}", dir, e);
+            return "压缩文件夹失败: " + e.getMessage();
+        }
+    }
+
+    /**
+     * 压缩指定文件夹并记录压缩事件
+     * @param dir 文件夹名称
+     * @return 压缩结果描述（不需要压缩时说明原因）
+     * @throws IOException 压缩失败，调用方决定是否重试
+     */
+    private String zip(String dir) throws IOException {
+        ZipEvent event = new ZipEvent();
+        event.begin();
+        String result = "压缩文件夹失败";
+        try {
+            result = zipFile(dir, event);
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.dir = dir;
+                event.result = result;
+                event.commit();
+            }
+        }
+    }
+
+    private String zipFile(String dir, ZipEvent event) throws IOException {
         // 检查是否为当前日期文件夹
-        if (dir.equals(date)){
+        if (dir.equals(dayClock.today())){
             log.warn("当前日期的文件夹不能被压缩: {}", dir);
             return "当前日期的文件夹不能被压缩";
         }
         
         String filePath = String.join("/", this.fileDir, dir);
-        File file = null;
-        
+        File file = FileUtility.openFile(filePath);
+
+        // 文件存在性检查
+        if (!file.exists()) {
+            log.info("要压缩的文件夹不存在: {}", dir);
+            return "文件夹不存在";
+        }
+
+        // 隐藏文件检查
+        if (file.isHidden()){
+            log.info("要压缩的文件夹是隐藏的: {}", dir);
+            return "文件夹是隐藏的";
+        }
+
+        // 检查文件夹是否为空
+        File[] files = file.listFiles();
+        if (files == null || files.length == 0) {
+            log.info("文件夹为空，无需压缩: {}", dir);
+            return "文件夹为空，无需压缩";
+        }
+
+        // 生成压缩文件路径
+        String zipFilePath = String.format("%s/%s.zip", this.fileDir, file.getName());
+        File zipFile = new File(zipFilePath);
+
+        // 检查目标zip文件是否已存在
+        if (zipFile.exists()) {
+            log.info("压缩文件已存在，将被覆盖: {}", zipFilePath);
+        }
+
+        // 先写入隐藏的临时文件再替换：压缩包存在即表示压缩完整，打包依赖这一点删除原文件夹
+        File tmp = new File(this.fileDir, "." + file.getName() + ".zip.tmp");
+        long startNanos = System.nanoTime();
         try {
-            file = FileUtility.openFile(filePath);
-            
-            // 文件存在性检查
-            if (!file.exists()) {
-                log.info("要压缩的文件夹不存在: {}", dir);
-                return "文件夹不存在";
-            }
-            
-            // 隐藏文件检查
-            if (file.isHidden()){
-                log.info("要压缩的文件夹是隐藏的: {}", dir);
-                return "文件夹是隐藏的";
-            }
-            
-            // 检查文件夹是否为空
-            File[] files = file.listFiles();
-            if (files == null || files.length == 0) {
-                log.info("文件夹为空，无需压缩: {}", dir);
-                return "文件夹为空，无需压缩";
-            }
-            
-            // 生成压缩文件路径
-            String zipFilePath = String.format("%s/%s.zip", this.fileDir, file.getName());
-            File zipFile = new File(zipFilePath);
-            
-            // 检查目标zip文件是否已存在
-            if (zipFile.exists()) {
-                log.info("压缩文件已存在，将被覆盖: {}", zipFilePath);
+            FileUtility.zipFolder(filePath, tmp.getPath());
+            Files.move(tmp.toPath(), zipFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+        zipDuration.recordSince(startNanos);
+        if (event.isEnabled()) {
+            event.files = files.length;
+            for (File child : files) {
+                event.bytes += child.length();
             }
-            
-            // 执行压缩
-            FileUtility.zipFolder(filePath, zipFilePath);
-            
-            log.info("文件夹压缩成功: {} -> {}", filePath, zipFilePath);
-            return "压缩成功";
-        } catch (Exception e) {
-            log.error("压缩文件夹失败: {}", dir, e);
-            return "压缩文件夹失败: " + e.getMessage();
+            event.zipBytes = zipFile.length();
         }
+
+        log.info("文件夹压缩成功: {} -> {}", filePath, zipFilePath);
+        return "压缩成功";
     }
     
     /**
@@ -0,0 +1,177 @@
+package com.jinx.statistics.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 热启动快照
+ * 正常关闭时在所有缓存刷盘之后写入，保存当天的名称表、各计数器的值和实时小时分布；
+ * 启动时内存映射读取一次后删除，名称表直接恢复，不再逐个检查和创建数据文件。
+ * 格式：魔数、版本、日期、数据文件后缀，之后依次为名称、计数器、小时分布三段，最后是之前所有字节的CRC32；
+ * 字符串为长度+UTF-8字节
+ */
+@Getter
+@AllArgsConstructor
+final class WarmSnapshot {
+
+    private static final int MAGIC = 0x4A57534E; // "JWSN"
+    private static final int VERSION = 2;
+
+    /**
+     * 名称表的日期
+     */
+    private final String date;
+
+    /**
+     * 名称表的数据文件后缀，存储格式改变后名称对应的文件不再存在
+     */
+    private final String suffix;
+
+    /**
+     * 名称表中的名称，按编号排列
+     */
+    private final List<String> names;
+
+    /**
+     * 计数器名称 -> 计数
+     */
+    private final Map<String, Long> counters;
+
+    /**
+     * 日期 -> 统计名称 -> 24小时计数
+     */
+    private final Map<String, Map<String, long[]>> hourly;
+
+    /**
+     * 写入快照（先写临时文件再替换）
+     * @param file 快照文件
+     * @throws IOException 写入失败
+     */
+    void writeTo(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("创建目录失败: " + parent);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, date);
+            writeString(out, suffix);
+            out.writeInt(names.size());
+            for (String name : names) {
+                writeString(out, name);
+            }
+            out.writeInt(counters.size());
+            for (Map.Entry<String, Long> counter : counters.entrySet()) {
+                writeString(out, counter.getKey());
+                out.writeLong(counter.getValue());
+            }
+            out.writeInt(hourly.size());
+            for (Map.Entry<String, Map<String, long[]>> day : hourly.entrySet()) {
+                writeString(out, day.getKey());
+                out.writeInt(day.getValue().size());
+                for (Map.Entry<String, long[]> name : day.getValue().entrySet()) {
+                    writeString(out, name.getKey());
+                    out.writeByte(name.getValue().length);
+                    for (long count : name.getValue()) {
+                        out.writeLong(count);
+                    }
+                }
+            }
+            out.writeInt((int) crc.getValue());
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 内存映射读取快照
+     * @param file 快照文件
+     * @return 快照
+     * @throws IOException 读取失败或格式错误
+     */
+    static WarmSnapshot readFrom(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("热启动快照格式错误");
+            }
+            // 校验整个文件后再解析，截断或损坏的快照不会恢复出错误的名称和计数
+            int end = in.limit() - 4;
+            if (end < in.position()) {
+                throw new IOException("热启动快照不完整");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(in.duplicate().position(0).limit(end));
+            if ((int) crc.getValue() != in.getInt(end)) {
+                throw new IOException("热启动快照校验失败");
+            }
+            in.limit(end);
+            String date = readString(in);
+            String suffix = readString(in);
+            int nameCount = in.getInt();
+            List<String> names = new ArrayList<>(Math.min(nameCount, in.remaining() / 4));
+            for (int i = 0; i < nameCount; i++) {
+                names.add(readString(in));
+            }
+            int counterCount = in.getInt();
+            Map<String, Long> counters = new LinkedHashMap<>();
+            for (int i = 0; i < counterCount; i++) {
+                counters.put(readString(in), in.getLong());
+            }
+            int dayCount = in.getInt();
+            Map<String, Map<String, long[]>> hourly = new TreeMap<>();
+            for (int i = 0; i < dayCount; i++) {
+                String day = readString(in);
+                int count = in.getInt();
+                Map<String, long[]> byName = new HashMap<>();
+                for (int j = 0; j < count; j++) {
+                    String name = readString(in);
+                    long[] counts = new long[in.get()];
+                    for (int hour = 0; hour < counts.length; hour++) {
+                        counts[hour] = in.getLong();
+                    }
+                    byName.put(name, counts);
+                }
+                hourly.put(day, byName);
+            }
+            if (in.hasRemaining()) {
+                throw new IOException("热启动快照格式错误");
+            }
+            return new WarmSnapshot(date, suffix, names, counters, hourly);
+        } catch (RuntimeException e) {
+            // 文件被截断时映射缓冲区抛出BufferUnderflowException
+            throw new IOException("热启动快照格式错误", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("热启动快照格式错误");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
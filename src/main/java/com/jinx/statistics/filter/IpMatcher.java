@@ -0,0 +1,420 @@
+package com.jinx.statistics.filter;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * IP许可列表匹配器
+ * 支持单个地址、CIDR（10.0.0.0/8、2001:db8::/32）和地址区间（10.0.0.1-10.0.0.50），IPv4和IPv6均可。
+ * 所有条目在构建时编译为按地址位展开的二叉前缀树（IPv4、IPv6各一棵），区间被拆分为最少的CIDR前缀；
+ * 构建完成后不可修改，可被多线程无锁共享。
+ * 匹配时直接在原字符串上解析地址，不分割字符串，不分配对象，最多比较32/128位
+ */
+public final class IpMatcher {
+
+    private static final int V4_BITS = 32;
+    private static final int V6_BITS = 128;
+
+    /**
+     * 解析IPv6地址的线程私有缓冲区，避免每次匹配分配数组
+     */
+    private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final Trie v4;
+    private final Trie v6;
+    private final int entryCount;
+
+    private IpMatcher(Trie v4, Trie v6, int entryCount) {
+        this.v4 = v4;
+        this.v6 = v6;
+        this.entryCount = entryCount;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 判断地址是否被许可
+     * @param ip 地址字符串
+     * @return 是否许可，地址格式错误时返回false
+     */
+    public boolean matches(CharSequence ip) {
+        return ip != null && matches(ip, 0, ip.length());
+    }
+
+    /**
+     * 判断字符串区间内的地址是否被许可（忽略首尾空白、IPv6方括号和区域标识）
+     * @param s 字符串
+     * @param from 起始位置（包含）
+     * @param to 结束位置（不包含）
+     * @return 是否许可，地址格式错误时返回false
+     */
+    public boolean matches(CharSequence s, int from, int to) {
+        while (from < to && s.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && s.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        if (to - from >= 2 && s.charAt(from) == '[' && s.charAt(to - 1) == ']') {
+            from++;
+            to--;
+        }
+        if (isV6(s, from, to)) {
+            long[] address = SCRATCH.get();
+            if (!parseV6(s, from, to, address)) {
+                return false;
+            }
+            // IPv4映射地址（::ffff:a.b.c.d）按IPv4匹配
+            if (address[0] == 0 && (address[1] >>> 32) == 0xFFFFL) {
+                return v4.matches(address[1] << 32, 0, V4_BITS);
+            }
+            return v6.matches(address[0], address[1], V6_BITS);
+        }
+        long address = parseV4(s, from, to);
+        return address >= 0 && v4.matches(address << 32, 0, V4_BITS);
+    }
+
+    /**
+     * 编译的条目数量
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * 前缀树节点总数
+     */
+    public int getNodeCount() {
+        return v4.size + v6.size;
+    }
+
+    private static boolean isV6(CharSequence s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == ':') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析点分十进制IPv4地址
+     * @return 32位无符号地址，格式错误时返回-1
+     */
+    static long parseV4(CharSequence s, int from, int to) {
+        long address = 0;
+        int parts = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = from; i <= to; i++) {
+            char c = i < to ? s.charAt(i) : '.';
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return -1;
+                }
+            } else if (c == '.') {
+                if (digits == 0 || ++parts > 4) {
+                    return -1;
+                }
+                address = (address << 8) | value;
+                value = 0;
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+        return parts == 4 ? address : -1;
+    }
+
+    /**
+     * 解析IPv6地址（支持::压缩、末尾内嵌IPv4、%区域标识）
+     * @param out 输出：out[0]为高64位，out[1]为低64位
+     * @return 是否解析成功
+     */
+    static boolean parseV6(CharSequence s, int from, int to, long[] out) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == '%') {
+                to = i;
+                break;
+            }
+        }
+        // 压缩符号之前和之后的分组分别累计，最后拼接
+        long headHi = 0, headLo = 0, tailHi = 0, tailLo = 0;
+        int headGroups = 0, tailGroups = 0;
+        boolean compressed = false;
+        int i = from;
+        if (to - from >= 2 && s.charAt(from) == ':' && s.charAt(from + 1) == ':') {
+            compressed = true;
+            i += 2;
+        }
+        while (i < to) {
+            int start = i;
+            int value = 0;
+            while (i < to && s.charAt(i) != ':' && s.charAt(i) != '.') {
+                int digit = hexDigit(s.charAt(i));
+                if (digit < 0 || i - start >= 4) {
+                    return false;
+                }
+                value = (value << 4) | digit;
+                i++;
+            }
+            int groups;
+            long groupValue;
+            if (i < to && s.charAt(i) == '.') {
+                // 内嵌IPv4占用最后两个分组
+                long v4 = parseV4(s, start, to);
+                if (v4 < 0) {
+                    return false;
+                }
+                groups = 2;
+                groupValue = v4;
+                i = to;
+            } else {
+                if (i == start) {
+                    return false;
+                }
+                groups = 1;
+                groupValue = value;
+            }
+            if (compressed) {
+                tailHi = (tailHi << (16 * groups)) | (tailLo >>> (64 - 16 * groups));
+                tailLo = (tailLo << (16 * groups)) | groupValue;
+                tailGroups += groups;
+            } else {
+                headHi = (headHi << (16 * groups)) | (headLo >>> (64 - 16 * groups));
+                headLo = (headLo << (16 * groups)) | groupValue;
+                headGroups += groups;
+            }
+            if (headGroups + tailGroups > 8) {
+                return false;
+            }
+            if (i < to) {
+                // 跳过分隔符，遇到::时切换到压缩后的部分
+                i++;
+                if (i < to && s.charAt(i) == ':') {
+                    if (compressed) {
+                        return false;
+                    }
+                    compressed = true;
+                    i++;
+                } else if (i == to) {
+                    return false;
+                }
+            }
+        }
+        if (compressed ? headGroups + tailGroups > 7 : headGroups != 8) {
+            return false;
+        }
+        int shift = 16 * (8 - headGroups);
+        out[0] = shiftLeftHi(headHi, headLo, shift) | tailHi;
+        out[1] = shiftLeftLo(headLo, shift) | tailLo;
+        return true;
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static long shiftLeftHi(long hi, long lo, int shift) {
+        if (shift == 0) {
+            return hi;
+        }
+        if (shift >= 64) {
+            return shift >= 128 ? 0 : lo << (shift - 64);
+        }
+        return (hi << shift) | (lo >>> (64 - shift));
+    }
+
+    private static long shiftLeftLo(long lo, int shift) {
+        return shift >= 64 ? 0 : lo << shift;
+    }
+
+    /**
+     * 编译后的二叉前缀树
+     * 节点0为根；children[2n]、children[2n+1]为节点n的0/1子节点：0表示不存在，LEAF表示该分支已被某个前缀完全覆盖。
+     * 被覆盖的分支不再保留子树，匹配时每一位只需读取一次数组
+     */
+    private static final class Trie {
+        private static final int LEAF = -1;
+
+        private int[] children = new int[64];
+        private boolean all;
+        private int size = 1;
+
+        boolean matches(long hi, long lo, int bits) {
+            if (all) {
+                return true;
+            }
+            int node = 0;
+            for (int i = 0; i < bits; i++) {
+                long word = i < 64 ? hi : lo;
+                node = children[2 * node + (int) ((word >>> (63 - (i & 63))) & 1)];
+                if (node <= 0) {
+                    return node == LEAF;
+                }
+            }
+            return false;
+        }
+
+        void insert(BigInteger prefix, int length, int bits) {
+            if (length == 0) {
+                all = true;
+                return;
+            }
+            int node = 0;
+            for (int i = 0; i < length; i++) {
+                int slot = 2 * node + (prefix.testBit(bits - 1 - i) ? 1 : 0);
+                int child = children[slot];
+                if (child == LEAF) {
+                    return; // 已被更短的前缀覆盖
+                }
+                if (i == length - 1) {
+                    children[slot] = LEAF;
+                    return;
+                }
+                if (child == 0) {
+                    child = newNode();
+                    children[slot] = child;
+                }
+                node = child;
+            }
+        }
+
+        private int newNode() {
+            if (2 * size == children.length) {
+                children = Arrays.copyOf(children, children.length * 2);
+            }
+            return size++;
+        }
+
+        void compact() {
+            children = Arrays.copyOf(children, size * 2);
+        }
+    }
+
+    /**
+     * 匹配器构建器
+     */
+    public static final class Builder {
+        private final Trie v4 = new Trie();
+        private final Trie v6 = new Trie();
+        private int entryCount;
+
+        private Builder() {
+        }
+
+        /**
+         * 添加许可条目
+         * @param entry 地址、CIDR或区间
+         * @return 构建器
+         * @throws IllegalArgumentException 条目格式错误
+         */
+        public Builder add(String entry) {
+            String value = entry == null ? "" : entry.trim();
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("IP条目为空");
+            }
+            int slash = value.indexOf('/');
+            int dash = value.indexOf('-');
+            if (slash >= 0) {
+                Address address = Address.parse(value.substring(0, slash));
+                int length;
+                try {
+                    length = Integer.parseInt(value.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("CIDR前缀长度错误: " + entry);
+                }
+                length -= address.offset;
+                if (length < 0 || length > address.bits) {
+                    throw new IllegalArgumentException("CIDR前缀长度超出范围: " + entry);
+                }
+                trie(address).insert(address.value, length, address.bits);
+            } else if (dash >= 0) {
+                Address start = Address.parse(value.substring(0, dash));
+                Address end = Address.parse(value.substring(dash + 1));
+                if (start.bits != end.bits || start.value.compareTo(end.value) > 0) {
+                    throw new IllegalArgumentException("IP区间错误: " + entry);
+                }
+                addRange(trie(start), start.value, end.value, start.bits);
+            } else {
+                Address address = Address.parse(value);
+                trie(address).insert(address.value, address.bits, address.bits);
+            }
+            entryCount++;
+            return this;
+        }
+
+        public IpMatcher build() {
+            v4.compact();
+            v6.compact();
+            return new IpMatcher(v4, v6, entryCount);
+        }
+
+        private Trie trie(Address address) {
+            return address.bits == V4_BITS ? v4 : v6;
+        }
+
+        /**
+         * 把区间拆分为最少的CIDR前缀：每次取起点对齐且不超过终点的最大块
+         */
+        private static void addRange(Trie trie, BigInteger start, BigInteger end, int bits) {
+            while (start.compareTo(end) <= 0) {
+                int size = start.signum() == 0 ? bits : start.getLowestSetBit();
+                while (size > 0 && start.add(BigInteger.ONE.shiftLeft(size)).subtract(BigInteger.ONE).compareTo(end) > 0) {
+                    size--;
+                }
+                trie.insert(start, bits - size, bits);
+                start = start.add(BigInteger.ONE.shiftLeft(size));
+            }
+        }
+    }
+
+    /**
+     * 构建时使用的地址
+     * IPv4映射的IPv6地址转换为IPv4，offset记录被去掉的前缀位数
+     */
+    private static final class Address {
+        private final BigInteger value;
+        private final int bits;
+        private final int offset;
+
+        private Address(BigInteger value, int bits, int offset) {
+            this.value = value;
+            this.bits = bits;
+            this.offset = offset;
+        }
+
+        static Address parse(String text) {
+            String s = text.trim();
+            if (isV6(s, 0, s.length())) {
+                long[] out = new long[2];
+                if (!parseV6(s, 0, s.length(), out)) {
+                    throw new IllegalArgumentException("IPv6地址格式错误: " + text);
+                }
+                if (out[0] == 0 && (out[1] >>> 32) == 0xFFFFL) {
+                    return new Address(BigInteger.valueOf(out[1] & 0xFFFFFFFFL), V4_BITS, V6_BITS - V4_BITS);
+                }
+                BigInteger value = new BigInteger(Long.toUnsignedString(out[0])).shiftLeft(64)
+                        .or(new BigInteger(Long.toUnsignedString(out[1])));
+                return new Address(value, V6_BITS, 0);
+            }
+            long v4 = parseV4(s, 0, s.length());
+            if (v4 < 0) {
+                throw new IllegalArgumentException("IPv4地址格式错误: " + text);
+            }
+            return new Address(BigInteger.valueOf(v4), V4_BITS, 0);
+        }
+    }
+}
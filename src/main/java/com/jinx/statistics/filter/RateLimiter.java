@@ -0,0 +1,161 @@
+package com.jinx.statistics.filter;
+
+import lombok.Getter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 按客户端（IP或API Key）限流的令牌桶集合
+ * 每个令牌桶只保存一个“理论到达时间”（GCRA算法，与令牌桶等价），用CAS更新，不加锁；
+ * 空闲超过TTL的令牌桶会被清理（空闲足够久的令牌桶已经回满，删除后重建结果相同），
+ * 客户端数量达到上限时新的客户端直接被限流（请求线程上不做清理），直到定时清理腾出位置，保证内存有界。
+ * 配置不可变，重新加载时整体替换限流器
+ */
+public class RateLimiter {
+
+    /**
+     * 每秒补充的令牌数
+     */
+    @Getter
+    private final double rate;
+
+    /**
+     * 令牌桶容量（允许的突发请求数）
+     */
+    @Getter
+    private final int burst;
+
+    /**
+     * 最多跟踪的客户端数量
+     */
+    private final int maxClients;
+
+    /**
+     * 配置的空闲清理时间（毫秒）
+     */
+    private final long idleTtlMillis;
+
+    /**
+     * 令牌桶空闲多久后可以清理（纳秒）
+     */
+    private final long idleTtlNanos;
+
+    /**
+     * 每个令牌的间隔（纳秒）
+     */
+    private final long intervalNanos;
+
+    /**
+     * 令牌桶从空到满所需的时间（纳秒）
+     */
+    private final long capacityNanos;
+
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * 时间来源（纳秒）
+     */
+    private final LongSupplier clock;
+
+    public RateLimiter(double rate, int burst, int maxClients, long idleTtlMillis) {
+        this(rate, burst, maxClients, idleTtlMillis, System::nanoTime);
+    }
+
+    RateLimiter(double rate, int burst, int maxClients, long idleTtlMillis, LongSupplier clock) {
+        this.clock = clock;
+        this.rate = rate;
+        this.burst = Math.max(1, burst);
+        this.maxClients = maxClients;
+        this.idleTtlMillis = idleTtlMillis;
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        this.capacityNanos = intervalNanos * this.burst;
+        this.idleTtlNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(idleTtlMillis), capacityNanos);
+    }
+
+    /**
+     * 单个客户端的令牌桶
+     */
+    private static final class Bucket {
+        /**
+         * 理论到达时间：令牌桶重新回满的时刻
+         */
+        private final AtomicLong tat;
+
+        private volatile long lastAccess;
+
+        private Bucket(long now) {
+            this.tat = new AtomicLong(now);
+            this.lastAccess = now;
+        }
+    }
+
+    /**
+     * 尝试获取一个令牌
+     * @param client 客户端标识
+     * @return 成功时返回剩余令牌数（不小于0）；被限流时返回负数，其绝对值为需要等待的纳秒数
+     */
+    public long tryAcquire(String client) {
+        long now = clock.getAsLong();
+        Bucket bucket = buckets.get(client);
+        if (bucket == null) {
+            if (buckets.size() >= maxClients) {
+                return -intervalNanos;
+            }
+            Bucket created = new Bucket(now);
+            bucket = buckets.putIfAbsent(client, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        bucket.lastAccess = now;
+        while (true) {
+            long tat = bucket.tat.get();
+            long next = Math.max(tat, now) + intervalNanos;
+            long used = next - now;
+            if (used > capacityNanos) {
+                return -(used - capacityNanos);
+            }
+            if (bucket.tat.compareAndSet(tat, next)) {
+                return (capacityNanos - used) / intervalNanos;
+            }
+        }
+    }
+
+    /**
+     * 客户端令牌桶回满所需的时间
+     * @param client 客户端标识
+     * @return 纳秒数
+     */
+    public long resetNanos(String client) {
+        Bucket bucket = buckets.get(client);
+        return bucket == null ? 0 : Math.max(0, bucket.tat.get() - clock.getAsLong());
+    }
+
+    /**
+     * 清理空闲的令牌桶（由定时任务调用）
+     * @return 清理的数量
+     */
+    public int cleanup() {
+        long now = clock.getAsLong();
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> now - bucket.lastAccess > idleTtlNanos);
+        return before - buckets.size();
+    }
+
+    /**
+     * 配置是否相同（相同时重新加载可以保留已有的令牌桶）
+     */
+    public boolean isSameConfig(double rate, int burst, int maxClients, long idleTtlMillis) {
+        return this.rate == rate && this.burst == burst && this.maxClients == maxClients && this.idleTtlMillis == idleTtlMillis;
+    }
+
+    /**
+     * 当前跟踪的客户端数量
+     */
+    public int size() {
+        return buckets.size();
+    }
+}
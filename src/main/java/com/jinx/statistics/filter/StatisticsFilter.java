@@ -1,11 +1,11 @@
 package com.jinx.statistics.filter;
 
-import com.alibaba.fastjson2.JSONArray;
-import com.alibaba.fastjson2.JSONObject;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jinx.statistics.cluster.ClusterManager;
 import com.jinx.statistics.constant.MessageConstant;
+import com.jinx.statistics.dao.StatisticsDao;
 import com.jinx.statistics.response.ApiResponse;
 import com.jinx.statistics.utility.FileUtility;
-import com.jinx.statistics.utility.GsonUtility;
 import com.jinx.statistics.utility.XmlParserUtils;
 import jakarta.servlet.*;
 import jakarta.servlet.annotation.WebFilter;
@@ -20,17 +20,18 @@ import org.springframework.stereotype.Component;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.*;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * IP过滤器
- * 用于过滤非法IP请求，只允许配置文件中指定的IP地址访问系统
+ * 用于过滤非法IP请求，只允许配置文件中指定的IP地址、CIDR网段或地址区间访问系统
  */
 @Slf4j
 @WebFilter
@@ -38,26 +39,55 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 public class StatisticsFilter implements Filter {
 
     /**
-     * IP许可列表
-     * 使用ConcurrentHashMap的keySet作为线程安全的Set实现
+     * 本地回环地址
      */
-    private final Set<String> allowedIps = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final String[] LOCALHOST = {"127.0.0.1", "::1"};
 
     /**
-     * 配置文件最后修改时间
-     * 使用AtomicLong确保线程安全的更新
+     * 配置文件变更后等待写入完成的时间（毫秒），期间的多次变更合并为一次加载
      */
-    private final AtomicLong lastModifiedTime = new AtomicLong(0);
+    private static final long RELOAD_DEBOUNCE_MILLIS = 200;
 
     /**
-     * IP配置文件的读写锁
+     * IP许可列表（编译后的前缀树，不可变）
+     * 重新加载时在后台构建新的匹配器，再通过volatile引用整体替换，请求线程读取时无需加锁
      */
-    private final ReadWriteLock configFileLock = new ReentrantReadWriteLock();
+    private volatile IpMatcher allowedIps = IpMatcher.builder().build();
 
     /**
-     * IP配置文件
+     * 受信任的反向代理，只有来自这些地址的请求才读取X-Forwarded-For等代理头
      */
-    private volatile File ipsConfigFile;
+    private volatile IpMatcher trustedProxies = IpMatcher.builder().build();
+
+    /**
+     * 按IP限流的令牌桶（未启用时为null）
+     */
+    private volatile RateLimiter ipLimiter;
+
+    /**
+     * 按API Key限流的令牌桶（未启用时为null）
+     */
+    private volatile RateLimiter keyLimiter;
+
+    /**
+     * 携带API Key的请求头
+     */
+    private volatile String apiKeyHeader = "X-Api-Key";
+
+    /**
+     * 配置的API Key，只为这些Key建立令牌桶，其它Key按IP限流
+     */
+    private volatile Set<String> apiKeys = Collections.emptySet();
+
+    /**
+     * 被限流的请求数
+     */
+    private final AtomicLong rateLimited = new AtomicLong(0);
+
+    /**
+     * 配置文件监听服务
+     */
+    private volatile WatchService watchService;
 
     /**
      * IP配置文件路径
@@ -77,6 +107,33 @@ public class StatisticsFilter implements Filter {
     @Value("${app.ip-filter.allow-localhost:true}")
     private boolean allowLocalhost;
 
+    /**
+     * 关闭排空期间拒绝写入时建议客户端的重试间隔（秒）
+     */
+    @Value("${app.shutdown.retry-after-seconds:5}")
+    private int drainRetryAfterSeconds;
+
+    /**
+     * 错误响应的JSON序列化
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 关闭排空状态
+     */
+    private final StatisticsDao dao;
+
+    /**
+     * 识别其它节点转发来的请求
+     */
+    private final ClusterManager clusterManager;
+
+    public StatisticsFilter(ObjectMapper objectMapper, StatisticsDao dao, ClusterManager clusterManager) {
+        this.objectMapper = objectMapper;
+        this.dao = dao;
+        this.clusterManager = clusterManager;
+    }
+
     /**
      * 过滤器初始化
      * 加载IP配置文件并初始化允许的IP列表
@@ -88,16 +145,20 @@ public class StatisticsFilter implements Filter {
         // 初始化时加载IP配置
         try {
             loadIpConfig();
-            log.info("IP过滤器初始化完成，已加载{}个允许的IP地址", allowedIps.size());
+            log.info("IP过滤器初始化完成，已加载{}个允许的IP条目", allowedIps.getEntryCount());
         } catch (Exception e) {
             log.error("初始化IP过滤器失败", e);
             // 如果初始化失败，至少允许本地访问
             if (allowLocalhost) {
-                allowedIps.add("127.0.0.1");
-                allowedIps.add("0:0:0:0:0:0:0:1"); // IPv6 localhost
+                IpMatcher.Builder builder = IpMatcher.builder();
+                for (String ip : LOCALHOST) {
+                    builder.add(ip);
+                }
+                allowedIps = builder.build();
                 log.info("已添加本地回环地址到允许列表");
             }
         }
+        watchConfig();
     }
 
     /**
@@ -105,6 +166,15 @@ public class StatisticsFilter implements Filter {
      */
     @Override
     public void destroy() {
+        WatchService service = watchService;
+        watchService = null;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                log.warn("关闭IP配置文件监听失败", e);
+            }
+        }
         log.info("IP过滤器已销毁");
     }
 
@@ -116,64 +186,174 @@ public class StatisticsFilter implements Filter {
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) 
             throws IOException, ServletException {
         
-        // 如果未启用IP过滤，直接放行
-        if (!ipFilterEnabled) {
-            chain.doFilter(request, response);
-            return;
-        }
-        
-        // 获取请求IP地址
+        // 获取请求IP地址（经过受信任的代理时取代理头中的客户端地址）
         String ipAddress = getClientIpAddress(request);
         
-        // 检查IP是否在允许列表中
-        if (allowedIps.contains(ipAddress)) {
+        // 检查IP是否在允许列表中（未启用IP过滤时跳过）
+        if (ipFilterEnabled) {
+            if (ipAddress == null || !allowedIps.matches(ipAddress)) {
+                // IP不在允许列表中，拒绝请求
+                log.warn("拒绝来自非法IP[{}]的请求", ipAddress);
+                handleUnauthorizedAccess(response, ipAddress);
+                return;
+            }
             if (log.isDebugEnabled()) {
                 log.debug("IP地址[{}]验证通过，请求放行", ipAddress);
             }
-            chain.doFilter(request, response);
-        } else {
-            // IP不在允许列表中，拒绝请求
-            log.warn("拒绝来自非法IP[{}]的请求", ipAddress);
-            handleUnauthorizedAccess(response, ipAddress);
         }
+        
+        // 关闭排空期间拒绝写入，客户端稍后重试（集群模式下会落到其它节点或重启后的本节点）
+        if (dao.isDraining() && isIngest(request)) {
+            handleDraining(response);
+            return;
+        }
+
+        // 转发标记只采信来自其它节点的连接，节点间的转发不限流
+        if (isForwardedByPeer(request)) {
+            request.setAttribute(ClusterManager.FORWARDED_ATTRIBUTE, Boolean.TRUE);
+        } else if (!checkRateLimit(request, response, ipAddress)) {
+            return;
+        }
+        chain.doFilter(request, response);
     }
 
     /**
-     * 获取客户端真实IP地址
-     * 考虑代理服务器转发的情况
+     * 地址是否在IP许可列表中（未启用IP过滤时总是允许），供HTTP以外的入口使用
+     * @param ip 客户端地址
+     * @return 是否允许
      */
-    private String getClientIpAddress(ServletRequest request) {
-        if (request instanceof HttpServletRequest) {
-            HttpServletRequest httpRequest = (HttpServletRequest) request;
-            
-            // 尝试从代理头获取真实IP
-            String ip = httpRequest.getHeader("X-Forwarded-For");
-            
-            if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-                ip = httpRequest.getHeader("Proxy-Client-IP");
-            }
-            if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-                ip = httpRequest.getHeader("WL-Proxy-Client-IP");
-            }
-            if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-                ip = httpRequest.getHeader("HTTP_CLIENT_IP");
+    public boolean isAllowedIp(String ip) {
+        return !ipFilterEnabled || ip != null && allowedIps.matches(ip);
+    }
+
+    private boolean isForwardedByPeer(ServletRequest request) {
+        return request instanceof HttpServletRequest
+                && ((HttpServletRequest) request).getHeader(ClusterManager.FORWARDED_HEADER) != null
+                && clusterManager.isPeer(request.getRemoteAddr());
+    }
+
+    private static boolean isIngest(ServletRequest request) {
+        return request instanceof HttpServletRequest
+                && "/statistics/log".equals(((HttpServletRequest) request).getServletPath());
+    }
+
+    /**
+     * 以503响应关闭排空期间的写入请求
+     */
+    private void handleDraining(ServletResponse response) throws IOException {
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        httpResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        httpResponse.setHeader("Retry-After", String.valueOf(drainRetryAfterSeconds));
+        httpResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        httpResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(objectMapper.writeValueAsString(ApiResponse.error(MessageConstant.SHUTTING_DOWN)));
+    }
+
+    /**
+     * 检查客户端是否超出限流配置，并写入限流响应头
+     * 请求携带已配置的API Key时先按API Key限流，再按IP限流；未配置的API Key不建立令牌桶，只按IP限流
+     * @return 是否放行
+     */
+    private boolean checkRateLimit(ServletRequest request, ServletResponse response, String clientIp) throws IOException {
+        RateLimiter keyLimiter = this.keyLimiter;
+        RateLimiter ipLimiter = this.ipLimiter;
+        if (keyLimiter == null && ipLimiter == null) {
+            return true;
+        }
+        String apiKey = request instanceof HttpServletRequest ? ((HttpServletRequest) request).getHeader(apiKeyHeader) : null;
+        RateLimiter limiter = null;
+        String client = null;
+        long result = 0;
+        if (keyLimiter != null && apiKey != null && apiKeys.contains(apiKey)) {
+            limiter = keyLimiter;
+            client = apiKey;
+            result = keyLimiter.tryAcquire(apiKey);
+        }
+        if (result >= 0 && ipLimiter != null && clientIp != null) {
+            long ipResult = ipLimiter.tryAcquire(clientIp);
+            if (limiter == null || ipResult < 0) {
+                limiter = ipLimiter;
+                client = clientIp;
+                result = ipResult;
             }
-            if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-                ip = httpRequest.getHeader("HTTP_X_FORWARDED_FOR");
+        }
+        if (limiter == null || !(response instanceof HttpServletResponse)) {
+            return true;
+        }
+
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        httpResponse.setHeader("RateLimit-Limit", String.valueOf(limiter.getBurst()));
+        httpResponse.setHeader("RateLimit-Remaining", String.valueOf(Math.max(0, result)));
+        httpResponse.setHeader("RateLimit-Reset", String.valueOf(toSeconds(limiter.resetNanos(client))));
+        if (result >= 0) {
+            return true;
+        }
+
+        rateLimited.incrementAndGet();
+        if (log.isDebugEnabled()) {
+            log.debug("客户端[{}]请求过于频繁，已限流", client);
+        }
+        httpResponse.setStatus(429);
+        httpResponse.setHeader("Retry-After", String.valueOf(toSeconds(-result)));
+        httpResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        httpResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        ApiResponse<String> error = ApiResponse.error(MessageConstant.TOO_MANY_REQUESTS);
+        error.setData(limiter == keyLimiter ? "API Key" : "IP: " + client);
+        response.getWriter().write(objectMapper.writeValueAsString(error));
+        return false;
+    }
+
+    private static long toSeconds(long nanos) {
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * 定时清理空闲客户端的令牌桶
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void cleanupRateLimiters() {
+        int removed = 0;
+        for (RateLimiter limiter : new RateLimiter[]{ipLimiter, keyLimiter}) {
+            if (limiter != null) {
+                removed += limiter.cleanup();
             }
-            if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-                ip = httpRequest.getRemoteAddr();
+        }
+        if (removed > 0 || rateLimited.get() > 0) {
+            log.info("限流统计: 清理空闲令牌桶{}个, 上次清理以来限流{}次", removed, rateLimited.getAndSet(0));
+        }
+    }
+
+    /**
+     * 代理服务器转发时携带客户端地址的请求头（按顺序查找）
+     */
+    private static final String[] PROXY_HEADERS = {"X-Forwarded-For", "Proxy-Client-IP", "WL-Proxy-Client-IP",
+            "HTTP_CLIENT_IP", "HTTP_X_FORWARDED_FOR"};
+
+    /**
+     * 获取客户端真实IP地址
+     * 只有直接连接的地址是受信任的代理时才读取代理头，否则代理头可以被客户端任意伪造；
+     * 代理头中有多个地址时从右向左跳过受信任的代理，第一个不受信任的地址即客户端地址
+     */
+    private String getClientIpAddress(ServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!(request instanceof HttpServletRequest) || !trustedProxies.matches(remoteAddr)) {
+            return remoteAddr;
+        }
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        for (String header : PROXY_HEADERS) {
+            String value = httpRequest.getHeader(header);
+            if (value == null || value.isEmpty() || "unknown".equalsIgnoreCase(value)) {
+                continue;
             }
-            
-            // 如果是多个IP，取第一个
-            if (ip != null && ip.contains(",")) {
-                ip = ip.split(",")[0].trim();
+            String[] hops = value.split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (i == 0 || !trustedProxies.matches(hop)) {
+                    return hop.isEmpty() || "unknown".equalsIgnoreCase(hop) ? remoteAddr : hop;
+                }
             }
-            
-            return ip;
         }
-        
-        return request.getRemoteAddr();
+        return remoteAddr;
     }
 
     /**
@@ -189,89 +369,181 @@ public class StatisticsFilter implements Filter {
         
         ApiResponse<String> error = ApiResponse.error(MessageConstant.ILLEGAL_IP_ADDRESS);
         error.setData("IP: " + ipAddress);
-        response.getWriter().write(GsonUtility.toJson(error));
+        response.getWriter().write(objectMapper.writeValueAsString(error));
     }
 
     /**
-     * 定时检查IP配置文件是否被修改
-     * 如果有更新，重新加载配置
+     * 监听IP配置文件所在目录，配置文件变更后重新加载
      */
-    @Scheduled(fixedDelayString = "${app.ip-filter.check-interval:5000}")
-    public void checkForChanges() {
+    private void watchConfig() {
+        Path configPath = new File(filePath).getAbsoluteFile().toPath();
+        Path dir = configPath.getParent();
+        Path fileName = configPath.getFileName();
         try {
-            // 检查配置文件是否存在
-            configFileLock.readLock().lock();
-            try {
-                if (ipsConfigFile == null) {
-                    configFileLock.readLock().unlock();
-                    loadIpConfig();
-                    configFileLock.readLock().lock();
+            WatchService service = dir.getFileSystem().newWatchService();
+            // 编辑器保存时常用“写临时文件再改名”的方式，因此同时监听创建事件
+            dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = service;
+            Thread thread = new Thread(() -> watchLoop(service, fileName), "ip-config-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            log.info("已开始监听IP配置文件: {}", configPath);
+        } catch (IOException e) {
+            log.error("监听IP配置文件失败，配置变更需重启后生效: {}", configPath, e);
+        }
+    }
+
+    private void watchLoop(WatchService service, Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                        changed = true;
+                    }
                 }
-                
-                // 检查文件是否被修改
-                long currentModified = ipsConfigFile.lastModified();
-                if (currentModified > lastModifiedTime.get()) {
-                    // 文件已更新，重新加载配置
-                    configFileLock.readLock().unlock();
-                    loadIpConfig();
+                if (changed) {
+                    // 等待写入完成，并丢弃期间产生的重复事件
+                    Thread.sleep(RELOAD_DEBOUNCE_MILLIS);
+                    key.pollEvents();
+                    try {
+                        loadIpConfig();
+                    } catch (Exception e) {
+                        log.error("重新加载IP配置文件失败，继续使用当前配置", e);
+                    }
+                }
+                if (!key.reset()) {
+                    log.warn("IP配置文件目录已不可访问，停止监听");
                     return;
                 }
-            } finally {
-                configFileLock.readLock().unlock();
             }
-        } catch (Exception e) {
-            log.error("检查IP配置文件更新失败", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // 过滤器销毁
         }
     }
     
     /**
      * 加载IP配置文件
+     * 解析失败时抛出异常，保留当前生效的许可列表
      */
     private void loadIpConfig() throws Exception {
-        configFileLock.writeLock().lock();
-        try {
-            // 获取或创建配置文件
-            ipsConfigFile = FileUtility.getFile(filePath);
-            lastModifiedTime.set(ipsConfigFile.lastModified());
-            
-            log.info("正在加载IP配置文件: {}", ipsConfigFile.getAbsolutePath());
-            
-            // 创建新的IP列表
-            Set<String> newAllowedIps = Collections.newSetFromMap(new ConcurrentHashMap<>());
-            
-            // 始终允许本地回环地址（如果配置允许）
-            if (allowLocalhost) {
-                newAllowedIps.add("127.0.0.1");
-                newAllowedIps.add("0:0:0:0:0:0:0:1"); // IPv6 localhost
+        // 获取或创建配置文件
+        File ipsConfigFile = FileUtility.getFile(filePath);
+        
+        log.info("正在加载IP配置文件: {}", ipsConfigFile.getAbsolutePath());
+        
+        // 创建新的IP列表
+        IpMatcher.Builder builder = IpMatcher.builder();
+        
+        // 始终允许本地回环地址（如果配置允许）
+        if (allowLocalhost) {
+            for (String ip : LOCALHOST) {
+                builder.add(ip);
             }
-            
-            // 解析XML配置文件
-            String content = new String(Files.readAllBytes(ipsConfigFile.toPath()), StandardCharsets.UTF_8);
-            JSONObject jsonObject = XmlParserUtils.parseXml(content);
-            
-            if (jsonObject != null && jsonObject.containsKey("ips")) {
-                JSONObject ipsObj = jsonObject.getJSONObject("ips");
-                if (ipsObj != null && ipsObj.containsKey("ip")) {
-                    JSONArray ips = ipsObj.getJSONArray("ip");
-                    for (int i = 0; i < ips.size(); i++) {
-                        String ip = ips.getString(i);
-                        if (ip != null && !ip.isEmpty()) {
-                            newAllowedIps.add(ip.trim());
-                        }
-                    }
+        }
+        
+        // 解析XML配置文件
+        String content = new String(Files.readAllBytes(ipsConfigFile.toPath()), StandardCharsets.UTF_8);
+        Map<String, Object> ipsObj = XmlParserUtils.getObject(XmlParserUtils.parseXml(content), "ips");
+        for (String ip : XmlParserUtils.getStrings(ipsObj, "ip")) {
+            if (!ip.isEmpty()) {
+                try {
+                    builder.add(ip);
+                } catch (IllegalArgumentException e) {
+                    log.warn("忽略无效的IP条目[{}]: {}", ip, e.getMessage());
                 }
             }
-            
-            // 更新允许的IP列表
-            allowedIps.clear();
-            allowedIps.addAll(newAllowedIps);
-            
-            log.info("IP配置已更新，当前允许{}个IP地址访问", allowedIps.size());
-            if (log.isDebugEnabled()) {
-                log.debug("允许的IP列表: {}", allowedIps);
+        }
+        
+        // 整体替换允许的IP列表
+        IpMatcher matcher = builder.build();
+        allowedIps = matcher;
+        
+        log.info("IP配置已更新，当前允许{}个IP条目访问（前缀树节点{}个）", matcher.getEntryCount(), matcher.getNodeCount());
+
+        trustedProxies = ipMatcher(XmlParserUtils.getStrings(XmlParserUtils.getObject(ipsObj, "trustedProxies"), "ip"));
+        if (trustedProxies.getEntryCount() > 0) {
+            log.info("受信任的代理{}个，来自这些地址的请求按代理头识别客户端地址", trustedProxies.getEntryCount());
+        }
+        
+        loadRateLimitConfig(ipsObj);
+    }
+
+    /**
+     * 加载限流配置（ips.xml中的rateLimit节点）
+     * 配置未变化的限流器保留原有的令牌桶，否则整体替换
+     */
+    private void loadRateLimitConfig(Map<String, Object> ipsObj) {
+        Map<String, Object> config = XmlParserUtils.getObject(ipsObj, "rateLimit");
+        if (config == null || !Boolean.parseBoolean(XmlParserUtils.getString(config, "enabled"))) {
+            ipLimiter = null;
+            keyLimiter = null;
+            log.info("限流未启用");
+            return;
+        }
+        int maxClients = (int) number(config, "maxClients", 100000);
+        long idleTtl = (long) number(config, "idleTtl", 300000);
+        ipLimiter = rateLimiter(ipLimiter, number(config, "ipRate", 0), (int) number(config, "ipBurst", 0), maxClients, idleTtl);
+        keyLimiter = rateLimiter(keyLimiter, number(config, "keyRate", 0), (int) number(config, "keyBurst", 0), maxClients, idleTtl);
+        String header = XmlParserUtils.getString(config, "keyHeader");
+        apiKeyHeader = header == null || header.isEmpty() ? "X-Api-Key" : header;
+        Set<String> keys = new HashSet<>();
+        for (String key : XmlParserUtils.getStrings(XmlParserUtils.getObject(config, "apiKeys"), "key")) {
+            if (!key.isEmpty()) {
+                keys.add(key);
+            }
+        }
+        apiKeys = Collections.unmodifiableSet(keys);
+        log.info("限流配置已更新: IP[{}/s, 突发{}], API Key[{}/s, 突发{}, 请求头{}, {}个Key]",
+                ipLimiter == null ? "-" : ipLimiter.getRate(), ipLimiter == null ? "-" : ipLimiter.getBurst(),
+                keyLimiter == null ? "-" : keyLimiter.getRate(), keyLimiter == null ? "-" : keyLimiter.getBurst(), apiKeyHeader,
+                apiKeys.size());
+    }
+
+    /**
+     * 编译地址列表，忽略无效的条目
+     */
+    private static IpMatcher ipMatcher(List<String> entries) {
+        IpMatcher.Builder builder = IpMatcher.builder();
+        for (String entry : entries) {
+            if (!entry.isEmpty()) {
+                try {
+                    builder.add(entry);
+                } catch (IllegalArgumentException e) {
+                    log.warn("忽略无效的IP条目[{}]: {}", entry, e.getMessage());
+                }
             }
-        } finally {
-            configFileLock.writeLock().unlock();
         }
+        return builder.build();
+    }
+
+    /**
+     * 读取数值配置，缺失或格式错误时使用默认值
+     */
+    private static double number(Map<String, Object> config, String name, double defaultValue) {
+        String value = XmlParserUtils.getString(config, name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            log.warn("限流配置[{}]不是有效的数值: {}", name, value);
+            return defaultValue;
+        }
+    }
+
+    private static RateLimiter rateLimiter(RateLimiter current, double rate, int burst, int maxClients, long idleTtl) {
+        if (rate <= 0) {
+            return null;
+        }
+        int capacity = burst > 0 ? burst : (int) Math.ceil(rate);
+        if (current != null && current.isSameConfig(rate, capacity, maxClients, idleTtl)) {
+            return current;
+        }
+        return new RateLimiter(rate, capacity, maxClients, idleTtl);
     }
 }
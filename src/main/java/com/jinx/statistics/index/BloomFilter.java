@@ -0,0 +1,189 @@
+package com.jinx.statistics.index;
+
+import com.jinx.statistics.utility.HashUtility;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 布隆过滤器
+ * 每个 日期/名称 文件对应一个，以旁路文件的形式保存在元数据目录中，
+ * 用于快速判断某个值是否可能出现在该文件中
+ */
+public class BloomFilter {
+
+    private static final int MAGIC = 0x4A424C4D; // "JBLM"
+    private static final byte VERSION = 1;
+
+    /**
+     * 位数组
+     */
+    private final long[] words;
+
+    /**
+     * 位数组总位数
+     */
+    private final long bitSize;
+
+    /**
+     * 哈希函数个数
+     */
+    private final int numHashes;
+
+    /**
+     * 设计容量（超过后误判率会上升，需要重建）
+     */
+    private final long capacity;
+
+    /**
+     * 已插入的元素数量
+     */
+    private long count;
+
+    /**
+     * 过滤器覆盖的数据文件字节数，与文件实际长度不一致时说明过滤器已过期
+     */
+    private long sourceLength;
+
+    private BloomFilter(long[] words, int numHashes, long capacity, long count, long sourceLength) {
+        this.words = words;
+        this.bitSize = (long) words.length * Long.SIZE;
+        this.numHashes = numHashes;
+        this.capacity = capacity;
+        this.count = count;
+        this.sourceLength = sourceLength;
+    }
+
+    /**
+     * 创建布隆过滤器
+     * @param capacity 预期元素数量
+     * @param fpp 期望误判率
+     * @return 布隆过滤器
+     */
+    public static BloomFilter create(long capacity, double fpp) {
+        capacity = Math.max(capacity, 64);
+        long bits = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int numWords = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+        int numHashes = Math.max(1, (int) Math.round((double) numWords * 64 / capacity * Math.log(2)));
+        return new BloomFilter(new long[numWords], numHashes, capacity, 0, 0);
+    }
+
+    /**
+     * 复制过滤器（用于在锁外写入文件）
+     * @return 副本
+     */
+    public BloomFilter copy() {
+        return new BloomFilter(words.clone(), numHashes, capacity, count, sourceLength);
+    }
+
+    /**
+     * 添加元素
+     * @param value 元素值
+     */
+    public void put(String value) {
+        long hash = HashUtility.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = index(h1 + i * h2);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        count++;
+    }
+
+    /**
+     * 判断元素是否可能存在
+     * @param value 元素值
+     * @return false表示一定不存在，true表示可能存在
+     */
+    public boolean mightContain(String value) {
+        long hash = HashUtility.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = index(h1 + i * h2);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long index(int combined) {
+        if (combined < 0) {
+            combined = ~combined;
+        }
+        return combined % bitSize;
+    }
+
+    /**
+     * 是否还能容纳指定数量的新元素而不超过设计容量
+     * @param additional 新增数量
+     * @return 是否可以容纳
+     */
+    public boolean canAccept(long additional) {
+        return count + additional <= capacity;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public long getSourceLength() {
+        return sourceLength;
+    }
+
+    public void setSourceLength(long sourceLength) {
+        this.sourceLength = sourceLength;
+    }
+
+    /**
+     * 写入文件，先写临时文件再原子替换，避免读到写了一半的过滤器
+     * @param file 目标文件
+     * @throws IOException 写入失败
+     */
+    public void writeTo(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(numHashes);
+            out.writeLong(capacity);
+            out.writeLong(count);
+            out.writeLong(sourceLength);
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 从文件读取布隆过滤器
+     * @param file 文件
+     * @return 布隆过滤器
+     * @throws IOException 读取失败或文件格式错误
+     */
+    public static BloomFilter readFrom(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("布隆过滤器文件格式错误: " + file.getPath());
+            }
+            int numHashes = in.readInt();
+            long capacity = in.readLong();
+            long count = in.readLong();
+            long sourceLength = in.readLong();
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            return new BloomFilter(words, numHashes, capacity, count, sourceLength);
+        }
+    }
+}
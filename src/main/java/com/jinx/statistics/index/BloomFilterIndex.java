@@ -0,0 +1,359 @@
+package com.jinx.statistics.index;
+
+import com.jinx.statistics.constant.FileConstant;
+import com.jinx.statistics.storage.FileRange;
+import com.jinx.statistics.storage.StorageFormat;
+import com.jinx.statistics.storage.StorageFormats;
+import com.jinx.statistics.utility.FileUtility;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 布隆过滤器索引
+ * 在刷盘和日期切换时为每个数据文件维护布隆过滤器旁路文件，
+ * 查询时先检查过滤器，只扫描可能包含目标值的文件。
+ * 刷盘线程只在内存中增量更新过滤器；旁路文件的写入和过期过滤器的重建都交给后台线程，
+ * 同一文件排队中的多次写入合并为一次，重建期间该文件的过滤器视为不可用（查询时扫描文件）
+ */
+@Component
+@Slf4j
+public class BloomFilterIndex {
+
+    /**
+     * 应用属性
+     */
+    @Value("${app.statistics-file-dir}")
+    private String fileDir;
+
+    /**
+     * 是否启用布隆过滤器
+     */
+    @Value("${app.bloom.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 期望误判率
+     */
+    @Value("${app.bloom.fpp:0.01}")
+    private double fpp;
+
+    /**
+     * 当天正在写入的过滤器缓存，键为 日期/文件名
+     */
+    private final ConcurrentHashMap<String, Entry> filters = new ConcurrentHashMap<>();
+
+    /**
+     * 旁路文件的写入和重建线程
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "bloom-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 单个数据文件的过滤器及其后台任务状态，读写都在对象锁内
+     */
+    private static final class Entry {
+        private BloomFilter filter;
+
+        /**
+         * 是否已提交旁路文件写入，尚未执行
+         */
+        private boolean writeQueued;
+
+        /**
+         * 是否正在后台重建
+         */
+        private boolean rebuilding;
+
+        /**
+         * 重建期间刷盘写入的值和字节数，重建完成后补入新的过滤器
+         */
+        private final List<String> pendingValues = new ArrayList<>();
+        private long pendingBytes;
+
+        private Entry(BloomFilter filter) {
+            this.filter = filter;
+        }
+    }
+
+    /**
+     * 存储格式
+     */
+    private final StorageFormats storageFormats;
+
+    public BloomFilterIndex(StorageFormats storageFormats) {
+        this.storageFormats = storageFormats;
+    }
+
+    /**
+     * 数据刷盘后更新对应的过滤器（刷盘线程调用，不写文件）
+     * 过滤器记录的覆盖长度加上本次写入长度与文件长度一致时在内存中增量更新，之后由后台线程写入旁路文件；
+     * 否则提交后台重建
+     * @param date 日期
+     * @param dataFile 数据文件
+     * @param values 本次写入记录中出现过的值
+     * @param bytes 本次写入的字节数
+     */
+    public void onFlush(String date, File dataFile, List<String> values, long bytes) {
+        if (!enabled) {
+            return;
+        }
+        String key = date + "/" + dataFile.getName();
+        Entry entry = filters.computeIfAbsent(key, k -> new Entry(load(date, dataFile)));
+        Runnable task;
+        synchronized (entry) {
+            if (entry.rebuilding) {
+                entry.pendingValues.addAll(values);
+                entry.pendingBytes += bytes;
+                return;
+            }
+            BloomFilter filter = entry.filter;
+            long sourceLength = dataFile.length();
+            if (filter.getSourceLength() + bytes == sourceLength && filter.canAccept(values.size())) {
+                for (String value : values) {
+                    filter.put(value);
+                }
+                filter.setSourceLength(sourceLength);
+                if (entry.writeQueued) {
+                    return;
+                }
+                entry.writeQueued = true;
+                task = () -> write(date, dataFile, entry);
+            } else {
+                // 过滤器过期或超出设计容量，按双倍容量在后台从完整文件重建
+                entry.rebuilding = true;
+                long minCapacity = filter.getCapacity() * 2;
+                task = () -> rebuild(date, dataFile, entry, sourceLength, minCapacity);
+            }
+        }
+        execute(task);
+    }
+
+    /**
+     * 提交后台任务，关闭之后（排空缓存的最后几次刷盘）在当前线程执行
+     */
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * 把过滤器的当前内容写入旁路文件（后台线程）
+     */
+    private void write(String date, File dataFile, Entry entry) {
+        BloomFilter copy;
+        synchronized (entry) {
+            entry.writeQueued = false;
+            copy = entry.filter.copy();
+        }
+        writeSidecar(date, dataFile, copy);
+    }
+
+    /**
+     * 从数据文件的前sourceLength字节重建过滤器，再补入重建期间刷盘的值（后台线程）
+     */
+    private void rebuild(String date, File dataFile, Entry entry, long sourceLength, long minCapacity) {
+        BloomFilter rebuilt = build(new FileRange(dataFile, dataFile.getName(), 0, sourceLength), minCapacity);
+        BloomFilter copy;
+        synchronized (entry) {
+            entry.rebuilding = false;
+            if (rebuilt == null) {
+                // 保留过期的过滤器（查询时视为不可用），下次刷盘时重试
+                entry.pendingValues.clear();
+                entry.pendingBytes = 0;
+                return;
+            }
+            for (String value : entry.pendingValues) {
+                rebuilt.put(value);
+            }
+            rebuilt.setSourceLength(sourceLength + entry.pendingBytes);
+            entry.pendingValues.clear();
+            entry.pendingBytes = 0;
+            entry.filter = rebuilt;
+            copy = rebuilt.copy();
+        }
+        writeSidecar(date, dataFile, copy);
+    }
+
+    /**
+     * 日期切换时为旧日期文件夹补齐缺失的过滤器，并释放内存中的过滤器
+     * 先等待已提交的后台写入和重建完成，之后的检查以磁盘上的旁路文件为准
+     * @param date 旧日期
+     */
+    public void seal(String date) {
+        try {
+            executor.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            log.warn("等待布隆过滤器写入完成失败", e);
+        }
+        filters.keySet().removeIf(key -> key.startsWith(date + "/"));
+        if (!enabled) {
+            return;
+        }
+        int built = 0;
+        for (File file : storageFormats.dataFiles(new File(String.join("/", fileDir, date)))) {
+            if (!isFresh(date, file)) {
+                BloomFilter filter = build(FileRange.of(file), 0);
+                if (filter != null) {
+                    writeSidecar(date, file, filter);
+                    built++;
+                }
+            }
+        }
+        log.info("日期[{}]布隆过滤器已封存，补建{}个", date, built);
+    }
+
+    /**
+     * 判断值是否可能存在于指定文件中
+     * 没有可用过滤器时返回true，由调用方扫描文件
+     * @param date 日期
+     * @param dataFile 数据文件
+     * @param value 值
+     * @return 是否可能存在
+     */
+    public boolean mightContain(String date, File dataFile, String value) {
+        return mightContain(date, dataFile.getName(), dataFile.length(), value);
+    }
+
+    /**
+     * 判断值是否可能存在于指定数据文件中（数据文件可能是打包文件中的条目）
+     * @param date 日期
+     * @param fileName 数据文件名
+     * @param length 数据文件长度，与过滤器记录的长度不一致时视为过滤器过期
+     * @param value 值
+     * @return 是否可能存在
+     */
+    public boolean mightContain(String date, String fileName, long length, String value) {
+        if (!enabled) {
+            return true;
+        }
+        Entry entry = filters.get(date + "/" + fileName);
+        if (entry != null) {
+            synchronized (entry) {
+                // 重建中，或刚写入的数据还没有更新到过滤器
+                return entry.rebuilding || entry.filter.getSourceLength() != length || entry.filter.mightContain(value);
+            }
+        }
+        File sidecar = sidecarFile(date, fileName);
+        if (!sidecar.exists()) {
+            return true;
+        }
+        try {
+            BloomFilter filter = BloomFilter.readFrom(sidecar);
+            return filter.getSourceLength() != length || filter.mightContain(value);
+        } catch (IOException e) {
+            log.warn("读取布隆过滤器失败: {}", sidecar.getPath(), e);
+            return true;
+        }
+    }
+
+    /**
+     * 加载已有旁路文件，不存在或损坏时返回空过滤器（覆盖长度为0，首次刷盘时会触发重建）
+     */
+    private BloomFilter load(String date, File dataFile) {
+        File sidecar = sidecarFile(date, dataFile);
+        if (sidecar.exists()) {
+            try {
+                return BloomFilter.readFrom(sidecar);
+            } catch (IOException e) {
+                log.warn("布隆过滤器文件损坏，将重建: {}", sidecar.getPath(), e);
+            }
+        }
+        return BloomFilter.create(0, fpp);
+    }
+
+    /**
+     * 旁路文件是否存在且覆盖了完整的数据文件
+     */
+    private boolean isFresh(String date, File dataFile) {
+        File sidecar = sidecarFile(date, dataFile);
+        if (!sidecar.exists()) {
+            return false;
+        }
+        try {
+            return BloomFilter.readFrom(sidecar).getSourceLength() == dataFile.length();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 读取数据文件构建过滤器（支持字典的格式只读取字典）
+     * @param range 数据文件中要覆盖的区间（从文件开头开始）
+     * @param minCapacity 最小容量
+     * @return 过滤器，读取失败时返回null
+     */
+    private BloomFilter build(FileRange range, long minCapacity) {
+        StorageFormat format = storageFormats.forName(range.getName());
+        if (format == null) {
+            return null;
+        }
+        try {
+            long[] values = {0};
+            format.readDistinct(range, (position, value) -> {
+                values[0]++;
+                return true;
+            });
+            BloomFilter filter = BloomFilter.create(Math.max(minCapacity, values[0] * 2), fpp);
+            format.readDistinct(range, (position, value) -> {
+                filter.put(value);
+                return true;
+            });
+            filter.setSourceLength(range.getLength());
+            return filter;
+        } catch (IOException e) {
+            log.error("构建布隆过滤器失败: {}", range.getFile().getPath(), e);
+            return null;
+        }
+    }
+
+    private void writeSidecar(String date, File dataFile, BloomFilter filter) {
+        File sidecar = sidecarFile(date, dataFile);
+        try {
+            FileUtility.createFolder(sidecar.getParentFile());
+            filter.writeTo(sidecar);
+        } catch (IOException e) {
+            log.error("写入布隆过滤器失败: {}", sidecar.getPath(), e);
+        }
+    }
+
+    private File sidecarFile(String date, File dataFile) {
+        return sidecarFile(date, dataFile.getName());
+    }
+
+    private File sidecarFile(String date, String fileName) {
+        return new File(String.join("/", fileDir, FileConstant.META_DIR, date, fileName + FileConstant.BLOOM_SUFFIX));
+    }
+
+    /**
+     * 关闭时等待已提交的旁路文件写入完成（未写入的过滤器下次查询或封存时重建）
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("布隆过滤器写入未在关闭期限内完成");
+            executor.shutdownNow();
+        }
+    }
+}
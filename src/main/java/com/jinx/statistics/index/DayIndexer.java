@@ -0,0 +1,285 @@
+package com.jinx.statistics.index;
+
+import com.jinx.statistics.constant.FileConstant;
+import com.jinx.statistics.dao.DayClock;
+import com.jinx.statistics.pojo.SearchHit;
+import com.jinx.statistics.pojo.SearchResult;
+import com.jinx.statistics.storage.StorageFormats;
+import com.jinx.statistics.utility.DateUtility;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 日期文件夹后台索引器
+ * 日期切换后旧文件夹的数据不再变化，由低优先级的后台线程为其构建倒排索引，
+ * 检索时只读取索引，不再扫描原始数据
+ */
+@Component
+@Slf4j
+public class DayIndexer {
+
+    /**
+     * 应用属性
+     */
+    @Value("${app.statistics-file-dir}")
+    private String fileDir;
+
+    /**
+     * 是否启用倒排索引
+     */
+    @Value("${app.index.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 构建时单批次最多缓存的倒排记录数，超过后写入临时文件
+     */
+    @Value("${app.index.run-postings:2000000}")
+    private long runPostings;
+
+    /**
+     * 构建时每秒最多读取的字节数，0表示不限速
+     */
+    @Value("${app.index.max-bytes-per-second:0}")
+    private long maxBytesPerSecond;
+
+    /**
+     * 索引线程（单线程、最低优先级）
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "day-indexer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * 等待或正在构建的日期
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 已打开的索引读取器（最近使用的若干个）
+     */
+    private final Map<String, InvertedIndexReader> readers = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, InvertedIndexReader> eldest) {
+                    return size() > 64;
+                }
+            });
+
+    /**
+     * 索引统计
+     */
+    private final AtomicLong daysIndexed = new AtomicLong(0);
+    private final AtomicLong daysFailed = new AtomicLong(0);
+    private final AtomicLong bytesIndexed = new AtomicLong(0);
+    private final AtomicLong recordsIndexed = new AtomicLong(0);
+    private final AtomicLong termsIndexed = new AtomicLong(0);
+    private final AtomicLong buildMillis = new AtomicLong(0);
+    private final AtomicLong currentDayBytes = new AtomicLong(0);
+    private volatile long currentDayTotalBytes;
+    private volatile String currentDay;
+
+    /**
+     * 存储格式
+     */
+    private final StorageFormats storageFormats;
+
+    /**
+     * 日期分区时钟
+     */
+    private final DayClock dayClock;
+
+    public DayIndexer(StorageFormats storageFormats, DayClock dayClock) {
+        this.storageFormats = storageFormats;
+        this.dayClock = dayClock;
+    }
+
+    /**
+     * 启动后为尚未建立索引的历史日期补建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexBacklog() {
+        if (!enabled) {
+            return;
+        }
+        File[] dirs = new File(fileDir).listFiles(file -> file.isDirectory() && !file.isHidden());
+        if (dirs == null) {
+            return;
+        }
+        String today = dayClock.today();
+        Arrays.sort(dirs);
+        for (File dir : dirs) {
+            String date = dir.getName();
+            if (!date.equals(today) && !indexFile(date).exists()) {
+                submit(date);
+            }
+        }
+    }
+
+    /**
+     * 提交日期文件夹的索引任务
+     * @param date 已封存的日期
+     */
+    public void submit(String date) {
+        if (!enabled || !pending.add(date)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                index(date);
+            } finally {
+                pending.remove(date);
+            }
+        });
+    }
+
+    private void index(String date) {
+        File[] files = storageFormats.dataFiles(new File(String.join("/", fileDir, date)));
+        if (files.length == 0) {
+            return;
+        }
+
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        currentDay = date;
+        currentDayBytes.set(0);
+        currentDayTotalBytes = totalBytes;
+
+        long startTime = DateUtility.now();
+        InvertedIndexWriter writer = new InvertedIndexWriter(storageFormats, runPostings, this::onProgress);
+        try {
+            InvertedIndexWriter.Result result = writer.build(Arrays.asList(files), indexFile(date));
+            long elapsed = DateUtility.now() - startTime;
+            readers.remove(date);
+            daysIndexed.incrementAndGet();
+            recordsIndexed.addAndGet(result.getRecords());
+            termsIndexed.addAndGet(result.getTerms());
+            buildMillis.addAndGet(elapsed);
+            log.info("日期[{}]索引构建完成: {}个文件, {}条记录, {}个词项, 索引{}字节, 耗时{}ms",
+                    date, files.length, result.getRecords(), result.getTerms(), result.getBytes(), elapsed);
+        } catch (Exception e) {
+            daysFailed.incrementAndGet();
+            log.error("日期[{}]索引构建失败", date, e);
+        } finally {
+            currentDay = null;
+        }
+    }
+
+    /**
+     * 记录进度，并在配置了限速时让出IO
+     */
+    private void onProgress(long bytes) {
+        long done = currentDayBytes.addAndGet(bytes);
+        bytesIndexed.addAndGet(bytes);
+        if (maxBytesPerSecond > 0) {
+            try {
+                Thread.sleep(bytes * 1000 / maxBytesPerSecond);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (log.isDebugEnabled() && done == currentDayTotalBytes) {
+            log.debug("日期[{}]数据扫描完成，开始归并", currentDay);
+        }
+    }
+
+    /**
+     * 在多个日期的索引中检索值
+     * @param value 值
+     * @param dates 日期列表
+     * @param maxOffsets 每个文件最多返回的偏移数量
+     * @return 检索结果
+     */
+    public SearchResult search(String value, List<String> dates, int maxOffsets) {
+        long startTime = DateUtility.now();
+        SearchResult result = new SearchResult();
+        result.setValue(value);
+        for (String date : dates) {
+            InvertedIndexReader reader = reader(date);
+            if (reader == null) {
+                if (new File(String.join("/", fileDir, date)).isDirectory()) {
+                    result.getUnindexedDays().add(date);
+                }
+                continue;
+            }
+            result.setIndexedDays(result.getIndexedDays() + 1);
+            for (InvertedIndexReader.Posting posting : reader.find(value, maxOffsets)) {
+                SearchHit hit = new SearchHit();
+                hit.setDate(date);
+                hit.setName(storageFormats.nameOf(new File(posting.getFileName())));
+                hit.setCount(posting.getCount());
+                hit.setOffsets(posting.getOffsets());
+                result.getHits().add(hit);
+            }
+        }
+        result.setElapsedMs(DateUtility.now() - startTime);
+        return result;
+    }
+
+    private InvertedIndexReader reader(String date) {
+        InvertedIndexReader reader = readers.get(date);
+        if (reader != null) {
+            return reader;
+        }
+        File file = indexFile(date);
+        if (!file.isFile() || pending.contains(date)) {
+            return null;
+        }
+        try {
+            reader = InvertedIndexReader.open(file);
+            readers.put(date, reader);
+            return reader;
+        } catch (IOException e) {
+            log.warn("打开索引文件失败: {}", file.getPath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 获取索引器统计信息（进度和吞吐量）
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pendingDays", pending.size());
+        stats.put("currentDay", currentDay);
+        long total = currentDayTotalBytes;
+        stats.put("currentDayProgress", currentDay == null || total == 0
+                ? null : String.format("%.1f%%", currentDayBytes.get() * 100.0 / total));
+        stats.put("daysIndexed", daysIndexed.get());
+        stats.put("daysFailed", daysFailed.get());
+        stats.put("bytesIndexed", bytesIndexed.get());
+        stats.put("recordsIndexed", recordsIndexed.get());
+        stats.put("termsIndexed", termsIndexed.get());
+        long millis = buildMillis.get();
+        stats.put("bytesPerSecond", millis > 0 ? bytesIndexed.get() * 1000 / millis : 0);
+        stats.put("recordsPerSecond", millis > 0 ? recordsIndexed.get() * 1000 / millis : 0);
+        return stats;
+    }
+
+    private File indexFile(String date) {
+        return new File(String.join("/", fileDir, FileConstant.META_DIR, date, FileConstant.VALUE_INDEX_FILE));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
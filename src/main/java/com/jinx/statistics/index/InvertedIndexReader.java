@@ -0,0 +1,158 @@
+package com.jinx.statistics.index;
+
+import com.jinx.statistics.utility.VarintUtility;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 倒排索引读取器
+ * 通过内存映射访问索引文件，查询时对词项目录二分查找，不加载整个索引
+ */
+public class InvertedIndexReader {
+
+    private final MappedByteBuffer buffer;
+    private final String[] files;
+    private final long termCount;
+    private final int dirOffset;
+    private final int termsOffset;
+    private final int postingsOffset;
+
+    /**
+     * 单个文件中的命中记录
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Posting {
+        /**
+         * 文件名
+         */
+        private final String fileName;
+
+        /**
+         * 命中次数
+         */
+        private final long count;
+
+        /**
+         * 命中记录的位置（CSV为行起始偏移，段格式为记录序号，可能被截断）
+         */
+        private final long[] offsets;
+    }
+
+    private InvertedIndexReader(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != InvertedIndexWriter.MAGIC || buffer.getInt(4) != InvertedIndexWriter.VERSION) {
+            throw new IOException("索引文件格式错误");
+        }
+        this.termCount = buffer.getLong(12);
+        int fileTableOffset = (int) buffer.getLong(20);
+        this.dirOffset = (int) buffer.getLong(28);
+        this.termsOffset = (int) buffer.getLong(36);
+        this.postingsOffset = (int) buffer.getLong(44);
+
+        ByteBuffer table = buffer.duplicate();
+        table.position(fileTableOffset);
+        this.files = new String[table.getInt()];
+        for (int i = 0; i < files.length; i++) {
+            byte[] name = new byte[table.getInt()];
+            table.get(name);
+            files[i] = new String(name, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 打开索引文件
+     * @param file 索引文件
+     * @return 读取器
+     * @throws IOException 文件过大或格式错误
+     */
+    public static InvertedIndexReader open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("索引文件超过2GB，无法映射: " + file.getPath());
+            }
+            return new InvertedIndexReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 查询词项
+     * @param value 值
+     * @param maxOffsets 每个文件最多返回的偏移数量
+     * @return 按文件分组的命中记录，未命中时返回空列表
+     */
+    public List<Posting> find(String value, int maxOffsets) {
+        byte[] term = value.getBytes(StandardCharsets.UTF_8);
+        long lo = 0;
+        long hi = termCount - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            int entry = (int) (dirOffset + mid * InvertedIndexWriter.DIR_ENTRY_SIZE);
+            int c = compare(term, termsOffset + (int) buffer.getLong(entry), buffer.getInt(entry + 8));
+            if (c == 0) {
+                return decode(postingsOffset + (int) buffer.getLong(entry + 12), maxOffsets);
+            } else if (c < 0) {
+                hi = mid - 1;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    public int getFileCount() {
+        return files.length;
+    }
+
+    public long getTermCount() {
+        return termCount;
+    }
+
+    /**
+     * 无符号字节序比较目标词项与索引中的词项
+     */
+    private int compare(byte[] term, int position, int length) {
+        int n = Math.min(term.length, length);
+        for (int i = 0; i < n; i++) {
+            int c = Integer.compare(term[i] & 0xFF, buffer.get(position + i) & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(term.length, length);
+    }
+
+    private List<Posting> decode(int position, int maxOffsets) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(position);
+        VarintUtility.read(in); // 总次数
+        int groups = (int) VarintUtility.read(in);
+        List<Posting> postings = new ArrayList<>(groups);
+        int fileId = 0;
+        for (int g = 0; g < groups; g++) {
+            fileId += (int) VarintUtility.read(in);
+            int count = (int) VarintUtility.read(in);
+            long[] offsets = new long[Math.min(count, maxOffsets)];
+            long offset = 0;
+            for (int i = 0; i < count; i++) {
+                offset += VarintUtility.read(in);
+                if (i < offsets.length) {
+                    offsets[i] = offset;
+                }
+            }
+            postings.add(new Posting(files[fileId], count, offsets));
+        }
+        return postings;
+    }
+}
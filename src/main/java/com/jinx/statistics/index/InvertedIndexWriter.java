@@ -0,0 +1,366 @@
+package com.jinx.statistics.index;
+
+import com.jinx.statistics.storage.StorageFormat;
+import com.jinx.statistics.storage.StorageFormats;
+import com.jinx.statistics.utility.FileUtility;
+import com.jinx.statistics.utility.VarintUtility;
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.LongConsumer;
+
+/**
+ * 倒排索引构建器
+ * 为一个已封存的日期文件夹构建 值 -> (文件, 记录位置) 的倒排索引。
+ * 扫描时按内存预算把倒排表分批排序写入临时文件，最后多路归并输出，内存占用与数据量无关。
+ *
+ * 文件布局：
+ * [文件头][文件表][词项目录][词项字节][倒排表]
+ * 词项目录为定长记录（词项偏移、词项长度、倒排表偏移），按词项UTF-8字节序排列，查询时二分查找；
+ * 倒排表按文件分组，文件编号和记录位置均为差值+变长整数编码
+ */
+public class InvertedIndexWriter {
+
+    static final int MAGIC = 0x4A494458; // "JIDX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 8 + 8 + 8;
+    static final int DIR_ENTRY_SIZE = 8 + 4 + 8;
+
+    /**
+     * 单批次最多缓存的倒排记录数
+     */
+    private final long runPostings;
+
+    /**
+     * 已扫描字节数的回调，用于进度统计和限速
+     */
+    private final LongConsumer progress;
+
+    /**
+     * 存储格式
+     */
+    private final StorageFormats storageFormats;
+
+    public InvertedIndexWriter(StorageFormats storageFormats, long runPostings, LongConsumer progress) {
+        this.storageFormats = storageFormats;
+        this.runPostings = runPostings;
+        this.progress = progress;
+    }
+
+    /**
+     * 构建结果
+     */
+    @Getter
+    public static class Result {
+        private long records;
+        private long terms;
+        private long bytes;
+    }
+
+    /**
+     * 构建索引
+     * @param files 数据文件列表，文件编号为列表下标
+     * @param target 索引文件
+     * @return 构建结果
+     * @throws IOException 读写失败
+     */
+    public Result build(List<File> files, File target) throws IOException {
+        Result result = new Result();
+        FileUtility.createFolder(target.getParentFile());
+        List<File> runs = new ArrayList<>();
+        File postingsTmp = new File(target.getPath() + ".postings.tmp");
+        File termsTmp = new File(target.getPath() + ".terms.tmp");
+        File dirTmp = new File(target.getPath() + ".dir.tmp");
+        File indexTmp = new File(target.getPath() + ".tmp");
+        try {
+            // 第一阶段：扫描文件，按内存预算分批写出有序的临时批次
+            Map<String, TermPostings> terms = new HashMap<>();
+            long buffered = 0;
+            for (int fileId = 0; fileId < files.size(); fileId++) {
+                buffered += scan(files.get(fileId), fileId, terms, result);
+                if (buffered >= runPostings) {
+                    runs.add(spill(terms, target, runs.size()));
+                    buffered = 0;
+                }
+            }
+            if (!terms.isEmpty() || runs.isEmpty()) {
+                runs.add(spill(terms, target, runs.size()));
+            }
+
+            // 第二阶段：多路归并，输出词项目录、词项字节和倒排表
+            long termCount;
+            long termsLength;
+            try (DataOutputStream dirOut = openOutput(dirTmp);
+                 DataOutputStream termsOut = openOutput(termsTmp);
+                 DataOutputStream postingsOut = openOutput(postingsTmp)) {
+                long[] lengths = merge(runs, dirOut, termsOut, postingsOut);
+                termCount = lengths[0];
+                termsLength = lengths[1];
+            }
+            result.terms = termCount;
+
+            // 第三阶段：拼接最终文件
+            byte[][] names = new byte[files.size()][];
+            long fileTableLength = 4;
+            for (int i = 0; i < files.size(); i++) {
+                names[i] = files.get(i).getName().getBytes(StandardCharsets.UTF_8);
+                fileTableLength += 4 + names[i].length;
+            }
+            long dirOffset = HEADER_SIZE + fileTableLength;
+            long termsOffset = dirOffset + termCount * DIR_ENTRY_SIZE;
+            long postingsOffset = termsOffset + termsLength;
+            try (DataOutputStream out = openOutput(indexTmp)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(files.size());
+                out.writeLong(termCount);
+                out.writeLong(HEADER_SIZE);
+                out.writeLong(dirOffset);
+                out.writeLong(termsOffset);
+                out.writeLong(postingsOffset);
+                out.writeInt(names.length);
+                for (byte[] name : names) {
+                    out.writeInt(name.length);
+                    out.write(name);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(indexTmp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                append(channel, dirTmp);
+                append(channel, termsTmp);
+                append(channel, postingsTmp);
+                result.bytes = channel.size();
+            }
+            Files.move(indexTmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return result;
+        } finally {
+            for (File run : runs) {
+                Files.deleteIfExists(run.toPath());
+            }
+            Files.deleteIfExists(postingsTmp.toPath());
+            Files.deleteIfExists(termsTmp.toPath());
+            Files.deleteIfExists(dirTmp.toPath());
+            Files.deleteIfExists(indexTmp.toPath());
+        }
+    }
+
+    /**
+     * 读取单个文件，记录每条记录的值和位置（CSV为行起始偏移，段格式为记录序号）
+     * @return 新增的倒排记录数
+     */
+    private long scan(File file, int fileId, Map<String, TermPostings> terms, Result result) throws IOException {
+        StorageFormat format = storageFormats.forFile(file);
+        if (format == null) {
+            throw new IOException("不支持的数据文件: " + file.getPath());
+        }
+        long[] added = {0};
+        format.read(file, (position, value) -> {
+            terms.computeIfAbsent(value, k -> new TermPostings()).add(fileId, position);
+            added[0]++;
+            return true;
+        });
+        progress.accept(file.length());
+        result.records += added[0];
+        return added[0];
+    }
+
+    /**
+     * 将当前批次按词项排序后写入临时文件
+     */
+    private File spill(Map<String, TermPostings> terms, File target, int runIndex) throws IOException {
+        File run = new File(target.getPath() + ".run" + runIndex + ".tmp");
+        List<Map.Entry<byte[], TermPostings>> entries = new ArrayList<>(terms.size());
+        for (Map.Entry<String, TermPostings> entry : terms.entrySet()) {
+            entries.add(new AbstractMap.SimpleEntry<>(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue()));
+        }
+        entries.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+        try (DataOutputStream out = openOutput(run)) {
+            for (Map.Entry<byte[], TermPostings> entry : entries) {
+                byte[] term = entry.getKey();
+                TermPostings postings = entry.getValue();
+                VarintUtility.write(out, term.length);
+                out.write(term);
+                VarintUtility.write(out, postings.size);
+                for (int i = 0; i < postings.size; i++) {
+                    VarintUtility.write(out, postings.files[i]);
+                    VarintUtility.write(out, postings.offsets[i]);
+                }
+            }
+        }
+        terms.clear();
+        return run;
+    }
+
+    /**
+     * 多路归并临时批次，相同词项按批次顺序拼接（批次按文件顺序生成，拼接后文件编号仍然有序）
+     * @return [词项数量, 词项字节总长度]
+     */
+    private long[] merge(List<File> runs, DataOutputStream dirOut, DataOutputStream termsOut,
+                         DataOutputStream postingsOut) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>((a, b) -> {
+            int c = Arrays.compareUnsigned(a.term, b.term);
+            return c != 0 ? c : Integer.compare(a.index, b.index);
+        });
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), i);
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+
+            long termCount = 0;
+            long termsPosition = 0;
+            long postingsPosition = 0;
+            TermPostings merged = new TermPostings();
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            DataOutputStream encodedOut = new DataOutputStream(encoded);
+            while (!queue.isEmpty()) {
+                RunReader head = queue.poll();
+                byte[] term = head.term;
+                merged.size = 0;
+                merged.addAll(head.postings);
+                if (head.next()) {
+                    queue.add(head);
+                }
+                while (!queue.isEmpty() && Arrays.equals(queue.peek().term, term)) {
+                    RunReader same = queue.poll();
+                    merged.addAll(same.postings);
+                    if (same.next()) {
+                        queue.add(same);
+                    }
+                }
+
+                encoded.reset();
+                merged.encode(encodedOut);
+                encodedOut.flush();
+
+                dirOut.writeLong(termsPosition);
+                dirOut.writeInt(term.length);
+                dirOut.writeLong(postingsPosition);
+                termsOut.write(term);
+                encoded.writeTo(postingsOut);
+                termsPosition += term.length;
+                postingsPosition += encoded.size();
+                termCount++;
+            }
+            return new long[]{termCount, termsPosition};
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void append(FileChannel target, File source) throws IOException {
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    private static DataOutputStream openOutput(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+    }
+
+    /**
+     * 单个词项的倒排记录（文件编号、行偏移），按扫描顺序追加
+     */
+    private static class TermPostings {
+        int[] files = new int[2];
+        long[] offsets = new long[2];
+        int size;
+
+        void add(int fileId, long offset) {
+            if (size == files.length) {
+                files = Arrays.copyOf(files, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            files[size] = fileId;
+            offsets[size] = offset;
+            size++;
+        }
+
+        void addAll(TermPostings other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.files[i], other.offsets[i]);
+            }
+        }
+
+        /**
+         * 编码格式：总次数, 文件数, 按文件分组的 [文件编号差值, 行数, 行偏移差值...]
+         */
+        void encode(DataOutput out) throws IOException {
+            int groups = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || files[i] != files[i - 1]) {
+                    groups++;
+                }
+            }
+            VarintUtility.write(out, size);
+            VarintUtility.write(out, groups);
+            int previousFile = 0;
+            int i = 0;
+            while (i < size) {
+                int fileId = files[i];
+                int end = i;
+                while (end < size && files[end] == fileId) {
+                    end++;
+                }
+                VarintUtility.write(out, fileId - previousFile);
+                VarintUtility.write(out, end - i);
+                long previousOffset = 0;
+                for (int j = i; j < end; j++) {
+                    VarintUtility.write(out, offsets[j] - previousOffset);
+                    previousOffset = offsets[j];
+                }
+                previousFile = fileId;
+                i = end;
+            }
+        }
+    }
+
+    /**
+     * 临时批次读取器
+     */
+    private static class RunReader implements Closeable {
+        final int index;
+        final DataInputStream in;
+        final TermPostings postings = new TermPostings();
+        byte[] term;
+
+        RunReader(File run, int index) throws IOException {
+            this.index = index;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 64 * 1024));
+        }
+
+        boolean next() throws IOException {
+            if (in.available() <= 0) {
+                return false;
+            }
+            term = new byte[(int) VarintUtility.read(in)];
+            in.readFully(term);
+            int count = (int) VarintUtility.read(in);
+            postings.size = 0;
+            for (int i = 0; i < count; i++) {
+                postings.add((int) VarintUtility.read(in), VarintUtility.read(in));
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
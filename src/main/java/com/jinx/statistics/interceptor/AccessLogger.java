@@ -0,0 +1,299 @@
+package com.jinx.statistics.interceptor;
+
+import com.jinx.statistics.dao.DayClock;
+import com.jinx.statistics.utility.FileUtility;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 访问日志
+ * 所有请求都计入计数器；抽样命中或失败的请求写入定长环形缓冲区，由后台线程格式化后写入按天滚动的日志文件。
+ * 缓冲区满时直接丢弃记录并计数，请求线程不会被阻塞，也不做字符串格式化
+ */
+@Component
+@Slf4j
+public class AccessLogger {
+
+    /**
+     * 日志模式
+     */
+    public enum Mode {
+        /**
+         * 每个请求同步输出两行INFO日志（原有行为）
+         */
+        FULL,
+        /**
+         * 抽样写入访问日志文件
+         */
+        SAMPLED,
+        /**
+         * 只保留计数器
+         */
+        OFF
+    }
+
+    @Value("${app.access-log.mode:full}")
+    private String modeName;
+
+    /**
+     * 每多少个请求抽样一个
+     */
+    @Value("${app.access-log.sample-every:100}")
+    private int sampleEvery;
+
+    /**
+     * 环形缓冲区容量（向上取整为2的幂）
+     */
+    @Value("${app.access-log.buffer-size:8192}")
+    private int bufferSize;
+
+    /**
+     * 访问日志目录
+     */
+    @Value("${app.access-log.dir:${user.dir}/logs}")
+    private String logDir;
+
+    private Mode mode = Mode.FULL;
+
+    /**
+     * 按分区时区滚动日志文件
+     */
+    private final DayClock dayClock;
+
+    public AccessLogger(DayClock dayClock) {
+        this.dayClock = dayClock;
+    }
+
+    /**
+     * 计数器（与抽样无关，始终累计）
+     */
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder clientErrors = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    /**
+     * 环形缓冲区：每个槽位的字段分别存放在并列数组中，sequence[i]等于槽位序号时表示数据已发布
+     */
+    private int mask;
+    private AtomicLongArray sequence;
+    private long[] timestamps;
+    private long[] durations;
+    private int[] statuses;
+    private String[] methods;
+    private String[] uris;
+
+    /**
+     * 下一个可写入的序号（生产者）
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * 下一个待写出的序号（消费者）
+     */
+    private volatile long head;
+
+    private volatile Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        try {
+            mode = Mode.valueOf(modeName.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("未知的访问日志模式[{}]，使用full", modeName);
+            mode = Mode.FULL;
+        }
+        sampleEvery = Math.max(1, sampleEvery);
+        if (mode != Mode.SAMPLED) {
+            return;
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        mask = capacity - 1;
+        sequence = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequence.set(i, -1);
+        }
+        timestamps = new long[capacity];
+        durations = new long[capacity];
+        statuses = new int[capacity];
+        methods = new String[capacity];
+        uris = new String[capacity];
+
+        running = true;
+        Thread thread = new Thread(this::writeLoop, "access-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+        writer = thread;
+        log.info("访问日志: 抽样模式，每{}个请求记录一个，缓冲区{}条，目录{}", sampleEvery, capacity, logDir);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 记录一次请求（请求线程调用）
+     * @param method 请求方法
+     * @param uri 请求路径
+     * @param status 响应状态码
+     * @param durationNanos 处理耗时（纳秒）
+     * @param failed 是否抛出异常
+     */
+    public void record(String method, String uri, int status, long durationNanos, boolean failed) {
+        requests.increment();
+        long micros = durationNanos / 1000;
+        totalMicros.add(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+        boolean error = failed || status >= 500;
+        if (error) {
+            serverErrors.increment();
+        } else if (status >= 400) {
+            clientErrors.increment();
+        }
+        if (mode != Mode.SAMPLED) {
+            return;
+        }
+        // 失败的请求总是记录，其余按概率抽样
+        if (!error && sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0) {
+            return;
+        }
+        sampled.increment();
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head > mask) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+        int slot = (int) (seq & mask);
+        timestamps[slot] = System.currentTimeMillis();
+        durations[slot] = micros;
+        statuses[slot] = status;
+        methods[slot] = method;
+        uris[slot] = uri;
+        sequence.lazySet(slot, seq);
+    }
+
+    /**
+     * 后台写出线程：按顺序读取已发布的槽位，格式化为紧凑文本行
+     * 格式：时间戳(ms) 方法 路径 状态码 耗时(µs)
+     */
+    private void writeLoop() {
+        long nextRollover = 0;
+        Writer out = null;
+        StringBuilder line = new StringBuilder(128);
+        try {
+            while (running || head < tail.get()) {
+                long seq = head;
+                int slot = (int) (seq & mask);
+                if (sequence.get(slot) != seq) {
+                    if (out != null) {
+                        out.flush();
+                    }
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+                    continue;
+                }
+                long timestamp = timestamps[slot];
+                if (timestamp >= nextRollover) {
+                    // 按天滚动日志文件
+                    if (out != null) {
+                        out.close();
+                    }
+                    LocalDate date = Instant.ofEpochMilli(timestamp).atZone(dayClock.getZone()).toLocalDate();
+                    out = open(date.format(DateTimeFormatter.BASIC_ISO_DATE));
+                    nextRollover = date.plusDays(1).atStartOfDay(dayClock.getZone()).toInstant().toEpochMilli();
+                }
+                line.setLength(0);
+                line.append(timestamp).append(' ')
+                        .append(methods[slot]).append(' ')
+                        .append(uris[slot]).append(' ')
+                        .append(statuses[slot]).append(' ')
+                        .append(durations[slot]).append('\n');
+                methods[slot] = null;
+                uris[slot] = null;
+                head = seq + 1;
+                if (out != null) {
+                    out.append(line);
+                    written.increment();
+                }
+            }
+            if (out != null) {
+                out.close();
+            }
+        } catch (IOException e) {
+            log.error("写入访问日志失败，停止记录", e);
+            running = false;
+        }
+    }
+
+    private Writer open(String date) {
+        File file = new File(logDir, "access-" + date + ".log");
+        FileUtility.createFolder(file.getParentFile());
+        try {
+            return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8), 64 * 1024);
+        } catch (IOException e) {
+            log.error("打开访问日志文件失败: {}", file.getPath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 获取访问统计
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long total = requests.sum();
+        stats.put("mode", mode.name().toLowerCase());
+        stats.put("requests", total);
+        stats.put("clientErrors", clientErrors.sum());
+        stats.put("serverErrors", serverErrors.sum());
+        stats.put("avgMicros", total > 0 ? totalMicros.sum() / total : 0);
+        stats.put("maxMicros", maxMicros.get());
+        stats.put("sampled", sampled.sum());
+        stats.put("written", written.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("buffered", tail.get() - head);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread = writer;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.jinx.statistics.interceptor;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jinx.statistics.metrics.MetricsRegistry;
 import com.jinx.statistics.response.ApiResponse;
-import com.jinx.statistics.utility.GsonUtility;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -10,9 +11,11 @@ import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.ModelAndView;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -33,6 +36,27 @@ public class StatisticsInterceptor implements HandlerInterceptor {
      * 请求计数器
      */
     private final AtomicInteger requestCounter = new AtomicInteger(0);
+
+    /**
+     * 访问日志
+     */
+    private final AccessLogger accessLogger;
+
+    /**
+     * 接口指标
+     */
+    private final MetricsRegistry metricsRegistry;
+
+    /**
+     * 错误响应的JSON序列化
+     */
+    private final ObjectMapper objectMapper;
+
+    public StatisticsInterceptor(AccessLogger accessLogger, MetricsRegistry metricsRegistry, ObjectMapper objectMapper) {
+        this.accessLogger = accessLogger;
+        this.metricsRegistry = metricsRegistry;
+        this.objectMapper = objectMapper;
+    }
     
     /**
      * 请求处理前的拦截方法
@@ -44,14 +68,23 @@ public class StatisticsInterceptor implements HandlerInterceptor {
      */
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 记录请求开始时间
+        request.setAttribute("startTime", System.nanoTime());
+        
+        // 非FULL模式下不在请求线程上拼接日志内容
+        if (accessLogger.getMode() != AccessLogger.Mode.FULL) {
+            if (handler instanceof HandlerMethod && request.getRequestURI().contains("error")) {
+                handleErrorResponse(response, "检测到错误路径访问", null);
+                return false;
+            }
+            return true;
+        }
+        
         // 增加请求计数
         int currentCount = requestCounter.incrementAndGet();
         
-        // 记录请求开始时间
-        request.setAttribute("startTime", System.currentTimeMillis());
-        
         // 获取请求信息
-        String requestId = String.format("REQ-%d", currentCount);
+        String requestId = "REQ-" + currentCount;
         String method = request.getMethod();
         String url = request.getRequestURL().toString();
         String queryString = request.getQueryString();
@@ -59,6 +92,7 @@ public class StatisticsInterceptor implements HandlerInterceptor {
         
         // 设置请求ID，便于跟踪
         request.setAttribute("requestId", requestId);
+        request.setAttribute("requestUrl", url);
         
         // 判断当前拦截到的是Controller的方法还是其他资源
         if (!(handler instanceof HandlerMethod)) {
@@ -99,33 +133,52 @@ public class StatisticsInterceptor implements HandlerInterceptor {
         }
     }
     
+    /**
+     * 指标的方法标签：非标准的请求方法同样会分发到处理器，一律记为OTHER，保证标签数量有界
+     * @param method 请求方法
+     * @return 标签值
+     */
+    private static String methodLabel(String method) {
+        return switch (method) {
+            case "GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "PATCH" -> method;
+            default -> "OTHER";
+        };
+    }
+
     /**
      * 请求完全处理完毕后的拦截方法
      */
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
-        // 获取请求ID
-        String requestId = (String) request.getAttribute("requestId");
-        
         // 计算请求处理时间
         Long startTime = (Long) request.getAttribute("startTime");
-        if (startTime != null) {
-            long endTime = System.currentTimeMillis();
-            long processingTime = endTime - startTime;
-            
-            // 获取请求信息
-            String method = request.getMethod();
-            String url = request.getRequestURL().toString();
-            int status = response.getStatus();
-            
-            // 记录请求完成日志
-            if (ex != null) {
-                log.error("[{}] 请求异常: {} {} - 状态码:{} - 耗时:{}ms - 异常:{}", 
-                        requestId, method, url, status, processingTime, ex.getMessage());
-            } else {
-                log.info("[{}] 请求完成: {} {} - 状态码:{} - 耗时:{}ms", 
-                        requestId, method, url, status, processingTime);
-            }
+        if (startTime == null) {
+            return;
+        }
+        long processingNanos = System.nanoTime() - startTime;
+        int status = response.getStatus();
+        accessLogger.record(request.getMethod(), request.getRequestURI(), status, processingNanos, ex != null);
+        // 按路由模板统计，避免路径参数导致标签数量无限增长；未处理的异常最终返回500
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        metricsRegistry.recordRequest(methodLabel(request.getMethod()), pattern != null ? pattern.toString() : "unmatched",
+                ex != null && status < 400 ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : status, processingNanos);
+        if (accessLogger.getMode() != AccessLogger.Mode.FULL) {
+            return;
+        }
+        
+        // 获取请求信息
+        String requestId = (String) request.getAttribute("requestId");
+        String method = request.getMethod();
+        String url = (String) request.getAttribute("requestUrl");
+        long processingTime = TimeUnit.NANOSECONDS.toMillis(processingNanos);
+        
+        // 记录请求完成日志
+        if (ex != null) {
+            log.error("[{}] 请求异常: {} {} - 状态码:{} - 耗时:{}ms - 异常:{}", 
+                    requestId, method, url, status, processingTime, ex.getMessage());
+        } else {
+            log.info("[{}] 请求完成: {} {} - 状态码:{} - 耗时:{}ms", 
+                    requestId, method, url, status, processingTime);
         }
     }
     
@@ -146,6 +199,6 @@ public class StatisticsInterceptor implements HandlerInterceptor {
         ApiResponse<String> error = ApiResponse.error(errorMessage);
         
         // 写入响应
-        response.getWriter().write(GsonUtility.toJson(error));
+        response.getWriter().write(objectMapper.writeValueAsString(error));
     }
 }
@@ -0,0 +1,149 @@
+package com.jinx.statistics.jfr;
+
+import com.jinx.statistics.exception.BaseException;
+import com.jinx.statistics.utility.FileUtility;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 飞行记录管理
+ * 同一时间只允许一个记录；记录使用JDK默认配置叠加jinx.jfc，
+ * 停止或到达时长上限时写入记录目录下的jfr文件
+ */
+@Component
+@Slf4j
+public class FlightRecorderManager {
+
+    /**
+     * 记录文件目录
+     */
+    @Value("${app.jfr.dir:${user.dir}/logs/jfr}")
+    private String recordingDir;
+
+    /**
+     * 类路径下的记录配置
+     */
+    @Value("${app.jfr.settings:jfr/jinx.jfc}")
+    private String settingsPath;
+
+    /**
+     * 单次记录的最大时长（秒），防止忘记停止
+     */
+    @Value("${app.jfr.max-duration:3600}")
+    private long maxDurationSeconds;
+
+    private Recording recording;
+
+    private File destination;
+
+    /**
+     * 开始记录
+     * @param durationSeconds 记录时长（秒），为空或不大于0时使用最大时长
+     * @return 记录信息
+     */
+    public synchronized Map<String, Object> start(Long durationSeconds) {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new BaseException("已有正在进行的飞行记录");
+        }
+        long seconds = durationSeconds == null || durationSeconds <= 0
+                ? maxDurationSeconds : Math.min(durationSeconds, maxDurationSeconds);
+        try {
+            Recording created = new Recording(loadSettings());
+            created.setName("jinx-statistics");
+            created.setToDisk(true);
+            created.setDuration(Duration.ofSeconds(seconds));
+            File file = new File(recordingDir,
+                    "jinx-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jfr");
+            FileUtility.createFolder(file.getParentFile());
+            created.setDestination(file.toPath());
+            created.start();
+            closeRecording();
+            recording = created;
+            destination = file;
+            log.info("飞行记录已开始: {}，最长{}秒", file.getPath(), seconds);
+            return status();
+        } catch (BaseException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("开始飞行记录失败", e);
+            throw new BaseException("开始飞行记录失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 停止记录并写入文件
+     * @return 记录信息
+     */
+    public synchronized Map<String, Object> stop() {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new BaseException("没有正在进行的飞行记录");
+        }
+        recording.stop();
+        log.info("飞行记录已停止: {}", destination.getPath());
+        return status();
+    }
+
+    /**
+     * 当前记录状态
+     * @return 记录信息
+     */
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("state", recording.getState().name());
+        status.put("file", destination.getPath());
+        status.put("startTime", String.valueOf(recording.getStartTime()));
+        status.put("duration", recording.getDuration() == null ? null : recording.getDuration().getSeconds());
+        if (recording.getState() == RecordingState.CLOSED || recording.getState() == RecordingState.STOPPED) {
+            status.put("size", destination.length());
+        }
+        return status;
+    }
+
+    /**
+     * JDK默认配置叠加本服务的配置
+     */
+    private Map<String, String> loadSettings() throws Exception {
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+        try (Reader reader = new InputStreamReader(new ClassPathResource(settingsPath).getInputStream(), StandardCharsets.UTF_8)) {
+            settings.putAll(Configuration.create(reader).getSettings());
+        }
+        return settings;
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            log.info("应用关闭，停止飞行记录: {}", destination.getPath());
+            recording.stop();
+        }
+        closeRecording();
+    }
+}
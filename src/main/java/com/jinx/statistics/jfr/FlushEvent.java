@@ -0,0 +1,35 @@
+package com.jinx.statistics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 单个统计对象刷盘事件（Statistics.saveFile）
+ */
+@Name("com.jinx.statistics.Flush")
+@Label("统计对象刷盘")
+@Description("单个统计对象的缓冲记录写入数据文件")
+@Category({"Jinx Statistics", "Storage"})
+@StackTrace(false)
+public class FlushEvent extends jdk.jfr.Event {
+
+    @Label("日期")
+    public String date;
+
+    @Label("统计名称")
+    public String name;
+
+    @Label("写入字节数")
+    @DataAmount
+    public long bytes;
+
+    @Label("记录数")
+    public int records;
+
+    @Label("是否成功")
+    public boolean success;
+}
@@ -0,0 +1,27 @@
+package com.jinx.statistics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 日期检查事件（StatisticsDao.checkNextDate）
+ */
+@Name("com.jinx.statistics.Rollover")
+@Label("日期切换")
+@Description("检查日期变更：切换当前日期，或把待压缩的文件夹提交给后台处理")
+@Category({"Jinx Statistics", "Storage"})
+@StackTrace(false)
+public class RolloverEvent extends jdk.jfr.Event {
+
+    @Label("原日期")
+    public String fromDate;
+
+    @Label("新日期")
+    public String toDate;
+
+    @Label("提交压缩的文件夹数")
+    public int queued;
+}
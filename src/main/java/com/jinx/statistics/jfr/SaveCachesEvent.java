@@ -0,0 +1,33 @@
+package com.jinx.statistics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 缓存批量刷盘事件（StatisticsDao.saveCaches / flushOldestEntries）
+ */
+@Name("com.jinx.statistics.SaveCaches")
+@Label("缓存批量刷盘")
+@Description("定时、关闭前、手动刷新或缓存满淘汰时批量写入缓存中的统计对象")
+@Category({"Jinx Statistics", "Storage"})
+@StackTrace(false)
+public class SaveCachesEvent extends jdk.jfr.Event {
+
+    @Label("触发原因")
+    @Description("save：全部写入；evict：缓存满时淘汰最旧的条目")
+    public String reason;
+
+    @Label("统计对象数")
+    public int objects;
+
+    @Label("写入字节数")
+    @DataAmount
+    public long bytes;
+
+    @Label("记录数")
+    public long records;
+}
@@ -0,0 +1,36 @@
+package com.jinx.statistics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 文件夹压缩事件（StatisticsDao.zipFile）
+ */
+@Name("com.jinx.statistics.Zip")
+@Label("文件夹压缩")
+@Description("把日期文件夹压缩为zip文件")
+@Category({"Jinx Statistics", "Storage"})
+@StackTrace(false)
+public class ZipEvent extends jdk.jfr.Event {
+
+    @Label("文件夹")
+    public String dir;
+
+    @Label("文件数")
+    public int files;
+
+    @Label("原始字节数")
+    @DataAmount
+    public long bytes;
+
+    @Label("压缩后字节数")
+    @DataAmount
+    public long zipBytes;
+
+    @Label("结果")
+    public String result;
+}
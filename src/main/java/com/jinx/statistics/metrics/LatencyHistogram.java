@@ -0,0 +1,112 @@
+package com.jinx.statistics.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁延迟直方图（微秒精度，对数-线性分桶，与HdrHistogram的分桶方式相同）
+ * 每个2的幂区间再线性划分为32个子桶，任意值的相对误差不超过1/32；
+ * 可记录的范围为0到2^36微秒（约19小时），超出的值记入最后一个桶。
+ * 记录只做一次数组原子自增，查询分位数时遍历一次计数数组
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     * @param micros 微秒数
+     */
+    public void record(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE));
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * 记录从指定时刻到现在的耗时
+     * @param startNanos System.nanoTime()的起始值
+     */
+    public void recordSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 累计耗时（微秒）
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * 最大耗时（微秒）
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 计算多个分位数
+     * @param quantiles 分位数（0~1，升序）
+     * @return 对应的耗时（微秒，取所在桶的上界）
+     */
+    public long[] quantiles(double... quantiles) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        long[] result = new long[quantiles.length];
+        if (total == 0) {
+            return result;
+        }
+        int bucket = 0;
+        long cumulative = snapshot[0];
+        for (int q = 0; q < quantiles.length; q++) {
+            long target = Math.max(1, (long) Math.ceil(quantiles[q] * total));
+            while (cumulative < target && bucket < BUCKETS - 1) {
+                cumulative += snapshot[++bucket];
+            }
+            result[q] = Math.min(upperBound(bucket), max.get());
+        }
+        return result;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
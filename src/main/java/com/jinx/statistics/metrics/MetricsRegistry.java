@@ -0,0 +1,267 @@
+package com.jinx.statistics.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 指标注册表
+ * 保存按接口划分的延迟直方图和状态码计数，以及各组件注册的计数器、计时器和瞬时值，
+ * 输出为Prometheus文本格式。记录路径上只有原子自增，不加锁、不分配对象
+ */
+@Component
+public class MetricsRegistry {
+
+    /**
+     * 输出的分位数
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    private static final int MAX_STATUS = 600;
+
+    private static final String HTTP_DURATION = "jinx_http_server_requests_seconds";
+    private static final String HTTP_REQUESTS = "jinx_http_server_requests_total";
+
+    /**
+     * 指标类型
+     */
+    private enum Type {
+        COUNTER, GAUGE, TIMER
+    }
+
+    /**
+     * 一个命名指标
+     */
+    private static final class Metric {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final LongSupplier value;
+        private final LatencyHistogram histogram;
+
+        /**
+         * 重启前的计数（从热启动快照恢复），输出计数器时加在当前值上
+         */
+        private final AtomicLong restored = new AtomicLong();
+
+        private Metric(String name, String help, Type type, LongSupplier value, LatencyHistogram histogram) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.value = value;
+            this.histogram = histogram;
+        }
+    }
+
+    /**
+     * 单个接口（请求方法 + 路由模板）的指标
+     */
+    private static final class Endpoint {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLongArray statuses = new AtomicLongArray(MAX_STATUS);
+    }
+
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+    private final Map<String, Metric> metricsByName = new ConcurrentHashMap<>();
+
+    /**
+     * 路由模板 -> 请求方法 -> 接口指标
+     * 按路由模板而不是实际路径划分，保证标签数量有界
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Endpoint>> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * 注册一个计数器
+     * @param name 指标名称
+     * @param help 说明
+     * @return 计数器
+     */
+    public LongAdder counter(String name, String help) {
+        LongAdder adder = new LongAdder();
+        register(new Metric(name, help, Type.COUNTER, adder::sum, null));
+        return adder;
+    }
+
+    /**
+     * 注册一个由组件自己维护的计数器
+     * @param name 指标名称
+     * @param help 说明
+     * @param value 取值函数
+     */
+    public void counter(String name, String help, LongSupplier value) {
+        register(new Metric(name, help, Type.COUNTER, value, null));
+    }
+
+    /**
+     * 注册一个瞬时值，抓取时调用取值函数
+     * @param name 指标名称
+     * @param help 说明
+     * @param value 取值函数
+     */
+    public void gauge(String name, String help, LongSupplier value) {
+        register(new Metric(name, help, Type.GAUGE, value, null));
+    }
+
+    /**
+     * 注册一个计时器
+     * @param name 指标名称（以秒为单位输出）
+     * @param help 说明
+     * @return 延迟直方图
+     */
+    public LatencyHistogram timer(String name, String help) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        register(new Metric(name, help, Type.TIMER, null, histogram));
+        return histogram;
+    }
+
+    private void register(Metric metric) {
+        if (metricsByName.putIfAbsent(metric.name, metric) != null) {
+            throw new IllegalStateException("指标重复注册: " + metric.name);
+        }
+        metrics.add(metric);
+    }
+
+    /**
+     * 记录一次请求
+     * @param method 请求方法
+     * @param pattern 匹配的路由模板
+     * @param status 响应状态码
+     * @param durationNanos 处理耗时（纳秒）
+     */
+    public void recordRequest(String method, String pattern, int status, long durationNanos) {
+        Endpoint endpoint = endpoint(method, pattern);
+        endpoint.latency.record(durationNanos / 1000);
+        if (status > 0 && status < MAX_STATUS) {
+            endpoint.statuses.incrementAndGet(status);
+        }
+    }
+
+    private Endpoint endpoint(String method, String pattern) {
+        ConcurrentHashMap<String, Endpoint> byMethod = endpoints.get(pattern);
+        if (byMethod == null) {
+            byMethod = endpoints.computeIfAbsent(pattern, k -> new ConcurrentHashMap<>());
+        }
+        Endpoint endpoint = byMethod.get(method);
+        if (endpoint == null) {
+            endpoint = byMethod.computeIfAbsent(method, k -> new Endpoint());
+        }
+        return endpoint;
+    }
+
+    /**
+     * 输出Prometheus文本格式（0.0.4）
+     * @return 指标文本
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        writeEndpoints(out);
+        for (Metric metric : metrics) {
+            if (metric.type == Type.TIMER) {
+                header(out, metric.name, metric.help, "summary");
+                writeSummary(out, metric.name, "", metric.histogram);
+                header(out, metric.name + "_max", metric.help + "（最大值）", "gauge");
+                out.append(metric.name).append("_max ");
+                seconds(out, metric.histogram.getMax()).append('\n');
+            } else {
+                header(out, metric.name, metric.help, metric.type == Type.COUNTER ? "counter" : "gauge");
+                out.append(metric.name).append(' ').append(value(metric)).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static long value(Metric metric) {
+        return metric.value.getAsLong() + metric.restored.get();
+    }
+
+    /**
+     * 全部计数器的当前值（含重启前恢复的部分），用于写入热启动快照
+     * @return 指标名称 -> 计数
+     */
+    public Map<String, Long> counterValues() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Metric metric : metrics) {
+            if (metric.type == Type.COUNTER) {
+                values.put(metric.name, value(metric));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 恢复重启前的计数器值，之后输出时加在当前值上；已不存在的指标忽略
+     * @param name 指标名称
+     * @param value 重启前的计数
+     */
+    public void restoreCounter(String name, long value) {
+        Metric metric = metricsByName.get(name);
+        if (metric != null && metric.type == Type.COUNTER) {
+            metric.restored.addAndGet(value);
+        }
+    }
+
+    private void writeEndpoints(StringBuilder out) {
+        if (endpoints.isEmpty()) {
+            return;
+        }
+        header(out, HTTP_DURATION, "接口处理耗时", "summary");
+        endpoints.forEach((pattern, byMethod) -> byMethod.forEach((method, endpoint) ->
+                writeSummary(out, HTTP_DURATION, labels(method, pattern), endpoint.latency)));
+        header(out, HTTP_REQUESTS, "接口请求数（按状态码）", "counter");
+        endpoints.forEach((pattern, byMethod) -> byMethod.forEach((method, endpoint) -> {
+            String labels = labels(method, pattern);
+            for (int status = 0; status < MAX_STATUS; status++) {
+                long count = endpoint.statuses.get(status);
+                if (count > 0) {
+                    out.append(HTTP_REQUESTS).append('{').append(labels)
+                            .append(",status=\"").append(status).append("\"} ").append(count).append('\n');
+                }
+            }
+        }));
+    }
+
+    private void writeSummary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long[] values = histogram.quantiles(QUANTILES);
+        for (int i = 0; i < values.length; i++) {
+            out.append(name).append('{').append(labels);
+            if (!labels.isEmpty()) {
+                out.append(',');
+            }
+            out.append("quantile=\"").append(QUANTILE_LABELS[i]).append("\"} ");
+            seconds(out, values[i]).append('\n');
+        }
+        String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+        out.append(name).append("_sum").append(suffix);
+        seconds(out, histogram.getSum()).append('\n');
+        out.append(name).append("_count").append(suffix).append(histogram.getCount()).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static StringBuilder seconds(StringBuilder out, long micros) {
+        return out.append(micros / 1_000_000).append('.').append(String.format("%06d", micros % 1_000_000));
+    }
+
+    private static String labels(String method, String pattern) {
+        return "method=\"" + escape(method) + "\",uri=\"" + escape(pattern) + "\"";
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,58 @@
+package com.jinx.statistics.pojo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.Arrays;
+
+/**
+ * 一次统计请求中的键值对
+ * 按请求体中的顺序保存在两个并列数组中，不构造Map和Entry
+ */
+@Schema(type = "object", description = "统计数据（键为统计名称，值为统计值）",
+        example = "{\"login\": \"user-1001\", \"channel\": \"android\"}")
+public class LogBatch {
+
+    private String[] names;
+    private String[] values;
+    private int size;
+
+    public LogBatch() {
+        this(8);
+    }
+
+    public LogBatch(int capacity) {
+        names = new String[Math.max(1, capacity)];
+        values = new String[names.length];
+    }
+
+    /**
+     * 增加键值对
+     * @param name 统计名称
+     * @param value 统计值
+     */
+    public void add(String name, String value) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        names[size] = name;
+        values[size] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public String name(int i) {
+        return names[i];
+    }
+
+    public String value(int i) {
+        return values[i];
+    }
+}
@@ -0,0 +1,50 @@
+package com.jinx.statistics.pojo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 值查询结果
+ */
+@Data
+public class LookupResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 统计名称
+     */
+    private String name;
+
+    /**
+     * 查询的值
+     */
+    private String value;
+
+    /**
+     * 包含该值的日期列表（按日期倒序）
+     */
+    private List<String> dates = new ArrayList<>();
+
+    /**
+     * 原始数据已被分级保留删除、无法查询的日期（未扫描）
+     */
+    private List<String> unavailableDays = new ArrayList<>();
+
+    /**
+     * 实际扫描的文件数量
+     */
+    private int scannedFiles;
+
+    /**
+     * 被布隆过滤器跳过的文件数量
+     */
+    private int skippedFiles;
+
+    /**
+     * 查询耗时（毫秒）
+     */
+    private long elapsedMs;
+}
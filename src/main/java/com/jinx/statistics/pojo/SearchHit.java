@@ -0,0 +1,33 @@
+package com.jinx.statistics.pojo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 索引检索命中记录
+ */
+@Data
+public class SearchHit implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 日期
+     */
+    private String date;
+
+    /**
+     * 统计名称
+     */
+    private String name;
+
+    /**
+     * 命中次数
+     */
+    private long count;
+
+    /**
+     * 命中记录的位置：CSV文件为行起始字节偏移，段文件为记录序号（最多返回前若干条）
+     */
+    private long[] offsets;
+}
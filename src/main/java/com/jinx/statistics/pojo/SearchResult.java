@@ -0,0 +1,40 @@
+package com.jinx.statistics.pojo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 索引检索结果
+ */
+@Data
+public class SearchResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 查询的值
+     */
+    private String value;
+
+    /**
+     * 命中记录
+     */
+    private List<SearchHit> hits = new ArrayList<>();
+
+    /**
+     * 通过索引检索的天数
+     */
+    private int indexedDays;
+
+    /**
+     * 尚未建立索引的日期（未扫描）
+     */
+    private List<String> unindexedDays = new ArrayList<>();
+
+    /**
+     * 查询耗时（毫秒）
+     */
+    private long elapsedMs;
+}
@@ -1,60 +1,209 @@
 package com.jinx.statistics.pojo;
 
-import com.jinx.statistics.utility.FileUtility;
+import com.jinx.statistics.jfr.FlushEvent;
+import com.jinx.statistics.storage.KnownFiles;
+import com.jinx.statistics.storage.StorageFormat;
+import com.jinx.statistics.storage.ValueBuffer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.util.StringUtils;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 
 @Slf4j
 public class Statistics implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    @Getter
     private final String date;
+    @Getter
     private final String name;
     private final String filePath;
-    private File file;
-    private final StringBuffer _builder = new StringBuffer();
+    @Getter
+    private final File file;
+    private final transient KnownFiles knownFiles;
+    private final transient StorageFormat format;
+    private final int maxDictionarySize;
+    private ValueBuffer _values;
 
-    public Statistics(String date, String name, String value, String fileDir) {
+    /**
+     * 已从名称表中移除，不再接收新记录
+     */
+    private boolean retired;
+
+    /**
+     * 上次淘汰扫描之后是否有过追加，淘汰时给这样的对象第二次机会
+     */
+    private transient volatile boolean referenced;
+
+    /**
+     * 一次刷盘的结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class FlushResult {
+        /**
+         * 本次写入的记录
+         */
+        private final ValueBuffer values;
+
+        /**
+         * 本次写入的字节数
+         */
+        private final long bytes;
+    }
+
+    public Statistics(String date, String name, String value, String fileDir, StorageFormat format, int maxDictionarySize) {
+        this(date, name, value, new KnownFiles(new File(String.join("/", fileDir, date))), format, maxDictionarySize);
+    }
+
+    /**
+     * 创建统计对象（只在内存中生成文件路径，文件在第一次刷盘时创建）
+     * @param knownFiles 日期文件夹中已确认存在的文件，同一天的统计对象共用
+     */
+    public Statistics(String date, String name, String value, KnownFiles knownFiles, StorageFormat format, int maxDictionarySize) {
         this.date = date;
         this.name = name;
-        this.filePath = String.join("/", fileDir, date, name + ".csv");
-        try {
-            this.file = FileUtility.getFile(this.filePath);
-        } catch (Exception e) {
-            log.error(e.getMessage());
-        }
-        this._builder.append(value).append("\r\n");
+        this.format = format;
+        this.maxDictionarySize = maxDictionarySize;
+        this._values = new ValueBuffer(maxDictionarySize);
+        this.knownFiles = knownFiles;
+        this.file = knownFiles.file(name + format.suffix());
+        this.filePath = this.file.getPath();
+        this._values.add(value);
     }
 
     /**
      * 增加记录
      * @param value 记录值
+     * @return 是否成功，对象已停用时返回false，调用方需要重新获取统计对象
      */
-    public void append(String value) {
-        this._builder.append(value).append("\r\n");
+    public synchronized boolean append(String value) {
+        if (retired) {
+            return false;
+        }
+        this._values.add(value);
+        referenced = true;
+        return true;
     }
 
     /**
-     * 保存文件
+     * 读取并清除访问标记
+     * @return 上次清除之后是否有过追加
      */
-    public void saveFile(){
-        if(this.file == null){
-            log.info(String.format("=== [%s] file is null", this.filePath));
-        } else {
-            String _v = this._builder.toString();
-            if (StringUtils.hasLength(_v)) {
-                this._builder.delete(0, _v.length());
+    public boolean clearReferenced() {
+        boolean was = referenced;
+        referenced = false;
+        return was;
+    }
 
+    /**
+     * 停用对象：之后的追加都会失败，保证最后一次刷盘之后不会再有记录写入
+     * @return 是否由本次调用停用
+     */
+    public synchronized boolean retire() {
+        if (retired) {
+            return false;
+        }
+        retired = true;
+        return true;
+    }
+
+    /**
+     * 是否已停用
+     * @return 已从名称表中移除时返回true
+     */
+    public synchronized boolean isRetired() {
+        return retired;
+    }
+
+    /**
+     * 尚未写入磁盘的记录的估计字节数
+     * @return 字节数
+     */
+    public synchronized long bufferedBytes() {
+        return this._values.estimatedBytes();
+    }
+
+    /**
+     * 取出尚未写入磁盘的记录，之后追加的记录进入新的缓冲区
+     * @return 记录，没有记录时返回null
+     */
+    public synchronized ValueBuffer takeValues() {
+        if (this._values.isEmpty()) {
+            return null;
+        }
+        ValueBuffer values = this._values;
+        this._values = new ValueBuffer(maxDictionarySize);
+        return values;
+    }
+
+    /**
+     * 把写入失败的记录放回缓冲区，排在之后追加的记录前面，等待下次刷盘
+     * @param values 取出后未能写入的记录
+     */
+    public synchronized void restoreValues(ValueBuffer values) {
+        for (int i = 0; i < this._values.size(); i++) {
+            values.add(this._values.get(i));
+        }
+        this._values = values;
+    }
+
+    /**
+     * 保存文件
+     * 写入失败时重新检查文件夹和文件后重试一次（文件可能已被外部删除），仍然失败时记录放回缓冲区
+     * @return 本次写入的记录和字节数，没有写入时返回null
+     */
+    public FlushResult saveFile(){
+        ValueBuffer values = takeValues();
+        if (values == null) {
+            return null;
+        }
+        FlushEvent event = new FlushEvent();
+        event.begin();
+        int records = values.size();
+        long bytes = -1;
+        // 缓存淘汰后同一文件可能被新旧两个对象同时刷盘，段格式依赖写入前的文件长度，需要按文件串行写入
+        synchronized (knownFiles.lock(this.file)) {
+            try {
+                bytes = write(values);
+                return new FlushResult(values, bytes);
+            } catch (Exception e) {
+                knownFiles.forget(this.file);
+                log.warn("[{}] 写入失败，重新检查文件后重试: {}", this.filePath, e.getMessage());
                 try {
-                    FileUtility.writeFully(this.file, _v, true);
-                } catch (Exception e) {
-                    log.error(e.getMessage());
+                    bytes = write(values);
+                    return new FlushResult(values, bytes);
+                } catch (Exception retry) {
+                    knownFiles.forget(this.file);
+                    log.error("[{}] 写入失败，{}条记录放回缓存: {}", this.filePath, values.size(), retry.getMessage());
+                    restoreValues(values);
+                    return null;
                 }
-                log.info(String.format("=== [%s] file saved", this.filePath));
+            } finally {
+                commit(event, records, bytes);
             }
         }
     }
+
+    private long write(ValueBuffer values) throws IOException {
+        knownFiles.ensure(this.file);
+        long bytes = format.append(this.file, values);
+        log.info(String.format("=== [%s] file saved", this.filePath));
+        return bytes;
+    }
+
+    private void commit(FlushEvent event, int records, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.date = this.date;
+            event.name = this.name;
+            event.records = records;
+            event.bytes = Math.max(bytes, 0);
+            event.success = bytes >= 0;
+            event.commit();
+        }
+    }
 }
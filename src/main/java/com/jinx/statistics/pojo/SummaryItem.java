@@ -0,0 +1,38 @@
+package com.jinx.statistics.pojo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 单个统计名称在查询区间内的汇总
+ */
+@Data
+public class SummaryItem implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 统计名称
+     */
+    private String name;
+
+    /**
+     * 记录数量
+     */
+    private long count;
+
+    /**
+     * 数据字节数
+     */
+    private long bytes;
+
+    /**
+     * 区间内去重值数量估计
+     */
+    private long cardinality;
+
+    /**
+     * 按小时的记录数量
+     */
+    private long[] hourly;
+}
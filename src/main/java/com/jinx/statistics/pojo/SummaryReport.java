@@ -0,0 +1,55 @@
+package com.jinx.statistics.pojo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于每日汇总文件的区间报表
+ */
+@Data
+public class SummaryReport implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 开始日期
+     */
+    private String from;
+
+    /**
+     * 结束日期
+     */
+    private String to;
+
+    /**
+     * 已读取汇总的天数
+     */
+    private int days;
+
+    /**
+     * 有数据但缺少汇总文件的日期
+     */
+    private List<String> missingDays = new ArrayList<>();
+
+    /**
+     * 各统计名称的汇总
+     */
+    private List<SummaryItem> items = new ArrayList<>();
+
+    /**
+     * 是否有节点未能在超时时间内返回结果（集群模式）
+     */
+    private boolean partial;
+
+    /**
+     * 未返回结果的节点
+     */
+    private List<String> unavailableNodes = new ArrayList<>();
+
+    /**
+     * 查询耗时（毫秒）
+     */
+    private long elapsedMs;
+}
@@ -0,0 +1,104 @@
+package com.jinx.statistics.replication;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 主备复制协议
+ * 连接建立后主节点先发送魔数和版本，之后双方的数据都经过压缩（每个批次同步刷新一次）。
+ * 备节点随后发送随机挑战，主节点以共享密钥对挑战的HMAC-SHA256回应，校验通过后备节点回复1，否则断开连接。
+ * 主节点发送批次：数量，每个数据块为相对路径、起始偏移、长度和内容；
+ * 备节点按批次回复确认：数量，每个文件为相对路径和备节点上的文件长度。
+ * 长度为0的数据块用于询问备节点上的文件长度，主节点按确认的长度继续发送，断线重连后从该位置续传
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x4A52504C; // "JRPL"
+    static final int VERSION = 2;
+
+    /**
+     * 挑战的字节数
+     */
+    static final int CHALLENGE_LENGTH = 16;
+
+    /**
+     * 应答（HMAC-SHA256）的字节数
+     */
+    static final int RESPONSE_LENGTH = 32;
+
+    private static final String HMAC = "HmacSHA256";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ReplicationProtocol() {
+    }
+
+    /**
+     * 压缩输出流，flush时同步刷新，保证对方能读到完整的批次
+     */
+    static DataOutputStream output(Socket socket) throws IOException {
+        OutputStream os = new DeflaterOutputStream(socket.getOutputStream(), new Deflater(Deflater.BEST_SPEED), 64 * 1024, true);
+        return new DataOutputStream(new BufferedOutputStream(os, 64 * 1024));
+    }
+
+    static DataInputStream input(Socket socket) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new InflaterInputStream(socket.getInputStream()), 64 * 1024));
+    }
+
+    /**
+     * 检查相对路径，只允许数据目录下的“日期/文件名”
+     * @param path 相对路径
+     * @return 是否合法
+     */
+    static boolean isSafePath(String path) {
+        if (path.isEmpty() || path.startsWith("/") || path.startsWith(".") || path.contains("\\")) {
+            return false;
+        }
+        for (String part : path.split("/")) {
+            if (part.isEmpty() || part.startsWith(".")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 生成随机挑战
+     */
+    static byte[] challenge() {
+        byte[] challenge = new byte[CHALLENGE_LENGTH];
+        RANDOM.nextBytes(challenge);
+        return challenge;
+    }
+
+    /**
+     * 用共享密钥计算挑战的应答
+     * @param secret 共享密钥，不能为空
+     * @param challenge 挑战
+     * @return 应答
+     */
+    static byte[] respond(String secret, byte[] challenge) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC));
+            return mac.doFinal(challenge);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 校验主节点的应答（比较时间与内容无关）
+     */
+    static boolean verify(String secret, byte[] challenge, byte[] response) {
+        return MessageDigest.isEqual(respond(secret, challenge), response);
+    }
+}
@@ -0,0 +1,236 @@
+package com.jinx.statistics.replication;
+
+import com.jinx.statistics.filter.StatisticsFilter;
+import com.jinx.statistics.metrics.MetricsRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 备节点的复制接收端
+ * 监听复制端口，把主节点发来的数据块追加到本地数据目录下的同名文件，按批次回复各文件的当前长度。
+ * 只写入超出本地长度的部分，重复发送的数据被忽略；起始偏移超出本地长度时不写入，
+ * 主节点根据回复的长度从缺口处重新发送。
+ * 只监听配置的地址，连接方必须在IP许可列表中并通过共享密钥的挑战应答认证，超过批次大小的数据块直接断开连接
+ */
+@Component
+@Slf4j
+public class ReplicationReceiver {
+
+    /**
+     * 复制监听端口，0表示不接收复制
+     */
+    @Value("${app.replication.listen-port:0}")
+    private int listenPort;
+
+    /**
+     * 复制监听地址
+     */
+    @Value("${app.replication.bind-address:127.0.0.1}")
+    private String bindAddress;
+
+    /**
+     * 主备之间的共享密钥
+     */
+    @Value("${app.replication.secret:}")
+    private String secret;
+
+    /**
+     * 单个数据块的最大字节数（与主节点的批次大小一致）
+     */
+    @Value("${app.replication.batch-bytes:1048576}")
+    private int batchBytes;
+
+    /**
+     * 认证的超时时间（毫秒）
+     */
+    @Value("${app.replication.timeout-ms:5000}")
+    private int timeoutMillis;
+
+    @Value("${app.statistics-file-dir}")
+    private String fileDir;
+
+    /**
+     * 按路径分段的写入锁：同一文件的数据块串行写入
+     */
+    private final Object[] locks = new Object[64];
+
+    private ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 接收指标
+     */
+    private final LongAdder receivedBytes;
+
+    /**
+     * IP许可列表（与HTTP接口相同）
+     */
+    private final StatisticsFilter statisticsFilter;
+
+    public ReplicationReceiver(StatisticsFilter statisticsFilter, MetricsRegistry metricsRegistry) {
+        this.statisticsFilter = statisticsFilter;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        receivedBytes = metricsRegistry.counter("jinx_replication_received_bytes_total", "从主节点接收并写入的字节数");
+        metricsRegistry.gauge("jinx_replication_connections", "主节点的复制连接数", connections::size);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (listenPort <= 0) {
+            return;
+        }
+        if (!StringUtils.hasText(secret)) {
+            log.error("复制接收未启动: 没有配置共享密钥app.replication.secret");
+            return;
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName(bindAddress), listenPort));
+        Thread acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("复制: 监听{}:{}", bindAddress, listenPort);
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                String peer = socket.getInetAddress().getHostAddress();
+                if (!statisticsFilter.isAllowedIp(peer)) {
+                    log.warn("拒绝来自非法IP[{}]的复制连接", peer);
+                    socket.close();
+                    continue;
+                }
+                connections.add(socket);
+                Thread thread = new Thread(() -> handle(socket), "replication-receiver-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("接受复制连接失败: {}", e.toString());
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        log.info("主节点已连接: {}", socket.getRemoteSocketAddress());
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            // 认证完成前读取超时即断开，未认证的连接不会一直占用线程
+            socket.setSoTimeout(timeoutMillis);
+            DataInputStream in = ReplicationProtocol.input(socket);
+            DataOutputStream out = ReplicationProtocol.output(socket);
+            if (in.readInt() != ReplicationProtocol.MAGIC || in.readInt() != ReplicationProtocol.VERSION) {
+                log.warn("复制协议不匹配，断开连接: {}", socket.getRemoteSocketAddress());
+                return;
+            }
+            if (!authenticate(in, out)) {
+                log.warn("复制认证失败，断开连接: {}", socket.getRemoteSocketAddress());
+                return;
+            }
+            socket.setSoTimeout(0);
+            log.info("主节点已认证: {}", socket.getRemoteSocketAddress());
+            while (true) {
+                int count = in.readInt();
+                if (count < 0) {
+                    throw new IOException("非法的批次数量: " + count);
+                }
+                out.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    String path = in.readUTF();
+                    long offset = in.readLong();
+                    int length = in.readInt();
+                    if (!ReplicationProtocol.isSafePath(path)) {
+                        throw new IOException("非法的复制路径: " + path);
+                    }
+                    if (offset < 0 || length < 0 || length > batchBytes) {
+                        throw new IOException("非法的数据块: " + path + " 偏移" + offset + " 长度" + length);
+                    }
+                    byte[] chunk = new byte[length];
+                    in.readFully(chunk);
+                    out.writeUTF(path);
+                    out.writeLong(append(path, offset, chunk));
+                }
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            log.info("主节点已断开: {}", socket.getRemoteSocketAddress());
+        } catch (IOException e) {
+            log.warn("复制连接异常: {}", socket.getRemoteSocketAddress(), e);
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * 挑战应答认证
+     * @return 是否通过
+     */
+    private boolean authenticate(DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] challenge = ReplicationProtocol.challenge();
+        out.write(challenge);
+        out.flush();
+        byte[] response = new byte[ReplicationProtocol.RESPONSE_LENGTH];
+        in.readFully(response);
+        boolean verified = ReplicationProtocol.verify(secret, challenge, response);
+        out.writeInt(verified ? 1 : 0);
+        out.flush();
+        return verified;
+    }
+
+    /**
+     * 把数据块中超出本地长度的部分追加到文件
+     * @param path 相对路径
+     * @param offset 数据块在主节点文件中的起始偏移
+     * @param chunk 数据块
+     * @return 写入后本地文件的长度
+     */
+    private long append(String path, long offset, byte[] chunk) throws IOException {
+        File file = new File(fileDir, path);
+        synchronized (locks[Math.floorMod(path.hashCode(), locks.length)]) {
+            long length = file.length();
+            long skip = length - offset;
+            if (chunk.length == 0 || skip < 0 || skip >= chunk.length) {
+                return length;
+            }
+            File parent = file.getParentFile();
+            if (!parent.exists() && !parent.mkdirs()) {
+                throw new IOException("创建目录失败: " + parent);
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(length);
+                raf.write(chunk, (int) skip, chunk.length - (int) skip);
+            }
+            receivedBytes.add(chunk.length - skip);
+            return offset + chunk.length;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (serverSocket == null) {
+            return;
+        }
+        serverSocket.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+    }
+}
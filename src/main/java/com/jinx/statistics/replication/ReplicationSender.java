@@ -0,0 +1,354 @@
+package com.jinx.statistics.replication;
+
+import com.jinx.statistics.dao.DayClock;
+import com.jinx.statistics.metrics.MetricsRegistry;
+import com.jinx.statistics.storage.StorageFormats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 主节点的复制发送端
+ * 刷盘路径只记录文件的最新长度，不复制数据也不等待网络；后台线程通过一条长连接，
+ * 把每个文件从备节点已确认的偏移到最新长度之间的内容分批压缩发送，收到确认后更新偏移。
+ * 断线重连后先询问备节点上各文件的长度，从该位置续传，备节点落后时自动追平。
+ * 启动时登记数据目录中已有的数据文件，备节点缺少的历史数据也会补齐
+ */
+@Component
+@Slf4j
+public class ReplicationSender {
+
+    /**
+     * 重连退避的上限
+     */
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * 备节点地址（host:port），为空时不复制
+     */
+    @Value("${app.replication.standby:}")
+    private String standby;
+
+    @Value("${app.statistics-file-dir}")
+    private String fileDir;
+
+    /**
+     * 主备之间的共享密钥，用于连接时的挑战应答认证
+     */
+    @Value("${app.replication.secret:}")
+    private String secret;
+
+    /**
+     * 单个批次最多发送的数据字节数
+     */
+    @Value("${app.replication.batch-bytes:1048576}")
+    private int batchBytes;
+
+    /**
+     * 没有新数据时的等待时间（毫秒）
+     */
+    @Value("${app.replication.linger-ms:50}")
+    private long lingerMillis;
+
+    /**
+     * 连接和等待确认的超时时间（毫秒）
+     */
+    @Value("${app.replication.timeout-ms:5000}")
+    private int timeoutMillis;
+
+    /**
+     * 单个文件的复制进度
+     */
+    private static final class FileState {
+        private final String path;
+        private final File file;
+
+        /**
+         * 本地已刷盘的长度
+         */
+        private final AtomicLong target = new AtomicLong();
+
+        /**
+         * 备节点确认的长度，-1表示未知（需要先询问）；只由发送线程读写
+         */
+        private long acked = -1;
+
+        private FileState(String path, File file) {
+            this.path = path;
+            this.file = file;
+        }
+    }
+
+    /**
+     * 相对路径 -> 复制进度
+     */
+    private final ConcurrentHashMap<String, FileState> files = new ConcurrentHashMap<>();
+
+    private final StorageFormats storageFormats;
+    private final DayClock dayClock;
+
+    private Path root;
+    private volatile boolean running;
+    private volatile boolean connected;
+    private Thread sender;
+
+    /**
+     * 复制指标
+     */
+    private final LongAdder sentBytes;
+    private final LongAdder batches;
+    private final LongAdder reconnects;
+
+    public ReplicationSender(StorageFormats storageFormats, DayClock dayClock, MetricsRegistry metricsRegistry) {
+        this.storageFormats = storageFormats;
+        this.dayClock = dayClock;
+        sentBytes = metricsRegistry.counter("jinx_replication_sent_bytes_total", "发送到备节点的数据字节数（压缩前）");
+        batches = metricsRegistry.counter("jinx_replication_batches_total", "备节点已确认的批次数");
+        reconnects = metricsRegistry.counter("jinx_replication_reconnects_total", "复制连接断开重连次数");
+        metricsRegistry.gauge("jinx_replication_lag_bytes", "已刷盘但备节点尚未确认的字节数", this::lagBytes);
+        metricsRegistry.gauge("jinx_replication_connected", "是否已连接备节点", () -> connected ? 1 : 0);
+    }
+
+    public boolean isEnabled() {
+        return StringUtils.hasText(standby);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        if (!StringUtils.hasText(secret)) {
+            log.error("复制未启动: 没有配置共享密钥app.replication.secret");
+            return;
+        }
+        root = Paths.get(fileDir).toAbsolutePath().normalize();
+        int existing = 0;
+        File[] dirs = root.toFile().listFiles(file -> file.isDirectory() && !file.isHidden());
+        if (dirs != null) {
+            for (File dir : dirs) {
+                for (File file : storageFormats.dataFiles(dir)) {
+                    onFlush(file);
+                    existing++;
+                }
+            }
+        }
+        running = true;
+        sender = new Thread(this::sendLoop, "replication-sender");
+        sender.setDaemon(true);
+        sender.start();
+        log.info("复制: 备节点{}，已登记{}个数据文件", standby, existing);
+    }
+
+    /**
+     * 刷盘后登记文件的最新长度（刷盘线程调用，只更新内存中的长度）
+     * @param file 数据文件
+     */
+    public void onFlush(File file) {
+        if (root == null) {
+            return;
+        }
+        Path path = file.toPath().toAbsolutePath().normalize();
+        if (!path.startsWith(root)) {
+            return;
+        }
+        String relative = root.relativize(path).toString().replace(File.separatorChar, '/');
+        FileState state = files.computeIfAbsent(relative, key -> new FileState(key, path.toFile()));
+        state.target.accumulateAndGet(file.length(), Math::max);
+    }
+
+    private void sendLoop() {
+        long backoff = 1000;
+        while (running) {
+            try (Socket socket = connect()) {
+                // 新连接上备节点的进度未知，全部重新询问
+                files.values().forEach(state -> state.acked = -1);
+                DataOutputStream out = ReplicationProtocol.output(socket);
+                DataInputStream in = ReplicationProtocol.input(socket);
+                out.writeInt(ReplicationProtocol.MAGIC);
+                out.writeInt(ReplicationProtocol.VERSION);
+                out.flush();
+                byte[] challenge = new byte[ReplicationProtocol.CHALLENGE_LENGTH];
+                in.readFully(challenge);
+                out.write(ReplicationProtocol.respond(secret, challenge));
+                out.flush();
+                if (in.readInt() != 1) {
+                    throw new IOException("备节点拒绝认证");
+                }
+                connected = true;
+                backoff = 1000;
+                log.info("已连接备节点{}", standby);
+                while (running) {
+                    if (!sendBatch(out, in)) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(lingerMillis));
+                    }
+                }
+            } catch (IOException e) {
+                if (!running) {
+                    break;
+                }
+                reconnects.increment();
+                log.warn("复制连接失败，{}ms后重试: {}", backoff, e.toString());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            } finally {
+                connected = false;
+            }
+        }
+    }
+
+    private Socket connect() throws IOException {
+        int colon = standby.lastIndexOf(':');
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(standby.substring(0, colon).trim(),
+                    Integer.parseInt(standby.substring(colon + 1).trim())), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            return socket;
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("备节点地址错误: " + standby, e);
+        }
+    }
+
+    /**
+     * 发送一个批次并等待确认
+     * @return 是否发送了数据
+     */
+    private boolean sendBatch(DataOutputStream out, DataInputStream in) throws IOException {
+        List<FileState> states = new ArrayList<>();
+        List<long[]> ranges = new ArrayList<>();
+        long budget = batchBytes;
+        String today = dayClock.today();
+        for (Iterator<FileState> it = files.values().iterator(); it.hasNext() && budget > 0; ) {
+            FileState state = it.next();
+            if (!state.file.exists()) {
+                // 本地文件已被删除，不再复制
+                it.remove();
+                continue;
+            }
+            if (state.acked >= state.target.get() && !state.path.startsWith(today + "/")) {
+                // 以前日期的文件不会再有新数据，复制完成后不再跟踪
+                it.remove();
+                continue;
+            }
+            if (state.acked < 0) {
+                states.add(state);
+                ranges.add(new long[]{0, 0});
+            } else if (state.target.get() > state.acked) {
+                long length = Math.min(state.target.get() - state.acked, budget);
+                states.add(state);
+                ranges.add(new long[]{state.acked, length});
+                budget -= length;
+            }
+        }
+        if (states.isEmpty()) {
+            return false;
+        }
+
+        out.writeInt(states.size());
+        long bytes = 0;
+        for (int i = 0; i < states.size(); i++) {
+            FileState state = states.get(i);
+            byte[] chunk = read(state.file, ranges.get(i)[0], (int) ranges.get(i)[1]);
+            out.writeUTF(state.path);
+            out.writeLong(ranges.get(i)[0]);
+            out.writeInt(chunk.length);
+            out.write(chunk);
+            bytes += chunk.length;
+        }
+        out.flush();
+
+        int acks = in.readInt();
+        for (int i = 0; i < acks; i++) {
+            String path = in.readUTF();
+            long length = in.readLong();
+            FileState state = files.get(path);
+            if (state != null) {
+                state.acked = length;
+            }
+        }
+        sentBytes.add(bytes);
+        batches.increment();
+        return true;
+    }
+
+    private static byte[] read(File file, long offset, int length) throws IOException {
+        if (length == 0) {
+            return new byte[0];
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] chunk = new byte[(int) Math.min(length, Math.max(0, raf.length() - offset))];
+            raf.seek(offset);
+            raf.readFully(chunk);
+            return chunk;
+        } catch (FileNotFoundException e) {
+            // 文件刚被删除，这次只发送询问，下一个批次不再跟踪
+            return new byte[0];
+        }
+    }
+
+    private long lagBytes() {
+        long lag = 0;
+        for (FileState state : files.values()) {
+            lag += Math.max(0, state.target.get() - Math.max(0, state.acked));
+        }
+        return lag;
+    }
+
+    /**
+     * 复制状态
+     * @return 备节点地址、连接状态和进度
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", isEnabled());
+        if (!isEnabled()) {
+            return status;
+        }
+        status.put("standby", standby);
+        status.put("connected", connected);
+        status.put("files", files.size());
+        status.put("lagBytes", lagBytes());
+        status.put("sentBytes", sentBytes.sum());
+        status.put("batches", batches.sum());
+        status.put("reconnects", reconnects.sum());
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread = sender;
+        if (thread == null) {
+            return;
+        }
+        // 数据访问层先于本组件关闭，给发送线程一点时间把最后一次刷盘的数据发出去
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (connected && lagBytes() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        running = false;
+        thread.interrupt();
+    }
+}
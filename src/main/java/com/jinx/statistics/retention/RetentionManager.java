@@ -0,0 +1,549 @@
+package com.jinx.statistics.retention;
+
+import com.jinx.statistics.constant.FileConstant;
+import com.jinx.statistics.dao.DayClock;
+import com.jinx.statistics.metrics.LatencyHistogram;
+import com.jinx.statistics.metrics.MetricsRegistry;
+import com.jinx.statistics.storage.FileRange;
+import com.jinx.statistics.storage.PackFile;
+import com.jinx.statistics.storage.PackManager;
+import com.jinx.statistics.utility.DateUtility;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 历史日期的分级保留
+ * 每个已封存的日期依次经过四个层级：原始数据（日期文件夹或打包文件、zip和元数据）、只保留zip（以及汇总和倒排索引）、
+ * 只保留汇总、全部删除。按日期的天数降级，磁盘使用率超过高水位时从最旧的日期开始提前降级，直到低于低水位；
+ * 提前降级不会超过保留策略允许的层级，配置为一直保留的层级即使磁盘已满也不会删除。
+ * 删除原始文件夹前完整读取zip校验每个文件的CRC和长度，读取和删除都按配置限速，在单个最低优先级的后台线程上执行
+ */
+@Component
+@Slf4j
+public class RetentionManager {
+
+    /**
+     * 保留层级，顺序即降级顺序
+     */
+    enum Tier {
+        /**
+         * 日期文件夹（或打包文件）、zip和元数据都在
+         */
+        RAW,
+        /**
+         * 只保留zip、汇总和倒排索引
+         */
+        ZIP,
+        /**
+         * 只保留汇总
+         */
+        SUMMARY,
+        /**
+         * 全部删除
+         */
+        GONE
+    }
+
+    @Value("${app.statistics-file-dir}")
+    private String fileDir;
+
+    /**
+     * 是否启用分级保留
+     */
+    @Value("${app.retention.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 原始数据保留天数，之后只保留zip，0表示一直保留
+     */
+    @Value("${app.retention.raw-days:0}")
+    private int rawDays;
+
+    /**
+     * zip保留天数，之后只保留汇总，0表示一直保留
+     */
+    @Value("${app.retention.zip-days:0}")
+    private int zipDays;
+
+    /**
+     * 汇总保留天数，之后全部删除，0表示一直保留
+     */
+    @Value("${app.retention.summary-days:0}")
+    private int summaryDays;
+
+    /**
+     * 磁盘使用率高水位（0~1），超过后提前降级，0表示不按水位回收
+     */
+    @Value("${app.retention.high-watermark:0}")
+    private double highWatermark;
+
+    /**
+     * 磁盘使用率低水位（0~1），按水位回收时降到这个值以下为止
+     */
+    @Value("${app.retention.low-watermark:0}")
+    private double lowWatermark;
+
+    /**
+     * 两次检查的间隔（毫秒）
+     */
+    @Value("${app.retention.interval-ms:600000}")
+    private long intervalMillis;
+
+    /**
+     * 校验zip时每秒最多读取的字节数，0表示不限速
+     */
+    @Value("${app.retention.max-bytes-per-second:0}")
+    private long maxBytesPerSecond;
+
+    /**
+     * 每秒最多删除的文件数，0表示不限速
+     */
+    @Value("${app.retention.max-files-per-second:0}")
+    private int maxFilesPerSecond;
+
+    /**
+     * 保留线程（单线程、最低优先级）
+     */
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "retention");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * 是否正在执行或已提交一次检查
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * 最近一次检查的时间和回收的字节数
+     */
+    private volatile long lastRunTime;
+    private volatile long lastRunBytes;
+    private volatile Map<Tier, Integer> lastTiers = Collections.emptyMap();
+
+    private final DayClock dayClock;
+
+    private final PackManager packManager;
+
+    /**
+     * 保留指标
+     */
+    private final LongAdder reclaimedBytes;
+    private final LongAdder demotions;
+    private final LongAdder watermarkRuns;
+    private final LatencyHistogram runDuration;
+    private final AtomicLong diskUsed = new AtomicLong();
+    private final AtomicLong diskTotal = new AtomicLong();
+
+    public RetentionManager(DayClock dayClock, PackManager packManager, MetricsRegistry metricsRegistry) {
+        this.dayClock = dayClock;
+        this.packManager = packManager;
+        reclaimedBytes = metricsRegistry.counter("jinx_retention_reclaimed_bytes_total", "分级保留删除文件回收的字节数");
+        demotions = metricsRegistry.counter("jinx_retention_demotions_total", "日期降级的次数");
+        watermarkRuns = metricsRegistry.counter("jinx_retention_watermark_runs_total", "磁盘使用率超过高水位触发回收的次数");
+        runDuration = metricsRegistry.timer("jinx_retention_run_duration_seconds", "一次分级保留检查的耗时");
+        metricsRegistry.gauge("jinx_retention_disk_used_bytes", "数据目录所在磁盘的已用字节数", diskUsed::get);
+        metricsRegistry.gauge("jinx_retention_disk_total_bytes", "数据目录所在磁盘的总字节数", diskTotal::get);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        executor.scheduleWithFixedDelay(this::runScheduled, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("分级保留: 原始数据{}，zip{}，汇总{}，磁盘水位{}/{}（最多降到{}）", days(rawDays), days(zipDays), days(summaryDays),
+                highWatermark, lowWatermark, watermarkFloor());
+    }
+
+    private static String days(int days) {
+        return days > 0 ? days + "天" : "不限";
+    }
+
+    /**
+     * 立即执行一次检查（后台执行）
+     * @return 是否已提交，正在执行时返回false
+     */
+    public boolean trigger() {
+        if (scheduled.get()) {
+            return false;
+        }
+        executor.execute(this::runScheduled);
+        return true;
+    }
+
+    private void runScheduled() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            run();
+        } catch (Exception e) {
+            log.error("分级保留检查失败", e);
+        } finally {
+            scheduled.set(false);
+        }
+    }
+
+    /**
+     * 一次检查：先按天数降级，再按磁盘水位从最旧的日期开始提前降级
+     */
+    private void run() {
+        long startNanos = System.nanoTime();
+        long before = reclaimedBytes.sum();
+        LocalDate today = dayClock.todayDate();
+        SortedMap<String, Tier> days = scan(today);
+
+        for (Map.Entry<String, Tier> day : days.entrySet()) {
+            Tier target = policyTier(day.getKey(), today);
+            if (target.compareTo(day.getValue()) > 0) {
+                day.setValue(demote(day.getKey(), day.getValue(), target));
+            }
+        }
+
+        Tier floor = watermarkFloor();
+        if (highWatermark > 0 && floor != Tier.RAW && diskUsage() > highWatermark) {
+            watermarkRuns.increment();
+            log.warn("磁盘使用率{}超过高水位{}，从最旧的日期开始回收（最多降到{}）", String.format("%.3f", diskUsage()), highWatermark, floor);
+            // 先删除各日期的原始文件夹，再删除zip，最后删除整个日期，每一级都从最旧的日期开始；
+            // 配置为一直保留的层级不会因水位被删除
+            reclaim:
+            for (Tier target : new Tier[]{Tier.ZIP, Tier.SUMMARY, Tier.GONE}) {
+                if (target.compareTo(floor) > 0) {
+                    break;
+                }
+                for (Map.Entry<String, Tier> day : days.entrySet()) {
+                    if (diskUsage() < lowWatermark) {
+                        break reclaim;
+                    }
+                    if (target.compareTo(day.getValue()) > 0) {
+                        day.setValue(demote(day.getKey(), day.getValue(), target));
+                    }
+                }
+            }
+            if (diskUsage() >= lowWatermark) {
+                log.warn("已无可回收的历史日期，磁盘使用率{}仍高于低水位{}", String.format("%.3f", diskUsage()), lowWatermark);
+            }
+        }
+
+        Map<Tier, Integer> tiers = new EnumMap<>(Tier.class);
+        days.values().forEach(tier -> tiers.merge(tier, 1, Integer::sum));
+        lastTiers = tiers;
+        lastRunBytes = reclaimedBytes.sum() - before;
+        lastRunTime = DateUtility.now();
+        runDuration.recordSince(startNanos);
+        if (lastRunBytes > 0) {
+            log.info("分级保留检查完成: 回收{}字节，各层级日期数{}，耗时{}ms", lastRunBytes, tiers,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+    }
+
+    /**
+     * 列出今天之前的全部日期及其当前层级（按日期从旧到新）
+     */
+    private SortedMap<String, Tier> scan(LocalDate today) {
+        String todayName = today.format(DateTimeFormatter.BASIC_ISO_DATE);
+        SortedMap<String, Tier> days = new TreeMap<>();
+        String[] names = new File(fileDir).list();
+        if (names != null) {
+            for (String name : names) {
+                String date = name.endsWith(".zip") ? name.substring(0, name.length() - 4)
+                        : name.endsWith(FileConstant.PACK_SUFFIX) ? name.substring(0, name.length() - FileConstant.PACK_SUFFIX.length())
+                        : name;
+                if (isDate(date) && date.compareTo(todayName) < 0) {
+                    days.put(date, currentTier(date));
+                }
+            }
+        }
+        String[] metaNames = metaDir().list();
+        if (metaNames != null) {
+            for (String date : metaNames) {
+                if (isDate(date) && date.compareTo(todayName) < 0) {
+                    days.putIfAbsent(date, currentTier(date));
+                }
+            }
+        }
+        return days;
+    }
+
+    private static boolean isDate(String name) {
+        return name.length() == 8 && name.chars().allMatch(Character::isDigit);
+    }
+
+    private Tier currentTier(String date) {
+        if (rawDir(date).isDirectory() || packManager.packFile(date).isFile()) {
+            return Tier.RAW;
+        }
+        if (zipFile(date).isFile()) {
+            return Tier.ZIP;
+        }
+        return new File(metaDir(), date).isDirectory() ? Tier.SUMMARY : Tier.GONE;
+    }
+
+    /**
+     * 按水位回收时最多降到的层级：只能降到保留策略本身会降到的层级，天数为0（一直保留）的层级不会因水位被删除
+     */
+    private Tier watermarkFloor() {
+        if (summaryDays > 0) {
+            return Tier.GONE;
+        }
+        if (zipDays > 0) {
+            return Tier.SUMMARY;
+        }
+        return rawDays > 0 ? Tier.ZIP : Tier.RAW;
+    }
+
+    /**
+     * 按天数应处的层级
+     */
+    private Tier policyTier(String date, LocalDate today) {
+        long age;
+        try {
+            age = ChronoUnit.DAYS.between(LocalDate.parse(date, DateTimeFormatter.BASIC_ISO_DATE), today);
+        } catch (RuntimeException e) {
+            return Tier.RAW;
+        }
+        if (summaryDays > 0 && age > summaryDays) {
+            return Tier.GONE;
+        }
+        if (zipDays > 0 && age > zipDays) {
+            return Tier.SUMMARY;
+        }
+        if (rawDays > 0 && age > rawDays) {
+            return Tier.ZIP;
+        }
+        return Tier.RAW;
+    }
+
+    /**
+     * 把日期降到目标层级；条件不满足时（zip校验失败、没有汇总）跳过这一级，保留数据
+     * @return 降级后的层级
+     */
+    private Tier demote(String date, Tier current, Tier target) {
+        long bytes = 0;
+        try {
+            if (target == Tier.GONE) {
+                bytes += deleteRaw(date) + deleteTree(zipFile(date)) + deleteTree(new File(metaDir(), date));
+            } else if (target == Tier.SUMMARY) {
+                if (!summaryFile(date).isFile()) {
+                    log.warn("日期{}没有汇总，保留{}", date, current == Tier.RAW ? "原始数据" : "zip");
+                    return current;
+                }
+                bytes += deleteRaw(date) + deleteTree(zipFile(date)) + deleteIndexes(date, true);
+            } else if (target == Tier.ZIP) {
+                if (!verifyZip(date)) {
+                    return current;
+                }
+                bytes += deleteRaw(date) + deleteIndexes(date, false);
+            }
+        } catch (IOException e) {
+            log.error("日期{}降级到{}失败", date, target, e);
+            return currentTier(date);
+        } finally {
+            reclaimedBytes.add(bytes);
+        }
+        demotions.increment();
+        log.info("日期{}从{}降级到{}，回收{}字节", date, current, target, bytes);
+        return target;
+    }
+
+    /**
+     * 完整读取zip，确认包含日期文件夹（或打包文件）中的每个文件且长度一致（读取时校验每个条目的CRC）
+     */
+    private boolean verifyZip(String date) throws IOException {
+        File zip = zipFile(date);
+        if (!zip.isFile()) {
+            return false;
+        }
+        Map<String, Long> expected = new HashMap<>();
+        PackFile pack = packManager.open(date);
+        if (pack != null) {
+            for (int i = 0; i < pack.size(); i++) {
+                FileRange entry = pack.entry(i);
+                expected.put(date + "/" + entry.getName(), entry.getLength());
+            }
+        } else {
+            File[] files = rawDir(date).listFiles(file -> file.isFile() && !file.isHidden());
+            if (files != null) {
+                for (File file : files) {
+                    expected.put(date + "/" + file.getName(), file.length());
+                }
+            }
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(zip), 64 * 1024))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                long length = 0;
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    length += read;
+                    throttleBytes(read);
+                }
+                Long size = expected.get(entry.getName());
+                if (size != null && size == length) {
+                    expected.remove(entry.getName());
+                }
+            }
+        } catch (ZipException | EOFException e) {
+            log.warn("日期{}的zip损坏，保留原始数据: {}", date, e.getMessage());
+            return false;
+        }
+        if (!expected.isEmpty()) {
+            log.warn("日期{}的zip与原始数据不一致（{}个文件不匹配），保留原始数据", date, expected.size());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 删除日期的原始数据（文件夹和打包文件）
+     */
+    private long deleteRaw(String date) throws IOException {
+        return deleteTree(rawDir(date)) + deleteTree(packManager.packFile(date));
+    }
+
+    /**
+     * 删除日期的布隆过滤器，以及（只保留汇总时）倒排索引
+     */
+    private long deleteIndexes(String date, boolean valueIndex) throws IOException {
+        File[] files = new File(metaDir(), date).listFiles(file -> file.getName().endsWith(FileConstant.BLOOM_SUFFIX)
+                || (valueIndex && file.getName().equals(FileConstant.VALUE_INDEX_FILE)));
+        long bytes = 0;
+        if (files != null) {
+            for (File file : files) {
+                bytes += deleteTree(file);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 删除文件或文件夹（子文件先删除）
+     * @return 删除的字节数
+     */
+    private long deleteTree(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        long bytes = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                bytes += deleteTree(child);
+            }
+        }
+        long length = file.isFile() ? file.length() : 0;
+        Files.deleteIfExists(file.toPath());
+        throttleFiles();
+        return bytes + length;
+    }
+
+    private void throttleBytes(long bytes) {
+        if (maxBytesPerSecond > 0) {
+            sleep(bytes * 1000 / maxBytesPerSecond);
+        }
+    }
+
+    private void throttleFiles() {
+        if (maxFilesPerSecond > 0) {
+            sleep(1000L / maxFilesPerSecond);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 数据目录所在磁盘的使用率
+     */
+    private double diskUsage() {
+        try {
+            FileStore store = Files.getFileStore(new File(fileDir).toPath());
+            long total = store.getTotalSpace();
+            long used = total - store.getUsableSpace();
+            diskTotal.set(total);
+            diskUsed.set(used);
+            return total > 0 ? (double) used / total : 0;
+        } catch (IOException e) {
+            log.warn("读取磁盘使用率失败: {}", e.toString());
+            return 0;
+        }
+    }
+
+    private File rawDir(String date) {
+        return new File(fileDir, date);
+    }
+
+    private File zipFile(String date) {
+        return new File(fileDir, date + ".zip");
+    }
+
+    private File metaDir() {
+        return new File(fileDir, FileConstant.META_DIR);
+    }
+
+    private File summaryFile(String date) {
+        return new File(String.join("/", fileDir, FileConstant.META_DIR, date, FileConstant.SUMMARY_FILE));
+    }
+
+    /**
+     * 保留状态
+     * @return 状态信息
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("rawDays", rawDays);
+        status.put("zipDays", zipDays);
+        status.put("summaryDays", summaryDays);
+        status.put("highWatermark", highWatermark);
+        status.put("lowWatermark", lowWatermark);
+        status.put("watermarkFloor", watermarkFloor());
+        status.put("diskUsage", String.format("%.3f", diskUsage()));
+        status.put("running", scheduled.get());
+        status.put("lastRunTime", lastRunTime);
+        status.put("lastRunBytes", lastRunBytes);
+        status.put("reclaimedBytes", reclaimedBytes.sum());
+        status.put("tiers", lastTiers);
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
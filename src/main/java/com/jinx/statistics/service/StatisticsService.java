@@ -1,6 +1,14 @@
 package com.jinx.statistics.service;
 
-import java.io.File;
+import com.jinx.statistics.pojo.LogBatch;
+import com.jinx.statistics.pojo.LookupResult;
+import com.jinx.statistics.pojo.SearchResult;
+import com.jinx.statistics.pojo.SummaryReport;
+import com.jinx.statistics.storage.FileRange;
+import com.jinx.statistics.summary.PartialSummary;
+
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -8,26 +16,106 @@ public interface StatisticsService {
     /**
      * 统计日志
      * @param data 数据
+     * @param forwarded 是否由其它节点转发而来（转发来的记录只写入本地）
      */
-    void log(Map<String, String> data);
+    void log(LogBatch data, boolean forwarded);
 
     /**
      * 获取src/main/resources/backups/statistics/文件夹内文件列表
      * @param dir 文件夹名
+     * @param forwarded 是否由其它节点转发而来（转发来的请求只列出本地文件）
      * @return 用于网页显示的文本内容
      */
-    String list(String dir);
+    String list(String dir, boolean forwarded);
+
+    /**
+     * 本节点文件夹内的文件名
+     * @param dir 文件夹名
+     * @return 文件名（文件夹以/结尾）
+     */
+    List<String> localEntries(String dir);
 
     /**
      * 下载src/main/resources/backups/statistics/文件夹下的文件
      * @param path 文件路径
-     * @return 文件
+     * @return 文件区间（已打包日期中的数据文件为打包文件中的条目）
+     */
+    FileRange download(String path);
+
+    /**
+     * 获取要导出为CSV的数据文件
+     * @param path 文件路径
+     * @return 数据文件区间
      */
-    File download(String path);
+    FileRange exportFile(String path);
+
+    /**
+     * 以CSV文本导出数据文件（二进制格式的文件会被解码）
+     * @param range 数据文件区间
+     * @param out 输出流
+     * @throws IOException 读写失败
+     */
+    void exportCsv(FileRange range, OutputStream out) throws IOException;
 
     /**
      * 压缩src/main/resources/backups/statistics/文件夹下的文件夹
      * @param dir 文件夹名
      */
     String zip(String dir);
+
+    /**
+     * 查询最近若干天内某个统计值是否出现过
+     * @param name 统计名称
+     * @param value 统计值
+     * @param days 查询天数
+     * @return 查询结果
+     */
+    LookupResult lookup(String name, String value, int days);
+
+    /**
+     * 通过倒排索引在日期范围内检索值
+     * @param value 统计值
+     * @param from 开始日期（yyyyMMdd，包含）
+     * @param to 结束日期（yyyyMMdd，包含）
+     * @param maxOffsets 每个文件最多返回的偏移数量
+     * @return 检索结果
+     */
+    SearchResult search(String value, String from, String to, int maxOffsets);
+
+    /**
+     * 获取索引器的进度和吞吐量统计
+     * @return 统计信息
+     */
+    Map<String, Object> indexStats();
+
+    /**
+     * 获取访问统计（请求数、错误数、耗时、抽样和丢弃数量）
+     * @return 统计信息
+     */
+    Map<String, Object> accessStats();
+
+    /**
+     * 基于每日汇总文件生成区间报表
+     * @param from 开始日期（yyyyMMdd，包含）
+     * @param to 结束日期（yyyyMMdd，包含）
+     * @param name 统计名称，为空时返回全部
+     * @return 报表
+     */
+    SummaryReport summary(String from, String to, String name);
+
+    /**
+     * 并行补建历史日期的汇总文件
+     * @param force 是否覆盖已存在的汇总
+     * @return 补建结果描述
+     */
+    String backfillSummaries(boolean force);
+
+    /**
+     * 本节点在日期区间内的汇总中间结果（供其它节点归并）
+     * @param from 开始日期
+     * @param to 结束日期
+     * @param name 统计名称
+     * @return 按名称排序的中间结果
+     */
+    PartialSummary localSummary(String from, String to, String name);
 }
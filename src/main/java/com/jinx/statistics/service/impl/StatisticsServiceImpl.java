@@ -1,9 +1,24 @@
 package com.jinx.statistics.service.impl;
 
+import com.jinx.statistics.cluster.ClusterManager;
+import com.jinx.statistics.cluster.GatherResult;
+import com.jinx.statistics.constant.FileConstant;
 import com.jinx.statistics.constant.MessageConstant;
+import com.jinx.statistics.dao.DayClock;
 import com.jinx.statistics.dao.StatisticsDao;
 import com.jinx.statistics.exception.BaseException;
+import com.jinx.statistics.index.DayIndexer;
+import com.jinx.statistics.interceptor.AccessLogger;
+import com.jinx.statistics.pojo.LogBatch;
+import com.jinx.statistics.pojo.LookupResult;
+import com.jinx.statistics.pojo.SearchResult;
+import com.jinx.statistics.pojo.SummaryReport;
+import com.jinx.statistics.storage.FileRange;
+import com.jinx.statistics.summary.PartialSummary;
+import com.jinx.statistics.summary.SummaryManager;
 import com.jinx.statistics.service.StatisticsService;
+import com.jinx.statistics.utility.DateUtility;
+import com.jinx.statistics.utility.SortedMerge;
 import com.jinx.statistics.utility.StringUtility;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
@@ -14,8 +29,18 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.io.File;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -25,8 +50,19 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 @EnableScheduling
 public class StatisticsServiceImpl implements StatisticsService {
 
+    /**
+     * 值查询允许的最大天数
+     */
+    private static final int MAX_LOOKUP_DAYS = 366;
+
     private final StatisticsDao dao;
 
+    private final DayIndexer dayIndexer;
+
+    private final SummaryManager summaryManager;
+
+    private final AccessLogger accessLogger;
+
     /**
      * 文档对象的读写锁，保证线程安全
      */
@@ -39,13 +75,23 @@ public class StatisticsServiceImpl implements StatisticsService {
     private volatile Document document;
 
     /**
-     * 日期格式化器的ThreadLocal，避免SimpleDateFormat的线程安全问题
+     * 日期分区时钟
      */
-    private final ThreadLocal<SimpleDateFormat> dateFormatter = ThreadLocal.withInitial(
-            () -> new SimpleDateFormat("yyyyMMdd"));
+    private final DayClock dayClock;
 
-    public StatisticsServiceImpl(StatisticsDao dao) {
+    /**
+     * 集群模式
+     */
+    private final ClusterManager clusterManager;
+
+    public StatisticsServiceImpl(StatisticsDao dao, DayIndexer dayIndexer, SummaryManager summaryManager,
+                                 AccessLogger accessLogger, DayClock dayClock, ClusterManager clusterManager) {
         this.dao = dao;
+        this.dayClock = dayClock;
+        this.clusterManager = clusterManager;
+        this.dayIndexer = dayIndexer;
+        this.summaryManager = summaryManager;
+        this.accessLogger = accessLogger;
         // 初始化HTML模板
         initHtmlTemplate();
     }
@@ -80,9 +126,10 @@ public class StatisticsServiceImpl implements StatisticsService {
      * 线程安全的实现，处理并发请求
      *
      * @param data 数据
+     * @param forwarded 是否由其它节点转发而来
      */
     @Override
-    public void log(Map<String, String> data) {
+    public void log(LogBatch data, boolean forwarded) {
         // 参数校验
         if (data == null || data.isEmpty()) {
             log.warn("统计日志参数无效: data={}", data != null ? 0 : "null");
@@ -91,14 +138,19 @@ public class StatisticsServiceImpl implements StatisticsService {
         
         try {
             // 使用线程安全的方式处理每个统计项
-            for (Map.Entry<String, String> entry : data.entrySet()) {
-                String name = entry.getKey();
-                String value = entry.getValue();
+            for (int i = 0; i < data.size(); i++) {
+                String name = data.name(i);
+                String value = data.value(i);
 
                 if (!StringUtils.hasLength(name) || !StringUtils.hasLength(value)) {
                     continue;
                 }
 
+                // 集群模式下不属于本节点的记录交给转发队列
+                if (!forwarded && clusterManager.forward(name, value)) {
+                    continue;
+                }
+
                 // 使用dao的线程安全方法添加统计数据
                 dao.appendStatistics(name, value);
             }
@@ -112,31 +164,51 @@ public class StatisticsServiceImpl implements StatisticsService {
      * 线程安全的实现，处理并发请求
      *
      * @param dirName 文件夹名
+     * @param forwarded 是否由其它节点转发而来
      * @return 用于网页显示的文本内容
      */
     @Override
-    public String list(String dirName) {
+    public String list(String dirName, boolean forwarded) {
         // 参数规范化
         final String normalizedDirName = dirName == null ? "" : dirName;
         
         try {
             final String refDownload = "/statistics/download?path=";
             final String refList = "/statistics/list?path=";
-            final String currentDate = nowStrYMD();
+            final String refExport = "/statistics/export?path=";
+            final String currentDate = dayClock.today();
 
-            // 获取文件列表
-            File[] files = dao.getFiles(normalizedDirName);
-            if (files == null) {
-                throw new BaseException("无法获取文件列表");
+            // 获取文件列表：文件名 -> 是否为文件夹
+            Map<String, Boolean> entries = new LinkedHashMap<>();
+            final boolean merged = clusterManager.isEnabled() && !forwarded;
+            List<String> unavailable = Collections.emptyList();
+            if (merged) {
+                // 集群模式下并行获取其它节点的文件夹和数据文件，与本节点的有序列表逐条归并；
+                // 数据文件的下载链接由本节点转到所属节点
+                GatherResult<List<String>> peers = clusterManager.listPeers(normalizedDirName);
+                unavailable = peers.getUnavailable();
+                List<Iterator<String>> sources = new ArrayList<>();
+                sources.add(localEntries(normalizedDirName).iterator());
+                for (List<String> remote : peers.getResponses().values()) {
+                    sources.add(remote.stream().filter(StatisticsServiceImpl::isShardedEntry).iterator());
+                }
+                SortedMerge.merge(sources, Comparator.naturalOrder(), (a, b) -> a, entry -> addEntry(entries, entry));
+            } else {
+                for (String entry : localEntries(normalizedDirName)) {
+                    addEntry(entries, entry);
+                }
             }
             
-            final int length = files.length;
+            final int length = entries.size();
             final Object[] empty = new Object[0];
             
             // 使用线程安全的StringBuilder代替StringBuffer
             StringBuilder sb = new StringBuilder(1024); // 预分配合理的初始容量
             StringUtility.appendLine(sb, "<h1>文件下载</h1>", empty);
             StringUtility.appendLine(sb, "<div>文件列表数量: %s</div>", new Object[]{length});
+            if (!unavailable.isEmpty()) {
+                StringUtility.appendLine(sb, "<div>以下节点未响应，列表不完整: %s</div>", new Object[]{String.join(", ", unavailable)});
+            }
             StringUtility.appendLine(sb, "<ul>", empty);
             
             // 添加返回上级目录链接
@@ -147,13 +219,20 @@ public class StatisticsServiceImpl implements StatisticsService {
                 if (!normalizedDirName.equals(currentDate)){
                     StringUtility.appendLine(sb, "<li><a href=\"%s\">%s</a></li>", 
                             new Object[]{refDownload.concat(normalizedDirName + ".zip"), "下载zip全部文件"});
+                    if (merged) {
+                        // 每个节点只压缩自己的文件，分别提供下载
+                        for (String node : clusterManager.peers()) {
+                            StringUtility.appendLine(sb, "<li><a href=\"%s\">%s</a></li>",
+                                    new Object[]{node.concat(refDownload).concat(normalizedDirName + ".zip"), "下载zip全部文件 (" + node + ")"});
+                        }
+                    }
                 }
             }
             
             // 添加文件列表
-            for (File file : files) {
-                final boolean isDir = file.isDirectory();
-                final String name = file.getName();
+            for (Map.Entry<String, Boolean> entry : entries.entrySet()) {
+                final boolean isDir = entry.getValue();
+                final String name = entry.getKey();
                 final String ref;
                 
                 if (isDir){
@@ -166,7 +245,13 @@ public class StatisticsServiceImpl implements StatisticsService {
                     }
                 }
                 
-                StringUtility.appendLine(sb, "<li><a href=\"%s\">%s</a></li>", new Object[]{ref, name});
+                if (!isDir && name.endsWith(FileConstant.SEGMENT_SUFFIX)) {
+                    // 二进制数据文件额外提供CSV导出
+                    StringUtility.appendLine(sb, "<li><a href=\"%s\">%s</a> (<a href=\"%s\">%s</a>)</li>",
+                            new Object[]{ref, name, refExport.concat(StringUtils.hasLength(normalizedDirName) ? String.join("/", normalizedDirName, name) : name), "导出CSV"});
+                } else {
+                    StringUtility.appendLine(sb, "<li><a href=\"%s\">%s</a></li>", new Object[]{ref, name});
+                }
             }
             
             StringUtility.appendLine(sb, "</ul>", empty);
@@ -179,15 +264,45 @@ public class StatisticsServiceImpl implements StatisticsService {
         }
     }
 
+    /**
+     * 本节点文件夹内的文件名，隐藏文件（元数据目录等）不对外展示
+     *
+     * @param dirName 文件夹名
+     * @return 按名称排序的文件名（文件夹以/结尾）
+     */
+    @Override
+    public List<String> localEntries(String dirName) {
+        List<String> entries = dao.listEntries(dirName == null ? "" : dirName);
+        if (entries == null) {
+            throw new BaseException("无法获取文件列表");
+        }
+        return entries;
+    }
+
+    /**
+     * 其它节点的文件中需要汇总展示的部分：文件夹和按名称分片的数据文件（压缩包等只属于各自节点）
+     */
+    private static boolean isShardedEntry(String entry) {
+        return entry.endsWith("/") || entry.endsWith(FileConstant.CSV_SUFFIX) || entry.endsWith(FileConstant.SEGMENT_SUFFIX);
+    }
+
+    private static void addEntry(Map<String, Boolean> entries, String entry) {
+        if (entry.endsWith("/")) {
+            entries.put(entry.substring(0, entry.length() - 1), true);
+        } else {
+            entries.putIfAbsent(entry, false);
+        }
+    }
+
     /**
      * 下载文件
      * 线程安全的实现
      *
      * @param path  文件路径
-     * @return 文件
+     * @return 文件区间（已打包日期中的数据文件为打包文件中的条目）
      */
     @Override
-    public File download(String path) {
+    public FileRange download(String path) {
         if (path == null || path.isEmpty()) {
             log.warn("下载文件路径为空");
             throw new BaseException(MessageConstant.EMPTY_FILE);
@@ -195,10 +310,11 @@ public class StatisticsServiceImpl implements StatisticsService {
         
         try {
             // 获取文件是线程安全的操作
-            File file = dao.getFile(path);
+            FileRange range = dao.getFileRange(path);
             
             // 检查文件是否存在
-            if (!file.exists()) {
+            File file = range == null ? null : range.getFile();
+            if (file == null || !file.exists()) {
                 log.warn("请求下载的文件不存在: {}", path);
                 throw new BaseException(MessageConstant.EMPTY_FILE);
             }
@@ -209,13 +325,38 @@ public class StatisticsServiceImpl implements StatisticsService {
                 throw new BaseException("文件不可读");
             }
             
-            return file;
+            return range;
         } catch (Exception e) {
             log.error("下载文件失败: {}", path, e);
             throw new BaseException(e);
         }
     }
 
+    /**
+     * 获取要导出为CSV的数据文件
+     *
+     * @param path 文件路径
+     * @return 数据文件区间
+     */
+    @Override
+    public FileRange exportFile(String path) {
+        if (path == null || path.isEmpty()) {
+            log.warn("导出文件路径为空");
+            throw new BaseException(MessageConstant.EMPTY_FILE);
+        }
+        FileRange range = dao.getDataRange(path);
+        if (range == null) {
+            log.warn("请求导出的数据文件不存在: {}", path);
+            throw new BaseException(MessageConstant.EMPTY_FILE);
+        }
+        return range;
+    }
+
+    @Override
+    public void exportCsv(FileRange range, OutputStream out) throws IOException {
+        dao.exportCsv(range, out);
+    }
+
     /**
      * 压缩src/main/resources/backups/statistics/文件夹下的文件夹
      * 线程安全的实现
@@ -239,13 +380,149 @@ public class StatisticsServiceImpl implements StatisticsService {
     }
 
     /**
-     * 获取当前日期字符串，格式为yyyyMMdd
-     * 使用ThreadLocal确保线程安全
-     * 
-     * @return 日期字符串
+     * 查询最近若干天内某个统计值是否出现过
+     *
+     * @param name 统计名称
+     * @param value 统计值
+     * @param days 查询天数
+     * @return 查询结果
      */
-    private String nowStrYMD(){
-        return dateFormatter.get().format(new Date());
+    @Override
+    public LookupResult lookup(String name, String value, int days) {
+        if (!StringUtils.hasLength(name) || !StringUtils.hasLength(value)) {
+            throw new BaseException("统计名称和值不能为空");
+        }
+        if (days <= 0 || days > MAX_LOOKUP_DAYS) {
+            throw new BaseException("查询天数必须在1到" + MAX_LOOKUP_DAYS + "之间");
+        }
+        return dao.lookup(name, value, days);
+    }
+
+    /**
+     * 通过倒排索引在日期范围内检索值
+     *
+     * @param value 统计值
+     * @param from 开始日期，为空时为结束日期前29天
+     * @param to 结束日期，为空时为今天
+     * @param maxOffsets 每个文件最多返回的偏移数量
+     * @return 检索结果
+     */
+    @Override
+    public SearchResult search(String value, String from, String to, int maxOffsets) {
+        if (!StringUtils.hasLength(value)) {
+            throw new BaseException("检索值不能为空");
+        }
+        return dayIndexer.search(value, dateRange(from, to), Math.max(0, maxOffsets));
+    }
+
+    /**
+     * 获取索引器的进度和吞吐量统计
+     *
+     * @return 统计信息
+     */
+    @Override
+    public Map<String, Object> indexStats() {
+        return dayIndexer.getStats();
+    }
+
+    /**
+     * 获取访问统计
+     *
+     * @return 统计信息
+     */
+    @Override
+    public Map<String, Object> accessStats() {
+        return accessLogger.getStats();
+    }
+
+    /**
+     * 基于每日汇总文件生成区间报表
+     *
+     * @param from 开始日期，为空时为结束日期前29天
+     * @param to 结束日期，为空时为今天
+     * @param name 统计名称，为空时返回全部
+     * @return 报表
+     */
+    @Override
+    public SummaryReport summary(String from, String to, String name) {
+        List<String> dates = dateRange(from, to);
+        String filter = StringUtils.hasLength(name) ? name : null;
+        SummaryReport report;
+        if (clusterManager.isEnabled()) {
+            // 集群模式下并行获取其它节点的中间结果，与本节点的中间结果按名称逐条归并
+            long startTime = DateUtility.now();
+            String fromDate = dates.get(dates.size() - 1);
+            GatherResult<PartialSummary> peers = clusterManager.summarizePeers(fromDate, dates.get(0), filter);
+            Map<String, PartialSummary> parts = new LinkedHashMap<>();
+            parts.put(clusterManager.getSelf(), summaryManager.partial(dates, filter));
+            parts.putAll(peers.getResponses());
+            report = summaryManager.merge(parts);
+            if (peers.isPartial()) {
+                report.setPartial(true);
+                report.getUnavailableNodes().addAll(peers.getUnavailable());
+            }
+            report.setElapsedMs(DateUtility.now() - startTime);
+        } else {
+            report = summaryManager.report(dates, filter);
+        }
+        report.setFrom(dates.get(dates.size() - 1));
+        report.setTo(dates.get(0));
+        return report;
+    }
+
+    /**
+     * 本节点在日期区间内的汇总中间结果
+     *
+     * @param from 开始日期，为空时为结束日期前29天
+     * @param to 结束日期，为空时为今天
+     * @param name 统计名称，为空时返回全部
+     * @return 按名称排序的中间结果
+     */
+    @Override
+    public PartialSummary localSummary(String from, String to, String name) {
+        return summaryManager.partial(dateRange(from, to), StringUtils.hasLength(name) ? name : null);
+    }
+
+    /**
+     * 并行补建历史日期的汇总文件
+     *
+     * @param force 是否覆盖已存在的汇总
+     * @return 补建结果描述
+     */
+    @Override
+    public String backfillSummaries(boolean force) {
+        int count = summaryManager.backfill(dayClock.today(), force);
+        if (count < 0) {
+            return "已有补建任务正在执行";
+        }
+        return String.format("已提交%d个日期的汇总补建任务", count);
+    }
+
+    /**
+     * 解析日期区间，按日期倒序返回区间内的所有日期
+     *
+     * @param from 开始日期，为空时为结束日期前29天
+     * @param to 结束日期，为空时为今天
+     * @return 日期列表
+     */
+    private List<String> dateRange(String from, String to) {
+        LocalDate toDate;
+        LocalDate fromDate;
+        try {
+            toDate = StringUtils.hasLength(to) ? LocalDate.parse(to, DateTimeFormatter.BASIC_ISO_DATE) : dayClock.todayDate();
+            fromDate = StringUtils.hasLength(from) ? LocalDate.parse(from, DateTimeFormatter.BASIC_ISO_DATE) : toDate.minusDays(29);
+        } catch (DateTimeParseException e) {
+            throw new BaseException("日期格式错误，应为yyyyMMdd");
+        }
+        long days = ChronoUnit.DAYS.between(fromDate, toDate) + 1;
+        if (days <= 0 || days > MAX_LOOKUP_DAYS) {
+            throw new BaseException("查询天数必须在1到" + MAX_LOOKUP_DAYS + "之间");
+        }
+        List<String> dates = new ArrayList<>((int) days);
+        for (LocalDate date = toDate; !date.isBefore(fromDate); date = date.minusDays(1)) {
+            dates.add(date.format(DateTimeFormatter.BASIC_ISO_DATE));
+        }
+        return dates;
     }
 
     /**
@@ -0,0 +1,75 @@
+package com.jinx.statistics.storage;
+
+import com.jinx.statistics.constant.FileConstant;
+import com.jinx.statistics.utility.FileUtility;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * CSV文本存储格式，每条记录一行（value\r\n）
+ */
+public class CsvStorageFormat implements StorageFormat {
+
+    @Override
+    public String suffix() {
+        return FileConstant.CSV_SUFFIX;
+    }
+
+    @Override
+    public long append(File file, ValueBuffer values) throws IOException {
+        StringBuilder sb = new StringBuilder(values.size() * 16);
+        for (int i = 0; i < values.size(); i++) {
+            sb.append(values.get(i)).append(FileConstant.LINE_SEPARATOR);
+        }
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        FileUtility.writeFully(file, bytes, true);
+        return bytes.length;
+    }
+
+    /**
+     * 按字节扫描，记录每一行的起始偏移，兼容\r\n和\n换行
+     */
+    @Override
+    public void read(FileRange range, RecordVisitor visitor) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        long offset = 0;
+        long lineStart = 0;
+        try (InputStream in = range.openStream()) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    if (b == '\n') {
+                        int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                        if (length > 0 && !visitor.visit(lineStart, new String(line, 0, length, StandardCharsets.UTF_8))) {
+                            return;
+                        }
+                        lineLength = 0;
+                        lineStart = offset + i + 1;
+                    } else {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, line.length * 2);
+                        }
+                        line[lineLength++] = b;
+                    }
+                }
+                offset += read;
+            }
+        }
+    }
+
+    /**
+     * CSV本身就是导出格式，直接复制文件内容
+     */
+    @Override
+    public void exportCsv(FileRange range, OutputStream out) throws IOException {
+        range.copyTo(out);
+    }
+}
@@ -0,0 +1,128 @@
+package com.jinx.statistics.storage;
+
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件中的一段字节：一个完整的数据文件，或打包文件中的一个条目
+ * 存储格式按区间读取，读取方不需要区分数据在单独的文件中还是在打包文件中
+ */
+@Getter
+public final class FileRange {
+
+    /**
+     * 实际读取的文件
+     */
+    private final File file;
+
+    /**
+     * 数据文件名（打包文件中为条目名）
+     */
+    private final String name;
+
+    /**
+     * 区间在文件中的起始位置
+     */
+    private final long offset;
+
+    /**
+     * 区间长度
+     */
+    private final long length;
+
+    public FileRange(File file, String name, long offset, long length) {
+        this.file = file;
+        this.name = name;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * 整个文件（长度取当前长度，之后追加的内容不在区间内）
+     * @param file 文件
+     * @return 区间
+     */
+    public static FileRange of(File file) {
+        return new FileRange(file, file.getName(), 0, file.length());
+    }
+
+    /**
+     * 打开只能读到区间末尾的输入流
+     * @return 输入流
+     * @throws IOException 打开失败
+     */
+    public InputStream openStream() throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            in.getChannel().position(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new FilterInputStream(in) {
+            private long remaining = length;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = super.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = super.read(b, off, (int) Math.min(len, remaining));
+                if (n > 0) {
+                    remaining -= n;
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(Math.min(n, remaining));
+                remaining -= skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() throws IOException {
+                return (int) Math.min(super.available(), remaining);
+            }
+        };
+    }
+
+    /**
+     * 把区间的内容复制到输出流（由内核在文件和输出之间传输）
+     * @param out 输出流
+     * @throws IOException 读写失败
+     */
+    public void copyTo(OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                long n = channel.transferTo(position, end - position, target);
+                if (n <= 0) {
+                    throw new EOFException("文件长度不足: " + file);
+                }
+                position += n;
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,96 @@
+package com.jinx.statistics.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单个日期文件夹中已确认存在的数据文件
+ * 统计对象创建时只在内存中生成文件路径，第一次刷盘时才创建文件夹和文件；
+ * 同一天内每个文件夹、每个文件只检查一次，缓存淘汰后重新创建的统计对象刷盘时不再访问文件系统
+ */
+public final class KnownFiles {
+
+    /**
+     * 日期文件夹
+     */
+    private final File dir;
+
+    /**
+     * 文件夹是否已确认存在
+     */
+    private volatile boolean dirExists;
+
+    /**
+     * 已确认存在的文件名
+     */
+    private final Set<String> files = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 文件名 -> 写入锁
+     */
+    private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+
+    public KnownFiles(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * 文件夹中的文件（只生成路径，不访问文件系统）
+     * @param fileName 文件名
+     * @return 文件
+     */
+    public File file(String fileName) {
+        return new File(dir, fileName);
+    }
+
+    /**
+     * 文件的写入锁，同一天同一文件的统计对象共用一个锁对象
+     * @param file 文件夹中的文件
+     * @return 锁对象
+     */
+    public Object lock(File file) {
+        return locks.computeIfAbsent(file.getName(), name -> new Object());
+    }
+
+    /**
+     * 确认文件存在，不存在时创建文件夹和文件（刷盘路径调用）
+     * @param file 文件夹中的文件
+     * @throws IOException 创建失败
+     */
+    public void ensure(File file) throws IOException {
+        String name = file.getName();
+        if (files.contains(name)) {
+            return;
+        }
+        if (!dirExists) {
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("创建文件夹失败: " + dir);
+            }
+            dirExists = true;
+        }
+        if (!file.exists() && !file.createNewFile() && !file.exists()) {
+            throw new IOException("创建文件失败: " + file);
+        }
+        files.add(name);
+    }
+
+    /**
+     * 记录已知存在的文件（如热启动快照中的名称）
+     * @param fileName 文件名
+     */
+    public void markKnown(String fileName) {
+        dirExists = true;
+        files.add(fileName);
+    }
+
+    /**
+     * 写入失败后清除记录，下次刷盘重新检查文件夹和文件
+     * @param file 文件
+     */
+    public void forget(File file) {
+        dirExists = false;
+        files.remove(file.getName());
+    }
+}
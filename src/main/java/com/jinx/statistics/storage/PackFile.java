@@ -0,0 +1,214 @@
+package com.jinx.statistics.storage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 日期打包文件
+ * 把一个已封存日期文件夹中的全部数据文件按文件名顺序首尾相接写入一个文件，末尾附带 名称 -> 偏移 的目录：
+ * [魔数][版本][条目0]...[条目n][目录][目录位置][魔数]
+ * 目录为条目数，以及每个条目的名称（长度+UTF-8字节）、偏移和长度。条目内容与原数据文件逐字节相同，
+ * 打开时只读取目录，之后每个条目以文件区间的形式交给存储格式读取
+ */
+public final class PackFile {
+
+    private static final int MAGIC = 0x4A50414B; // "JPAK"
+    private static final int VERSION = 1;
+
+    /**
+     * 文件末尾的目录位置和魔数
+     */
+    private static final int TRAILER_LENGTH = 12;
+
+    private final File file;
+
+    /**
+     * 条目名（有序）及其偏移、长度
+     */
+    private final String[] names;
+    private final long[] offsets;
+    private final long[] lengths;
+
+    /**
+     * 打开时的文件长度和修改时间，用于判断缓存的目录是否过期
+     */
+    private final long fileLength;
+    private final long lastModified;
+
+    private PackFile(File file, String[] names, long[] offsets, long[] lengths) {
+        this.file = file;
+        this.names = names;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.fileLength = file.length();
+        this.lastModified = file.lastModified();
+    }
+
+    /**
+     * 写入打包文件（先写临时文件，写入磁盘后再替换）
+     * @param target 打包文件
+     * @param files 数据文件，文件名不能重复
+     * @return 打包文件的长度
+     * @throws IOException 写入失败
+     */
+    public static long write(File target, File[] files) throws IOException {
+        File[] sorted = files.clone();
+        Arrays.sort(sorted, (a, b) -> a.getName().compareTo(b.getName()));
+        long[] offsets = new long[sorted.length];
+        long[] lengths = new long[sorted.length];
+        File tmp = new File(target.getPath() + ".tmp");
+        long length;
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip());
+            for (int i = 0; i < sorted.length; i++) {
+                offsets[i] = out.position();
+                try (FileChannel in = FileChannel.open(sorted[i].toPath(), StandardOpenOption.READ)) {
+                    long size = in.size();
+                    long copied = 0;
+                    while (copied < size) {
+                        long n = in.transferTo(copied, size - copied, out);
+                        if (n <= 0) {
+                            throw new EOFException("文件长度不足: " + sorted[i]);
+                        }
+                        copied += n;
+                    }
+                    lengths[i] = size;
+                }
+            }
+            long directoryOffset = out.position();
+            ByteArrayOutputStream directory = new ByteArrayOutputStream(sorted.length * 32 + 4);
+            DataOutputStream dir = new DataOutputStream(directory);
+            dir.writeInt(sorted.length);
+            for (int i = 0; i < sorted.length; i++) {
+                byte[] name = sorted[i].getName().getBytes(StandardCharsets.UTF_8);
+                dir.writeInt(name.length);
+                dir.write(name);
+                dir.writeLong(offsets[i]);
+                dir.writeLong(lengths[i]);
+            }
+            dir.writeLong(directoryOffset);
+            dir.writeInt(MAGIC);
+            writeFully(out, ByteBuffer.wrap(directory.toByteArray()));
+            out.force(true);
+            length = out.position();
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return length;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * 打开打包文件，只读取目录
+     * @param file 打包文件
+     * @return 打包文件
+     * @throws IOException 读取失败或格式错误
+     */
+    public static PackFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 8 + TRAILER_LENGTH) {
+                throw new IOException("打包文件损坏: 长度不足");
+            }
+            ByteBuffer header = readFully(channel, 0, 8);
+            ByteBuffer trailer = readFully(channel, size - TRAILER_LENGTH, TRAILER_LENGTH);
+            long directoryOffset = trailer.getLong();
+            if (header.getInt() != MAGIC || trailer.getInt() != MAGIC) {
+                throw new IOException("打包文件损坏: 魔数错误");
+            }
+            if (header.getInt() != VERSION) {
+                throw new IOException("打包文件版本不支持");
+            }
+            if (directoryOffset < 8 || directoryOffset > size - TRAILER_LENGTH - 4) {
+                throw new IOException("打包文件损坏: 目录位置错误");
+            }
+            ByteBuffer directory = readFully(channel, directoryOffset, (int) (size - TRAILER_LENGTH - directoryOffset));
+            int count = directory.getInt();
+            if (count < 0 || count > directory.remaining() / 20) {
+                throw new IOException("打包文件损坏: 条目数错误");
+            }
+            String[] names = new String[count];
+            long[] offsets = new long[count];
+            long[] lengths = new long[count];
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[directory.getInt()];
+                directory.get(name);
+                names[i] = new String(name, StandardCharsets.UTF_8);
+                offsets[i] = directory.getLong();
+                lengths[i] = directory.getLong();
+                if (offsets[i] < 8 || lengths[i] < 0 || offsets[i] + lengths[i] > directoryOffset) {
+                    throw new IOException("打包文件损坏: 条目位置错误");
+                }
+            }
+            return new PackFile(file, names, offsets, lengths);
+        } catch (RuntimeException e) {
+            // 目录被截断时缓冲区抛出BufferUnderflowException等异常
+            throw new IOException("打包文件损坏: 目录格式错误", e);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("打包文件损坏: 长度不足");
+            }
+        }
+        return buffer.flip();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 条目名（有序）
+     * @return 条目名
+     */
+    public List<String> names() {
+        return Arrays.asList(names);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * 按名称查找条目
+     * @param name 数据文件名
+     * @return 条目区间，不存在时返回null
+     */
+    public FileRange entry(String name) {
+        int i = Arrays.binarySearch(names, name);
+        return i >= 0 ? new FileRange(file, names[i], offsets[i], lengths[i]) : null;
+    }
+
+    /**
+     * 第i个条目
+     * @param i 序号
+     * @return 条目区间
+     */
+    public FileRange entry(int i) {
+        return new FileRange(file, names[i], offsets[i], lengths[i]);
+    }
+
+    /**
+     * 打开之后文件是否被替换或删除
+     * @return 是否过期
+     */
+    public boolean isStale() {
+        return file.length() != fileLength || file.lastModified() != lastModified;
+    }
+}
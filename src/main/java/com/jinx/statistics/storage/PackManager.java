@@ -0,0 +1,357 @@
+package com.jinx.statistics.storage;
+
+import com.jinx.statistics.constant.FileConstant;
+import com.jinx.statistics.dao.DayClock;
+import com.jinx.statistics.metrics.LatencyHistogram;
+import com.jinx.statistics.metrics.MetricsRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 历史日期的打包
+ * 已封存（已压缩、已建立汇总和索引）的日期文件夹中的全部数据文件合并为与文件夹同级的一个打包文件，然后删除文件夹；
+ * 列表、下载、导出和查询通过打包文件的目录按条目访问，打开一个日期只需要打开一个文件。
+ * 同一日期同时存在文件夹和打包文件时以文件夹为准：打包时先写好打包文件再移走文件夹，
+ * 需要向已打包的日期补写数据时先解包还原文件夹
+ */
+@Component
+@Slf4j
+public class PackManager {
+
+    @Value("${app.statistics-file-dir}")
+    private String fileDir;
+
+    /**
+     * 是否自动打包历史日期
+     */
+    @Value("${app.pack.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 数据文件少于这个数量的日期不打包
+     */
+    @Value("${app.pack.min-files:100}")
+    private int minFiles;
+
+    /**
+     * 两次检查的间隔（毫秒）
+     */
+    @Value("${app.pack.interval-ms:600000}")
+    private long intervalMillis;
+
+    /**
+     * 缓存目录的打包文件数量
+     */
+    @Value("${app.pack.cache-size:16}")
+    private int cacheSize;
+
+    /**
+     * 启用倒排索引时，等索引建好之后再打包
+     */
+    @Value("${app.index.enabled:true}")
+    private boolean indexEnabled;
+
+    /**
+     * 打包线程（单线程、最低优先级）
+     */
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "day-packer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * 是否正在执行或已提交一次检查
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * 日期 -> 已读取目录的打包文件（按访问顺序淘汰）
+     */
+    private final Map<String, PackFile> packs = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PackFile> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    private final StorageFormats storageFormats;
+
+    private final DayClock dayClock;
+
+    /**
+     * 打包指标
+     */
+    private final LongAdder packedDays;
+    private final LongAdder packedFiles;
+    private final LongAdder unpackedDays;
+    private final LatencyHistogram packDuration;
+
+    public PackManager(StorageFormats storageFormats, DayClock dayClock, MetricsRegistry metricsRegistry) {
+        this.storageFormats = storageFormats;
+        this.dayClock = dayClock;
+        packedDays = metricsRegistry.counter("jinx_pack_days_total", "打包的日期数");
+        packedFiles = metricsRegistry.counter("jinx_pack_files_total", "合并进打包文件的数据文件数");
+        unpackedDays = metricsRegistry.counter("jinx_pack_unpacked_days_total", "补写数据前解包的日期数");
+        packDuration = metricsRegistry.timer("jinx_pack_duration_seconds", "单个日期的打包耗时");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        executor.scheduleWithFixedDelay(this::runScheduled, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("历史日期打包: 数据文件不少于{}个的已封存日期合并为打包文件", minFiles);
+    }
+
+    /**
+     * 立即执行一次检查（后台执行）
+     * @return 是否已提交，正在执行时返回false
+     */
+    public boolean trigger() {
+        if (scheduled.get()) {
+            return false;
+        }
+        executor.execute(this::runScheduled);
+        return true;
+    }
+
+    private void runScheduled() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            packSealedDays();
+        } catch (Exception e) {
+            log.error("打包历史日期失败", e);
+        } finally {
+            scheduled.set(false);
+        }
+    }
+
+    /**
+     * 打包所有符合条件的历史日期，并清理上次中断留下的临时文件
+     */
+    private void packSealedDays() {
+        String today = dayClock.today();
+        File[] files = new File(fileDir).listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(".") && (name.endsWith(".packed") || name.endsWith(".unpacking"))
+                    || name.endsWith(FileConstant.PACK_SUFFIX + ".tmp")) {
+                deleteTree(file);
+            } else if (file.isDirectory() && isDate(name) && name.compareTo(today) < 0 && isSealed(name)) {
+                try {
+                    pack(name);
+                } catch (IOException e) {
+                    log.error("打包日期{}失败", name, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 日期是否已完成封存：已压缩、已建立汇总，启用索引时已建立索引
+     */
+    private boolean isSealed(String date) {
+        File meta = new File(String.join("/", fileDir, FileConstant.META_DIR, date));
+        return new File(fileDir, date + ".zip").isFile()
+                && new File(meta, FileConstant.SUMMARY_FILE).isFile()
+                && (!indexEnabled || new File(meta, FileConstant.VALUE_INDEX_FILE).isFile());
+    }
+
+    private static boolean isDate(String name) {
+        return name.length() == 8 && name.chars().allMatch(Character::isDigit);
+    }
+
+    /**
+     * 打包日期文件夹：写入并校验打包文件后删除文件夹
+     * @param date 已封存的日期
+     * @return 是否已打包，文件太少或文件夹中有数据文件以外的文件时返回false
+     * @throws IOException 写入失败
+     */
+    public synchronized boolean pack(String date) throws IOException {
+        File dir = new File(fileDir, date);
+        String[] names = dir.list();
+        if (names == null) {
+            return false;
+        }
+        File[] files = storageFormats.dataFiles(dir);
+        // 打包后整个文件夹会被删除，任何其它文件（包括以.开头的隐藏文件）都会丢失
+        int others = names.length - files.length;
+        if (others > 0) {
+            log.warn("日期文件夹{}中有{}个数据文件以外的文件，不打包", dir, others);
+            return false;
+        }
+        if (files.length < Math.max(1, minFiles)) {
+            return false;
+        }
+        long startNanos = System.nanoTime();
+        File target = packFile(date);
+        long bytes = PackFile.write(target, files);
+
+        // 确认每个条目与原文件长度一致后再删除文件夹
+        PackFile pack = PackFile.open(target);
+        for (File file : files) {
+            FileRange entry = pack.entry(file.getName());
+            if (entry == null || entry.getLength() != file.length()) {
+                Files.deleteIfExists(target.toPath());
+                throw new IOException("打包文件与原文件不一致: " + file);
+            }
+        }
+        // 先整体移走文件夹，读取方不会看到删除到一半的文件夹
+        File removed = new File(fileDir, "." + date + ".packed");
+        if (!dir.renameTo(removed)) {
+            Files.deleteIfExists(target.toPath());
+            throw new IOException("移动日期文件夹失败: " + dir);
+        }
+        deleteTree(removed);
+        evict(date);
+        packDuration.recordSince(startNanos);
+        packedDays.increment();
+        packedFiles.add(files.length);
+        log.info("日期{}已打包: {}个数据文件 -> {}字节，耗时{}ms", date, files.length, bytes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return true;
+    }
+
+    /**
+     * 解包：从打包文件还原日期文件夹，之后可以向该日期补写数据，下次检查时重新打包
+     * @param date 日期
+     * @return 是否解包，没有打包时返回false
+     * @throws IOException 还原失败
+     */
+    public synchronized boolean unpack(String date) throws IOException {
+        File dir = new File(fileDir, date);
+        File packed = packFile(date);
+        if (dir.exists() || !packed.isFile()) {
+            return false;
+        }
+        PackFile pack = PackFile.open(packed);
+        File tmp = new File(fileDir, "." + date + ".unpacking");
+        deleteTree(tmp);
+        if (!tmp.mkdirs()) {
+            throw new IOException("创建文件夹失败: " + tmp);
+        }
+        for (int i = 0; i < pack.size(); i++) {
+            FileRange entry = pack.entry(i);
+            try (OutputStream out = new FileOutputStream(new File(tmp, entry.getName()))) {
+                entry.copyTo(out);
+            }
+        }
+        if (!tmp.renameTo(dir)) {
+            throw new IOException("还原日期文件夹失败: " + dir);
+        }
+        Files.deleteIfExists(packed.toPath());
+        evict(date);
+        unpackedDays.increment();
+        log.info("日期{}已解包: {}个数据文件", date, pack.size());
+        return true;
+    }
+
+    /**
+     * 已打包日期的打包文件（日期文件夹存在时以文件夹为准，返回null）
+     * @param date 日期
+     * @return 打包文件，没有打包或读取失败时返回null
+     */
+    public PackFile open(String date) {
+        if (!isDate(date) || new File(fileDir, date).exists()) {
+            return null;
+        }
+        synchronized (packs) {
+            PackFile pack = packs.get(date);
+            if (pack != null && !pack.isStale()) {
+                return pack;
+            }
+            packs.remove(date);
+        }
+        File file = packFile(date);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            PackFile pack = PackFile.open(file);
+            synchronized (packs) {
+                packs.put(date, pack);
+            }
+            return pack;
+        } catch (IOException e) {
+            log.warn("读取打包文件失败: {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 已打包日期中 日期/名称 的全部数据文件条目（可能同时存在多种格式）
+     * @param date 日期
+     * @param name 统计名称
+     * @return 条目，日期没有打包时返回null
+     */
+    public List<FileRange> dataRanges(String date, String name) {
+        PackFile pack = open(date);
+        if (pack == null) {
+            return null;
+        }
+        List<FileRange> ranges = new ArrayList<>(1);
+        for (String suffix : storageFormats.suffixes()) {
+            FileRange entry = pack.entry(name + suffix);
+            if (entry != null) {
+                ranges.add(entry);
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * 日期的打包文件路径
+     * @param date 日期
+     * @return 打包文件
+     */
+    public File packFile(String date) {
+        return new File(fileDir, date + FileConstant.PACK_SUFFIX);
+    }
+
+    private void evict(String date) {
+        synchronized (packs) {
+            packs.remove(date);
+        }
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            log.warn("删除失败: {}", file);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
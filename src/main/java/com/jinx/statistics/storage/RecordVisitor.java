@@ -0,0 +1,15 @@
+package com.jinx.statistics.storage;
+
+/**
+ * 记录访问器
+ */
+@FunctionalInterface
+public interface RecordVisitor {
+    /**
+     * 访问一条记录
+     * @param position 记录位置（CSV为行起始字节偏移，二进制段为记录序号）
+     * @param value 记录值
+     * @return 是否继续读取
+     */
+    boolean visit(long position, String value);
+}
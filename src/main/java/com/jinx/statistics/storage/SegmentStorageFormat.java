@@ -0,0 +1,485 @@
+package com.jinx.statistics.storage;
+
+import com.jinx.statistics.constant.FileConstant;
+import com.jinx.statistics.utility.FileUtility;
+import com.jinx.statistics.utility.VarintUtility;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 列式二进制段存储格式
+ * 每次刷盘追加一个段，段内对值做字典编码，编码按块压缩：
+ * [块0][块1]...[字典块][段尾][段尾长度][魔数]
+ * 段尾记录段起始位置、记录数、字典位置，以及每个块的偏移、长度、记录数和最小/最大值。
+ * 读取时从文件末尾沿段尾向前定位所有段，统计和查找可以只读段尾和字典而不解压数据块。
+ * 追加中途崩溃会在文件末尾留下不完整的段：读取时向前查找最后一个完整的段尾并忽略其后的内容，
+ * 下次追加前把文件截断到该位置，之后的段仍然接在完整的段之后
+ */
+public class SegmentStorageFormat implements StorageFormat {
+
+    private static final int MAGIC = 0x4A534547; // "JSEG"
+    private static final int VERSION = 1;
+
+    /**
+     * 每个块的记录数
+     */
+    private final int blockSize;
+
+    public SegmentStorageFormat(int blockSize) {
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * 只读窗口：段内的位置都相对于数据文件的开头，窗口把它们换算成区间所在文件中的位置
+     */
+    private static final class Window implements Closeable {
+        private final RandomAccessFile raf;
+        private final long base;
+        private final long length;
+
+        Window(FileRange range) throws IOException {
+            this.raf = new RandomAccessFile(range.getFile(), "r");
+            this.base = range.getOffset();
+            this.length = range.getLength();
+        }
+
+        long length() {
+            return length;
+        }
+
+        void seek(long position) throws IOException {
+            raf.seek(base + position);
+        }
+
+        int readInt() throws IOException {
+            return raf.readInt();
+        }
+
+        void readFully(byte[] bytes) throws IOException {
+            raf.readFully(bytes);
+        }
+
+        void readFully(byte[] bytes, int offset, int length) throws IOException {
+            raf.readFully(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+    }
+
+    /**
+     * 块元数据
+     */
+    private static class Block {
+        long offset;
+        int length;
+        int count;
+        String min;
+        String max;
+    }
+
+    /**
+     * 段尾
+     */
+    private static class Footer {
+        long start;
+        long recordCount;
+        int dictSize;
+        long dictOffset;
+        int dictLength;
+        List<Block> blocks;
+    }
+
+    @Override
+    public String suffix() {
+        return FileConstant.SEGMENT_SUFFIX;
+    }
+
+    @Override
+    public long append(File file, ValueBuffer values) throws IOException {
+        if (values.isEmpty()) {
+            return 0;
+        }
+        long start = file.length();
+        if (start > 0) {
+            long valid = validLength(file);
+            if (valid < start) {
+                // 上次追加中途崩溃，去掉不完整的尾部
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(valid);
+                }
+                start = valid;
+            }
+        }
+
+        // 字典编码（按首次出现顺序编号），缓冲区已经是字典模式时直接使用其编码
+        List<String> dict;
+        int[] codes = new int[values.size()];
+        if (values.isDictionaryEncoded()) {
+            dict = values.dictionary();
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = values.code(i);
+            }
+        } else {
+            Map<String, Integer> codeOf = new HashMap<>();
+            dict = new ArrayList<>();
+            for (int i = 0; i < codes.length; i++) {
+                String value = values.get(i);
+                Integer code = codeOf.get(value);
+                if (code == null) {
+                    code = dict.size();
+                    codeOf.put(value, code);
+                    dict.add(value);
+                }
+                codes[i] = code;
+            }
+        }
+
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        DataOutputStream rawOut = new DataOutputStream(raw);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            List<Block> blocks = new ArrayList<>();
+            for (int from = 0; from < codes.length; from += blockSize) {
+                int to = Math.min(codes.length, from + blockSize);
+                raw.reset();
+                Block block = new Block();
+                block.offset = segment.size();
+                block.count = to - from;
+                for (int i = from; i < to; i++) {
+                    VarintUtility.write(rawOut, codes[i]);
+                    String value = values.get(i);
+                    if (block.min == null || value.compareTo(block.min) < 0) {
+                        block.min = value;
+                    }
+                    if (block.max == null || value.compareTo(block.max) > 0) {
+                        block.max = value;
+                    }
+                }
+                block.length = compress(deflater, raw.toByteArray(), segment);
+                blocks.add(block);
+            }
+
+            raw.reset();
+            VarintUtility.write(rawOut, dict.size());
+            for (String value : dict) {
+                writeString(rawOut, value);
+            }
+            long dictOffset = segment.size();
+            int dictLength = compress(deflater, raw.toByteArray(), segment);
+
+            ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            DataOutputStream footerOut = new DataOutputStream(footer);
+            footerOut.writeInt(VERSION);
+            footerOut.writeLong(start);
+            footerOut.writeLong(codes.length);
+            footerOut.writeInt(dict.size());
+            footerOut.writeLong(dictOffset);
+            footerOut.writeInt(dictLength);
+            footerOut.writeInt(blocks.size());
+            for (Block block : blocks) {
+                footerOut.writeLong(block.offset);
+                footerOut.writeInt(block.length);
+                footerOut.writeInt(block.count);
+                writeString(footerOut, block.min);
+                writeString(footerOut, block.max);
+            }
+            footerOut.flush();
+
+            DataOutputStream segmentOut = new DataOutputStream(segment);
+            footer.writeTo(segmentOut);
+            segmentOut.writeInt(footer.size());
+            segmentOut.writeInt(MAGIC);
+            segmentOut.flush();
+        } finally {
+            deflater.end();
+        }
+
+        byte[] bytes = segment.toByteArray();
+        FileUtility.writeFully(file, bytes, true);
+        return bytes.length;
+    }
+
+    @Override
+    public void read(FileRange range, RecordVisitor visitor) throws IOException {
+        try (Window raf = new Window(range)) {
+            long position = 0;
+            Inflater inflater = new Inflater();
+            try {
+                for (Footer footer : footers(raf)) {
+                    String[] dict = readDictionary(raf, footer, inflater);
+                    for (Block block : footer.blocks) {
+                        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                                inflate(raf, footer.start + block.offset, block.length, inflater)));
+                        for (int i = 0; i < block.count; i++) {
+                            if (!visitor.visit(position++, dict[(int) VarintUtility.read(in)])) {
+                                return;
+                            }
+                        }
+                    }
+                }
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * 只读取各段的字典
+     */
+    @Override
+    public void readDistinct(FileRange range, RecordVisitor visitor) throws IOException {
+        try (Window raf = new Window(range)) {
+            Inflater inflater = new Inflater();
+            try {
+                for (Footer footer : footers(raf)) {
+                    for (String value : readDictionary(raf, footer, inflater)) {
+                        if (!visitor.visit(-1, value)) {
+                            return;
+                        }
+                    }
+                }
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * 只读取段尾
+     */
+    @Override
+    public long count(FileRange range) throws IOException {
+        try (Window raf = new Window(range)) {
+            long count = 0;
+            for (Footer footer : footers(raf)) {
+                count += footer.recordCount;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 先用块的最小/最大值排除段，再查段字典，不解压数据块
+     */
+    @Override
+    public boolean contains(FileRange range, String value) throws IOException {
+        try (Window raf = new Window(range)) {
+            Inflater inflater = new Inflater();
+            try {
+                for (Footer footer : footers(raf)) {
+                    boolean inRange = false;
+                    for (Block block : footer.blocks) {
+                        if (value.compareTo(block.min) >= 0 && value.compareTo(block.max) <= 0) {
+                            inRange = true;
+                            break;
+                        }
+                    }
+                    if (inRange) {
+                        for (String entry : readDictionary(raf, footer, inflater)) {
+                            if (entry.equals(value)) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+                return false;
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * 从文件末尾向前读取所有段尾，按写入顺序返回；末尾有不完整的段时从最后一个完整的段开始读取
+     */
+    private List<Footer> footers(Window raf) throws IOException {
+        try {
+            return footers(raf, raf.length());
+        } catch (IOException e) {
+            return footers(raf, recoverEnd(raf));
+        }
+    }
+
+    /**
+     * 从指定位置向前读取所有段尾，直到文件开头
+     */
+    private List<Footer> footers(Window raf, long end) throws IOException {
+        LinkedList<Footer> footers = new LinkedList<>();
+        while (end > 0) {
+            Footer footer = readFooter(raf, end);
+            footers.addFirst(footer);
+            end = footer.start;
+        }
+        return footers;
+    }
+
+    /**
+     * 读取结束于指定位置的段尾
+     */
+    private Footer readFooter(Window raf, long end) throws IOException {
+        if (end < 8) {
+            throw new IOException("段文件损坏: 长度不足");
+        }
+        raf.seek(end - 8);
+        int footerLength = raf.readInt();
+        if (raf.readInt() != MAGIC || footerLength <= 0 || footerLength > end - 8) {
+            throw new IOException("段文件损坏: 魔数错误");
+        }
+        byte[] bytes = new byte[footerLength];
+        raf.seek(end - 8 - footerLength);
+        raf.readFully(bytes);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != VERSION) {
+            throw new IOException("段文件版本不支持");
+        }
+        Footer footer = new Footer();
+        footer.start = in.readLong();
+        footer.recordCount = in.readLong();
+        footer.dictSize = in.readInt();
+        footer.dictOffset = in.readLong();
+        footer.dictLength = in.readInt();
+        int blockCount = in.readInt();
+        if (blockCount < 0 || blockCount > footerLength) {
+            throw new IOException("段文件损坏: 块数量错误");
+        }
+        footer.blocks = new ArrayList<>(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            Block block = new Block();
+            block.offset = in.readLong();
+            block.length = in.readInt();
+            block.count = in.readInt();
+            block.min = readString(in);
+            block.max = readString(in);
+            footer.blocks.add(block);
+        }
+        if (footer.start < 0 || footer.start >= end) {
+            throw new IOException("段文件损坏: 段起始位置错误");
+        }
+        return footer;
+    }
+
+    /**
+     * 文件中完整的段的结束位置：末尾的段完整时为文件长度，否则为最后一个完整的段的结束位置
+     * @param file 段文件
+     * @return 有效长度，没有完整的段时为0
+     */
+    private long validLength(File file) throws IOException {
+        try (Window raf = new Window(FileRange.of(file))) {
+            try {
+                readFooter(raf, raf.length());
+                return raf.length();
+            } catch (IOException e) {
+                return recoverEnd(raf);
+            }
+        }
+    }
+
+    /**
+     * 从末尾向前查找魔数，返回第一个能沿段尾一直回溯到文件开头的位置（只在末尾损坏时调用）
+     * @return 最后一个完整的段的结束位置，没有完整的段（第一个段就不完整）时返回0
+     */
+    private long recoverEnd(Window raf) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long end = raf.length();
+        while (end >= 4) {
+            long from = Math.max(0, end - buffer.length);
+            int n = (int) (end - from);
+            raf.seek(from);
+            raf.readFully(buffer, 0, n);
+            for (int i = n - 4; i >= 0; i--) {
+                long position = from + i + 4;
+                if (position < raf.length() && position >= 8 && readInt(buffer, i) == MAGIC) {
+                    try {
+                        footers(raf, position);
+                        return position;
+                    } catch (IOException e) {
+                        // 数据中恰好出现魔数，继续向前查找
+                    }
+                }
+            }
+            if (from == 0) {
+                break;
+            }
+            // 与前一段缓冲区重叠3个字节，跨越缓冲区边界的魔数也能找到
+            end = from + 3;
+        }
+        return 0;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+    }
+
+    private String[] readDictionary(Window raf, Footer footer, Inflater inflater) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                inflate(raf, footer.start + footer.dictOffset, footer.dictLength, inflater)));
+        String[] dict = new String[(int) VarintUtility.read(in)];
+        for (int i = 0; i < dict.length; i++) {
+            dict[i] = readString(in);
+        }
+        return dict;
+    }
+
+    private static int compress(Deflater deflater, byte[] input, ByteArrayOutputStream out) throws IOException {
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        byte[] buffer = new byte[8192];
+        int total = 0;
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+            total += n;
+        }
+        return total;
+    }
+
+    private static byte[] inflate(Window raf, long position, int length, Inflater inflater) throws IOException {
+        byte[] compressed = new byte[length];
+        raf.seek(position);
+        raf.readFully(compressed);
+        inflater.reset();
+        inflater.setInput(compressed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length * 4);
+        byte[] buffer = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("段文件损坏: 压缩块不完整");
+                }
+                out.write(buffer, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("段文件损坏: 压缩块格式错误", e);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        VarintUtility.write(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        long length = VarintUtility.read(in);
+        if (length < 0 || length > in.available()) {
+            throw new IOException("段文件损坏: 字符串长度错误");
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,128 @@
+package com.jinx.statistics.storage;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 统计数据存储格式
+ * 每个 日期/名称 对应一个数据文件，刷盘时以批次追加写入；
+ * 读取按文件区间进行，已打包日期的条目和单独的数据文件使用同一套读取方法
+ */
+public interface StorageFormat {
+
+    /**
+     * 数据文件后缀
+     * @return 后缀（包含点号）
+     */
+    String suffix();
+
+    /**
+     * 追加写入一批记录
+     * @param file 数据文件
+     * @param values 记录缓冲区
+     * @return 写入的字节数
+     * @throws IOException 写入失败
+     */
+    long append(File file, ValueBuffer values) throws IOException;
+
+    /**
+     * 按写入顺序读取区间中的全部记录
+     * @param range 数据文件区间
+     * @param visitor 记录访问器（位置为区间内的偏移）
+     * @throws IOException 读取失败
+     */
+    void read(FileRange range, RecordVisitor visitor) throws IOException;
+
+    /**
+     * 按写入顺序读取全部记录
+     * @param file 数据文件
+     * @param visitor 记录访问器
+     * @throws IOException 读取失败
+     */
+    default void read(File file, RecordVisitor visitor) throws IOException {
+        read(FileRange.of(file), visitor);
+    }
+
+    /**
+     * 读取区间中出现过的值（可能包含重复），用于构建过滤器和基数估计
+     * 默认读取全部记录，支持字典的格式只需读取字典
+     * @param range 数据文件区间
+     * @param visitor 记录访问器（位置参数无意义）
+     * @throws IOException 读取失败
+     */
+    default void readDistinct(FileRange range, RecordVisitor visitor) throws IOException {
+        read(range, visitor);
+    }
+
+    default void readDistinct(File file, RecordVisitor visitor) throws IOException {
+        readDistinct(FileRange.of(file), visitor);
+    }
+
+    /**
+     * 统计记录数量
+     * @param range 数据文件区间
+     * @return 记录数量
+     * @throws IOException 读取失败
+     */
+    default long count(FileRange range) throws IOException {
+        long[] count = {0};
+        read(range, (position, value) -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    default long count(File file) throws IOException {
+        return count(FileRange.of(file));
+    }
+
+    /**
+     * 判断区间中是否存在指定值
+     * @param range 数据文件区间
+     * @param value 值
+     * @return 是否存在
+     * @throws IOException 读取失败
+     */
+    default boolean contains(FileRange range, String value) throws IOException {
+        boolean[] found = {false};
+        read(range, (position, v) -> {
+            found[0] = v.equals(value);
+            return !found[0];
+        });
+        return found[0];
+    }
+
+    default boolean contains(File file, String value) throws IOException {
+        return contains(FileRange.of(file), value);
+    }
+
+    /**
+     * 以CSV文本导出区间中的全部记录
+     * @param range 数据文件区间
+     * @param out 输出流
+     * @throws IOException 读写失败
+     */
+    default void exportCsv(FileRange range, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        IOException[] error = {null};
+        read(range, (position, value) -> {
+            try {
+                writer.write(value);
+                writer.write("\r\n");
+                return true;
+            } catch (IOException e) {
+                error[0] = e;
+                return false;
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        writer.flush();
+    }
+
+    default void exportCsv(File file, OutputStream out) throws IOException {
+        exportCsv(FileRange.of(file), out);
+    }
+}
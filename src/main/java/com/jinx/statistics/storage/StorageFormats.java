@@ -0,0 +1,139 @@
+package com.jinx.statistics.storage;
+
+import com.jinx.statistics.constant.FileConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 存储格式注册表
+ * 新数据按配置的格式写入，读取时按文件后缀选择格式，因此切换格式后历史文件仍然可读
+ */
+@Component
+@Slf4j
+public class StorageFormats {
+
+    /**
+     * 按后缀索引的全部格式
+     */
+    private final Map<String, StorageFormat> formats = new LinkedHashMap<>();
+
+    /**
+     * 当前写入使用的格式
+     */
+    private final StorageFormat active;
+
+    public StorageFormats(@Value("${app.storage.format:csv}") String format,
+                          @Value("${app.storage.segment.block-size:4096}") int blockSize) {
+        StorageFormat csv = new CsvStorageFormat();
+        StorageFormat segment = new SegmentStorageFormat(blockSize);
+        formats.put(csv.suffix(), csv);
+        formats.put(segment.suffix(), segment);
+        if ("segment".equalsIgnoreCase(format)) {
+            active = segment;
+        } else {
+            if (!"csv".equalsIgnoreCase(format)) {
+                log.warn("未知的存储格式[{}]，使用csv", format);
+            }
+            active = csv;
+        }
+        log.info("统计数据存储格式: {}", active.suffix());
+    }
+
+    /**
+     * 当前写入使用的格式
+     * @return 存储格式
+     */
+    public StorageFormat active() {
+        return active;
+    }
+
+    /**
+     * 根据文件后缀获取格式
+     * @param file 文件
+     * @return 存储格式，不是数据文件时返回null
+     */
+    public StorageFormat forFile(File file) {
+        return forName(file.getName());
+    }
+
+    /**
+     * 根据数据文件名的后缀获取格式（用于打包文件中的条目）
+     * @param fileName 数据文件名
+     * @return 存储格式，不是数据文件时返回null
+     */
+    public StorageFormat forName(String fileName) {
+        int idx = fileName.lastIndexOf('.');
+        return idx > 0 ? formats.get(fileName.substring(idx)) : null;
+    }
+
+    /**
+     * 全部格式的数据文件后缀
+     * @return 后缀（包含点号）
+     */
+    public Set<String> suffixes() {
+        return formats.keySet();
+    }
+
+    /**
+     * 是否为统计数据文件
+     * @param file 文件
+     * @return 是否为数据文件
+     */
+    public boolean isDataFile(File file) {
+        return file.isFile() && !file.isHidden() && forFile(file) != null;
+    }
+
+    /**
+     * 从数据文件名中解析统计名称
+     * @param file 数据文件
+     * @return 统计名称
+     */
+    public String nameOf(File file) {
+        String fileName = file.getName();
+        int idx = fileName.lastIndexOf('.');
+        return idx > 0 ? fileName.substring(0, idx) : fileName;
+    }
+
+    /**
+     * 列出日期文件夹中的数据文件（按文件名排序）
+     * @param dir 日期文件夹
+     * @return 数据文件，文件夹不存在时返回空数组
+     */
+    public File[] dataFiles(File dir) {
+        File[] files = dir.listFiles(this::isDataFile);
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * 指定 日期/名称 的全部数据文件（可能同时存在多种格式）
+     * @param dir 日期文件夹
+     * @param name 统计名称
+     * @return 存在的数据文件
+     */
+    public File[] dataFiles(File dir, String name) {
+        return formats.keySet().stream()
+                .map(suffix -> new File(dir, name + suffix))
+                .filter(File::isFile)
+                .toArray(File[]::new);
+    }
+
+    /**
+     * 是否为CSV文件
+     * @param file 文件
+     * @return 是否为CSV
+     */
+    public static boolean isCsv(File file) {
+        return file.getName().endsWith(FileConstant.CSV_SUFFIX);
+    }
+}
@@ -0,0 +1,156 @@
+package com.jinx.statistics.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 自适应字典编码的记录缓冲区
+ * 初始为字典模式：每个不同的值只保存一次，记录只保存整数编码；
+ * 不同值的数量超过阈值后自动转为原始模式，按顺序保存全部记录值。
+ * 非线程安全，由调用方加锁
+ */
+public class ValueBuffer {
+
+    /**
+     * 字典模式下允许的最大不同值数量
+     */
+    private final int maxDictionarySize;
+
+    /**
+     * 值 -> 编码（原始模式下为null）
+     */
+    private Map<String, Integer> codeOf = new HashMap<>();
+
+    /**
+     * 编码 -> 值，按首次出现顺序排列
+     */
+    private List<String> dictionary = new ArrayList<>();
+
+    /**
+     * 记录编码
+     */
+    private int[] codes = new int[16];
+
+    /**
+     * 原始模式下的记录值
+     */
+    private List<String> raw;
+
+    private int size;
+
+    /**
+     * 记录值的字符总数（含分隔符），用于估计缓冲区占用
+     */
+    private long chars;
+
+    public ValueBuffer(int maxDictionarySize) {
+        this.maxDictionarySize = maxDictionarySize;
+        if (maxDictionarySize <= 0) {
+            toRaw();
+        }
+    }
+
+    /**
+     * 增加记录
+     * @param value 记录值
+     */
+    public void add(String value) {
+        if (raw != null) {
+            chars += value.length() + 1;
+            raw.add(value);
+            size++;
+            return;
+        }
+        Integer code = codeOf.get(value);
+        if (code == null) {
+            if (dictionary.size() >= maxDictionarySize) {
+                toRaw();
+                add(value);
+                return;
+            }
+            code = dictionary.size();
+            codeOf.put(value, code);
+            dictionary.add(value);
+        }
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, size * 2);
+        }
+        codes[size++] = code;
+        chars += value.length() + 1;
+    }
+
+    /**
+     * 基数超过阈值，展开为原始记录
+     */
+    private void toRaw() {
+        raw = new ArrayList<>(Math.max(16, size * 2));
+        for (int i = 0; i < size; i++) {
+            raw.add(dictionary.get(codes[i]));
+        }
+        codeOf = null;
+        dictionary = null;
+        codes = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 缓冲区中记录的估计字节数（按每条记录一个分隔符计算，非ASCII字符按一个字节计）
+     * @return 字节数
+     */
+    public long estimatedBytes() {
+        return chars;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 是否处于字典模式
+     * @return 是否字典编码
+     */
+    public boolean isDictionaryEncoded() {
+        return raw == null;
+    }
+
+    /**
+     * 获取第i条记录的值
+     * @param i 记录序号
+     * @return 记录值
+     */
+    public String get(int i) {
+        return raw != null ? raw.get(i) : dictionary.get(codes[i]);
+    }
+
+    /**
+     * 字典（按首次出现顺序），只在字典模式下可用
+     * @return 字典
+     */
+    public List<String> dictionary() {
+        return Collections.unmodifiableList(dictionary);
+    }
+
+    /**
+     * 第i条记录的编码，只在字典模式下可用
+     * @param i 记录序号
+     * @return 字典编码
+     */
+    public int code(int i) {
+        return codes[i];
+    }
+
+    /**
+     * 缓冲区中出现过的值：字典模式下为字典，原始模式下为全部记录（可能重复）
+     * @return 值列表
+     */
+    public List<String> distinctValues() {
+        return raw != null ? Collections.unmodifiableList(raw) : dictionary();
+    }
+}
@@ -0,0 +1,85 @@
+package com.jinx.statistics.summary;
+
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 每日汇总文件
+ * 日期切换时生成，多月报表只需读取每天几KB的汇总文件，不必重新扫描所有CSV。
+ * 格式：魔数、版本，之后为压缩数据：日期、名称数量，以及每个名称的记录数、字节数、小时分布和基数估计器
+ */
+@Getter
+public class DailySummary {
+
+    private static final int MAGIC = 0x4A53554D; // "JSUM"
+    private static final int VERSION = 1;
+
+    /**
+     * 日期
+     */
+    private final String date;
+
+    /**
+     * 各统计名称的汇总
+     */
+    private final List<NameSummary> names;
+
+    public DailySummary(String date, List<NameSummary> names) {
+        this.date = date;
+        this.names = names;
+    }
+
+    /**
+     * 写入文件，先写临时文件再原子替换
+     * @param file 目标文件
+     * @throws IOException 写入失败
+     */
+    public void writeTo(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream header = new DataOutputStream(fos);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.flush();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(fos)))) {
+                out.writeUTF(date);
+                out.writeInt(names.size());
+                for (NameSummary name : names) {
+                    name.writeTo(out);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 从文件读取
+     * @param file 汇总文件
+     * @return 每日汇总
+     * @throws IOException 读取失败或格式错误
+     */
+    public static DailySummary readFrom(File file) throws IOException {
+        try (FileInputStream fis = new FileInputStream(file)) {
+            DataInputStream header = new DataInputStream(fis);
+            if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+                throw new IOException("汇总文件格式错误: " + file.getPath());
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(fis)))) {
+                String date = in.readUTF();
+                int size = in.readInt();
+                List<NameSummary> names = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    names.add(NameSummary.readFrom(in));
+                }
+                return new DailySummary(date, names);
+            }
+        }
+    }
+}
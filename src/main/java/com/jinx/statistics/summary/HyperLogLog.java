@@ -0,0 +1,133 @@
+package com.jinx.statistics.summary;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * HyperLogLog基数估计
+ * 固定大小、可合并，用于统计每日和跨日的去重值数量
+ */
+public class HyperLogLog {
+
+    /**
+     * 精度（寄存器数量为 2^precision）
+     */
+    private final int precision;
+
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (!isValidPrecision(precision)) {
+            throw new IllegalArgumentException("基数估计精度必须在4到16之间: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * 添加元素的64位哈希值
+     * @param hash 哈希值
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long rest = hash << precision;
+        int rank = rest == 0 ? 64 - precision + 1 : Long.numberOfLeadingZeros(rest) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    private static boolean isValidPrecision(int precision) {
+        return precision >= 4 && precision <= 16;
+    }
+
+    /**
+     * 合并另一个相同精度的估计器（精度不同时先用{@link #fold}降到较低的精度）
+     * @param other 另一个估计器
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("基数估计精度不一致: " + precision + " / " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * 降低精度：结果与用较低精度逐个添加相同元素完全一致
+     * 高精度索引的低位成为低精度下哈希剩余部分的最高位：这些位不全为0时由它们决定排名，
+     * 全为0时排名为这些位数加上原来的排名
+     * @param target 目标精度，不高于当前精度
+     * @return 目标精度的估计器，精度相同时返回自身
+     */
+    public HyperLogLog fold(int target) {
+        if (target == precision) {
+            return this;
+        }
+        if (target > precision) {
+            throw new IllegalArgumentException("基数估计不能提高精度: " + precision + " -> " + target);
+        }
+        HyperLogLog folded = new HyperLogLog(target);
+        int shift = precision - target;
+        int mask = (1 << shift) - 1;
+        for (int i = 0; i < registers.length; i++) {
+            int rank = registers[i];
+            if (rank == 0) {
+                continue;
+            }
+            int low = i & mask;
+            int foldedRank = low != 0 ? Integer.numberOfLeadingZeros(low) - (32 - shift) + 1 : shift + rank;
+            int index = i >>> shift;
+            if (foldedRank > folded.registers[index]) {
+                folded.registers[index] = (byte) foldedRank;
+            }
+        }
+        return folded;
+    }
+
+    /**
+     * 估计基数
+     * @return 估计的去重数量
+     */
+    public long cardinality() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // 小基数时使用线性计数修正
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(precision);
+        out.write(registers);
+    }
+
+    public static HyperLogLog readFrom(DataInput in) throws IOException {
+        int precision = in.readByte();
+        if (!isValidPrecision(precision)) {
+            throw new IOException("基数估计精度无效: " + precision);
+        }
+        HyperLogLog hll = new HyperLogLog(precision);
+        in.readFully(hll.registers);
+        return hll;
+    }
+}
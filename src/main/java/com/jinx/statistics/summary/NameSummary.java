@@ -0,0 +1,107 @@
+package com.jinx.statistics.summary;
+
+import com.jinx.statistics.utility.VarintUtility;
+import lombok.Getter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 单个统计名称在一天内的汇总
+ */
+@Getter
+public class NameSummary {
+
+    public static final int HOURS = 24;
+
+    /**
+     * 统计名称
+     */
+    private final String name;
+
+    /**
+     * 记录数量
+     */
+    private long count;
+
+    /**
+     * 数据字节数
+     */
+    private long bytes;
+
+    /**
+     * 去重值数量估计（与精度较低的汇总合并时换成降低精度后的估计器）
+     */
+    private HyperLogLog distinct;
+
+    /**
+     * 按小时的记录数量（来自写入路径的实时计数，补建的历史汇总为0）
+     */
+    private final long[] hourly;
+
+    public NameSummary(String name, int precision) {
+        this(name, new HyperLogLog(precision), new long[HOURS]);
+    }
+
+    NameSummary(String name, HyperLogLog distinct, long[] hourly) {
+        this.name = name;
+        this.distinct = distinct;
+        this.hourly = hourly;
+    }
+
+    public void add(long count, long bytes) {
+        this.count += count;
+        this.bytes += bytes;
+    }
+
+    /**
+     * 写入记录数、字节数、小时分布和基数估计器
+     * @param out 输出
+     * @throws IOException 写入失败
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(name);
+        VarintUtility.write(out, count);
+        VarintUtility.write(out, bytes);
+        for (long hour : hourly) {
+            VarintUtility.write(out, hour);
+        }
+        distinct.writeTo(out);
+    }
+
+    /**
+     * 读取{@link #writeTo}写入的汇总
+     * @param in 输入
+     * @return 汇总
+     * @throws IOException 读取失败
+     */
+    public static NameSummary readFrom(DataInput in) throws IOException {
+        String name = in.readUTF();
+        long count = VarintUtility.read(in);
+        long bytes = VarintUtility.read(in);
+        long[] hourly = new long[HOURS];
+        for (int h = 0; h < hourly.length; h++) {
+            hourly[h] = VarintUtility.read(in);
+        }
+        NameSummary summary = new NameSummary(name, HyperLogLog.readFrom(in), hourly);
+        summary.add(count, bytes);
+        return summary;
+    }
+
+    /**
+     * 合并另一天（或另一个节点）同名的汇总
+     * 修改过汇总精度后，不同日期、不同节点的基数估计器精度可能不同，统一降到较低的精度再合并
+     * @param other 另一份汇总
+     */
+    public void merge(NameSummary other) {
+        this.count += other.count;
+        this.bytes += other.bytes;
+        int precision = Math.min(distinct.getPrecision(), other.distinct.getPrecision());
+        this.distinct = this.distinct.fold(precision);
+        this.distinct.merge(other.distinct.fold(precision));
+        for (int i = 0; i < HOURS; i++) {
+            this.hourly[i] += other.hourly[i];
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.jinx.statistics.summary;
+
+import lombok.Getter;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 区间汇总的中间结果
+ * 各统计名称按字典序排列，多个节点的中间结果可以按名称逐条归并；
+ * 可以编码后在节点之间传输，解码时按需逐条读取，归并时每个来源只保留当前一条。
+ * 格式：魔数、版本，之后为压缩数据：天数、缺少汇总的日期，以及每个名称前一个“后面还有”标记
+ */
+public class PartialSummary {
+
+    private static final int MAGIC = 0x4A535054; // "JSPT"
+    private static final int VERSION = 1;
+
+    /**
+     * 已读取汇总的天数
+     */
+    @Getter
+    private final int days;
+
+    /**
+     * 有数据但缺少汇总文件的日期
+     */
+    @Getter
+    private final List<String> missingDays;
+
+    /**
+     * 按名称排序的汇总（只能遍历一次）
+     */
+    private final Iterator<NameSummary> names;
+
+    public PartialSummary(int days, List<String> missingDays, Iterator<NameSummary> names) {
+        this.days = days;
+        this.missingDays = missingDays;
+        this.names = names;
+    }
+
+    /**
+     * 按名称排序的汇总，只能遍历一次
+     * @return 迭代器，解码失败时抛出UncheckedIOException
+     */
+    public Iterator<NameSummary> names() {
+        return names;
+    }
+
+    /**
+     * 编码写出（消耗迭代器）
+     * @param os 输出流
+     * @throws IOException 写入失败
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        DataOutputStream header = new DataOutputStream(os);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.flush();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(os);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(deflater));
+        out.writeInt(days);
+        out.writeInt(missingDays.size());
+        for (String day : missingDays) {
+            out.writeUTF(day);
+        }
+        while (names.hasNext()) {
+            out.writeBoolean(true);
+            names.next().writeTo(out);
+        }
+        out.writeBoolean(false);
+        out.flush();
+        // 不关闭底层输出流，由调用方负责
+        deflater.finish();
+    }
+
+    /**
+     * 解码：先读出天数和缺少汇总的日期，各名称的汇总在遍历时逐条读取
+     * @param is 输入流
+     * @return 中间结果
+     * @throws IOException 读取失败或格式错误
+     */
+    public static PartialSummary readFrom(InputStream is) throws IOException {
+        DataInputStream header = new DataInputStream(is);
+        if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+            throw new IOException("汇总中间结果格式错误");
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(is)));
+        int days = in.readInt();
+        int missing = in.readInt();
+        List<String> missingDays = new ArrayList<>(missing);
+        for (int i = 0; i < missing; i++) {
+            missingDays.add(in.readUTF());
+        }
+        return new PartialSummary(days, missingDays, new Iterator<>() {
+            private Boolean more;
+
+            @Override
+            public boolean hasNext() {
+                if (more == null) {
+                    try {
+                        more = in.readBoolean();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return more;
+            }
+
+            @Override
+            public NameSummary next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                more = null;
+                try {
+                    return NameSummary.readFrom(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,347 @@
+package com.jinx.statistics.summary;
+
+import com.jinx.statistics.constant.FileConstant;
+import com.jinx.statistics.dao.DayClock;
+import com.jinx.statistics.pojo.SummaryItem;
+import com.jinx.statistics.pojo.SummaryReport;
+import com.jinx.statistics.storage.StorageFormat;
+import com.jinx.statistics.storage.StorageFormats;
+import com.jinx.statistics.utility.DateUtility;
+import com.jinx.statistics.utility.FileUtility;
+import com.jinx.statistics.utility.HashUtility;
+import com.jinx.statistics.utility.SortedMerge;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 每日汇总管理
+ * 写入路径实时累计各统计名称的小时分布，日期切换时扫描旧日期文件夹生成汇总文件；
+ * 报表查询只读取汇总文件
+ */
+@Component
+@Slf4j
+public class SummaryManager {
+
+    /**
+     * 应用属性
+     */
+    @Value("${app.statistics-file-dir}")
+    private String fileDir;
+
+    /**
+     * 基数估计精度
+     */
+    @Value("${app.summary.precision:11}")
+    private int precision;
+
+    /**
+     * 补建汇总的并行度
+     */
+    @Value("${app.summary.backfill-parallelism:4}")
+    private int backfillParallelism;
+
+    /**
+     * 实时小时分布：日期 -> 统计名称 -> 24小时计数
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, AtomicLongArray>> hourlyCounters = new ConcurrentHashMap<>();
+
+    /**
+     * 正在执行的补建任务线程池
+     */
+    private volatile ForkJoinPool backfillPool;
+
+    /**
+     * 存储格式
+     */
+    private final StorageFormats storageFormats;
+
+    /**
+     * 按分区时区计算小时
+     */
+    private final DayClock dayClock;
+
+    public SummaryManager(StorageFormats storageFormats, DayClock dayClock) {
+        this.storageFormats = storageFormats;
+        this.dayClock = dayClock;
+    }
+
+    /**
+     * 记录一次写入（写入路径调用，不分配对象）
+     * @param date 日期
+     * @param name 统计名称
+     */
+    public void recordAppend(String date, String name) {
+        ConcurrentHashMap<String, AtomicLongArray> byName = hourlyCounters.get(date);
+        if (byName == null) {
+            byName = hourlyCounters.computeIfAbsent(date, k -> new ConcurrentHashMap<>());
+        }
+        AtomicLongArray hourly = byName.get(name);
+        if (hourly == null) {
+            hourly = byName.computeIfAbsent(name, k -> new AtomicLongArray(NameSummary.HOURS));
+        }
+        hourly.incrementAndGet(dayClock.hourOfDay(System.currentTimeMillis()));
+    }
+
+    /**
+     * 尚未生成汇总的日期的实时小时分布（复制），用于写入热启动快照
+     * @return 日期 -> 统计名称 -> 24小时计数
+     */
+    public Map<String, Map<String, long[]>> liveHourly() {
+        Map<String, Map<String, long[]>> copy = new TreeMap<>();
+        hourlyCounters.forEach((date, byName) -> {
+            Map<String, long[]> names = new HashMap<>(byName.size() * 2);
+            byName.forEach((name, hourly) -> {
+                long[] counts = new long[NameSummary.HOURS];
+                for (int hour = 0; hour < counts.length; hour++) {
+                    counts[hour] = hourly.get(hour);
+                }
+                names.put(name, counts);
+            });
+            copy.put(date, names);
+        });
+        return copy;
+    }
+
+    /**
+     * 恢复重启前的实时小时分布，与重启后的计数相加
+     * @param date 日期
+     * @param name 统计名称
+     * @param counts 24小时计数
+     */
+    public void restoreHourly(String date, String name, long[] counts) {
+        AtomicLongArray hourly = hourlyCounters.computeIfAbsent(date, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(name, k -> new AtomicLongArray(NameSummary.HOURS));
+        for (int hour = 0; hour < NameSummary.HOURS && hour < counts.length; hour++) {
+            hourly.addAndGet(hour, counts[hour]);
+        }
+    }
+
+    /**
+     * 为已封存的日期生成汇总文件，并释放该日期的实时计数
+     * @param date 日期
+     * @return 是否生成成功
+     */
+    public boolean build(String date) {
+        Map<String, AtomicLongArray> hourly = hourlyCounters.remove(date);
+        File dir = new File(String.join("/", fileDir, date));
+        if (!dir.isDirectory()) {
+            return false;
+        }
+        File[] files = storageFormats.dataFiles(dir);
+
+        long startTime = DateUtility.now();
+        Map<String, NameSummary> names = new TreeMap<>();
+        File target = summaryFile(date);
+        try {
+            // 数据文件中没有时间信息，重建时保留已有汇总中的小时分布
+            Map<String, long[]> previousHourly = new HashMap<>();
+            if (hourly == null && target.isFile()) {
+                for (NameSummary previous : DailySummary.readFrom(target).getNames()) {
+                    previousHourly.put(previous.getName(), previous.getHourly());
+                }
+            }
+            // 切换存储格式的当天，同一名称可能同时存在多种格式的文件
+            for (File file : files) {
+                String name = storageFormats.nameOf(file);
+                NameSummary summary = names.get(name);
+                if (summary == null) {
+                    summary = new NameSummary(name, precision);
+                    names.put(name, summary);
+                }
+                scan(file, summary);
+            }
+            for (NameSummary summary : names.values()) {
+                String name = summary.getName();
+                AtomicLongArray counters = hourly == null ? null : hourly.get(name);
+                if (counters != null) {
+                    for (int h = 0; h < NameSummary.HOURS; h++) {
+                        summary.getHourly()[h] = counters.get(h);
+                    }
+                } else if (previousHourly.containsKey(name)) {
+                    System.arraycopy(previousHourly.get(name), 0, summary.getHourly(), 0, NameSummary.HOURS);
+                }
+            }
+            FileUtility.createFolder(target.getParentFile());
+            new DailySummary(date, new ArrayList<>(names.values())).writeTo(target);
+            log.info("日期[{}]汇总生成完成: {}个名称, {}字节, 耗时{}ms",
+                    date, names.size(), target.length(), DateUtility.now() - startTime);
+            return true;
+        } catch (IOException e) {
+            log.error("日期[{}]汇总生成失败", date, e);
+            return false;
+        }
+    }
+
+    /**
+     * 记录数取自格式的计数（段格式只读段尾），基数估计只需遍历去重前的值（段格式只读字典）
+     */
+    private void scan(File file, NameSummary summary) throws IOException {
+        StorageFormat format = storageFormats.forFile(file);
+        format.readDistinct(file, (position, value) -> {
+            summary.getDistinct().addHash(HashUtility.hash64(value));
+            return true;
+        });
+        summary.add(format.count(file), file.length());
+    }
+
+    /**
+     * 并行补建历史日期的汇总文件
+     * @param today 当前日期（不补建）
+     * @param force 是否覆盖已存在的汇总
+     * @return 提交的日期数量，已有补建任务在执行时返回-1
+     */
+    public synchronized int backfill(String today, boolean force) {
+        if (backfillPool != null) {
+            return -1;
+        }
+        File[] dirs = new File(fileDir).listFiles(file -> file.isDirectory() && !file.isHidden());
+        if (dirs == null) {
+            return 0;
+        }
+        List<String> dates = new ArrayList<>();
+        for (File dir : dirs) {
+            String date = dir.getName();
+            if (date.matches("\\d{8}") && !date.equals(today) && (force || !summaryFile(date).exists())) {
+                dates.add(date);
+            }
+        }
+        if (dates.isEmpty()) {
+            return 0;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, backfillParallelism));
+        backfillPool = pool;
+        AtomicInteger built = new AtomicInteger();
+        long startTime = DateUtility.now();
+        pool.execute(() -> {
+            try {
+                dates.parallelStream().forEach(date -> {
+                    if (build(date)) {
+                        built.incrementAndGet();
+                    }
+                });
+                log.info("汇总补建完成: {}/{}个日期, 耗时{}ms", built.get(), dates.size(), DateUtility.now() - startTime);
+            } finally {
+                backfillPool = null;
+                pool.shutdown();
+            }
+        });
+        return dates.size();
+    }
+
+    /**
+     * 基于汇总文件生成区间报表
+     * @param dates 日期列表
+     * @param name 统计名称，为空时返回全部
+     * @return 报表
+     */
+    public SummaryReport report(List<String> dates, String name) {
+        Map<String, PartialSummary> parts = new LinkedHashMap<>();
+        parts.put("local", partial(dates, name));
+        return merge(parts);
+    }
+
+    /**
+     * 读取日期区间内的每日汇总并按名称合并，得到可以与其它节点归并的中间结果
+     * @param dates 日期列表
+     * @param name 统计名称，为null时返回全部
+     * @return 按名称排序的中间结果
+     */
+    public PartialSummary partial(List<String> dates, String name) {
+        int days = 0;
+        List<String> missingDays = new ArrayList<>();
+        Map<String, NameSummary> merged = new TreeMap<>();
+        for (String date : dates) {
+            File file = summaryFile(date);
+            if (!file.isFile()) {
+                if (new File(String.join("/", fileDir, date)).isDirectory()) {
+                    missingDays.add(date);
+                }
+                continue;
+            }
+            try {
+                DailySummary daily = DailySummary.readFrom(file);
+                days++;
+                for (NameSummary summary : daily.getNames()) {
+                    if (name != null && !name.equals(summary.getName())) {
+                        continue;
+                    }
+                    NameSummary total = merged.get(summary.getName());
+                    if (total == null) {
+                        merged.put(summary.getName(), summary);
+                    } else {
+                        total.merge(summary);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("读取汇总文件失败: {}", file.getPath(), e);
+                missingDays.add(date);
+            }
+        }
+        return new PartialSummary(days, missingDays, merged.values().iterator());
+    }
+
+    /**
+     * 按名称逐条归并多个来源的中间结果，生成报表
+     * 记录数、字节数和小时分布相加，基数估计器取各寄存器的最大值；
+     * 中途解码失败的来源记入不可用节点，报表标记为不完整
+     * @param parts 来源名称 -> 中间结果
+     * @return 报表
+     */
+    public SummaryReport merge(Map<String, PartialSummary> parts) {
+        long startTime = DateUtility.now();
+        SummaryReport report = new SummaryReport();
+        List<String> sources = new ArrayList<>(parts.keySet());
+        List<Iterator<NameSummary>> iterators = new ArrayList<>(parts.size());
+        Set<String> missingDays = new TreeSet<>(Comparator.reverseOrder());
+        for (PartialSummary part : parts.values()) {
+            report.setDays(Math.max(report.getDays(), part.getDays()));
+            missingDays.addAll(part.getMissingDays());
+            iterators.add(part.names());
+        }
+        List<Integer> failed = SortedMerge.merge(iterators, Comparator.comparing(NameSummary::getName),
+                (a, b) -> {
+                    a.merge(b);
+                    return a;
+                },
+                summary -> {
+                    SummaryItem item = new SummaryItem();
+                    item.setName(summary.getName());
+                    item.setCount(summary.getCount());
+                    item.setBytes(summary.getBytes());
+                    item.setCardinality(summary.getDistinct().cardinality());
+                    item.setHourly(summary.getHourly());
+                    report.getItems().add(item);
+                });
+        for (int source : failed) {
+            log.warn("归并汇总中间结果失败: {}", sources.get(source));
+            report.setPartial(true);
+            report.getUnavailableNodes().add(sources.get(source));
+        }
+        report.getMissingDays().addAll(missingDays);
+        report.setElapsedMs(DateUtility.now() - startTime);
+        return report;
+    }
+
+    private File summaryFile(String date) {
+        return new File(String.join("/", fileDir, FileConstant.META_DIR, date, FileConstant.SUMMARY_FILE));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ForkJoinPool pool = backfillPool;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
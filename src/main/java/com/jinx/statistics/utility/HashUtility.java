@@ -0,0 +1,93 @@
+package com.jinx.statistics.utility;
+
+import java.nio.charset.StandardCharsets;
+
+public class HashUtility {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /**
+     * 计算字符串UTF-8字节的64位哈希值
+     * @param s 字符串
+     * @return 哈希值
+     */
+    public static long hash64(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return hash64(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 计算字节片段的64位哈希值（MurmurHash3 x64 128位结果的低64位）
+     * @param data 字节数组
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 哈希值
+     */
+    public static long hash64(byte[] data, int offset, int length) {
+        long h1 = 0;
+        long h2 = 0;
+        int blocks = length >>> 4;
+        for (int i = 0; i < blocks; i++) {
+            int p = offset + (i << 4);
+            long k1 = getLong(data, p);
+            long k2 = getLong(data, p + 8);
+
+            k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        int tail = offset + (blocks << 4);
+        int remaining = length & 15;
+        if (remaining > 8) {
+            for (int i = remaining - 1; i >= 8; i--) {
+                k2 ^= (long) (data[tail + i] & 0xff) << ((i - 8) << 3);
+            }
+            k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+        }
+        if (remaining > 0) {
+            for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+                k1 ^= (long) (data[tail + i] & 0xff) << (i << 3);
+            }
+            k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        return h1 + h2;
+    }
+
+    /**
+     * 64位整数的混淆函数
+     * @param k 输入值
+     * @return 混淆后的值
+     */
+    public static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long getLong(byte[] b, int i) {
+        return (b[i] & 0xffL)
+                | (b[i + 1] & 0xffL) << 8
+                | (b[i + 2] & 0xffL) << 16
+                | (b[i + 3] & 0xffL) << 24
+                | (b[i + 4] & 0xffL) << 32
+                | (b[i + 5] & 0xffL) << 40
+                | (b[i + 6] & 0xffL) << 48
+                | (b[i + 7] & 0xffL) << 56;
+    }
+}
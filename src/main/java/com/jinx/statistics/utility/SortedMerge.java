@@ -0,0 +1,83 @@
+package com.jinx.statistics.utility;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * 多路归并
+ * 每个来源已经有序，归并时每个来源只取出当前一个元素，相等的元素合并后按序输出
+ */
+public class SortedMerge {
+
+    /**
+     * 单个来源的当前位置
+     */
+    private static final class Cursor<T> {
+        private final int source;
+        private final Iterator<T> iterator;
+        private T head;
+
+        private Cursor(int source, Iterator<T> iterator) {
+            this.source = source;
+            this.iterator = iterator;
+        }
+    }
+
+    /**
+     * 归并多个有序来源
+     * @param sources 各来源，按comparator升序
+     * @param comparator 排序规则
+     * @param combine 合并两个相等的元素，返回合并结果
+     * @param sink 按序接收归并结果
+     * @return 遍历中途出错而被放弃的来源序号
+     */
+    public static <T> List<Integer> merge(List<? extends Iterator<T>> sources, Comparator<? super T> comparator,
+                                          BinaryOperator<T> combine, Consumer<? super T> sink) {
+        List<Integer> failed = new ArrayList<>();
+        PriorityQueue<Cursor<T>> queue = new PriorityQueue<>(Math.max(1, sources.size()),
+                (a, b) -> comparator.compare(a.head, b.head));
+        for (int i = 0; i < sources.size(); i++) {
+            Cursor<T> cursor = new Cursor<>(i, sources.get(i));
+            if (advance(cursor, failed)) {
+                queue.add(cursor);
+            }
+        }
+        while (!queue.isEmpty()) {
+            Cursor<T> cursor = queue.poll();
+            T value = cursor.head;
+            if (advance(cursor, failed)) {
+                queue.add(cursor);
+            }
+            while (!queue.isEmpty() && comparator.compare(queue.peek().head, value) == 0) {
+                Cursor<T> same = queue.poll();
+                value = combine.apply(value, same.head);
+                if (advance(same, failed)) {
+                    queue.add(same);
+                }
+            }
+            sink.accept(value);
+        }
+        return failed;
+    }
+
+    /**
+     * 取出来源的下一个元素
+     * @return 是否还有元素；出错时记录来源序号并返回false
+     */
+    private static <T> boolean advance(Cursor<T> cursor, List<Integer> failed) {
+        try {
+            if (cursor.iterator.hasNext()) {
+                cursor.head = cursor.iterator.next();
+                return true;
+            }
+        } catch (RuntimeException e) {
+            failed.add(cursor.source);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,52 @@
+package com.jinx.statistics.utility;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 变长整数编码（每字节7位有效数据，最高位表示是否还有后续字节）
+ */
+public class VarintUtility {
+
+    private VarintUtility() {
+    }
+
+    public static void write(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long read(DataInput in) throws IOException {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    /**
+     * 从缓冲区的指定位置读取，读取后缓冲区位置后移
+     * @param buffer 缓冲区
+     * @return 解码后的值
+     */
+    public static long read(ByteBuffer buffer) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+}
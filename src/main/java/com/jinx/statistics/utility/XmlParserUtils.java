@@ -1,74 +1,115 @@
 package com.jinx.statistics.utility;
 
-import com.alibaba.fastjson2.JSONArray;
-import com.alibaba.fastjson2.JSONObject;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class XmlParserUtils {
 
-    public static JSONObject parseXml(String xml) throws DocumentException {
-        JSONObject jsonObject = new JSONObject();
+    /**
+     * 将XML解析为嵌套的Map：无子元素的节点为字符串，有子元素的节点为Map，同级重复的节点合并为List
+     * @param xml XML文本
+     * @return 以根节点名称为键的Map
+     * @throws DocumentException XML格式错误
+     */
+    public static Map<String, Object> parseXml(String xml) throws DocumentException {
+        Map<String, Object> json = new LinkedHashMap<>();
         Document document = DocumentHelper.parseText(xml);
         //获取根节点元素对象
         Element root = document.getRootElement();
-        iterateNodes(root, jsonObject);
-        return jsonObject;
+        iterateNodes(root, json);
+        return json;
     }
 
-    private static void iterateNodes(Element node, JSONObject json) {
+    @SuppressWarnings("unchecked")
+    private static void iterateNodes(Element node, Map<String, Object> json) {
         //获取当前元素名称
         String nodeName = node.getName();
-        //判断已遍历的JSON中是否已经有了该元素的名称
-        if(json.containsKey(nodeName)){
-            //该元素在同级下有多个
-            Object Object = json.get(nodeName);
-            JSONArray array = null;
-            if(Object instanceof JSONArray){
-                array = (JSONArray) Object;
-            }else {
-                array = new JSONArray();
-                array.add(Object);
-            }
-            //获取该元素下所有子元素
-            List<Element> listElement = node.elements();
-            if(listElement.isEmpty()){
-                //该元素无子元素，获取元素的值
-                String nodeValue = node.getTextTrim();
-                array.add(nodeValue);
-                json.put(nodeName, array);
-                return ;
-            }
-            //有子元素
-            JSONObject newJson = new JSONObject();
-            //遍历所有子元素
+        //获取该元素下所有子元素
+        List<Element> listElement = node.elements();
+        Object value;
+        if(listElement.isEmpty()){
+            //该元素无子元素，获取元素的值
+            value = node.getTextTrim();
+        } else {
+            //有子节点，新建一个Map来存储该节点下子节点的值
+            Map<String, Object> object = new LinkedHashMap<>();
             for(Element e:listElement){
                 //递归
-                iterateNodes(e,newJson);
+                iterateNodes(e,object);
             }
-            array.add(newJson);
+            value = object;
+        }
+        //判断已遍历的节点中是否已经有了该元素的名称
+        Object existing = json.get(nodeName);
+        if(existing == null){
+            //该元素同级下第一次遍历
+            json.put(nodeName, value);
+            return;
+        }
+        //该元素在同级下有多个
+        List<Object> array;
+        if(existing instanceof List){
+            array = (List<Object>) existing;
+        }else {
+            array = new ArrayList<>();
+            array.add(existing);
             json.put(nodeName, array);
-            return ;
         }
-        //该元素同级下第一次遍历
-        //获取该元素下所有子元素
-        List<Element> listElement = node.elements();
-        if(listElement.isEmpty()){
-            //该元素无子元素，获取元素的值
-            String nodeValue = node.getTextTrim();
-            json.put(nodeName, nodeValue);
-            return ;
+        array.add(value);
+    }
+
+    /**
+     * 获取子节点
+     * @param node 节点
+     * @param name 子节点名称
+     * @return 子节点，不存在或不是对象时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> getObject(Map<String, Object> node, String name) {
+        Object value = node == null ? null : node.get(name);
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    /**
+     * 获取重复的子节点文本（只有一个时也返回列表）
+     * @param node 节点
+     * @param name 子节点名称
+     * @return 文本列表
+     */
+    public static List<String> getStrings(Map<String, Object> node, String name) {
+        Object value = node == null ? null : node.get(name);
+        if (value == null) {
+            return Collections.emptyList();
         }
-        //有子节点，新建一个JSONObject来存储该节点下子节点的值
-        JSONObject object = new JSONObject();
-        for(Element e:listElement){
-            //递归
-            iterateNodes(e,object);
+        List<String> result = new ArrayList<>();
+        if (value instanceof List<?> list) {
+            for (Object item : list) {
+                if (item instanceof String s) {
+                    result.add(s);
+                }
+            }
+        } else if (value instanceof String s) {
+            result.add(s);
         }
-        json.put(nodeName, object);
+        return result;
+    }
+
+    /**
+     * 获取子节点文本
+     * @param node 节点
+     * @param name 子节点名称
+     * @return 文本，不存在时返回null
+     */
+    public static String getString(Map<String, Object> node, String name) {
+        Object value = node == null ? null : node.get(name);
+        return value instanceof String s ? s : null;
     }
 }
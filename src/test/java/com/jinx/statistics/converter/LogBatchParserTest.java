@@ -0,0 +1,176 @@
+package com.jinx.statistics.converter;
+
+import com.jinx.statistics.pojo.LogBatch;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 统计请求体的流式解析
+ */
+class LogBatchParserTest {
+
+    private static final String[] MALFORMED = {
+            "{\"a\":\"1\"} x",
+            "{\"a\":\"1\"}{}",
+            "{\"a\":{\"b\":\"1\"}}",
+            "{\"a\":[\"1\"]}",
+            "{\"a\":\"1",
+            "{\"a\":\"x\ty\"}",
+            "{\"a\":\"\\x\"}",
+            "{\"a\":\"\\u12G4\"}",
+            "{\"a\":tru}",
+            "{\"a\" \"1\"}",
+            "{\"a\":\"1\",}",
+            "[\"a\"]",
+            "",
+    };
+
+    private final LogBatchParser parser = new LogBatchParser(new NameCache(64));
+
+    @Test
+    void unicodeEscapes() throws IOException {
+        LogBatch batch = parse("{\"a\":\"\\u00e9\\u4E2D\",\"b\":\"\\ud83d\\ude00\",\"c\":\"\\n\\t\\/\\\"\\\\\"}");
+        assertThat(values(batch)).containsExactly("é中", "😀", "\n\t/\"\\");
+    }
+
+    @Test
+    void unpairedSurrogatesBecomeQuestionMarks() throws IOException {
+        LogBatch batch = parse("{\"a\":\"\\ud83dx\",\"b\":\"\\ud83d\",\"c\":\"\\ud83d\\u0041\",\"d\":\"\\ude00y\"}");
+        assertThat(values(batch)).containsExactly("?x", "?", "?A", "?y");
+    }
+
+    @Test
+    void multiByteNames() throws IOException {
+        LogBatch batch = parse("{\"登录\":\"张三\",\"emoji😀\":\"é\",\"\\u767b\\u5f55\":\"李四\"}");
+        assertThat(names(batch)).containsExactly("登录", "emoji😀", "登录");
+        assertThat(values(batch)).containsExactly("张三", "é", "李四");
+        // 同一个名称复用缓存中的字符串
+        assertThat(batch.name(2)).isSameAs(batch.name(0));
+    }
+
+    @Test
+    void duplicateKeysKeptInOrder() throws IOException {
+        LogBatch batch = parse("{\"a\":\"1\",\"b\":\"2\",\"a\":\"3\",\"a\":\"4\"}");
+        assertThat(names(batch)).containsExactly("a", "b", "a", "a");
+        assertThat(values(batch)).containsExactly("1", "2", "3", "4");
+    }
+
+    @Test
+    void scalarsAsTextAndNullSkipped() throws IOException {
+        LogBatch batch = parse(" {\n\t\"a\" : null , \"b\":-1.5e+3,\"c\":0,\"d\":true,\"e\":false,\"f\":\"\"\r\n} ");
+        assertThat(names(batch)).containsExactly("b", "c", "d", "e", "f");
+        assertThat(values(batch)).containsExactly("-1.5e+3", "0", "true", "false", "");
+        assertThat(parse("{}").isEmpty()).isTrue();
+    }
+
+    @Test
+    void refillsAcrossBufferBoundary() throws IOException {
+        String longValue = "v".repeat(20_000) + "中";
+        String longName = "n".repeat(9_000);
+        StringBuilder json = new StringBuilder("{");
+        // 让\\u转义、多字节字符和名称都跨过8KB的缓冲区边界
+        for (int i = 0; i < 2_000; i++) {
+            json.append("\"k").append(i).append("\":\"\\u4e2d").append(i).append("\",");
+        }
+        json.append("\"").append(longName).append("\":\"").append(longValue).append("\"}");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        LogBatch whole = parser.parse(new ByteArrayInputStream(bytes));
+        LogBatch trickled = parser.parse(trickle(bytes, 7));
+        for (LogBatch batch : List.of(whole, trickled)) {
+            assertThat(batch.size()).isEqualTo(2_001);
+            assertThat(batch.name(1_999)).isEqualTo("k1999");
+            assertThat(batch.value(1_999)).isEqualTo("中1999");
+            assertThat(batch.name(2_000)).isEqualTo(longName);
+            assertThat(batch.value(2_000)).isEqualTo(longValue);
+        }
+    }
+
+    @Test
+    void malformedBodiesRejected() {
+        LogBatchMessageConverter converter = new LogBatchMessageConverter();
+        for (String body : MALFORMED) {
+            assertThatThrownBy(() -> converter.read(LogBatch.class, message(body)))
+                    .as(body)
+                    .isInstanceOf(HttpMessageNotReadableException.class)
+                    .hasMessageContaining("JSON格式错误");
+        }
+    }
+
+    @Test
+    void malformedBodiesAnswer400() throws Exception {
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new Endpoint())
+                .setMessageConverters(new LogBatchMessageConverter())
+                .build();
+        mvc.perform(post("/log").contentType(MediaType.APPLICATION_JSON).content("{\"a\":\"1\",\"b\":2}"))
+                .andExpect(status().isOk());
+        for (String body : MALFORMED) {
+            mvc.perform(post("/log").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @RestController
+    static class Endpoint {
+        @PostMapping("/log")
+        void log(@RequestBody LogBatch batch) {
+        }
+    }
+
+    private LogBatch parse(String json) throws IOException {
+        return parser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MockHttpInputMessage message(String body) {
+        MockHttpInputMessage message = new MockHttpInputMessage(body.getBytes(StandardCharsets.UTF_8));
+        message.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return message;
+    }
+
+    /**
+     * 每次最多返回chunk个字节的输入流
+     */
+    private static InputStream trickle(byte[] bytes, int chunk) {
+        return new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, chunk));
+            }
+        };
+    }
+
+    private static List<String> names(LogBatch batch) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            names.add(batch.name(i));
+        }
+        return names;
+    }
+
+    private static List<String> values(LogBatch batch) {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            values.add(batch.value(i));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,98 @@
+package com.jinx.statistics.dao;
+
+import com.jinx.statistics.storage.ValueBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 关闭排空溢出文件的读写和不完整末尾的处理
+ */
+class SpillLogTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void roundTrip() throws IOException {
+        File file = new File(dir, "meta/drain.spill");
+        try (SpillLog spill = SpillLog.open(file)) {
+            spill.append("20261019", "登录", buffer("张三", "李四", "张三"));
+            spill.append("20261018", "pay", buffer(""));
+            assertThat(spill.getRecords()).isEqualTo(4);
+        }
+        // 再次打开时追加到末尾
+        try (SpillLog spill = SpillLog.open(file)) {
+            spill.append("20261019", "pay", buffer("x"));
+        }
+
+        List<String> visited = new ArrayList<>();
+        assertThat(SpillLog.replay(file, (date, name, values) -> visited.add(date + "/" + name + "=" + values))).isTrue();
+        assertThat(visited).containsExactly("20261019/登录=[张三, 李四, 张三]", "20261018/pay=[]", "20261019/pay=[x]");
+    }
+
+    @Test
+    void replayStopsAtTruncatedTail() throws IOException {
+        File file = new File(dir, "drain.spill");
+        try (SpillLog spill = SpillLog.open(file)) {
+            spill.append("20261019", "a", buffer("1", "2"));
+        }
+        long complete = file.length();
+        try (SpillLog spill = SpillLog.open(file)) {
+            spill.append("20261019", "b", buffer("3", "4", "5"));
+        }
+        long full = file.length();
+
+        for (long length = complete + 1; length < full; length++) {
+            truncate(file, length);
+            List<String> visited = new ArrayList<>();
+            assertThat(SpillLog.replay(file, (date, name, values) -> visited.add(name + "=" + values)))
+                    .as("长度%d", length).isFalse();
+            assertThat(visited).as("长度%d", length).containsExactly("a=[1, 2]");
+        }
+    }
+
+    @Test
+    void replayStopsAtCorruptRecord() throws IOException {
+        File file = new File(dir, "drain.spill");
+        try (SpillLog spill = SpillLog.open(file)) {
+            spill.append("20261019", "a", buffer("1"));
+        }
+        long complete = file.length();
+        try (SpillLog spill = SpillLog.open(file)) {
+            spill.append("20261019", "b", buffer("2"));
+            spill.append("20261019", "c", buffer("3"));
+        }
+        // 第二条记录的负载损坏，之后的记录也不再读取
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(complete + 10);
+            int b = raf.read();
+            raf.seek(complete + 10);
+            raf.write(b ^ 0x01);
+        }
+
+        List<String> visited = new ArrayList<>();
+        assertThat(SpillLog.replay(file, (date, name, values) -> visited.add(name))).isFalse();
+        assertThat(visited).containsExactly("a");
+    }
+
+    private static ValueBuffer buffer(String... values) {
+        ValueBuffer buffer = new ValueBuffer(16);
+        Arrays.stream(values).forEach(buffer::add);
+        return buffer;
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.jinx.statistics.dao;
+
+import com.jinx.statistics.index.BloomFilterIndex;
+import com.jinx.statistics.index.DayIndexer;
+import com.jinx.statistics.metrics.MetricsRegistry;
+import com.jinx.statistics.replication.ReplicationSender;
+import com.jinx.statistics.storage.PackManager;
+import com.jinx.statistics.storage.StorageFormats;
+import com.jinx.statistics.summary.SummaryManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 日期封存时最后一次刷盘失败的记录不丢失
+ */
+class StatisticsDaoSealTest {
+
+    private static final String DAY = "20261019";
+
+    @TempDir
+    File dir;
+
+    @Test
+    void recordsSurviveFailedSeal() throws IOException {
+        DayClock dayClock = new DayClock("UTC");
+        // 不启动时钟线程，日期切换只换名称表，封存由测试直接调用
+        dayClock.shutdown();
+        setTime(dayClock, "2026-10-19T23:00:00Z");
+        ReflectionTestUtils.setField(dayClock, "day", ReflectionTestUtils.invokeMethod(dayClock, "dayOf",
+                Instant.parse("2026-10-19T23:00:00Z").toEpochMilli()));
+        StatisticsDao dao = dao(dayClock);
+
+        dao.appendStatistics("k", "a");
+        dao.appendStatistics("k", "b");
+
+        // 日期文件夹的位置被一个普通文件占用，创建文件夹和写入都会失败
+        File day = new File(dir, DAY);
+        assertThat(day.createNewFile()).isTrue();
+
+        setTime(dayClock, "2026-10-20T00:00:01Z");
+        dao.appendStatistics("other", "x");
+        ReflectionTestUtils.invokeMethod(dao, "seal", DAY);
+
+        // 没有写入的记录还在，封存推迟到重试之后
+        assertThat(zipQueue(dao)).contains(DAY);
+        assertThat(new File(dir, DAY + ".zip")).doesNotExist();
+
+        assertThat(day.delete()).isTrue();
+        ReflectionTestUtils.invokeMethod(dao, "saveCaches");
+        assertThat(Files.readAllLines(new File(day, "k.csv").toPath())).containsExactly("a", "b");
+    }
+
+    @Test
+    void failedZipRequeued() throws IOException {
+        DayClock dayClock = new DayClock("UTC");
+        dayClock.shutdown();
+        setTime(dayClock, "2026-10-20T00:00:01Z");
+        StatisticsDao dao = dao(dayClock);
+
+        File day = new File(dir, DAY);
+        assertThat(day.mkdir()).isTrue();
+        Files.writeString(new File(day, "k.csv").toPath(), "a\n");
+
+        // 临时压缩文件的位置被文件夹占用，压缩失败
+        File tmp = new File(dir, "." + DAY + ".zip.tmp");
+        assertThat(tmp.mkdir()).isTrue();
+        ReflectionTestUtils.invokeMethod(dao, "compress", DAY);
+        assertThat(zipQueue(dao)).containsExactly(DAY);
+        assertThat(new File(dir, DAY + ".zip")).doesNotExist();
+
+        zipQueue(dao).clear();
+        ReflectionTestUtils.invokeMethod(dao, "compress", DAY);
+        assertThat(zipQueue(dao)).isEmpty();
+        assertThat(new File(dir, DAY + ".zip")).isFile();
+        assertThat(tmp).doesNotExist();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> zipQueue(StatisticsDao dao) {
+        return (List<String>) ReflectionTestUtils.getField(dao, "zipCache");
+    }
+
+    private static void setTime(DayClock dayClock, String instant) {
+        long millis = Instant.parse(instant).toEpochMilli();
+        ReflectionTestUtils.setField(dayClock, "clock", Clock.fixed(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+    }
+
+    private StatisticsDao dao(DayClock dayClock) {
+        StorageFormats formats = new StorageFormats("csv", 4096);
+        BloomFilterIndex bloomFilterIndex = new BloomFilterIndex(formats);
+        ReflectionTestUtils.setField(bloomFilterIndex, "fileDir", dir.getPath());
+
+        DayIndexer dayIndexer = new DayIndexer(formats, dayClock);
+        ReflectionTestUtils.setField(dayIndexer, "fileDir", dir.getPath());
+
+        SummaryManager summaryManager = new SummaryManager(formats, dayClock);
+        ReflectionTestUtils.setField(summaryManager, "fileDir", dir.getPath());
+        ReflectionTestUtils.setField(summaryManager, "precision", 11);
+
+        ReplicationSender replicationSender = new ReplicationSender(formats, dayClock, new MetricsRegistry());
+        PackManager packManager = new PackManager(formats, dayClock, new MetricsRegistry());
+        ReflectionTestUtils.setField(packManager, "fileDir", dir.getPath());
+
+        StatisticsDao dao = new StatisticsDao(bloomFilterIndex, dayIndexer, summaryManager, formats, new MetricsRegistry(),
+                dayClock, replicationSender, packManager);
+        ReflectionTestUtils.setField(dao, "fileDir", dir.getPath());
+        ReflectionTestUtils.setField(dao, "maxCacheSize", 1000);
+        ReflectionTestUtils.setField(dao, "flushThreshold", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(dao, "maxDictionarySize", 256);
+        return dao;
+    }
+}
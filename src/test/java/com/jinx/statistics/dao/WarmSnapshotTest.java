@@ -0,0 +1,106 @@
+package com.jinx.statistics.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 热启动快照的读写和损坏检测
+ */
+class WarmSnapshotTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void roundTrip() throws IOException {
+        File file = new File(dir, "meta/warm.snapshot");
+        snapshot().writeTo(file);
+
+        WarmSnapshot read = WarmSnapshot.readFrom(file);
+        assertThat(read.getDate()).isEqualTo("20261019");
+        assertThat(read.getSuffix()).isEqualTo(".seg");
+        assertThat(read.getNames()).containsExactly("登录", "pay", "");
+        assertThat(read.getCounters()).containsExactly(Map.entry("jinx_a_total", 7L), Map.entry("jinx_b_total", -1L));
+        assertThat(read.getHourly()).containsOnlyKeys("20261018", "20261019");
+        assertThat(read.getHourly().get("20261019").get("登录")).containsExactly(hours(3));
+        assertThat(read.getHourly().get("20261018")).isEmpty();
+        assertThat(new File(dir, "meta/warm.snapshot.tmp")).doesNotExist();
+    }
+
+    @Test
+    void emptySnapshot() throws IOException {
+        File file = new File(dir, "warm.snapshot");
+        new WarmSnapshot("20261019", ".csv", List.of(), Map.of(), Map.of()).writeTo(file);
+
+        WarmSnapshot read = WarmSnapshot.readFrom(file);
+        assertThat(read.getNames()).isEmpty();
+        assertThat(read.getCounters()).isEmpty();
+        assertThat(read.getHourly()).isEmpty();
+    }
+
+    @Test
+    void truncatedSnapshotRejected() throws IOException {
+        File file = new File(dir, "warm.snapshot");
+        snapshot().writeTo(file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        for (int length = 0; length < bytes.length; length++) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(0);
+                raf.write(bytes, 0, length);
+            }
+            assertThatThrownBy(() -> WarmSnapshot.readFrom(file)).as("长度%d", length).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void corruptSnapshotRejected() throws IOException {
+        File file = new File(dir, "warm.snapshot");
+        snapshot().writeTo(file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        // 任何一个字节损坏（包括计数值中间）都不能被当成有效快照
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] corrupt = bytes.clone();
+            corrupt[i] ^= 0x10;
+            Files.write(file.toPath(), corrupt);
+            assertThatThrownBy(() -> WarmSnapshot.readFrom(file)).as("位置%d", i).isInstanceOf(IOException.class);
+        }
+
+        // 末尾多出的内容
+        byte[] longer = new byte[bytes.length + 3];
+        System.arraycopy(bytes, 0, longer, 0, bytes.length);
+        Files.write(file.toPath(), longer);
+        assertThatThrownBy(() -> WarmSnapshot.readFrom(file)).isInstanceOf(IOException.class);
+    }
+
+    private static WarmSnapshot snapshot() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("jinx_a_total", 7L);
+        counters.put("jinx_b_total", -1L);
+        Map<String, Map<String, long[]>> hourly = new TreeMap<>();
+        hourly.put("20261019", Map.of("登录", hours(3), "pay", hours(0)));
+        hourly.put("20261018", Map.of());
+        return new WarmSnapshot("20261019", ".seg", List.of("登录", "pay", ""), counters, hourly);
+    }
+
+    private static long[] hours(long seed) {
+        long[] counts = new long[24];
+        for (int hour = 0; hour < counts.length; hour++) {
+            counts[hour] = seed * 100 + hour;
+        }
+        return counts;
+    }
+}
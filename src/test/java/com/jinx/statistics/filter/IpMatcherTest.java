@@ -0,0 +1,152 @@
+package com.jinx.statistics.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * IP许可列表的解析和匹配
+ */
+class IpMatcherTest {
+
+    @Test
+    void singleAddresses() {
+        IpMatcher matcher = IpMatcher.builder().add("192.168.1.10").add("::1").add("2001:db8::7").build();
+        assertThat(matcher.matches("192.168.1.10")).isTrue();
+        assertThat(matcher.matches(" 192.168.1.10\t")).isTrue();
+        assertThat(matcher.matches("192.168.1.11")).isFalse();
+        assertThat(matcher.matches("::1")).isTrue();
+        assertThat(matcher.matches("[::1]")).isTrue();
+        assertThat(matcher.matches("0:0:0:0:0:0:0:1")).isTrue();
+        assertThat(matcher.matches("::2")).isFalse();
+        assertThat(matcher.matches("2001:DB8:0:0::7")).isTrue();
+        assertThat(matcher.matches("fe80::1%eth0")).isFalse();
+        assertThat(matcher.getEntryCount()).isEqualTo(3);
+    }
+
+    @Test
+    void cidrBlocks() {
+        IpMatcher matcher = IpMatcher.builder().add("10.0.0.0/8").add("172.16.0.0/12").add("2001:db8::/32").build();
+        assertThat(matcher.matches("10.0.0.0")).isTrue();
+        assertThat(matcher.matches("10.255.255.255")).isTrue();
+        assertThat(matcher.matches("11.0.0.0")).isFalse();
+        assertThat(matcher.matches("9.255.255.255")).isFalse();
+        assertThat(matcher.matches("172.31.255.255")).isTrue();
+        assertThat(matcher.matches("172.32.0.0")).isFalse();
+        assertThat(matcher.matches("2001:db8:ffff:ffff:ffff:ffff:ffff:ffff")).isTrue();
+        assertThat(matcher.matches("2001:db9::")).isFalse();
+    }
+
+    @Test
+    void zoneIdIgnored() {
+        IpMatcher matcher = IpMatcher.builder().add("fe80::/10").build();
+        assertThat(matcher.matches("fe80::1%eth0")).isTrue();
+        assertThat(matcher.matches("[fe80::abcd%25en0]")).isTrue();
+        assertThat(matcher.matches("fec0::1%eth0")).isFalse();
+    }
+
+    @Test
+    void ipv4MappedAddressesMatchIpv4Entries() {
+        IpMatcher matcher = IpMatcher.builder().add("127.0.0.1").add("::ffff:10.1.0.0/112").build();
+        assertThat(matcher.matches("::ffff:127.0.0.1")).isTrue();
+        assertThat(matcher.matches("::FFFF:7f00:1")).isTrue();
+        assertThat(matcher.matches("::ffff:127.0.0.2")).isFalse();
+        // ::ffff:10.1.0.0/112 等价于 10.1.0.0/16
+        assertThat(matcher.matches("10.1.200.3")).isTrue();
+        assertThat(matcher.matches("::ffff:10.1.0.9")).isTrue();
+        assertThat(matcher.matches("10.2.0.0")).isFalse();
+    }
+
+    @Test
+    void familiesDoNotLeak() {
+        IpMatcher v4All = IpMatcher.builder().add("0.0.0.0/0").build();
+        assertThat(v4All.matches("255.255.255.255")).isTrue();
+        assertThat(v4All.matches("::ffff:1.2.3.4")).isTrue();
+        assertThat(v4All.matches("::1")).isFalse();
+        assertThat(v4All.matches("2001:db8::1")).isFalse();
+
+        IpMatcher v6All = IpMatcher.builder().add("::/0").build();
+        assertThat(v6All.matches("2001:db8::1")).isTrue();
+        assertThat(v6All.matches("1.2.3.4")).isFalse();
+    }
+
+    @Test
+    void rangesIncludeBothEnds() {
+        IpMatcher matcher = IpMatcher.builder().add("10.0.0.5-10.0.1.3").add("2001:db8::ff-2001:db8::101").build();
+        assertThat(matcher.matches("10.0.0.4")).isFalse();
+        assertThat(matcher.matches("10.0.0.5")).isTrue();
+        assertThat(matcher.matches("10.0.0.255")).isTrue();
+        assertThat(matcher.matches("10.0.1.0")).isTrue();
+        assertThat(matcher.matches("10.0.1.3")).isTrue();
+        assertThat(matcher.matches("10.0.1.4")).isFalse();
+        assertThat(matcher.matches("2001:db8::fe")).isFalse();
+        assertThat(matcher.matches("2001:db8::ff")).isTrue();
+        assertThat(matcher.matches("2001:db8::101")).isTrue();
+        assertThat(matcher.matches("2001:db8::102")).isFalse();
+
+        IpMatcher whole = IpMatcher.builder().add("0.0.0.0-255.255.255.255").build();
+        assertThat(whole.matches("0.0.0.0")).isTrue();
+        assertThat(whole.matches("255.255.255.255")).isTrue();
+        assertThat(whole.matches("::1")).isFalse();
+    }
+
+    @Test
+    void rangesMatchReference() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            long a = random.nextLong() & 0xFFFFFFFFL;
+            long b = Math.min(0xFFFFFFFFL, a + (random.nextBoolean() ? random.nextInt(1 << 20) : random.nextInt(300)));
+            IpMatcher matcher = IpMatcher.builder().add(v4(a) + "-" + v4(b)).build();
+            for (long probe : new long[]{a - 1, a, a + 1, (a + b) >>> 1, b - 1, b, b + 1}) {
+                if (probe < 0 || probe > 0xFFFFFFFFL) {
+                    continue;
+                }
+                assertThat(matcher.matches(v4(probe))).as("%s-%s %s", v4(a), v4(b), v4(probe))
+                        .isEqualTo(probe >= a && probe <= b);
+            }
+        }
+    }
+
+    @Test
+    void overlappingEntriesCollapse() {
+        IpMatcher longFirst = IpMatcher.builder().add("10.1.2.3").add("10.1.0.0/16").add("10.0.0.0/8").build();
+        IpMatcher shortFirst = IpMatcher.builder().add("10.0.0.0/8").add("10.1.0.0/16").add("10.1.2.3").build();
+        for (IpMatcher matcher : new IpMatcher[]{longFirst, shortFirst}) {
+            assertThat(matcher.matches("10.9.9.9")).isTrue();
+            assertThat(matcher.matches("10.1.2.3")).isTrue();
+            assertThat(matcher.matches("11.1.2.3")).isFalse();
+        }
+        // 已被覆盖的条目不再增加节点
+        IpMatcher single = IpMatcher.builder().add("10.0.0.0/8").build();
+        assertThat(shortFirst.getNodeCount()).isEqualTo(single.getNodeCount());
+    }
+
+    @Test
+    void malformedAddressesNeverMatch() {
+        IpMatcher matcher = IpMatcher.builder().add("0.0.0.0/0").add("::/0").build();
+        String[] malformed = {"", " ", "1.2.3", "1.2.3.4.5", "1.2.3.256", "1.2.3.0004", "1..2.3", "1.2.3.4.",
+                "a.b.c.d", "1:2:3:4:5:6:7:8:9", "1::2::3", "12345::", "1:2:3:4:5:6:7:8::", ":1:2", "1:", "[::1",
+                "::ffff:1.2.3", "g::1"};
+        for (String ip : malformed) {
+            assertThat(matcher.matches(ip)).as(ip).isFalse();
+        }
+        assertThat(matcher.matches(null)).isFalse();
+    }
+
+    @Test
+    void malformedEntriesRejected() {
+        String[] malformed = {"", "10.0.0.0/33", "10.0.0.0/-1", "10.0.0.0/x", "::/129", "10.0.0.9-10.0.0.1",
+                "10.0.0.1-::1", "300.0.0.1", "::ffff:10.0.0.0/95"};
+        for (String entry : malformed) {
+            assertThatThrownBy(() -> IpMatcher.builder().add(entry)).as(entry)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private static String v4(long address) {
+        return (address >>> 24) + "." + ((address >>> 16) & 0xFF) + "." + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+}
@@ -0,0 +1,139 @@
+package com.jinx.statistics.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GCRA令牌桶的计算、客户端上限和空闲清理（使用可控的时钟）
+ */
+class RateLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 从一个较大的值开始，确认不依赖时钟的绝对值
+     */
+    private final AtomicLong now = new AtomicLong(1_000_000_000_000L);
+
+    @Test
+    void burstThenRetryWait() {
+        // 每秒10个令牌（间隔100ms），突发3个
+        RateLimiter limiter = limiter(10, 3, 100, 60_000);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(2);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(1);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(0);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(-100 * MS);
+        assertThat(limiter.resetNanos("a")).isEqualTo(300 * MS);
+
+        advance(40);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(-60 * MS);
+        advance(60);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(0);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(-100 * MS);
+
+        // 被限流的请求不消耗令牌
+        advance(250);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(1);
+        assertThat(limiter.resetNanos("a")).isEqualTo(150 * MS);
+    }
+
+    @Test
+    void idleBucketRefillsOnlyToBurst() {
+        RateLimiter limiter = limiter(10, 3, 100, 60_000);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("a");
+        }
+        advance(10_000);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(2);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(1);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(0);
+        assertThat(limiter.tryAcquire("a")).isNegative();
+        assertThat(limiter.resetNanos("unknown")).isZero();
+    }
+
+    @Test
+    void clientsAreIndependent() {
+        RateLimiter limiter = limiter(1, 1, 100, 60_000);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(0);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(-1000 * MS);
+        assertThat(limiter.tryAcquire("b")).isEqualTo(0);
+        assertThat(limiter.size()).isEqualTo(2);
+    }
+
+    @Test
+    void fractionalRate() {
+        // 每2秒一个令牌
+        RateLimiter limiter = limiter(0.5, 1, 100, 60_000);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(0);
+        advance(1_500);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(-500 * MS);
+        advance(500);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(0);
+        assertThat(limiter.getBurst()).isEqualTo(1);
+        assertThat(limiter(5, 0, 100, 60_000).getBurst()).isEqualTo(1);
+    }
+
+    @Test
+    void newClientsLimitedAtCapacityUntilCleanup() {
+        RateLimiter limiter = limiter(10, 2, 2, 1_000);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(1);
+        assertThat(limiter.tryAcquire("b")).isEqualTo(1);
+        // 达到上限：新客户端按一个令牌间隔限流，已跟踪的客户端不受影响
+        assertThat(limiter.tryAcquire("c")).isEqualTo(-100 * MS);
+        assertThat(limiter.size()).isEqualTo(2);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(0);
+
+        advance(600);
+        limiter.tryAcquire("a");
+        advance(500);
+        // b空闲1100ms超过TTL被清理，a仍在使用
+        assertThat(limiter.cleanup()).isEqualTo(1);
+        assertThat(limiter.size()).isEqualTo(1);
+        assertThat(limiter.tryAcquire("c")).isEqualTo(1);
+    }
+
+    @Test
+    void cleanupHonoursTtl() {
+        RateLimiter limiter = limiter(10, 2, 100, 1_000);
+        limiter.tryAcquire("a");
+        advance(1_000);
+        assertThat(limiter.cleanup()).isZero();
+        advance(1);
+        assertThat(limiter.cleanup()).isEqualTo(1);
+        assertThat(limiter.size()).isZero();
+    }
+
+    @Test
+    void ttlNeverShorterThanRefill() {
+        // 令牌桶回满需要5秒，TTL只配置了1秒：回满之前删除会让客户端重新获得完整的突发
+        RateLimiter limiter = limiter(1, 5, 100, 1_000);
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("a");
+        }
+        advance(2_000);
+        assertThat(limiter.cleanup()).isZero();
+        assertThat(limiter.tryAcquire("a")).isEqualTo(1);
+        advance(5_001);
+        assertThat(limiter.cleanup()).isEqualTo(1);
+    }
+
+    @Test
+    void sameConfig() {
+        RateLimiter limiter = limiter(10, 3, 100, 60_000);
+        assertThat(limiter.isSameConfig(10, 3, 100, 60_000)).isTrue();
+        assertThat(limiter.isSameConfig(10, 4, 100, 60_000)).isFalse();
+        assertThat(limiter.isSameConfig(10, 3, 100, 30_000)).isFalse();
+    }
+
+    private RateLimiter limiter(double rate, int burst, int maxClients, long idleTtlMillis) {
+        return new RateLimiter(rate, burst, maxClients, idleTtlMillis, now::get);
+    }
+
+    private void advance(long millis) {
+        now.addAndGet(millis * MS);
+    }
+}
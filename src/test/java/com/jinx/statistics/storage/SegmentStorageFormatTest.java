@@ -0,0 +1,122 @@
+package com.jinx.statistics.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 二进制段格式的读写和崩溃恢复
+ */
+class SegmentStorageFormatTest {
+
+    private final SegmentStorageFormat format = new SegmentStorageFormat(3);
+
+    @TempDir
+    File dir;
+
+    @Test
+    void roundTrip() throws IOException {
+        File file = new File(dir, "a" + format.suffix());
+        format.append(file, buffer(16, "x", "y", "x", "z", "y"));
+        format.append(file, buffer(0, "w", "x"));
+
+        assertThat(readAll(file)).containsExactly("x", "y", "x", "z", "y", "w", "x");
+        assertThat(format.count(file)).isEqualTo(7);
+        assertThat(format.contains(file, "w")).isTrue();
+        assertThat(format.contains(file, "v")).isFalse();
+        List<String> distinct = new ArrayList<>();
+        format.readDistinct(FileRange.of(file), (position, value) -> distinct.add(value));
+        assertThat(distinct).containsExactly("x", "y", "z", "w", "x");
+    }
+
+    @Test
+    void readsEntryInsideLargerFile() throws IOException {
+        File segment = new File(dir, "a" + format.suffix());
+        format.append(segment, buffer(16, "x", "y"));
+        byte[] bytes = Files.readAllBytes(segment.toPath());
+        File pack = new File(dir, "pack");
+        try (RandomAccessFile raf = new RandomAccessFile(pack, "rw")) {
+            raf.write(new byte[5]);
+            raf.write(bytes);
+            raf.write(new byte[7]);
+        }
+
+        FileRange range = new FileRange(pack, segment.getName(), 5, bytes.length);
+        List<String> values = new ArrayList<>();
+        format.read(range, (position, value) -> values.add(value));
+        assertThat(values).containsExactly("x", "y");
+        assertThat(format.count(range)).isEqualTo(2);
+    }
+
+    @Test
+    void ignoresTornTail() throws IOException {
+        File file = new File(dir, "a" + format.suffix());
+        format.append(file, buffer(16, "x", "y"));
+        long complete = file.length();
+        format.append(file, buffer(16, "z", "z", "z", "z"));
+        long full = file.length();
+
+        // 第二段写到一半时崩溃
+        for (long length = full - 1; length > complete; length -= 7) {
+            truncate(file, length);
+            assertThat(readAll(file)).as("长度%d", length).containsExactly("x", "y");
+            assertThat(format.count(file)).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void appendAfterTornTailDropsIt() throws IOException {
+        File file = new File(dir, "a" + format.suffix());
+        format.append(file, buffer(16, "x", "y"));
+        format.append(file, buffer(16, "lost"));
+        truncate(file, file.length() - 3);
+
+        format.append(file, buffer(16, "z"));
+        assertThat(readAll(file)).containsExactly("x", "y", "z");
+        assertThat(format.contains(file, "lost")).isFalse();
+
+        // 与没有崩溃时的文件完全相同
+        File expected = new File(dir, "b" + format.suffix());
+        format.append(expected, buffer(16, "x", "y"));
+        format.append(expected, buffer(16, "z"));
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(Files.readAllBytes(expected.toPath()));
+    }
+
+    @Test
+    void appendAfterTornFirstSegmentStartsOver() throws IOException {
+        File file = new File(dir, "a" + format.suffix());
+        format.append(file, buffer(16, "lost"));
+        truncate(file, file.length() / 2);
+
+        assertThat(readAll(file)).isEmpty();
+        format.append(file, buffer(16, "x"));
+        assertThat(readAll(file)).containsExactly("x");
+    }
+
+    private List<String> readAll(File file) throws IOException {
+        List<String> values = new ArrayList<>();
+        format.read(file, (position, value) -> values.add(value));
+        return values;
+    }
+
+    private static ValueBuffer buffer(int maxDictionarySize, String... values) {
+        ValueBuffer buffer = new ValueBuffer(maxDictionarySize);
+        Arrays.stream(values).forEach(buffer::add);
+        return buffer;
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.jinx.statistics.summary;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 基数估计器降低精度和不同精度汇总的合并
+ */
+class HyperLogLogTest {
+
+    @Test
+    void foldMatchesDirectLowerPrecision() throws IOException {
+        Random random = new Random(7);
+        for (int count : new int[]{0, 1, 50, 5_000, 200_000}) {
+            HyperLogLog fine = new HyperLogLog(14);
+            HyperLogLog coarse = new HyperLogLog(10);
+            for (int i = 0; i < count; i++) {
+                long hash = random.nextLong();
+                fine.addHash(hash);
+                coarse.addHash(hash);
+            }
+            // 哈希剩余部分全为0的极端情况
+            fine.addHash(1L << 63);
+            coarse.addHash(1L << 63);
+
+            HyperLogLog folded = fine.fold(10);
+            assertThat(folded.getPrecision()).isEqualTo(10);
+            assertThat(bytes(folded)).as("%d个值", count).isEqualTo(bytes(coarse));
+        }
+    }
+
+    @Test
+    void foldToSamePrecisionReturnsItself() {
+        HyperLogLog hll = new HyperLogLog(11);
+        assertThat(hll.fold(11)).isSameAs(hll);
+        assertThatThrownBy(() -> hll.fold(12)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> hll.merge(new HyperLogLog(12))).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("精度");
+    }
+
+    @Test
+    void namesWithDifferentPrecisionsMerge() {
+        Random random = new Random(11);
+        NameSummary before = new NameSummary("a", 14);
+        NameSummary after = new NameSummary("a", 11);
+        HyperLogLog expected = new HyperLogLog(11);
+        for (int i = 0; i < 20_000; i++) {
+            long hash = random.nextLong();
+            (i % 2 == 0 ? before : after).getDistinct().addHash(hash);
+            expected.addHash(hash);
+        }
+        before.add(10, 100);
+        after.add(5, 50);
+
+        before.merge(after);
+        assertThat(before.getCount()).isEqualTo(15);
+        assertThat(before.getBytes()).isEqualTo(150);
+        assertThat(before.getDistinct().getPrecision()).isEqualTo(11);
+        assertThat(before.getDistinct().cardinality()).isEqualTo(expected.cardinality());
+
+        // 低精度的一方在前同样可以合并
+        NameSummary coarse = new NameSummary("a", 10);
+        coarse.merge(new NameSummary("a", 16));
+        assertThat(coarse.getDistinct().getPrecision()).isEqualTo(10);
+    }
+
+    @Test
+    void invalidStoredPrecisionIsIoError() {
+        byte[] bytes = {(byte) 30, 0, 0};
+        assertThatThrownBy(() -> HyperLogLog.readFrom(new DataInputStream(new ByteArrayInputStream(bytes))))
+                .isInstanceOf(IOException.class);
+    }
+
+    private static byte[] bytes(HyperLogLog hll) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        hll.writeTo(new DataOutputStream(out));
+        return out.toByteArray();
+    }
+}
@@ -7,6 +7,22 @@ mkdir -p log
 APP_NAME="JinxStatistics.jar"
 LOG_FILE="log/app.log"
 JAVA_OPTS="-Xms256m -Xmx512m"
+# 生产配置：关闭接口文档
+SPRING_PROFILE="prod"
+# AppCDS归档，由 mvn -Pprod package 生成或用 ./start.sh cds 在部署目录生成
+CDS_ARCHIVE="JinxStatistics.jsa"
+
+# 启动加速参数：jar包含AOT生成的代码时开启AOT，存在CDS归档时使用归档（归档不匹配时JVM自动忽略）
+accelerate_opts() {
+    local opts="-Dspring.profiles.active=$SPRING_PROFILE"
+    if grep -qa "JinxStatisticsApplication__ApplicationContextInitializer" "$APP_NAME"; then
+        opts="$opts -Dspring.aot.enabled=true"
+    fi
+    if [[ -f "$CDS_ARCHIVE" && "$1" != "training" ]]; then
+        opts="$opts -XX:SharedArchiveFile=$CDS_ARCHIVE -Xlog:cds=error"
+    fi
+    echo "$opts"
+}
 
 # 检查 Java 版本
 check_java_version() {
@@ -48,13 +64,32 @@ stop_application() {
 # 启动程序
 start_application() {
     echo "正在启动 $APP_NAME..."
-    SCRIPT_DIR=$(dirname "$0")
+    SCRIPT_DIR=$(cd "$(dirname "$0")" && pwd)
     LOG_PATH="$SCRIPT_DIR/$LOG_FILE"
-    # 启动应用
-    nohup java $JAVA_OPTS -jar "$JAR_PATH" > "$LOG_PATH" 2>&1 &
+    # 启动应用（在部署目录中以相对路径启动，与生成CDS归档时的路径一致）
+    cd "$SCRIPT_DIR" || exit 1
+    nohup java $JAVA_OPTS $(accelerate_opts) -jar "$APP_NAME" > "$LOG_PATH" 2>&1 &
     echo "启动命令已执行，请稍后运行检查命令确认是否启动成功。"
 }
 
+# 在部署目录生成CDS归档：训练启动到上下文刷新完成即退出，不监听端口，数据写入临时目录
+create_cds_archive() {
+    echo "正在生成 $CDS_ARCHIVE..."
+    SCRIPT_DIR=$(cd "$(dirname "$0")" && pwd)
+    cd "$SCRIPT_DIR" || exit 1
+    rm -f "$CDS_ARCHIVE"
+    java $JAVA_OPTS $(accelerate_opts training) -XX:ArchiveClassesAtExit="$CDS_ARCHIVE" -Xlog:cds=error \
+        -Dspring.context.exit=onRefresh -Ddev.statistics-file-dir=.cds-training \
+        -Dapp.replication.standby= -Dapp.replication.listen-port=0 -jar "$APP_NAME"
+    rm -rf .cds-training
+    if [[ -f "$CDS_ARCHIVE" ]]; then
+        echo "已生成 $CDS_ARCHIVE，下次启动时生效"
+    else
+        echo "生成 $CDS_ARCHIVE 失败"
+        exit 1
+    fi
+}
+
 # 检查程序是否启动成功
 check_application_status() {
     if pgrep -f "$APP_NAME" > /dev/null; then
@@ -89,8 +124,13 @@ case "$1" in
     "check")
         check_application_status
         ;;
+    "cds")
+        check_java_version
+        check_jar_file
+        create_cds_archive
+        ;;
     *)
-        echo "用法: $0 {start|stop|restart|check}"
+        echo "用法: $0 {start|stop|restart|check|cds}"
         exit 1
         ;;
 esac
\ No newline at end of file